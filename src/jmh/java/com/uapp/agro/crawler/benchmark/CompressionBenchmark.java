@@ -0,0 +1,86 @@
+package com.uapp.agro.crawler.benchmark;
+
+import com.uapp.agro.crawler.config.ApplicationProperties;
+import com.uapp.agro.crawler.consumer.compression.CompressionResult;
+import com.uapp.agro.crawler.consumer.compression.CompressionStrategy;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One consumer compression step: the original image is decoded already and has to end up at half of its
+ * downloaded size, as in {@code ImageScraperConsumer.compressImage}. Every call compresses the next image of
+ * the corpus, so the time per op and the encode attempts per image are averages over the whole corpus.
+ * <p>
+ * {@code corpus} is {@code generated-photo}, {@code generated-graphic} or a directory of real JPEG and PNG
+ * files, of which those in {@code format} are used:
+ * <pre>
+ * mvn -Pbenchmark compile exec:exec -Djmh.args="Compression -p corpus=/data/images -p format=jpg"
+ * </pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class CompressionBenchmark {
+    @Param({"LINEAR", "BISECTION"})
+    private ApplicationProperties.CompressionStrategyType strategy;
+
+    @Param({"jpg", "png"})
+    private String format;
+
+    @Param({"generated-photo", "generated-graphic"})
+    private String corpus;
+
+    private CompressionStrategy compressionStrategy;
+    private List<ImageCorpus.Sample> samples;
+    private int next;
+
+    @Setup
+    public void setUp() throws IOException {
+        compressionStrategy = CompressionStrategy.of(strategy);
+        samples = ImageCorpus.load(corpus, format);
+    }
+
+    /**
+     * Reported next to the time per op: {@code encodeAttempts / images} is the encodes it takes per image.
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class EncodeCounters {
+        public long encodeAttempts;
+        public long images;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            encodeAttempts = 0;
+            images = 0;
+        }
+    }
+
+    @Benchmark
+    public CompressionResult compressToHalfSize(EncodeCounters counters) throws IOException {
+        ImageCorpus.Sample sample = samples.get(next);
+        next = next + 1 == samples.size() ? 0 : next + 1;
+        CompressionResult result = compressionStrategy.compress(sample.image(), format, sample.targetSize());
+        counters.encodeAttempts += result.encodeAttempts();
+        counters.images++;
+        return result;
+    }
+}
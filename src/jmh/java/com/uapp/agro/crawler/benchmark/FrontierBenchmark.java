@@ -0,0 +1,70 @@
+package com.uapp.agro.crawler.benchmark;
+
+import com.uapp.agro.crawler.producer.frontier.FrontierEntry;
+import com.uapp.agro.crawler.producer.frontier.HostPartitionedFrontier;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Producers offering newly found links while other producers poll the frontier, without host delay so
+ * only the data structure is measured.
+ */
+@State(Scope.Group)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class FrontierBenchmark {
+    private static final int MEMORY_CAPACITY = 1 << 20;
+
+    @Param({"1", "64"})
+    private int hosts;
+
+    private HostPartitionedFrontier frontier;
+
+    @Setup(Level.Iteration)
+    public void setUp() {
+        frontier = new HostPartitionedFrontier(0, TimeUnit.MILLISECONDS, MEMORY_CAPACITY,
+                new ConcurrentLinkedQueue<>());
+    }
+
+    @Benchmark
+    @Group("offerAndPoll")
+    @GroupThreads(2)
+    public boolean offer(Cursor cursor) {
+        long page = cursor.next++;
+        return frontier.offer(Urls.page((int) (page % hosts), page * 64 + cursor.thread), 1);
+    }
+
+    @Benchmark
+    @Group("offerAndPoll")
+    @GroupThreads(2)
+    public FrontierEntry poll() throws InterruptedException {
+        return frontier.poll(0, TimeUnit.MILLISECONDS);
+    }
+
+    @State(Scope.Thread)
+    public static class Cursor {
+        private static final AtomicInteger THREADS = new AtomicInteger();
+
+        private final int thread = THREADS.getAndIncrement();
+        private long next;
+    }
+}
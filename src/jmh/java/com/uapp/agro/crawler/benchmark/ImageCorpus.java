@@ -0,0 +1,141 @@
+package com.uapp.agro.crawler.benchmark;
+
+import javax.imageio.ImageIO;
+import java.awt.Color;
+import java.awt.GradientPaint;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.stream.Stream;
+
+/**
+ * Benchmark images: generated from a fixed seed instead of shipping binary files, so every run compresses
+ * exactly the same pixels, or read from a directory of real images.
+ */
+public final class ImageCorpus {
+    private static final long SEED = 42;
+    private static final String GENERATED_PREFIX = "generated-";
+    private static final int GENERATED_WIDTH = 800;
+    private static final int GENERATED_HEIGHT = 600;
+
+    private ImageCorpus() {
+    }
+
+    public enum Kind {
+        /**
+         * Smooth gradients with soft shapes and sensor-like noise, compresses like a product photo.
+         */
+        PHOTO,
+        /**
+         * Flat colours and hard edges, compresses like a logo or a banner.
+         */
+        GRAPHIC
+    }
+
+    /**
+     * @param image      decoded original
+     * @param targetSize half of the original's encoded size, as the consumer asks for
+     */
+    public record Sample(BufferedImage image, long targetSize) {
+    }
+
+    /**
+     * @param corpus {@code generated-photo}, {@code generated-graphic} or a directory whose files with the
+     *               extension of {@code format} are decoded, {@code jpeg} counting as {@code jpg}
+     */
+    static List<Sample> load(String corpus, String format) throws IOException {
+        if (corpus.startsWith(GENERATED_PREFIX)) {
+            Kind kind = Kind.valueOf(corpus.substring(GENERATED_PREFIX.length()).toUpperCase(Locale.ROOT));
+            BufferedImage image = create(kind, GENERATED_WIDTH, GENERATED_HEIGHT);
+            return List.of(new Sample(image, encode(image, format).length / 2));
+        }
+        List<Sample> samples = new ArrayList<>();
+        try (Stream<Path> files = Files.list(Path.of(corpus))) {
+            for (Path file : files.filter(file -> formatOf(file).equals(format)).sorted().toList()) {
+                byte[] bytes = Files.readAllBytes(file);
+                BufferedImage image = ImageIO.read(new ByteArrayInputStream(bytes));
+                if (image != null) {
+                    samples.add(new Sample(image, bytes.length / 2));
+                }
+            }
+        }
+        if (samples.isEmpty()) {
+            throw new IllegalArgumentException("No decodable " + format + " images in " + corpus);
+        }
+        return samples;
+    }
+
+    private static String formatOf(Path file) {
+        String name = file.getFileName().toString().toLowerCase(Locale.ROOT);
+        String extension = name.substring(name.lastIndexOf('.') + 1);
+        return extension.equals("jpeg") ? "jpg" : extension;
+    }
+
+    static BufferedImage create(Kind kind, int width, int height) {
+        Random random = new Random(SEED);
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Graphics2D graphics = image.createGraphics();
+        graphics.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+        switch (kind) {
+            case PHOTO -> drawPhoto(graphics, random, width, height);
+            case GRAPHIC -> drawGraphic(graphics, random, width, height);
+        }
+        graphics.dispose();
+        if (kind == Kind.PHOTO) {
+            addNoise(image, random);
+        }
+        return image;
+    }
+
+    static byte[] encode(BufferedImage image, String format) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIO.write(image, format, out);
+        return out.toByteArray();
+    }
+
+    private static void drawPhoto(Graphics2D graphics, Random random, int width, int height) {
+        graphics.setPaint(new GradientPaint(0, 0, new Color(210, 180, 140), width, height, new Color(40, 60, 90)));
+        graphics.fillRect(0, 0, width, height);
+        for (int i = 0; i < 40; i++) {
+            int size = 40 + random.nextInt(width / 3);
+            graphics.setColor(new Color(random.nextInt(256), random.nextInt(256), random.nextInt(256), 90));
+            graphics.fillOval(random.nextInt(width) - size / 2, random.nextInt(height) - size / 2, size, size);
+        }
+    }
+
+    private static void drawGraphic(Graphics2D graphics, Random random, int width, int height) {
+        graphics.setColor(Color.WHITE);
+        graphics.fillRect(0, 0, width, height);
+        for (int i = 0; i < 25; i++) {
+            graphics.setColor(new Color(random.nextInt(256), random.nextInt(256), random.nextInt(256)));
+            graphics.fillRect(random.nextInt(width), random.nextInt(height), 20 + random.nextInt(200),
+                    20 + random.nextInt(120));
+        }
+    }
+
+    private static void addNoise(BufferedImage image, Random random) {
+        for (int y = 0; y < image.getHeight(); y++) {
+            for (int x = 0; x < image.getWidth(); x++) {
+                int rgb = image.getRGB(x, y);
+                int delta = random.nextInt(17) - 8;
+                int r = clamp(((rgb >> 16) & 0xFF) + delta);
+                int g = clamp(((rgb >> 8) & 0xFF) + delta);
+                int b = clamp((rgb & 0xFF) + delta);
+                image.setRGB(x, y, (r << 16) | (g << 8) | b);
+            }
+        }
+    }
+
+    private static int clamp(int value) {
+        return Math.max(0, Math.min(255, value));
+    }
+}
@@ -0,0 +1,93 @@
+package com.uapp.agro.crawler.benchmark;
+
+import com.uapp.agro.crawler.config.ApplicationProperties;
+import com.uapp.agro.crawler.producer.extract.ImageCandidateResolver;
+import com.uapp.agro.crawler.producer.extract.PageExtractor;
+import com.uapp.agro.crawler.scraper.image.ImageFilter;
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Document;
+import org.jsoup.parser.Parser;
+import org.jsoup.parser.StreamParser;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Producer page handling on a saved catalogue page with 40 products, a quarter of them with {@code srcset}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class PageExtractionBenchmark {
+    private static final String PAGE = "/pages/catalogue.html";
+    private static final String BASE_URI = "https://books.toscrape.com/";
+
+    private final PageExtractor extractor = new PageExtractor(
+            new ImageCandidateResolver(ApplicationProperties.SrcsetPolicy.LARGEST, 800),
+            new ImageFilter(0, Set.of("jpg", "png", "webp"), 0, 0));
+    private String html;
+    private Document document;
+
+    @Setup
+    public void setUp() throws IOException {
+        try (InputStream page = PageExtractionBenchmark.class.getResourceAsStream(PAGE)) {
+            if (page == null) {
+                throw new IOException("Missing benchmark page " + PAGE);
+            }
+            html = new String(page.readAllBytes(), StandardCharsets.UTF_8);
+        }
+        document = Jsoup.parse(html, BASE_URI);
+    }
+
+    @Benchmark
+    public void parseAndExtract(Blackhole blackhole) {
+        Document parsed = Jsoup.parse(html, BASE_URI);
+        blackhole.consume(extractor.extractImageUrls(parsed));
+        blackhole.consume(extractor.extractLinkUrls(parsed));
+    }
+
+    @Benchmark
+    public void streamAndExtract(Blackhole blackhole) throws IOException {
+        try (StreamParser parser = new StreamParser(Parser.htmlParser()).parse(html, BASE_URI)) {
+            extractor.stream(parser, new PageExtractor.PageVisitor() {
+                @Override
+                public void image(String imageUrl) {
+                    blackhole.consume(imageUrl);
+                }
+
+                @Override
+                public void link(String linkUrl) {
+                    blackhole.consume(linkUrl);
+                }
+            });
+        }
+    }
+
+    @Benchmark
+    public Set<String> extractImages() {
+        return extractor.extractImageUrls(document);
+    }
+
+    @Benchmark
+    public List<String> extractLinks() {
+        return extractor.extractLinkUrls(document);
+    }
+}
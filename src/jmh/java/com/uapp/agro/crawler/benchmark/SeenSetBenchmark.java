@@ -0,0 +1,78 @@
+package com.uapp.agro.crawler.benchmark;
+
+import com.uapp.agro.crawler.config.ApplicationProperties;
+import com.uapp.agro.crawler.scraper.seen.BloomFilterSeenSet;
+import com.uapp.agro.crawler.scraper.seen.ConcurrentSeenSet;
+import com.uapp.agro.crawler.scraper.seen.FingerprintSeenSet;
+import com.uapp.agro.crawler.scraper.seen.SeenSet;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Visited-set operations from several producers at once. Half of the prepared urls are preloaded, so
+ * {@code contains} hits and misses equally; {@code add} always inserts a url that was not seen before.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(4)
+public class SeenSetBenchmark {
+    private static final int PREPARED_URLS = 1 << 18;
+    private static final int EXPECTED_SIZE = 10_000_000;
+
+    @Param({"STRINGS", "FINGERPRINTS", "BLOOM_FILTER"})
+    private ApplicationProperties.SeenSetType type;
+
+    private final String[] urls = new String[PREPARED_URLS];
+    private SeenSet seenSet;
+
+    @Setup(Level.Iteration)
+    public void setUp() {
+        seenSet = switch (type) {
+            case STRINGS -> new ConcurrentSeenSet();
+            case FINGERPRINTS -> new FingerprintSeenSet(EXPECTED_SIZE);
+            case BLOOM_FILTER -> new BloomFilterSeenSet(EXPECTED_SIZE, 0.001);
+        };
+        for (int i = 0; i < PREPARED_URLS; i++) {
+            urls[i] = Urls.page(i % 64, i);
+            if ((i & 1) == 0) {
+                seenSet.add(urls[i]);
+            }
+        }
+    }
+
+    @Benchmark
+    public boolean add(Cursor cursor) {
+        return seenSet.add(Urls.page(cursor.thread, cursor.next++ + PREPARED_URLS));
+    }
+
+    @Benchmark
+    public boolean contains(Cursor cursor) {
+        return seenSet.contains(urls[cursor.next++ & (PREPARED_URLS - 1)]);
+    }
+
+    @State(Scope.Thread)
+    public static class Cursor {
+        private static final AtomicInteger THREADS = new AtomicInteger();
+
+        private final int thread = THREADS.getAndIncrement();
+        private int next;
+    }
+}
@@ -0,0 +1,126 @@
+package com.uapp.agro.crawler.benchmark;
+
+import com.uapp.agro.crawler.config.ApplicationProperties;
+import com.uapp.agro.crawler.scraper.seen.BloomFilterSeenSet;
+import com.uapp.agro.crawler.scraper.seen.ConcurrentSeenSet;
+import com.uapp.agro.crawler.scraper.seen.FingerprintSeenSet;
+import com.uapp.agro.crawler.scraper.seen.SeenSet;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.LongPredicate;
+
+/**
+ * Fills every seen-set type with 1M and 10M urls from four threads, then reports the heap it retains per
+ * entry and the add and contains rates. {@link SeenSetBenchmark} measures steady-state throughput only;
+ * this is the footprint side of the comparison. The retained heap is the used heap after a full GC with the
+ * filled set minus the same once the set is dropped; for {@code STRINGS} the url strings the set keeps
+ * alive are shown apart.
+ * <pre>
+ * mvn -Pbenchmark compile exec:exec@seen-set-footprint [-Dfootprint.args="1000000"]
+ * </pre>
+ */
+public final class SeenSetFootprint {
+    private static final int THREADS = 4;
+    private static final int HOSTS = 64;
+    private static final double FALSE_POSITIVE_RATE = 0.001;
+    private static final long[] DEFAULT_SIZES = {1_000_000, 10_000_000};
+
+    private SeenSetFootprint() {
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        long[] sizes = args.length == 0 ? DEFAULT_SIZES : parseSizes(args);
+        System.out.printf("%-13s %10s %12s %12s %12s %12s%n", "type", "urls", "B/entry", "keys B/entry",
+                "add ops/s", "contains/s");
+        for (long size : sizes) {
+            for (ApplicationProperties.SeenSetType type : ApplicationProperties.SeenSetType.values()) {
+                measure(type, size);
+            }
+        }
+    }
+
+    private static void measure(ApplicationProperties.SeenSetType type, long size) throws InterruptedException {
+        SeenSet seenSet = switch (type) {
+            case STRINGS -> new ConcurrentSeenSet();
+            case FINGERPRINTS -> new FingerprintSeenSet(size);
+            case BLOOM_FILTER -> new BloomFilterSeenSet(size, FALSE_POSITIVE_RATE);
+        };
+        double addSeconds = runOnThreads(size, adding(seenSet));
+        long heapWithSet = usedHeapAfterGc();
+        double containsSeconds = runOnThreads(size, looking(seenSet));
+        seenSet = null;
+        long retained = heapWithSet - usedHeapAfterGc();
+
+        long keyBytes = type == ApplicationProperties.SeenSetType.STRINGS ? stringBytes(size) : 0;
+        System.out.printf("%-13s %10d %12.1f %12.1f %12.0f %12.0f%n", type, size,
+                (retained - keyBytes) / (double) size, keyBytes / (double) size, size / addSeconds,
+                size / containsSeconds);
+    }
+
+    private static LongPredicate adding(SeenSet seenSet) {
+        return i -> seenSet.add(url(i));
+    }
+
+    private static LongPredicate looking(SeenSet seenSet) {
+        return i -> seenSet.contains(url(i));
+    }
+
+    private static String url(long i) {
+        return Urls.page((int) (i % HOSTS), i);
+    }
+
+    /**
+     * Runs {@code operation} for {@code 0..count-1}, split round-robin over the threads.
+     *
+     * @return seconds until the last thread finished
+     */
+    private static double runOnThreads(long count, LongPredicate operation) throws InterruptedException {
+        List<Thread> threads = new ArrayList<>();
+        long startedAt = System.nanoTime();
+        for (int t = 0; t < THREADS; t++) {
+            long first = t;
+            threads.add(Thread.ofPlatform().start(() -> {
+                for (long i = first; i < count; i += THREADS) {
+                    operation.test(i);
+                }
+            }));
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        return (System.nanoTime() - startedAt) / 1e9;
+    }
+
+    /**
+     * Compact Latin-1 strings: a 24-byte {@code String} plus a {@code byte[]} of 16 bytes header and one byte
+     * per char, each padded to 8 bytes.
+     */
+    private static long stringBytes(long count) {
+        long total = 0;
+        for (long i = 0; i < count; i++) {
+            total += 24 + align(16 + url(i).length());
+        }
+        return total;
+    }
+
+    private static long align(long bytes) {
+        return (bytes + 7) & ~7L;
+    }
+
+    private static long usedHeapAfterGc() {
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+    }
+
+    private static long[] parseSizes(String[] args) {
+        long[] sizes = new long[args.length];
+        for (int i = 0; i < args.length; i++) {
+            sizes[i] = Long.parseLong(args[i].replace("_", ""));
+        }
+        return sizes;
+    }
+}
@@ -0,0 +1,10 @@
+package com.uapp.agro.crawler.benchmark;
+
+final class Urls {
+    private Urls() {
+    }
+
+    static String page(int host, long page) {
+        return "https://shop" + host + ".example.com/catalogue/product-" + page + "/index.html";
+    }
+}
@@ -0,0 +1,85 @@
+package com.uapp.agro.crawler.harness;
+
+import com.uapp.agro.crawler.config.ApplicationProperties;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Harness settings, given as {@code key=value} arguments. Unknown keys fail fast so typos do not silently
+ * measure the defaults.
+ */
+record HarnessOptions(
+        int pages,
+        int fanOut,
+        int imagesPerPage,
+        int imageCount,
+        int imageKb,
+        long latencyMs,
+        long jitterMs,
+        double errorRate,
+        int producers,
+        int consumers,
+        int maxConcurrentRequests,
+        ApplicationProperties.ExecutionMode executionMode,
+        ApplicationProperties.ProbeMode probeMode,
+        ApplicationProperties.ExtractionMode extractionMode,
+        ApplicationProperties.Engine engine,
+        boolean hostLimit,
+        int retryAttempts,
+        int runs,
+        String logLevel
+) {
+    static HarnessOptions parse(String[] args) {
+        Map<String, String> values = new HashMap<>(Map.ofEntries(
+                Map.entry("pages", "1000"),
+                Map.entry("fan-out", "8"),
+                Map.entry("images-per-page", "4"),
+                Map.entry("image-count", "1000"),
+                Map.entry("image-kb", "40"),
+                Map.entry("latency-ms", "20"),
+                Map.entry("jitter-ms", "10"),
+                Map.entry("error-rate", "0.0"),
+                Map.entry("producers", "7"),
+                Map.entry("consumers", "3"),
+                Map.entry("max-concurrent-requests", "200"),
+                Map.entry("execution-mode", "platform"),
+                Map.entry("probe-mode", "none"),
+                Map.entry("extraction-mode", "stream"),
+                Map.entry("engine", "managers"),
+                Map.entry("host-limit", "true"),
+                Map.entry("retry-attempts", "4"),
+                Map.entry("runs", "1"),
+                Map.entry("log-level", "warn")
+        ));
+        for (String arg : args) {
+            int separator = arg.indexOf('=');
+            String key = separator > 0 ? arg.substring(0, separator) : arg;
+            if (separator <= 0 || !values.containsKey(key)) {
+                throw new IllegalArgumentException("Unknown harness option " + arg + ", expected one of " + values.keySet());
+            }
+            values.put(key, arg.substring(separator + 1));
+        }
+        return new HarnessOptions(
+                Integer.parseInt(values.get("pages")),
+                Integer.parseInt(values.get("fan-out")),
+                Integer.parseInt(values.get("images-per-page")),
+                Integer.parseInt(values.get("image-count")),
+                Integer.parseInt(values.get("image-kb")),
+                Long.parseLong(values.get("latency-ms")),
+                Long.parseLong(values.get("jitter-ms")),
+                Double.parseDouble(values.get("error-rate")),
+                Integer.parseInt(values.get("producers")),
+                Integer.parseInt(values.get("consumers")),
+                Integer.parseInt(values.get("max-concurrent-requests")),
+                ApplicationProperties.ExecutionMode.valueOf(values.get("execution-mode").toUpperCase()),
+                ApplicationProperties.ProbeMode.valueOf(values.get("probe-mode").toUpperCase()),
+                ApplicationProperties.ExtractionMode.valueOf(values.get("extraction-mode").toUpperCase()),
+                ApplicationProperties.Engine.valueOf(values.get("engine").toUpperCase()),
+                Boolean.parseBoolean(values.get("host-limit")),
+                Integer.parseInt(values.get("retry-attempts")),
+                Integer.parseInt(values.get("runs")),
+                values.get("log-level")
+        );
+    }
+}
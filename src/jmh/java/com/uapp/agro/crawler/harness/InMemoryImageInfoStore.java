@@ -0,0 +1,55 @@
+package com.uapp.agro.crawler.harness;
+
+import com.uapp.agro.crawler.image.dto.ImageCreateDto;
+import com.uapp.agro.crawler.image.model.ImageInfo;
+import com.uapp.agro.crawler.image.service.ImageInfoBatchWriter;
+import com.uapp.agro.crawler.image.service.ImageInfoService;
+
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Stands in for Postgres so the harness measures the crawl pipeline only.
+ */
+class InMemoryImageInfoStore implements ImageInfoService, ImageInfoBatchWriter {
+    private final ConcurrentMap<String, ImageInfo> byUrl = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, ImageInfo> byContentHash = new ConcurrentHashMap<>();
+    private final AtomicLong originalBytes = new AtomicLong();
+
+    @Override
+    public ImageInfo createIfNotExists(ImageCreateDto dto) {
+        return byUrl.computeIfAbsent(dto.getOriginalUrl(), url -> {
+            originalBytes.addAndGet(dto.getOriginalSize());
+            ImageInfo info = new ImageInfo(url, dto.getFilePath(), dto.getOriginalSize(), dto.getCompressedSize(),
+                    dto.getContentHash());
+            byContentHash.putIfAbsent(dto.getContentHash(), info);
+            return info;
+        });
+    }
+
+    @Override
+    public Optional<ImageInfo> findByContentHash(String contentHash) {
+        return Optional.ofNullable(byContentHash.get(contentHash));
+    }
+
+    @Override
+    public CompletableFuture<Void> write(ImageCreateDto dto) {
+        createIfNotExists(dto);
+        return CompletableFuture.completedFuture(null);
+    }
+
+    @Override
+    public void flush() {
+    }
+
+    long savedImages() {
+        return byUrl.size();
+    }
+
+    long savedOriginalBytes() {
+        return originalBytes.get();
+    }
+}
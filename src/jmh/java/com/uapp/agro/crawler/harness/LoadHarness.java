@@ -0,0 +1,207 @@
+package com.uapp.agro.crawler.harness;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import com.uapp.agro.crawler.config.ApplicationProperties;
+import com.uapp.agro.crawler.scraper.metrics.CrawlMetrics;
+import com.uapp.agro.crawler.scraper.service.ImageScraperService;
+import com.uapp.agro.crawler.scraper.service.impl.ImageScraperServiceImpl;
+import com.uapp.agro.crawler.scraper.service.impl.ReactiveImageScraperServiceImpl;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.config.MeterFilter;
+import io.micrometer.core.instrument.distribution.DistributionStatisticConfig;
+import io.micrometer.core.instrument.distribution.ValueAtPercentile;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Runs the whole producer/consumer pipeline against a {@link SyntheticSite} on localhost and prints
+ * throughput, latency percentiles and peak heap. Needs neither network access nor Postgres.
+ * <pre>
+ * mvn -Pbenchmark compile exec:exec@load-harness -Dharness.args="pages=2000 latency-ms=50 error-rate=0.01"
+ * </pre>
+ */
+public final class LoadHarness {
+    private static final double[] PERCENTILES = {0.5, 0.99};
+
+    private LoadHarness() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        HarnessOptions options = HarnessOptions.parse(args);
+        ((Logger) LoggerFactory.getLogger(Logger.ROOT_LOGGER_NAME)).setLevel(Level.toLevel(options.logLevel()));
+
+        Path workDirectory = Files.createTempDirectory("crawler-harness");
+        InMemoryImageInfoStore store = new InMemoryImageInfoStore();
+
+        try (SyntheticSite site = new SyntheticSite(options)) {
+            System.out.printf("Site: %d pages, %d images of %d KB on average, latency %d+%d ms, error rate %.3f%n",
+                    options.pages(), options.imageCount(), site.totalImageBytes() / options.imageCount() / 1024,
+                    options.latencyMs(), options.jitterMs(), options.errorRate());
+            // later runs share the store, output files and validator cache, so they measure a repeat crawl
+            for (int run = 1; run <= options.runs(); run++) {
+                if (options.runs() > 1) {
+                    System.out.printf("Run %d of %d%n", run, options.runs());
+                }
+                SimpleMeterRegistry registry = createRegistry();
+                ImageScraperService scraper = createScraper(options, properties(options, site.startUrl(), workDirectory),
+                        store, new CrawlMetrics(registry));
+
+                long savedImages = store.savedImages();
+                long savedOriginalBytes = store.savedOriginalBytes();
+                System.gc();
+                resetPeakHeap();
+                long startedAt = System.nanoTime();
+                scraper.startScraping(List.of(site.startUrl())).get();
+                double seconds = (System.nanoTime() - startedAt) / 1e9;
+                report(registry, store.savedImages() - savedImages, store.savedOriginalBytes() - savedOriginalBytes,
+                        seconds);
+            }
+        } finally {
+            deleteRecursively(workDirectory);
+        }
+        System.exit(0);
+    }
+
+    private static ImageScraperService createScraper(HarnessOptions options, ApplicationProperties properties,
+                                                     InMemoryImageInfoStore store, CrawlMetrics metrics) {
+        return switch (options.engine()) {
+            case MANAGERS -> new ImageScraperServiceImpl(properties, store, store, metrics);
+            case REACTIVE -> new ReactiveImageScraperServiceImpl(properties, store, store, metrics);
+        };
+    }
+
+    private static SimpleMeterRegistry createRegistry() {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        registry.config().meterFilter(new MeterFilter() {
+            @Override
+            public DistributionStatisticConfig configure(Meter.Id id, DistributionStatisticConfig config) {
+                // one window for the whole run, the default one rotates samples out after two minutes
+                return DistributionStatisticConfig.builder()
+                        .percentiles(PERCENTILES)
+                        .expiry(Duration.ofDays(1))
+                        .bufferLength(1)
+                        .build()
+                        .merge(config);
+            }
+        });
+        return registry;
+    }
+
+    private static ApplicationProperties properties(HarnessOptions options, String startUrl, Path workDirectory)
+            throws IOException {
+        Path output = Files.createDirectories(workDirectory.resolve("images"));
+        Path cache = workDirectory.resolve("cache").resolve("validators.jsonl");
+        return new ApplicationProperties(
+                new ApplicationProperties.ImageProperties(output + "/", 1L, Set.of("jpg"),
+                        ApplicationProperties.CompressionStrategyType.BISECTION, 50, 50,
+                        ApplicationProperties.SrcsetPolicy.LARGEST, 800),
+                new ApplicationProperties.ThreadProperties(options.producers(), options.consumers(),
+                        options.executionMode(), options.maxConcurrentRequests(), options.engine()),
+                new ApplicationProperties.ProducerProperties(List.of(startUrl), 10L, 0L, 32, options.probeMode(),
+                        16_384, options.extractionMode()),
+                new ApplicationProperties.SeenSetProperties(ApplicationProperties.SeenSetType.FINGERPRINTS,
+                        1_000_000L, 0.001),
+                new ApplicationProperties.QueueProperties(true, workDirectory.resolve("queues").toString(),
+                        100_000, 10_000, 50_000, 16_384),
+                new ApplicationProperties.CheckpointProperties(true, true,
+                        workDirectory.resolve("checkpoint").toString(), 1000L, 60_000L),
+                new ApplicationProperties.PersistenceProperties(100, 500L),
+                new ApplicationProperties.BalancerProperties(true, 2000L, 0.75, 0.1, 0.9),
+                new ApplicationProperties.CacheProperties(true, cache.toString(), 500_000),
+                new ApplicationProperties.PipelineProperties(0, 8, 2, 64),
+                new ApplicationProperties.HostLimitProperties(options.hostLimit(), 4, 64, 0.5, 2.0, 60_000L),
+                new ApplicationProperties.ScopeProperties(List.of(), List.of(), List.of(), List.of(), List.of(),
+                        List.of(), List.of("utm_*", "fbclid", "gclid"), true, false),
+                new ApplicationProperties.RobotsProperties(true, "agro-crawler", 86_400_000L, 60_000L, 10_000),
+                new ApplicationProperties.RetryProperties(options.retryAttempts(), 200L, 5_000L, true,
+                        workDirectory.resolve("dead-letters.jsonl").toString())
+        );
+    }
+
+    private static void report(SimpleMeterRegistry registry, long savedImages, long savedOriginalBytes,
+                               double seconds) {
+        Timer fetched = registry.find("crawler.page.fetch").tag("outcome", "success").timer();
+        Timer failed = registry.find("crawler.page.fetch").tag("outcome", "failure").timer();
+        long pages = fetched == null ? 0 : fetched.count();
+        System.out.printf("Crawl finished in %.2f s%n", seconds);
+        System.out.printf("Pages:  %d fetched, %d failed, %.1f pages/s%n", pages,
+                failed == null ? 0 : failed.count(), pages / seconds);
+        System.out.printf("Images: %d saved, %.1f images/s, %.1f MB/s downloaded%n", savedImages,
+                savedImages / seconds, savedOriginalBytes / seconds / (1024 * 1024));
+        System.out.printf("304s:   %.0f pages, %.0f probes, %.0f images%n", notModified(registry, "page"),
+                notModified(registry, "probe"), notModified(registry, "image"));
+        System.out.printf("Retries: %.0f pages, %.0f images; given up: %.0f pages, %.0f images%n",
+                retries(registry, "page", "scheduled"), retries(registry, "image", "scheduled"),
+                givenUp(registry, "page"), givenUp(registry, "image"));
+        printPercentiles("Page fetch", fetched);
+        printPercentiles("Image probe", registry.find("crawler.image.probe").tag("outcome", "success").timer());
+        printPercentiles("Compression", registry.find("crawler.image.compression").timer());
+        System.out.printf("Peak heap: %d MB%n", peakHeap() / (1024 * 1024));
+    }
+
+    private static double notModified(SimpleMeterRegistry registry, String request) {
+        Counter counter = registry.find("crawler.http.not.modified").tag("request", request).counter();
+        return counter == null ? 0 : counter.count();
+    }
+
+    private static double givenUp(SimpleMeterRegistry registry, String kind) {
+        return retries(registry, kind, "exhausted") + retries(registry, kind, "permanent")
+                + retries(registry, kind, "shutdown");
+    }
+
+    private static double retries(SimpleMeterRegistry registry, String kind, String outcome) {
+        Counter counter = registry.find("crawler.retry").tag("kind", kind).tag("outcome", outcome).counter();
+        return counter == null ? 0 : counter.count();
+    }
+
+    private static void printPercentiles(String name, Timer timer) {
+        if (timer == null || timer.count() == 0) {
+            return;
+        }
+        StringBuilder line = new StringBuilder(String.format("%-12s", name + ":"));
+        for (ValueAtPercentile percentile : timer.takeSnapshot().percentileValues()) {
+            line.append(String.format(" p%.0f %.1f ms", percentile.percentile() * 100,
+                    percentile.value(TimeUnit.MILLISECONDS)));
+        }
+        System.out.println(line);
+    }
+
+    private static void resetPeakHeap() {
+        heapPools().forEach(MemoryPoolMXBean::resetPeakUsage);
+    }
+
+    /**
+     * Sum of per-pool peaks, an upper bound since pools do not peak at the same moment.
+     */
+    private static long peakHeap() {
+        return heapPools().mapToLong(pool -> pool.getPeakUsage().getUsed()).sum();
+    }
+
+    private static Stream<MemoryPoolMXBean> heapPools() {
+        return ManagementFactory.getMemoryPoolMXBeans().stream().filter(pool -> pool.getType() == MemoryType.HEAP);
+    }
+
+    private static void deleteRecursively(Path directory) throws IOException {
+        try (Stream<Path> paths = Files.walk(directory)) {
+            for (Path path : paths.sorted(Comparator.reverseOrder()).toList()) {
+                Files.deleteIfExists(path);
+            }
+        }
+    }
+}
@@ -0,0 +1,209 @@
+package com.uapp.agro.crawler.harness;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.stream.IntStream;
+
+/**
+ * Generated site served from memory on the loopback interface. Page {@code i} links to pages
+ * {@code i * fanOut + 1 .. i * fanOut + fanOut}, so every page is reachable from {@code /page/0.html},
+ * and shows {@code imagesPerPage} images picked round-robin from {@code imageCount} distinct JPEGs of about
+ * {@code imageKb} each. Every response is delayed by latency plus random jitter, and a share of them fails
+ * with 503. Content never changes, so a request whose {@code If-None-Match} matches the ETag gets a 304.
+ * A {@code Range: bytes=0-N} request gets the first bytes as a 206.
+ */
+class SyntheticSite implements AutoCloseable {
+    private static final String PAGE_PREFIX = "/page/";
+    private static final String IMAGE_PREFIX = "/images/";
+    private static final String RANGE_PREFIX = "bytes=0-";
+
+    private final HarnessOptions options;
+    private final byte[][] images;
+    private final HttpServer server;
+    private final ExecutorService handlers = Executors.newVirtualThreadPerTaskExecutor();
+
+    SyntheticSite(HarnessOptions options) throws IOException {
+        this.options = options;
+        this.images = generateImages(options.imageCount(), options.imageKb());
+        this.server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.createContext(PAGE_PREFIX, exchange -> handle(exchange, this::page, "text/html; charset=utf-8"));
+        server.createContext(IMAGE_PREFIX, exchange -> handle(exchange, this::image, "image/jpeg"));
+        server.setExecutor(handlers);
+        server.start();
+    }
+
+    String startUrl() {
+        return baseUrl() + PAGE_PREFIX + "0.html";
+    }
+
+    long totalImageBytes() {
+        long total = 0;
+        for (byte[] image : images) {
+            total += image.length;
+        }
+        return total;
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        handlers.shutdownNow();
+    }
+
+    private String baseUrl() {
+        return "http://" + server.getAddress().getHostString() + ":" + server.getAddress().getPort();
+    }
+
+    private void handle(HttpExchange exchange, Body body, String contentType) throws IOException {
+        try (exchange) {
+            long delay = options.latencyMs() + (options.jitterMs() > 0
+                    ? ThreadLocalRandom.current().nextLong(options.jitterMs() + 1) : 0);
+            if (delay > 0) {
+                Thread.sleep(delay);
+            }
+            if (ThreadLocalRandom.current().nextDouble() < options.errorRate()) {
+                exchange.sendResponseHeaders(503, -1);
+                return;
+            }
+            byte[] content = body.render(idOf(exchange));
+            if (content == null) {
+                exchange.sendResponseHeaders(404, -1);
+                return;
+            }
+            String etag = "\"" + Integer.toHexString(Arrays.hashCode(content)) + "\"";
+            exchange.getResponseHeaders().set("ETag", etag);
+            if (etag.equals(exchange.getRequestHeaders().getFirst("If-None-Match"))) {
+                exchange.sendResponseHeaders(304, -1);
+                return;
+            }
+            exchange.getResponseHeaders().set("Content-Type", contentType);
+            if ("HEAD".equals(exchange.getRequestMethod())) {
+                exchange.getResponseHeaders().set("Content-Length", String.valueOf(content.length));
+                exchange.sendResponseHeaders(200, -1);
+                return;
+            }
+            int length = content.length;
+            int rangeEnd = rangeEndOf(exchange.getRequestHeaders().getFirst("Range"));
+            if (rangeEnd >= 0 && rangeEnd < content.length - 1) {
+                length = rangeEnd + 1;
+                exchange.getResponseHeaders().set("Content-Range", "bytes 0-" + rangeEnd + "/" + content.length);
+                exchange.sendResponseHeaders(206, length);
+            } else {
+                exchange.sendResponseHeaders(200, length);
+            }
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(content, 0, length);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private byte[] page(int id) {
+        if (id < 0 || id >= options.pages()) {
+            return null;
+        }
+        StringBuilder html = new StringBuilder("<!DOCTYPE html><html><head><title>Page ")
+                .append(id).append("</title></head><body><nav><a href=\"").append(PAGE_PREFIX)
+                .append("0.html\">Home</a></nav><section>");
+        for (int child = id * options.fanOut() + 1; child <= id * options.fanOut() + options.fanOut(); child++) {
+            if (child < options.pages()) {
+                html.append("<a href=\"").append(PAGE_PREFIX).append(child).append(".html\">Page ")
+                        .append(child).append("</a>");
+            }
+        }
+        for (int i = 0; i < options.imagesPerPage(); i++) {
+            int image = (id * options.imagesPerPage() + i) % images.length;
+            html.append("<img src=\"").append(IMAGE_PREFIX).append(image).append(".jpg\" alt=\"Image ")
+                    .append(image).append("\">");
+        }
+        return html.append("</section></body></html>").toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private byte[] image(int id) {
+        return id >= 0 && id < images.length ? images[id] : null;
+    }
+
+    /**
+     * @return last requested byte of a {@code bytes=0-N} range, -1 for anything else
+     */
+    private static int rangeEndOf(String range) {
+        if (range == null || !range.startsWith(RANGE_PREFIX)) {
+            return -1;
+        }
+        try {
+            return Integer.parseInt(range.substring(RANGE_PREFIX.length()).trim());
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private static int idOf(HttpExchange exchange) {
+        String path = exchange.getRequestURI().getPath();
+        int start = path.lastIndexOf('/') + 1;
+        int end = path.indexOf('.', start);
+        try {
+            return Integer.parseInt(path, start, end < 0 ? path.length() : end, 10);
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * Noise compresses poorly, so the side length that hits the wanted size is found on one image and
+     * reused for all of them.
+     */
+    private static byte[][] generateImages(int count, int imageKb) {
+        int side = 64;
+        for (int attempt = 0; attempt < 4; attempt++) {
+            int size = encode(noise(side, 0)).length;
+            side = Math.max(16, (int) (side * Math.sqrt(imageKb * 1024.0 / size)));
+        }
+        int finalSide = side;
+        return IntStream.range(0, count).parallel()
+                .mapToObj(id -> encode(noise(finalSide, id)))
+                .toArray(byte[][]::new);
+    }
+
+    private static BufferedImage noise(int side, long seed) {
+        Random random = new Random(seed);
+        BufferedImage image = new BufferedImage(side, side, BufferedImage.TYPE_INT_RGB);
+        for (int y = 0; y < side; y++) {
+            for (int x = 0; x < side; x++) {
+                int base = (x * 255 / side) << 16 | (y * 255 / side) << 8;
+                image.setRGB(x, y, base | random.nextInt(64));
+            }
+        }
+        return image;
+    }
+
+    private static byte[] encode(BufferedImage image) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try {
+            ImageIO.write(image, "jpg", out);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return out.toByteArray();
+    }
+
+    @FunctionalInterface
+    private interface Body {
+        byte[] render(int id);
+    }
+}
@@ -17,10 +17,7 @@ public class CrawlerApplication {
     }
 
     @Bean
-    ApplicationRunner init(ImageScraperService imageScraperService) {
-        return args -> {
-            var url = "https://books.toscrape.com/";
-            imageScraperService.startScraping(url);
-        };
+    ApplicationRunner init(ImageScraperService imageScraperService, ApplicationProperties properties) {
+        return args -> imageScraperService.startScraping(properties.getProducerProperties().startUrls());
     }
 }
@@ -1,12 +1,16 @@
 package com.uapp.agro.crawler.config;
 
+import jakarta.validation.constraints.DecimalMax;
+import jakarta.validation.constraints.DecimalMin;
 import jakarta.validation.constraints.Min;
 import jakarta.validation.constraints.NotBlank;
 import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.NotNull;
 import lombok.Data;
 import lombok.RequiredArgsConstructor;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 
+import java.util.List;
 import java.util.Set;
 
 @ConfigurationProperties("application")
@@ -16,19 +20,179 @@ public class ApplicationProperties {
     private final ImageProperties imageProperties;
     private final ThreadProperties threadProperties;
     private final ProducerProperties producerProperties;
+    private final SeenSetProperties seenSetProperties;
+    private final QueueProperties queueProperties;
+    private final CheckpointProperties checkpointProperties;
+    private final PersistenceProperties persistenceProperties;
+    private final BalancerProperties balancerProperties;
+    private final CacheProperties cacheProperties;
+    private final PipelineProperties pipelineProperties;
+    private final HostLimitProperties hostLimitProperties;
+    private final ScopeProperties scopeProperties;
+    private final RobotsProperties robotsProperties;
+    private final RetryProperties retryProperties;
 
     public record ImageProperties(
             @NotBlank String folderPath,
             @Min(1) Long minSizeForScrapingKB,
-            @NotEmpty Set<String> availableFormats) {
+            @NotEmpty Set<String> availableFormats,
+            @NotNull CompressionStrategyType compressionStrategy,
+            @Min(0) Integer minWidth,
+            @Min(0) Integer minHeight,
+            @NotNull SrcsetPolicy srcsetPolicy,
+            @Min(1) Integer srcsetTargetWidth) {
+    }
+
+    public enum SrcsetPolicy {
+        LARGEST,
+        SMALLEST,
+        CLOSEST
+    }
+
+    public enum CompressionStrategyType {
+        LINEAR,
+        BISECTION
     }
 
     public record ThreadProperties(@Min(1) Integer maxProducerCount,
-                                   @Min(1) Integer maxConsumerCount) {
+                                   @Min(1) Integer maxConsumerCount,
+                                   @NotNull ExecutionMode executionMode,
+                                   @Min(1) Integer maxConcurrentRequests,
+                                   @NotNull Engine engine) {
+    }
+
+    public enum Engine {
+        MANAGERS,
+        REACTIVE
+    }
+
+    public enum ExecutionMode {
+        PLATFORM,
+        VIRTUAL
     }
 
     public record ProducerProperties(
-            @Min(1) Long minUrlsGenerateProducer
+            @NotEmpty List<String> startUrls,
+            @Min(1) Long minUrlsGenerateProducer,
+            @Min(0) Long hostDelayMs,
+            @Min(1) Integer maxInFlightProbes,
+            @NotNull ProbeMode probeMode,
+            @Min(32) Integer probeRangeBytes,
+            @NotNull ExtractionMode extractionMode
+    ) {
+    }
+
+    public enum ProbeMode {
+        NONE,
+        HEAD,
+        RANGE
+    }
+
+    public enum ExtractionMode {
+        DOM,
+        STREAM
+    }
+
+    public record SeenSetProperties(
+            @NotNull SeenSetType type,
+            @Min(1) Long expectedSize,
+            @DecimalMin("0.0") @DecimalMax("1.0") Double falsePositiveRate
+    ) {
+    }
+
+    public enum SeenSetType {
+        STRINGS,
+        FINGERPRINTS,
+        BLOOM_FILTER
+    }
+
+    public record QueueProperties(
+            boolean spillEnabled,
+            @NotBlank String spillDirectory,
+            @Min(1) Integer frontierMemoryCapacity,
+            @Min(1) Integer imageQueueMemoryCapacity,
+            @Min(1) Integer imageQueueCapacity,
+            @Min(1) Integer segmentSizeKb
+    ) {
+    }
+
+    public record CheckpointProperties(
+            boolean enabled,
+            boolean resume,
+            @NotBlank String directory,
+            @Min(1) Long flushIntervalMs,
+            @Min(1) Long snapshotIntervalMs
+    ) {
+    }
+
+    public record BalancerProperties(
+            boolean enabled,
+            @Min(1) Long intervalMs,
+            @DecimalMin("0.0") @DecimalMax("1.0") Double highWatermark,
+            @DecimalMin("0.0") @DecimalMax("1.0") Double lowWatermark,
+            @DecimalMin("0.0") @DecimalMax("1.0") Double cpuSaturation
+    ) {
+    }
+
+    public record PersistenceProperties(
+            @Min(1) Integer batchSize,
+            @Min(1) Long flushIntervalMs
+    ) {
+    }
+
+    public record CacheProperties(
+            boolean enabled,
+            @NotBlank String file,
+            @Min(1) Integer maxEntries
+    ) {
+    }
+
+    public record PipelineProperties(
+            @Min(0) Integer compressThreads,
+            @Min(1) Integer writeThreads,
+            @Min(1) Integer persistThreads,
+            @Min(1) Integer stageQueueCapacity
+    ) {
+    }
+
+    public record HostLimitProperties(
+            boolean enabled,
+            @Min(1) Integer initialLimit,
+            @Min(1) Integer maxLimit,
+            @DecimalMin("0.1") @DecimalMax("1.0") Double backoffRatio,
+            @DecimalMin("1.0") Double latencyTolerance,
+            @Min(0) Long maxRetryAfterMs
+    ) {
+    }
+
+    public record ScopeProperties(
+            List<String> includeDomains,
+            List<String> excludeDomains,
+            List<String> includePathPrefixes,
+            List<String> excludePathPrefixes,
+            List<String> includePatterns,
+            List<String> excludePatterns,
+            List<String> stripParams,
+            boolean sortQueryParams,
+            boolean stripTrailingSlash
+    ) {
+    }
+
+    public record RobotsProperties(
+            boolean enabled,
+            @NotBlank String userAgent,
+            @Min(1) Long ttlMs,
+            @Min(1) Long errorTtlMs,
+            @Min(1) Integer maxEntries
+    ) {
+    }
+
+    public record RetryProperties(
+            @Min(1) Integer maxAttempts,
+            @Min(1) Long baseDelayMs,
+            @Min(1) Long maxDelayMs,
+            boolean deadLetterEnabled,
+            @NotBlank String deadLetterFile
     ) {
     }
 }
@@ -2,6 +2,7 @@ package com.uapp.agro.crawler.config;
 
 import lombok.Data;
 
+import java.util.List;
 import java.util.Set;
 
 @Data
@@ -11,14 +12,164 @@ public class ScraperConfiguration {
     private final Long minImageSize;
     private final String folderPath;
     private final Set<String> availableFormats;
+    private final ApplicationProperties.CompressionStrategyType compressionStrategy;
     private final Long minUrlsGenerateProducer;
+    private final ApplicationProperties.ExecutionMode executionMode;
+    private final Integer maxConcurrentRequests;
+    private final ApplicationProperties.Engine engine;
+    private final Integer maxInFlightProbes;
+    private final Long hostDelayMs;
+    private final ApplicationProperties.SeenSetType seenSetType;
+    private final Long seenSetExpectedSize;
+    private final Double seenSetFalsePositiveRate;
+    private final boolean spillEnabled;
+    private final String spillDirectory;
+    private final Integer frontierMemoryCapacity;
+    private final Integer imageQueueMemoryCapacity;
+    private final Integer imageQueueCapacity;
+    private final Integer spillSegmentSizeKb;
+    private final boolean checkpointEnabled;
+    private final boolean checkpointResume;
+    private final String checkpointDirectory;
+    private final Long checkpointFlushIntervalMs;
+    private final Long checkpointSnapshotIntervalMs;
+    private final ApplicationProperties.ProbeMode probeMode;
+    private final Integer probeRangeBytes;
+    private final Integer minImageWidth;
+    private final Integer minImageHeight;
+    private final ApplicationProperties.SrcsetPolicy srcsetPolicy;
+    private final Integer srcsetTargetWidth;
+    private final ApplicationProperties.ExtractionMode extractionMode;
+    private final boolean balancerEnabled;
+    private final Long balancerIntervalMs;
+    private final Double balancerHighWatermark;
+    private final Double balancerLowWatermark;
+    private final Double balancerCpuSaturation;
+    private final boolean cacheEnabled;
+    private final String cacheFile;
+    private final Integer cacheMaxEntries;
+    private final Integer compressThreads;
+    private final Integer writeThreads;
+    private final Integer persistThreads;
+    private final Integer stageQueueCapacity;
+    private final boolean hostLimitEnabled;
+    private final Integer hostInitialLimit;
+    private final Integer hostMaxLimit;
+    private final Double hostBackoffRatio;
+    private final Double hostLatencyTolerance;
+    private final Long hostMaxRetryAfterMs;
+    private final List<String> scopeIncludeDomains;
+    private final List<String> scopeExcludeDomains;
+    private final List<String> scopeIncludePathPrefixes;
+    private final List<String> scopeExcludePathPrefixes;
+    private final List<String> scopeIncludePatterns;
+    private final List<String> scopeExcludePatterns;
+    private final List<String> scopeStripParams;
+    private final boolean scopeSortQueryParams;
+    private final boolean scopeStripTrailingSlash;
+    private final boolean robotsEnabled;
+    private final String robotsUserAgent;
+    private final Long robotsTtlMs;
+    private final Long robotsErrorTtlMs;
+    private final Integer robotsMaxEntries;
+    private final Integer retryMaxAttempts;
+    private final Long retryBaseDelayMs;
+    private final Long retryMaxDelayMs;
+    private final boolean deadLetterEnabled;
+    private final String deadLetterFile;
 
     public ScraperConfiguration(ApplicationProperties properties) {
-        this.maxProducerThreadCount = properties.getThreadProperties().maxProducerCount();
-        this.maxConsumerThreadCount = properties.getThreadProperties().maxConsumerCount();
+        this.maxProducerThreadCount = workerCount(properties, properties.getThreadProperties().maxProducerCount());
+        this.maxConsumerThreadCount = workerCount(properties, properties.getThreadProperties().maxConsumerCount());
         this.minImageSize = properties.getImageProperties().minSizeForScrapingKB();
         this.folderPath = properties.getImageProperties().folderPath();
         this.availableFormats = properties.getImageProperties().availableFormats();
+        this.compressionStrategy = properties.getImageProperties().compressionStrategy();
         this.minUrlsGenerateProducer = properties.getProducerProperties().minUrlsGenerateProducer();
+        this.executionMode = properties.getThreadProperties().executionMode();
+        this.maxConcurrentRequests = properties.getThreadProperties().maxConcurrentRequests();
+        this.engine = properties.getThreadProperties().engine();
+        this.maxInFlightProbes = properties.getProducerProperties().maxInFlightProbes();
+        this.hostDelayMs = properties.getProducerProperties().hostDelayMs();
+        this.seenSetType = properties.getSeenSetProperties().type();
+        this.seenSetExpectedSize = properties.getSeenSetProperties().expectedSize();
+        this.seenSetFalsePositiveRate = properties.getSeenSetProperties().falsePositiveRate();
+        this.spillEnabled = properties.getQueueProperties().spillEnabled();
+        this.spillDirectory = properties.getQueueProperties().spillDirectory();
+        this.frontierMemoryCapacity = properties.getQueueProperties().frontierMemoryCapacity();
+        this.imageQueueMemoryCapacity = properties.getQueueProperties().imageQueueMemoryCapacity();
+        this.imageQueueCapacity = properties.getQueueProperties().imageQueueCapacity();
+        this.spillSegmentSizeKb = properties.getQueueProperties().segmentSizeKb();
+        this.checkpointEnabled = properties.getCheckpointProperties().enabled();
+        this.checkpointResume = properties.getCheckpointProperties().resume();
+        this.checkpointDirectory = properties.getCheckpointProperties().directory();
+        this.checkpointFlushIntervalMs = properties.getCheckpointProperties().flushIntervalMs();
+        this.checkpointSnapshotIntervalMs = properties.getCheckpointProperties().snapshotIntervalMs();
+        this.probeMode = properties.getProducerProperties().probeMode();
+        this.probeRangeBytes = properties.getProducerProperties().probeRangeBytes();
+        this.minImageWidth = properties.getImageProperties().minWidth();
+        this.minImageHeight = properties.getImageProperties().minHeight();
+        this.srcsetPolicy = properties.getImageProperties().srcsetPolicy();
+        this.srcsetTargetWidth = properties.getImageProperties().srcsetTargetWidth();
+        this.extractionMode = properties.getProducerProperties().extractionMode();
+        this.balancerEnabled = properties.getBalancerProperties().enabled();
+        this.balancerIntervalMs = properties.getBalancerProperties().intervalMs();
+        this.balancerHighWatermark = properties.getBalancerProperties().highWatermark();
+        this.balancerLowWatermark = properties.getBalancerProperties().lowWatermark();
+        this.balancerCpuSaturation = properties.getBalancerProperties().cpuSaturation();
+        this.cacheEnabled = properties.getCacheProperties().enabled();
+        this.cacheFile = properties.getCacheProperties().file();
+        this.cacheMaxEntries = properties.getCacheProperties().maxEntries();
+        this.compressThreads = properties.getPipelineProperties().compressThreads();
+        this.writeThreads = properties.getPipelineProperties().writeThreads();
+        this.persistThreads = properties.getPipelineProperties().persistThreads();
+        this.stageQueueCapacity = properties.getPipelineProperties().stageQueueCapacity();
+        this.hostLimitEnabled = properties.getHostLimitProperties().enabled();
+        this.hostInitialLimit = properties.getHostLimitProperties().initialLimit();
+        this.hostMaxLimit = properties.getHostLimitProperties().maxLimit();
+        this.hostBackoffRatio = properties.getHostLimitProperties().backoffRatio();
+        this.hostLatencyTolerance = properties.getHostLimitProperties().latencyTolerance();
+        this.hostMaxRetryAfterMs = properties.getHostLimitProperties().maxRetryAfterMs();
+        ApplicationProperties.ScopeProperties scope = properties.getScopeProperties();
+        this.scopeIncludeDomains = listOf(scope.includeDomains());
+        this.scopeExcludeDomains = listOf(scope.excludeDomains());
+        this.scopeIncludePathPrefixes = listOf(scope.includePathPrefixes());
+        this.scopeExcludePathPrefixes = listOf(scope.excludePathPrefixes());
+        this.scopeIncludePatterns = listOf(scope.includePatterns());
+        this.scopeExcludePatterns = listOf(scope.excludePatterns());
+        this.scopeStripParams = listOf(scope.stripParams());
+        this.scopeSortQueryParams = scope.sortQueryParams();
+        this.scopeStripTrailingSlash = scope.stripTrailingSlash();
+        this.robotsEnabled = properties.getRobotsProperties().enabled();
+        this.robotsUserAgent = properties.getRobotsProperties().userAgent();
+        this.robotsTtlMs = properties.getRobotsProperties().ttlMs();
+        this.robotsErrorTtlMs = properties.getRobotsProperties().errorTtlMs();
+        this.robotsMaxEntries = properties.getRobotsProperties().maxEntries();
+        this.retryMaxAttempts = properties.getRetryProperties().maxAttempts();
+        this.retryBaseDelayMs = properties.getRetryProperties().baseDelayMs();
+        this.retryMaxDelayMs = properties.getRetryProperties().maxDelayMs();
+        this.deadLetterEnabled = properties.getRetryProperties().deadLetterEnabled();
+        this.deadLetterFile = properties.getRetryProperties().deadLetterFile();
+    }
+
+    /**
+     * An empty list in yaml may bind to {@code null}.
+     */
+    private static List<String> listOf(List<String> values) {
+        return values == null ? List.of() : List.copyOf(values);
+    }
+
+    /**
+     * Virtual workers only park while they wait for the network, so in {@code virtual} mode the managers engine
+     * runs at least {@code max-concurrent-requests} producers and consumers each and the request permits bound
+     * the crawl instead of the worker counts.
+     */
+    private static Integer workerCount(ApplicationProperties properties, Integer configured) {
+        ApplicationProperties.ThreadProperties threads = properties.getThreadProperties();
+        if (threads.executionMode() != ApplicationProperties.ExecutionMode.VIRTUAL
+                || threads.engine() != ApplicationProperties.Engine.MANAGERS) {
+            return configured;
+        }
+        return Math.max(configured, threads.maxConcurrentRequests());
     }
 }
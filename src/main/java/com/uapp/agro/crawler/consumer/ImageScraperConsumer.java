@@ -1,194 +1,287 @@
 package com.uapp.agro.crawler.consumer;
 
+import com.uapp.agro.crawler.consumer.compression.CompressionResult;
+import com.uapp.agro.crawler.consumer.compression.CompressionStrategy;
+import com.uapp.agro.crawler.consumer.dedup.CompressedArtifact;
+import com.uapp.agro.crawler.consumer.dedup.ContentHashIndex;
+import com.uapp.agro.crawler.consumer.pipeline.ImagePipeline;
+import com.uapp.agro.crawler.consumer.store.ImageOutputStore;
 import com.uapp.agro.crawler.image.dto.ImageCreateDto;
-import com.uapp.agro.crawler.image.service.ImageInfoService;
+import com.uapp.agro.crawler.image.service.ImageInfoBatchWriter;
+import com.uapp.agro.crawler.scraper.balancer.PipelineBalancer;
+import com.uapp.agro.crawler.scraper.cache.CachedResource;
+import com.uapp.agro.crawler.scraper.cache.ValidatorCache;
+import com.uapp.agro.crawler.scraper.checkpoint.CrawlCheckpoint;
+import com.uapp.agro.crawler.scraper.coordinator.CrawlCoordinator;
+import com.uapp.agro.crawler.scraper.image.ImageFilter;
+import com.uapp.agro.crawler.scraper.image.ImageHeader;
+import com.uapp.agro.crawler.scraper.limiter.RequestLimiter;
+import com.uapp.agro.crawler.scraper.metrics.CrawlMetrics;
+import com.uapp.agro.crawler.scraper.retry.RetryScheduler;
+import com.uapp.agro.crawler.scraper.seen.SeenSet;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import net.coobird.thumbnailator.Thumbnails;
 import org.apache.commons.io.FilenameUtils;
+import org.jsoup.HttpStatusException;
 
 import javax.imageio.ImageIO;
 import java.awt.image.BufferedImage;
 import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
-import java.io.File;
 import java.io.IOException;
-import java.math.BigDecimal;
-import java.math.RoundingMode;
-import java.net.URL;
-import java.util.Set;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.net.HttpURLConnection;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Locale;
+import java.util.Optional;
 import java.util.concurrent.BlockingQueue;
-import java.util.concurrent.atomic.AtomicInteger;
-import java.util.concurrent.locks.Lock;
-import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
 
 @Slf4j
 @RequiredArgsConstructor
 public class ImageScraperConsumer implements Runnable {
+    private static final long POLL_TIMEOUT_MS = 200;
+    private static final Duration DOWNLOAD_TIMEOUT = Duration.ofSeconds(30);
+
     private final BlockingQueue<String> imageQueue;
-    private final Set<String> processedImages;
-    private final String compressedImageFolderPath;
-    private final ImageInfoService infoService;
-    private final AtomicInteger producersCount;
-    private final Set<String> availableFormats;
-    private final Lock localWriteLock = new ReentrantLock();
+    private final SeenSet processedImages;
+    private final ImageOutputStore outputStore;
+    private final ImageInfoBatchWriter infoWriter;
+    private final CrawlCoordinator coordinator;
+    private final ImageFilter imageFilter;
+    private final RequestLimiter requestLimiter;
+    private final HttpClient httpClient;
+    private final CompressionStrategy compressionStrategy;
+    private final CrawlCheckpoint checkpoint;
+    private final ValidatorCache validatorCache;
+    private final ContentHashIndex contentHashIndex;
+    private final ImagePipeline pipeline;
+    private final PipelineBalancer balancer;
+    private final RetryScheduler<String> imageRetries;
+    private final CrawlMetrics metrics;
 
     @Override
     public void run() {
+        boolean retired = false;
         try {
-            processImages();
+            retired = processImages();
         } catch (Exception e) {
             Thread.currentThread().interrupt();
             log.warn(e.getMessage());
+        } finally {
+            if (!retired) {
+                balancer.consumers().release();
+            }
         }
     }
 
-    private void processImages() {
+    /**
+     * @return {@code true} when the consumer stopped because the balancer lowered the consumer limit
+     */
+    private boolean processImages() throws InterruptedException {
         while (true) {
-            String imageUrl = imageQueue.poll();
-            if (imageUrl == null && isQueueEmptyAndNoProducer()) {
-                break;
+            if (balancer.consumers().retireIfOverLimit()) {
+                log.info("{}: Retired, consumer count: {}", Thread.currentThread().getName(),
+                        balancer.consumers().getActive());
+                return true;
+            }
+            String imageUrl = imageQueue.poll(POLL_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+            if (imageUrl == null) {
+                if (coordinator.isImageQueueDrained(imageQueue)) {
+                    return false;
+                }
+                continue;
             }
 
-            if (imageUrl != null && processedImages.add(imageUrl)) {
-                saveImage(imageUrl);
+            // claimed first: an image whose probe failed was never added, and its claim must not linger
+            boolean redelivered = imageRetries.claimRedelivery(imageUrl);
+            if (processedImages.add(imageUrl) || redelivered) {
+                long startedAt = System.nanoTime();
+                coordinator.imageStarted();
+                saveImage(imageUrl).whenComplete((unused, failure) -> {
+                    balancer.recordServiceTime(System.nanoTime() - startedAt);
+                    try {
+                        if (failure == null) {
+                            imageRetries.succeeded(imageUrl);
+                            checkpoint.imageProcessed(imageUrl);
+                        } else {
+                            imageRetries.failed(imageUrl, failure);
+                        }
+                    } finally {
+                        // a retry is counted before the image stops being in flight
+                        coordinator.imageCompleted();
+                    }
+                });
             }
         }
     }
 
-    private boolean isQueueEmptyAndNoProducer() {
-        return producersCount.get() == 0 && imageQueue.isEmpty();
-    }
-
-    private void saveImage(String imageUrl) {
+    /**
+     * Downloads and checks the image on the consumer thread, then hands it to the pipeline stages: compress,
+     * write and persist. An image is revalidated only when its cached content is still compressed, so a 304
+     * can skip the download and everything after it. The url extension only rules out images of known
+     * unwanted formats, the format used for compression is sniffed from the downloaded bytes.
+     *
+     * @return future completed once the image is saved or skipped, failed when the image could not be saved
+     */
+    private CompletableFuture<Void> saveImage(String imageUrl) {
         try {
-            String format = getImageFormat(imageUrl);
-            if (!availableFormats.contains(format)) {
-                return;
+            if (!imageFilter.acceptsExtension(imageUrl)) {
+                return CompletableFuture.completedFuture(null);
             }
 
-            BufferedImage originalImage = downloadImage(imageUrl);
-            long originalSize = calculateImageSize(originalImage, format);
-
-            byte[] compressedImage = compressImage(originalImage, format);
-            long compressedSize = compressedImage.length;
-            File outputFile = createOutputFile(imageUrl, format);
-
-            saveCompressedImage(imageUrl, compressedImage, outputFile, format);
-            saveToDb(imageUrl, originalSize, compressedSize, outputFile);
+            CachedResource cached = validatorCache.get(imageUrl)
+                    .filter(resource -> resource.digest() != null && contentHashIndex.contains(resource.digest()))
+                    .orElse(null);
+            Download download = downloadImage(imageUrl, cached);
+            if (download.notModified()) {
+                metrics.recordImageNotModified();
+                log.info("Skip image {}: not modified", imageUrl);
+                return CompletableFuture.completedFuture(null);
+            }
+            byte[] originalBytes = download.body();
+            if (originalBytes == null || !isImageSizeValid(originalBytes.length)) {
+                log.info("Skip image {}: smaller than {} KB", imageUrl, imageFilter.minSizeKb());
+                return CompletableFuture.completedFuture(null);
+            }
+            ImageHeader header = ImageHeader.parse(originalBytes).orElse(null);
+            String format = header != null ? header.format() : getImageFormat(imageUrl);
+            if (!imageFilter.acceptsFormat(format) || !imageFilter.acceptsHeader(header)) {
+                log.info("Skip image {}: format or dimensions rejected, {}", imageUrl, header);
+                return CompletableFuture.completedFuture(null);
+            }
+            String contentHash = ContentHashIndex.hash(originalBytes);
+            return contentHashIndex.resolve(contentHash,
+                            () -> compressToFile(imageUrl, originalBytes, format, contentHash))
+                    .thenCompose(artifact -> {
+                        if (artifact.isEmpty()) {
+                            log.warn("Skip image {}: content can not be decoded", imageUrl);
+                            return CompletableFuture.completedFuture(null);
+                        }
+                        return pipeline.persist().submit(() -> {
+                            validatorCache.put(CachedResource.image(imageUrl, download.etag(),
+                                    download.lastModified(), originalBytes.length, contentHash));
+                            return saveToDb(imageUrl, originalBytes.length, artifact.get(), contentHash);
+                        }).thenCompose(Function.identity());
+                    });
         } catch (Exception e) {
-            log.warn("Error saving image: {}", imageUrl, e);
+            return CompletableFuture.failedFuture(e);
         }
     }
 
-    private File createOutputFile(String imageUrl, String format) {
-        String outputFileName = getFileNameFromUrl(imageUrl) + "." + format;
-        return new File(compressedImageFolderPath + outputFileName);
+    /**
+     * Decoding and encoding run on the compress stage, the file is written on the write stage.
+     */
+    private CompletableFuture<Optional<CompressedArtifact>> compressToFile(String imageUrl, byte[] originalBytes,
+                                                                           String format, String contentHash) {
+        return pipeline.compress().submit(() -> {
+            BufferedImage originalImage = ImageIO.read(new ByteArrayInputStream(originalBytes));
+            return originalImage == null
+                    ? null
+                    : compressImage(originalImage, format, originalBytes.length);
+        }).thenCompose(compressedImage -> compressedImage == null
+                ? CompletableFuture.completedFuture(Optional.empty())
+                : pipeline.write().submit(() -> Optional.of(
+                        writeToFile(imageUrl, compressedImage, format, contentHash))));
     }
 
-    private void saveCompressedImage(String imageUrl, byte[] compressedImage, File outputFile, String format) throws IOException {
-        try {
-            localWriteLock.lock();
-            if (!outputFile.exists()) {
-                writeToFile(imageUrl, compressedImage, outputFile, format);
-            } else {
-                log.info("Skip file by path: {}", outputFile.getAbsolutePath());
-            }
-        } finally {
-            localWriteLock.unlock();
+    private CompressedArtifact writeToFile(String imageUrl, byte[] compressedImage, String format,
+                                           String contentHash) throws IOException {
+        Path outputFile = outputStore.pathFor(contentHash, format);
+        // the encoder output is written as is, decoding and encoding it again would undo the chosen quality
+        if (outputStore.write(outputFile, compressedImage)) {
+            metrics.recordImageWritten(compressedImage.length);
+            log.info("Compressed image {} saved to: {}", imageUrl, outputFile.toAbsolutePath());
         }
+        return new CompressedArtifact(outputFile.toAbsolutePath().toString(), compressedImage.length);
     }
 
-
-    private long calculateImageSize(BufferedImage image, String format) throws IOException {
-        try (ByteArrayOutputStream baos = new ByteArrayOutputStream()) {
-            ImageIO.write(image, format, baos);
-            return baos.size();
-        }
+    private boolean isImageSizeValid(long sizeInBytes) {
+        return imageFilter.acceptsSize(sizeInBytes / 1024);
     }
 
-    private void saveToDb(String imageUrl, long originalSize, long compressedSize, File outputFile) {
+    private CompletableFuture<Void> saveToDb(String imageUrl, long originalSize, CompressedArtifact artifact,
+                                             String contentHash) {
         ImageCreateDto imageInfo = new ImageCreateDto(
                 imageUrl,
-                outputFile.getAbsolutePath(),
+                artifact.filePath(),
                 originalSize,
-                compressedSize
+                artifact.compressedSize(),
+                contentHash
         );
-        infoService.createIfNotExists(imageInfo);
+        return infoWriter.write(imageInfo);
     }
 
-    private byte[] compressImage(BufferedImage originalImage, String format) throws IOException {
-        BigDecimal dividedBy = BigDecimal.valueOf(2);
-        BigDecimal originalSizeKB = BigDecimal.valueOf(calculateImageSize(originalImage, format))
-                .divide(BigDecimal.valueOf(1024), RoundingMode.CEILING);
-        log.info("originalSizeKB: {}", originalSizeKB);
-        BigDecimal maxCompressedSize = originalSizeKB.divide(dividedBy, 4, RoundingMode.CEILING);
-        log.info("maxCompressedSize: {}", maxCompressedSize);
+    private byte[] compressImage(BufferedImage originalImage, String format, long originalSize) throws IOException {
+        long maxCompressedSize = originalSize / 2;
+        log.info("originalSizeKB: {}, maxCompressedSizeKB: {}", originalSize / 1024, maxCompressedSize / 1024);
 
-        return compressToTargetSize(originalImage, format, maxCompressedSize);
+        long startedAt = System.nanoTime();
+        CompressionResult result = compressionStrategy.compress(originalImage, format, maxCompressedSize);
+        metrics.recordCompression(System.nanoTime() - startedAt, result.encodeAttempts());
+        log.info("Compressed to {} KB in {} encode attempts", result.data().length / 1024, result.encodeAttempts());
+        return result.data();
     }
 
-    private byte[] compressToTargetSize(BufferedImage originalImage, String format, BigDecimal targetSize) throws IOException {
-        BigDecimal quality = BigDecimal.ONE;
-        BigDecimal scaling = BigDecimal.ONE;
-        try (ByteArrayOutputStream baos = new ByteArrayOutputStream()) {
-            while (quality.floatValue() > 0. || scaling.floatValue() > 0.) {
-                baos.reset();
-
-                applyCompression(originalImage, format, quality, scaling, baos);
-
-                byte[] compressedData = baos.toByteArray();
-                BigDecimal compressedDataLengthKB = BigDecimal.valueOf(compressedData.length / 1024);
-                if (targetSize.compareTo(compressedDataLengthKB) >= 0) {
-                    return compressedData;
+    /**
+     * Streams the image body once, conditionally when {@code cached} is given. The body is {@code null} when
+     * the server announces a Content-Length below the minimal size, in which case it is not read; any status
+     * but 200 and 304 fails with {@link HttpStatusException}.
+     */
+    private Download downloadImage(String imageUrl, CachedResource cached) throws IOException {
+        HttpRequest.Builder builder = HttpRequest.newBuilder(URI.create(imageUrl))
+                .timeout(DOWNLOAD_TIMEOUT)
+                .GET();
+        if (cached != null) {
+            cached.conditionalHeaders().forEach(builder::header);
+        }
+        HttpRequest request = builder.build();
+        return requestLimiter.call(imageUrl, hostPermit -> {
+            HttpResponse<InputStream> response = send(request);
+            hostPermit.responded(response.statusCode(), response.headers().firstValue("Retry-After").orElse(null));
+            try (InputStream body = response.body()) {
+                if (cached != null && response.statusCode() == HttpURLConnection.HTTP_NOT_MODIFIED) {
+                    return Download.NOT_MODIFIED;
                 }
-
-                if (quality.floatValue() > 0.) {
-                    quality = quality.subtract(BigDecimal.valueOf(0.05));
+                if (response.statusCode() != HttpURLConnection.HTTP_OK) {
+                    // the retry scheduler tells statuses worth another attempt from permanent ones
+                    throw new HttpStatusException("Unexpected status for image", response.statusCode(), imageUrl);
                 }
-
-                if (quality.floatValue() == 0 && scaling.floatValue() > 0.) {
-                    scaling = scaling.subtract(BigDecimal.valueOf(0.05));
+                long contentLength = response.headers().firstValueAsLong("Content-Length").orElse(-1L);
+                if (contentLength >= 0 && !isImageSizeValid(contentLength)) {
+                    return Download.SKIPPED;
                 }
+                byte[] bytes = body.readAllBytes();
+                metrics.recordImageDownloaded(bytes.length);
+                return new Download(bytes, response.headers().firstValue("ETag").orElse(null),
+                        response.headers().firstValue("Last-Modified").orElse(null), false);
             }
-
-            return baos.toByteArray();
-        }
-    }
-
-    private void applyCompression(BufferedImage image, String format, BigDecimal quality, BigDecimal scaling, ByteArrayOutputStream baos) throws IOException {
-        switch (format) {
-            case "jpg", "jpeg" -> Thumbnails.of(image)
-                    .scale(scaling.floatValue())
-                    .outputQuality(quality.floatValue())
-                    .outputFormat(format)
-                    .toOutputStream(baos);
-            case "png" -> Thumbnails.of(image)
-                    .scale(scaling.floatValue())
-                    .outputFormat(format)
-                    .toOutputStream(baos);
-        }
+        });
     }
 
-    private void writeToFile(String imageUrl, byte[] compressedImage, File outputFile, String format) throws IOException {
-        try (ByteArrayInputStream bis = new ByteArrayInputStream(compressedImage)) {
-            BufferedImage bImage = ImageIO.read(bis);
-            ImageIO.write(bImage, format, outputFile);
-            log.info("Compressed image {} saved to: {}", imageUrl, outputFile.getAbsolutePath());
+    private HttpResponse<InputStream> send(HttpRequest request) throws IOException {
+        try {
+            return httpClient.send(request, HttpResponse.BodyHandlers.ofInputStream());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while downloading " + request.uri());
         }
     }
 
-    private BufferedImage downloadImage(String imageUrl) throws IOException {
-        URL url = new URL(imageUrl);
-        return ImageIO.read(url);
-    }
-
-    private String getFileNameFromUrl(String imageUrl) {
-        return FilenameUtils.getBaseName(imageUrl);
+    private String getImageFormat(String imageUrl) {
+        return FilenameUtils.getExtension(imageUrl).toLowerCase(Locale.ROOT);
     }
 
-    private String getImageFormat(String imageUrl) {
-        return FilenameUtils.getExtension(imageUrl);
+    private record Download(byte[] body, String etag, String lastModified, boolean notModified) {
+        static final Download NOT_MODIFIED = new Download(null, null, null, true);
+        static final Download SKIPPED = new Download(null, null, null, false);
     }
 
 }
@@ -0,0 +1,164 @@
+package com.uapp.agro.crawler.consumer.compression;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+
+/**
+ * Bisects quality (lossy formats only) and then scale. Every probe is placed where a size model,
+ * recalibrated on the previous encode, predicts the target size; the bisection bracket only takes over
+ * when the model points outside of it. Most images fit in three to five encoder passes.
+ */
+public class BisectionCompressionStrategy implements CompressionStrategy {
+    private static final double MIN_QUALITY = 0.05;
+    private static final double MIN_SCALE = 0.05;
+    private static final double MAX_PARAMETER = 1.0;
+    private static final double PARAMETER_TOLERANCE = 0.02;
+    /**
+     * An encode within this fraction below the target is accepted right away.
+     */
+    private static final double SIZE_TOLERANCE = 0.1;
+    private static final int MAX_ATTEMPTS_PER_PHASE = 8;
+    private static final double PNG_BYTES_PER_PIXEL = 1.5;
+
+    @Override
+    public CompressionResult compress(BufferedImage image, String format, long targetSizeBytes) throws IOException {
+        long pixels = Math.max(1L, (long) image.getWidth() * image.getHeight());
+        Search search = new Search(targetSizeBytes);
+        boolean lossy = ImageEncoder.isLossy(format);
+
+        if (lossy) {
+            search.run(new QualityModel(pixels),
+                    quality -> ImageEncoder.encode(image, format, quality, MAX_PARAMETER), MIN_QUALITY);
+            if (search.hasFit()) {
+                return search.result();
+            }
+        }
+
+        double quality = lossy ? MIN_QUALITY : MAX_PARAMETER;
+        double bytesPerPixel = lossy ? QualityModel.bytesPerPixel(MIN_QUALITY) : PNG_BYTES_PER_PIXEL;
+        search.run(new ScaleModel(pixels, bytesPerPixel),
+                scale -> ImageEncoder.encode(image, format, quality, scale), MIN_SCALE);
+        return search.result();
+    }
+
+    private interface Encoding {
+        byte[] encode(double parameter) throws IOException;
+    }
+
+    /**
+     * Predicted encoded size as a monotonic function of one encoder parameter.
+     */
+    private interface SizeModel {
+        double predictSize(double parameter);
+
+        double parameterFor(double size);
+    }
+
+    /**
+     * JPEG bytes per pixel grow slowly through the middle of the quality range and steeply near 1.
+     */
+    private record QualityModel(long pixels) implements SizeModel {
+        static double bytesPerPixel(double quality) {
+            return 0.05 + 0.95 * Math.pow(quality, 6);
+        }
+
+        @Override
+        public double predictSize(double quality) {
+            return pixels * bytesPerPixel(quality);
+        }
+
+        @Override
+        public double parameterFor(double size) {
+            double bytesPerPixel = size / pixels;
+            return Math.pow(Math.max(0, bytesPerPixel - 0.05) / 0.95, 1.0 / 6);
+        }
+    }
+
+    /**
+     * Encoded size follows the pixel count, which shrinks with the square of the scale.
+     */
+    private record ScaleModel(long pixels, double bytesPerPixel) implements SizeModel {
+        @Override
+        public double predictSize(double scale) {
+            return pixels * bytesPerPixel * scale * scale;
+        }
+
+        @Override
+        public double parameterFor(double size) {
+            return Math.sqrt(size / (pixels * bytesPerPixel));
+        }
+    }
+
+    private static final class Search {
+        private final long targetSize;
+        private int attempts;
+        private byte[] fit;
+        private byte[] smallest;
+
+        private Search(long targetSize) {
+            this.targetSize = targetSize;
+        }
+
+        /**
+         * Looks for the largest parameter in [min, 1] whose encoding fits into the target.
+         */
+        void run(SizeModel model, Encoding encoding, double min) throws IOException {
+            double low = min;
+            double high = MAX_PARAMETER;
+            boolean lowFits = false;
+            double parameter = clamp(model.parameterFor(targetSize), min, MAX_PARAMETER);
+
+            for (int i = 0; i < MAX_ATTEMPTS_PER_PHASE; i++) {
+                byte[] data = encode(encoding, parameter);
+                if (data.length <= targetSize) {
+                    fit = data;
+                    low = parameter;
+                    lowFits = true;
+                    if (data.length >= targetSize * (1 - SIZE_TOLERANCE)) {
+                        return;
+                    }
+                } else {
+                    high = parameter;
+                }
+                if (high - low <= PARAMETER_TOLERANCE) {
+                    break;
+                }
+
+                double calibration = data.length / model.predictSize(parameter);
+                double next = model.parameterFor(targetSize / calibration);
+                double margin = PARAMETER_TOLERANCE / 2;
+                parameter = next > low && next < high
+                        ? clamp(next, low + margin, high - margin)
+                        : (low + high) / 2;
+            }
+
+            if (!lowFits && high > min) {
+                byte[] data = encode(encoding, min);
+                if (data.length <= targetSize) {
+                    fit = data;
+                }
+            }
+        }
+
+        boolean hasFit() {
+            return fit != null;
+        }
+
+        CompressionResult result() {
+            return new CompressionResult(hasFit() ? fit : smallest, attempts);
+        }
+
+        private byte[] encode(Encoding encoding, double parameter) throws IOException {
+            byte[] data = encoding.encode(parameter);
+            attempts++;
+            if (smallest == null || data.length < smallest.length) {
+                smallest = data;
+            }
+            return data;
+        }
+
+        private static double clamp(double value, double min, double max) {
+            return Math.max(min, Math.min(max, value));
+        }
+    }
+}
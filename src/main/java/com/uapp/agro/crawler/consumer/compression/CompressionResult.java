@@ -0,0 +1,7 @@
+package com.uapp.agro.crawler.consumer.compression;
+
+/**
+ * @param encodeAttempts number of full encoder passes it took to produce {@code data}
+ */
+public record CompressionResult(byte[] data, int encodeAttempts) {
+}
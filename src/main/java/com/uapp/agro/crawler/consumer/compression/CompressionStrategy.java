@@ -0,0 +1,26 @@
+package com.uapp.agro.crawler.consumer.compression;
+
+import com.uapp.agro.crawler.config.ApplicationProperties;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+
+/**
+ * Finds encoder settings that bring an image down to a target size.
+ * Implementations are stateless and shared between consumers.
+ */
+public interface CompressionStrategy {
+
+    /**
+     * @return the first encoding that fits into {@code targetSizeBytes}, or the smallest one tried
+     * when no setting reaches the target
+     */
+    CompressionResult compress(BufferedImage image, String format, long targetSizeBytes) throws IOException;
+
+    static CompressionStrategy of(ApplicationProperties.CompressionStrategyType type) {
+        return switch (type) {
+            case LINEAR -> new LinearCompressionStrategy();
+            case BISECTION -> new BisectionCompressionStrategy();
+        };
+    }
+}
@@ -0,0 +1,35 @@
+package com.uapp.agro.crawler.consumer.compression;
+
+import net.coobird.thumbnailator.Thumbnails;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Set;
+
+final class ImageEncoder {
+    private static final Set<String> LOSSY_FORMATS = Set.of("jpg", "jpeg");
+
+    private ImageEncoder() {
+    }
+
+    static boolean isLossy(String format) {
+        return LOSSY_FORMATS.contains(format);
+    }
+
+    /**
+     * Quality is only applied to lossy formats, lossless ones can only shrink by scaling.
+     */
+    static byte[] encode(BufferedImage image, String format, double quality, double scale) throws IOException {
+        try (ByteArrayOutputStream baos = new ByteArrayOutputStream()) {
+            Thumbnails.Builder<BufferedImage> builder = Thumbnails.of(image)
+                    .scale(scale)
+                    .outputFormat(format);
+            if (isLossy(format)) {
+                builder.outputQuality(quality);
+            }
+            builder.toOutputStream(baos);
+            return baos.toByteArray();
+        }
+    }
+}
@@ -0,0 +1,42 @@
+package com.uapp.agro.crawler.consumer.compression;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ * Walks quality down in 0.05 steps and then scaling down in 0.05 steps until the image fits.
+ */
+public class LinearCompressionStrategy implements CompressionStrategy {
+    private static final BigDecimal STEP = BigDecimal.valueOf(0.05);
+
+    @Override
+    public CompressionResult compress(BufferedImage image, String format, long targetSizeBytes) throws IOException {
+        BigDecimal targetSize = BigDecimal.valueOf(targetSizeBytes)
+                .divide(BigDecimal.valueOf(1024), 4, RoundingMode.CEILING);
+        BigDecimal quality = BigDecimal.ONE;
+        BigDecimal scaling = BigDecimal.ONE;
+        byte[] compressedData = new byte[0];
+        int attempts = 0;
+        while (quality.floatValue() > 0. || scaling.floatValue() > 0.) {
+            compressedData = ImageEncoder.encode(image, format, quality.floatValue(), scaling.floatValue());
+            attempts++;
+
+            BigDecimal compressedDataLengthKB = BigDecimal.valueOf(compressedData.length / 1024);
+            if (targetSize.compareTo(compressedDataLengthKB) >= 0) {
+                return new CompressionResult(compressedData, attempts);
+            }
+
+            if (quality.floatValue() > 0.) {
+                quality = quality.subtract(STEP);
+            }
+
+            if (quality.floatValue() == 0 && scaling.floatValue() > 0.) {
+                scaling = scaling.subtract(STEP);
+            }
+        }
+
+        return new CompressionResult(compressedData, attempts);
+    }
+}
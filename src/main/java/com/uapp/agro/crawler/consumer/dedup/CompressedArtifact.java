@@ -0,0 +1,4 @@
+package com.uapp.agro.crawler.consumer.dedup;
+
+public record CompressedArtifact(String filePath, long compressedSize) {
+}
@@ -0,0 +1,149 @@
+package com.uapp.agro.crawler.consumer.dedup;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collections;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Function;
+
+/**
+ * Maps SHA-256 hashes of downloaded image bytes to their compressed artifact, so the same bytes served
+ * under different urls are compressed once. The first consumer that sees a hash produces the artifact,
+ * consumers that see it meanwhile share that result. Hashes not known in memory are looked up in
+ * the stored artifacts first, which covers images compressed by earlier runs and earlier in this one.
+ * <p>
+ * Only hashes being compressed are always kept. Finished ones move to a cache of the {@code recentCapacity}
+ * most recently used, which bridges the time until their image info is stored; older ones are evicted, so
+ * memory does not grow with the number of distinct images.
+ */
+@Slf4j
+public class ContentHashIndex {
+    private static final String HASH_ALGORITHM = "SHA-256";
+    private static final int DEFAULT_RECENT_CAPACITY = 10_000;
+
+    private final Function<String, Optional<CompressedArtifact>> storedArtifacts;
+    private final ConcurrentMap<String, CompletableFuture<Optional<CompressedArtifact>>> inFlight =
+            new ConcurrentHashMap<>();
+    private final Map<String, Optional<CompressedArtifact>> recent;
+
+    public ContentHashIndex(Function<String, Optional<CompressedArtifact>> storedArtifacts) {
+        this(storedArtifacts, DEFAULT_RECENT_CAPACITY);
+    }
+
+    ContentHashIndex(Function<String, Optional<CompressedArtifact>> storedArtifacts, int recentCapacity) {
+        this.storedArtifacts = storedArtifacts;
+        this.recent = Collections.synchronizedMap(new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Optional<CompressedArtifact>> eldest) {
+                return size() > recentCapacity;
+            }
+        });
+    }
+
+    public static String hash(byte[] content) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance(HASH_ALGORITHM).digest(content));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(HASH_ALGORITHM + " is not supported", e);
+        }
+    }
+
+    /**
+     * Does not block: a hash that is already being compressed returns the pending result.
+     *
+     * @return the artifact for the content, empty when the compressor could not produce one
+     */
+    public CompletableFuture<Optional<CompressedArtifact>> resolve(String contentHash, Compressor compressor) {
+        Optional<CompressedArtifact> known = recent.get(contentHash);
+        if (known != null) {
+            return CompletableFuture.completedFuture(known);
+        }
+        CompletableFuture<Optional<CompressedArtifact>> owned = new CompletableFuture<>();
+        CompletableFuture<Optional<CompressedArtifact>> existing = inFlight.putIfAbsent(contentHash, owned);
+        if (existing != null) {
+            return existing;
+        }
+
+        try {
+            // finished between the lookup above and claiming the hash
+            Optional<CompressedArtifact> stored = Optional.ofNullable(recent.get(contentHash))
+                    .orElseGet(() -> findStored(contentHash));
+            if (stored.isPresent()) {
+                log.info("Content {} is already compressed to {}", contentHash, stored.get().filePath());
+                finish(contentHash, owned, stored);
+                return owned;
+            }
+            compressor.compress().whenComplete((artifact, failure) -> {
+                if (failure != null) {
+                    fail(contentHash, owned, failure);
+                } else {
+                    finish(contentHash, owned, artifact);
+                }
+            });
+        } catch (RuntimeException e) {
+            fail(contentHash, owned, e);
+        }
+        return owned;
+    }
+
+    /**
+     * @return whether an artifact for the content was produced in this run or is still stored from an earlier one
+     */
+    public boolean contains(String contentHash) {
+        Optional<CompressedArtifact> known = recent.get(contentHash);
+        if (known != null) {
+            return known.isPresent();
+        }
+        return findStored(contentHash).isPresent();
+    }
+
+    int size() {
+        return inFlight.size() + recent.size();
+    }
+
+    /**
+     * Cached before the hash is released, so no caller in between finds neither and compresses it again.
+     */
+    private void finish(String contentHash, CompletableFuture<Optional<CompressedArtifact>> owned,
+                        Optional<CompressedArtifact> artifact) {
+        recent.put(contentHash, artifact);
+        inFlight.remove(contentHash, owned);
+        owned.complete(artifact);
+    }
+
+    /**
+     * Later urls with the same content get another attempt.
+     */
+    private void fail(String contentHash, CompletableFuture<Optional<CompressedArtifact>> owned, Throwable failure) {
+        inFlight.remove(contentHash, owned);
+        owned.completeExceptionally(failure);
+    }
+
+    /**
+     * A stored artifact is only reused while its file is still on disk.
+     */
+    private Optional<CompressedArtifact> findStored(String contentHash) {
+        try {
+            return storedArtifacts.apply(contentHash)
+                    .filter(artifact -> Files.exists(Path.of(artifact.filePath())));
+        } catch (RuntimeException e) {
+            log.warn("Can not look up content {}: {}", contentHash, e.getMessage());
+            return Optional.empty();
+        }
+    }
+
+    @FunctionalInterface
+    public interface Compressor {
+        CompletableFuture<Optional<CompressedArtifact>> compress();
+    }
+}
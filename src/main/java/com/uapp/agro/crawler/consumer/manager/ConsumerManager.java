@@ -1,8 +1,9 @@
 package com.uapp.agro.crawler.consumer.manager;
 
+import com.uapp.agro.crawler.scraper.coordinator.CrawlCoordinator;
+
 import java.util.concurrent.CompletableFuture;
-import java.util.concurrent.atomic.AtomicInteger;
 
 public interface ConsumerManager {
-    CompletableFuture<Void> startConsumers(AtomicInteger producersCount);
+    CompletableFuture<Void> startConsumers(CrawlCoordinator coordinator);
 }
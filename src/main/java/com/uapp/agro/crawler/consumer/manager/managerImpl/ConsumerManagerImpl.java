@@ -2,40 +2,93 @@ package com.uapp.agro.crawler.consumer.manager.managerImpl;
 
 import com.uapp.agro.crawler.config.ScraperConfiguration;
 import com.uapp.agro.crawler.consumer.ImageScraperConsumer;
+import com.uapp.agro.crawler.consumer.compression.CompressionStrategy;
+import com.uapp.agro.crawler.consumer.dedup.CompressedArtifact;
+import com.uapp.agro.crawler.consumer.dedup.ContentHashIndex;
 import com.uapp.agro.crawler.consumer.manager.ConsumerManager;
+import com.uapp.agro.crawler.consumer.pipeline.ImagePipeline;
+import com.uapp.agro.crawler.consumer.store.ImageOutputStore;
+import com.uapp.agro.crawler.image.service.ImageInfoBatchWriter;
 import com.uapp.agro.crawler.image.service.ImageInfoService;
+import com.uapp.agro.crawler.scraper.balancer.PipelineBalancer;
+import com.uapp.agro.crawler.scraper.balancer.WorkerGroup;
+import com.uapp.agro.crawler.scraper.cache.ValidatorCache;
+import com.uapp.agro.crawler.scraper.checkpoint.CrawlCheckpoint;
+import com.uapp.agro.crawler.scraper.coordinator.CrawlCoordinator;
+import com.uapp.agro.crawler.scraper.image.ImageFilter;
+import com.uapp.agro.crawler.scraper.limiter.RequestLimiter;
+import com.uapp.agro.crawler.scraper.metrics.CrawlMetrics;
+import com.uapp.agro.crawler.scraper.retry.RetryScheduler;
+import com.uapp.agro.crawler.scraper.seen.SeenSet;
 import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
 
-import java.util.Set;
+import java.net.http.HttpClient;
+import java.nio.file.Path;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.CompletableFuture;
-import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.atomic.AtomicInteger;
-import java.util.stream.IntStream;
+import java.util.concurrent.RejectedExecutionException;
 
+@Slf4j
 @RequiredArgsConstructor
 public class ConsumerManagerImpl implements ConsumerManager {
     private final ScraperConfiguration config;
     private final ImageInfoService infoService;
+    private final ImageInfoBatchWriter infoWriter;
     private final ExecutorService executorService;
     private final BlockingQueue<String> imageQueue;
-    private final Set<String> processedImages = ConcurrentHashMap.newKeySet();
+    private final RequestLimiter requestLimiter;
+    private final HttpClient httpClient;
+    private final SeenSet processedImages;
+    private final CrawlCheckpoint checkpoint;
+    private final ValidatorCache validatorCache;
+    private final PipelineBalancer balancer;
+    private final RetryScheduler<String> imageRetries;
+    private final CrawlMetrics metrics;
 
     @Override
-    public CompletableFuture<Void> startConsumers(AtomicInteger producersCount) {
-        CompletableFuture[] futures = IntStream.rangeClosed(0, config.getMaxConsumerThreadCount())
-                .mapToObj(i -> CompletableFuture.runAsync(
-                        new ImageScraperConsumer(imageQueue,
-                                processedImages,
-                                config.getFolderPath(),
-                                infoService,
-                                producersCount,
-                                config.getAvailableFormats()),
-                        executorService
-                ))
-                .toArray(CompletableFuture[]::new);
+    public CompletableFuture<Void> startConsumers(CrawlCoordinator coordinator) {
+        ContentHashIndex contentHashIndex = new ContentHashIndex(contentHash -> infoService.findByContentHash(contentHash)
+                .map(info -> new CompressedArtifact(info.getFilePath(), info.getCompressedSize())));
+        ImageOutputStore outputStore = new ImageOutputStore(Path.of(config.getFolderPath()));
+        ImagePipeline pipeline = new ImagePipeline(config, metrics);
+        balancer.watchCompression(pipeline.compress()::fill);
+        WorkerGroup consumers = balancer.consumers();
+        Runnable startConsumersUpToLimit = () -> {
+            while (!consumers.allExited().isDone() && consumers.tryAcquire()) {
+                try {
+                    executorService.submit(createConsumer(coordinator, contentHashIndex, outputStore, pipeline));
+                } catch (RejectedExecutionException e) {
+                    consumers.release();
+                    return;
+                }
+                log.info("Started consumer, total: {}", consumers.getActive());
+            }
+        };
+        startConsumersUpToLimit.run();
+        balancer.onRebalance(startConsumersUpToLimit);
+        // the last consumer drains the stages before the crawl is reported as done
+        return consumers.allExited().thenRun(pipeline::close);
+    }
 
-        return CompletableFuture.allOf(futures);
+    private ImageScraperConsumer createConsumer(CrawlCoordinator coordinator, ContentHashIndex contentHashIndex,
+                                                ImageOutputStore outputStore, ImagePipeline pipeline) {
+        return new ImageScraperConsumer(imageQueue,
+                processedImages,
+                outputStore,
+                infoWriter,
+                coordinator,
+                ImageFilter.of(config),
+                requestLimiter,
+                httpClient,
+                CompressionStrategy.of(config.getCompressionStrategy()),
+                checkpoint,
+                validatorCache,
+                contentHashIndex,
+                pipeline,
+                balancer,
+                imageRetries,
+                metrics);
     }
 }
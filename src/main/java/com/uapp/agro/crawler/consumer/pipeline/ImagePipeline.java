@@ -0,0 +1,65 @@
+package com.uapp.agro.crawler.consumer.pipeline;
+
+import com.uapp.agro.crawler.config.ApplicationProperties;
+import com.uapp.agro.crawler.config.ScraperConfiguration;
+import com.uapp.agro.crawler.scraper.metrics.CrawlMetrics;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Stages an image passes through after a consumer downloaded it: compress (decode and encode, one thread per
+ * core unless configured), write (file output) and persist (image info batches). The download itself stays
+ * with the consumers, whose number the balancer adjusts. In {@code virtual} execution mode the I/O stages run
+ * on virtual threads; compression always gets platform threads, since it never blocks.
+ */
+public class ImagePipeline {
+    private final PipelineStage compress;
+    private final PipelineStage write;
+    private final PipelineStage persist;
+
+    public ImagePipeline(ScraperConfiguration config, CrawlMetrics metrics) {
+        int compressThreads = config.getCompressThreads() > 0
+                ? config.getCompressThreads()
+                : Runtime.getRuntime().availableProcessors();
+        boolean virtual = config.getExecutionMode() == ApplicationProperties.ExecutionMode.VIRTUAL;
+        this.compress = new PipelineStage("compress", compressThreads, config.getStageQueueCapacity(),
+                platformThreads("image-compress-"));
+        this.write = new PipelineStage("write", config.getWriteThreads(), config.getStageQueueCapacity(),
+                virtual ? virtualThreads("image-write-") : platformThreads("image-write-"));
+        this.persist = new PipelineStage("persist", config.getPersistThreads(), config.getStageQueueCapacity(),
+                virtual ? virtualThreads("image-persist-") : platformThreads("image-persist-"));
+        metrics.gaugeQueueDepth("compress", compress.queue(), BlockingQueue::size);
+        metrics.gaugeQueueDepth("write", write.queue(), BlockingQueue::size);
+        metrics.gaugeQueueDepth("persist", persist.queue(), BlockingQueue::size);
+    }
+
+    public PipelineStage compress() {
+        return compress;
+    }
+
+    public PipelineStage write() {
+        return write;
+    }
+
+    public PipelineStage persist() {
+        return persist;
+    }
+
+    /**
+     * Drains the stages in order, called once no consumer is left to feed them.
+     */
+    public void close() {
+        compress.close();
+        write.close();
+        persist.close();
+    }
+
+    private static ThreadFactory platformThreads(String prefix) {
+        return Thread.ofPlatform().name(prefix, 0).daemon(true).factory();
+    }
+
+    private static ThreadFactory virtualThreads(String prefix) {
+        return Thread.ofVirtual().name(prefix, 0).factory();
+    }
+}
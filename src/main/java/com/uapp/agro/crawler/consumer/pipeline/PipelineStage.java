@@ -0,0 +1,94 @@
+package com.uapp.agro.crawler.consumer.pipeline;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs the tasks of one pipeline stage on its own fixed set of threads. At most {@code queueCapacity} tasks
+ * wait for a thread, {@link #submit} blocks while they do, so a slow stage holds back the stage feeding it
+ * instead of buffering images without bound.
+ */
+@Slf4j
+public class PipelineStage {
+    private static final long CLOSE_LOG_INTERVAL_SECONDS = 10;
+
+    private final String name;
+    private final ThreadPoolExecutor executor;
+    private final Semaphore slots;
+    private final int capacity;
+
+    public PipelineStage(String name, int threads, int queueCapacity, ThreadFactory threadFactory) {
+        this.name = name;
+        this.capacity = threads + queueCapacity;
+        this.executor = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>(), threadFactory);
+        this.slots = new Semaphore(capacity);
+    }
+
+    /**
+     * Blocks while the stage is full. The future completes on the stage thread, so work chained onto it
+     * without an executor runs there too.
+     *
+     * @return future failed with the task's exception, or when interrupted while waiting or after {@link #close}
+     */
+    public <T> CompletableFuture<T> submit(Callable<T> task) {
+        try {
+            slots.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return CompletableFuture.failedFuture(e);
+        }
+        CompletableFuture<T> result = new CompletableFuture<>();
+        try {
+            executor.execute(() -> {
+                try {
+                    result.complete(task.call());
+                } catch (Exception e) {
+                    result.completeExceptionally(e);
+                } finally {
+                    slots.release();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            slots.release();
+            result.completeExceptionally(e);
+        }
+        return result;
+    }
+
+    public BlockingQueue<Runnable> queue() {
+        return executor.getQueue();
+    }
+
+    /**
+     * @return share of the stage's running and waiting slots in use, {@code 1} when {@link #submit} blocks
+     */
+    public double fill() {
+        return (capacity - slots.availablePermits()) / (double) capacity;
+    }
+
+    /**
+     * Lets every submitted task finish, then stops the threads. Stages have to be closed in pipeline order,
+     * since tasks of one stage submit to the next.
+     */
+    public void close() {
+        executor.shutdown();
+        try {
+            while (!executor.awaitTermination(CLOSE_LOG_INTERVAL_SECONDS, TimeUnit.SECONDS)) {
+                log.info("Waiting for {} stage, {} images queued", name, executor.getQueue().size());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            executor.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package com.uapp.agro.crawler.consumer.store;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.FileSystemException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Content-addressed store for compressed images. A file is named after the hash of the original content
+ * and sharded by its leading hex digits, {@code root/ab/cd/abcd...jpg}, so no directory grows past
+ * 256 subdirectories or a few thousand files per million images.
+ * <p>
+ * Bytes go to a temp file next to the target and are published with a hard link, which fails when the
+ * target exists, so concurrent writers of the same content need no lock and readers never see a partial
+ * file. Where hard links are not supported the temp file is atomically moved instead.
+ */
+@Slf4j
+public class ImageOutputStore {
+    private static final int SHARD_LEVELS = 2;
+    private static final int SHARD_WIDTH = 2;
+    private static final String TEMP_SUFFIX = ".tmp";
+
+    private final Path root;
+
+    public ImageOutputStore(Path root) {
+        this.root = root;
+    }
+
+    public Path pathFor(String contentHash, String format) {
+        Path directory = root;
+        for (int level = 0; level < SHARD_LEVELS; level++) {
+            directory = directory.resolve(contentHash.substring(level * SHARD_WIDTH, (level + 1) * SHARD_WIDTH));
+        }
+        return directory.resolve(contentHash + "." + format);
+    }
+
+    /**
+     * @return {@code false} when the file already existed, equal names always mean equal content
+     */
+    public boolean write(Path target, byte[] content) throws IOException {
+        if (Files.exists(target)) {
+            return false;
+        }
+        Files.createDirectories(target.getParent());
+        Path temp = target.resolveSibling(target.getFileName() + "."
+                + Long.toHexString(ThreadLocalRandom.current().nextLong()) + TEMP_SUFFIX);
+        try {
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+                ByteBuffer buffer = ByteBuffer.wrap(content);
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+            }
+            return publish(temp, target);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    private boolean publish(Path temp, Path target) throws IOException {
+        try {
+            Files.createLink(target, temp);
+            return true;
+        } catch (FileAlreadyExistsException e) {
+            log.info("Skip file by path: {}", target);
+            return false;
+        } catch (UnsupportedOperationException | FileSystemException e) {
+            Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE);
+            return true;
+        }
+    }
+}
@@ -10,4 +10,5 @@ public class ImageCreateDto {
     private String filePath;
     private long originalSize;
     private long compressedSize;
+    private String contentHash;
 }
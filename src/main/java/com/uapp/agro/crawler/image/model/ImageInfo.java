@@ -20,11 +20,13 @@ public class ImageInfo {
     private long originalSize;
     @Column(nullable = false)
     private long compressedSize;
+    private String contentHash;
 
-    public ImageInfo(String originalUrl, String filePath, long originalSize, long compressedSize) {
+    public ImageInfo(String originalUrl, String filePath, long originalSize, long compressedSize, String contentHash) {
         this.originalUrl = originalUrl;
         this.filePath = filePath;
         this.originalSize = originalSize;
         this.compressedSize = compressedSize;
+        this.contentHash = contentHash;
     }
 }
@@ -0,0 +1,36 @@
+package com.uapp.agro.crawler.image.repository;
+
+import com.uapp.agro.crawler.image.dto.ImageCreateDto;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+/**
+ * Plain JDBC inserts for the hot path. {@code image_info} uses an identity key, which makes Hibernate
+ * give up insert batching, so batches go through {@link JdbcTemplate} instead.
+ */
+@Repository
+@RequiredArgsConstructor
+public class ImageInfoJdbcRepository {
+    private static final String INSERT_IGNORING_DUPLICATES = """
+            INSERT INTO image_info (original_url, file_path, original_size, compressed_size, content_hash)
+            VALUES (?, ?, ?, ?, ?)
+            ON CONFLICT (original_url) DO NOTHING""";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    /**
+     * Inserts the whole list as one JDBC batch, rows whose url is already stored are skipped.
+     */
+    public void insertIgnoringDuplicates(List<ImageCreateDto> images) {
+        jdbcTemplate.batchUpdate(INSERT_IGNORING_DUPLICATES, images, images.size(), (statement, image) -> {
+            statement.setString(1, image.getOriginalUrl());
+            statement.setString(2, image.getFilePath());
+            statement.setLong(3, image.getOriginalSize());
+            statement.setLong(4, image.getCompressedSize());
+            statement.setString(5, image.getContentHash());
+        });
+    }
+}
@@ -9,4 +9,6 @@ import java.util.Optional;
 @Repository
 public interface ImageInfoRepository extends JpaRepository<ImageInfo, Long> {
     Optional<ImageInfo> findByOriginalUrl(String url);
+
+    Optional<ImageInfo> findFirstByContentHash(String contentHash);
 }
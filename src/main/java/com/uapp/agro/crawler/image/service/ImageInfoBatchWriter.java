@@ -0,0 +1,14 @@
+package com.uapp.agro.crawler.image.service;
+
+import com.uapp.agro.crawler.image.dto.ImageCreateDto;
+
+import java.util.concurrent.CompletableFuture;
+
+public interface ImageInfoBatchWriter {
+    /**
+     * Buffers the image info, the future completes once its batch is committed.
+     */
+    CompletableFuture<Void> write(ImageCreateDto dto);
+
+    void flush();
+}
@@ -3,6 +3,10 @@ package com.uapp.agro.crawler.image.service;
 import com.uapp.agro.crawler.image.dto.ImageCreateDto;
 import com.uapp.agro.crawler.image.model.ImageInfo;
 
+import java.util.Optional;
+
 public interface ImageInfoService {
     ImageInfo createIfNotExists(ImageCreateDto dto);
+
+    Optional<ImageInfo> findByContentHash(String contentHash);
 }
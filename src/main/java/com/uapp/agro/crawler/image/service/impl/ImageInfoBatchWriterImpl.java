@@ -0,0 +1,116 @@
+package com.uapp.agro.crawler.image.service.impl;
+
+import com.uapp.agro.crawler.config.ApplicationProperties;
+import com.uapp.agro.crawler.image.dto.ImageCreateDto;
+import com.uapp.agro.crawler.image.repository.ImageInfoJdbcRepository;
+import com.uapp.agro.crawler.image.service.ImageInfoBatchWriter;
+import com.uapp.agro.crawler.scraper.metrics.CrawlMetrics;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Collects image infos from all consumers and stores them in batches, either when {@code batchSize}
+ * entries are buffered or every flush interval. Duplicates are resolved by the unique index on
+ * {@code original_url}, so no lookup or lock is needed before the insert.
+ */
+@Slf4j
+@Service
+public class ImageInfoBatchWriterImpl implements ImageInfoBatchWriter {
+    private final ImageInfoJdbcRepository repository;
+    private final CrawlMetrics metrics;
+    private final int batchSize;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "image-info-writer");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private List<PendingWrite> buffer = new ArrayList<>();
+
+    public ImageInfoBatchWriterImpl(ImageInfoJdbcRepository repository, ApplicationProperties properties,
+                                    CrawlMetrics metrics) {
+        this.repository = repository;
+        this.metrics = metrics;
+        this.batchSize = properties.getPersistenceProperties().batchSize();
+        long flushIntervalMs = properties.getPersistenceProperties().flushIntervalMs();
+        scheduler.scheduleWithFixedDelay(this::flush, flushIntervalMs, flushIntervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public CompletableFuture<Void> write(ImageCreateDto dto) {
+        CompletableFuture<Void> written = new CompletableFuture<>();
+        List<PendingWrite> fullBatch = null;
+        lock.lock();
+        try {
+            buffer.add(new PendingWrite(dto, written));
+            if (buffer.size() >= batchSize) {
+                fullBatch = takeBuffer();
+            }
+        } finally {
+            lock.unlock();
+        }
+        if (fullBatch != null) {
+            writeBatch(fullBatch);
+        }
+        return written;
+    }
+
+    @Override
+    public void flush() {
+        List<PendingWrite> batch;
+        lock.lock();
+        try {
+            batch = takeBuffer();
+        } finally {
+            lock.unlock();
+        }
+        if (!batch.isEmpty()) {
+            writeBatch(batch);
+        }
+    }
+
+    @PreDestroy
+    public void close() {
+        scheduler.shutdownNow();
+        flush();
+    }
+
+    private List<PendingWrite> takeBuffer() {
+        List<PendingWrite> batch = buffer;
+        buffer = new ArrayList<>(batchSize);
+        return batch;
+    }
+
+    /**
+     * Rows are sorted by url so that concurrent batches lock index entries in the same order and can not deadlock.
+     */
+    private void writeBatch(List<PendingWrite> batch) {
+        List<ImageCreateDto> images = batch.stream()
+                .map(PendingWrite::dto)
+                .sorted(Comparator.comparing(ImageCreateDto::getOriginalUrl))
+                .toList();
+        long startedAt = System.nanoTime();
+        try {
+            repository.insertIgnoringDuplicates(images);
+            metrics.recordDbWrite(System.nanoTime() - startedAt, images.size());
+            log.info("Saved batch of {} images", images.size());
+            batch.forEach(pending -> pending.written().complete(null));
+        } catch (RuntimeException e) {
+            log.warn("Can not save batch of {} images: {}", images.size(), e.getMessage());
+            batch.forEach(pending -> pending.written().completeExceptionally(e));
+        }
+    }
+
+    private record PendingWrite(ImageCreateDto dto, CompletableFuture<Void> written) {
+    }
+}
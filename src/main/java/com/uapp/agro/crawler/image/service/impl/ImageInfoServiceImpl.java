@@ -4,13 +4,13 @@ import com.uapp.agro.crawler.image.dto.ImageCreateDto;
 import com.uapp.agro.crawler.image.model.ImageInfo;
 import com.uapp.agro.crawler.image.repository.ImageInfoRepository;
 import com.uapp.agro.crawler.image.service.ImageInfoService;
-import jakarta.persistence.LockModeType;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.data.jpa.repository.Lock;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.util.Optional;
+
 @Service
 @Slf4j
 @RequiredArgsConstructor
@@ -19,7 +19,6 @@ public class ImageInfoServiceImpl implements ImageInfoService {
 
     @Override
     @Transactional
-    @Lock(LockModeType.PESSIMISTIC_WRITE)
     public ImageInfo createIfNotExists(ImageCreateDto dto) {
         return imageInfoRepository.findByOriginalUrl(dto.getOriginalUrl())
                 .orElseGet(() -> {
@@ -27,11 +26,18 @@ public class ImageInfoServiceImpl implements ImageInfoService {
                             dto.getOriginalUrl(),
                             dto.getFilePath(),
                             dto.getOriginalSize(),
-                            dto.getCompressedSize()
+                            dto.getCompressedSize(),
+                            dto.getContentHash()
                     );
                     log.info("Save image: {}", imageInfo.getOriginalUrl());
                     return imageInfoRepository.save(imageInfo);
                 });
 
     }
+
+    @Override
+    @Transactional(readOnly = true)
+    public Optional<ImageInfo> findByContentHash(String contentHash) {
+        return imageInfoRepository.findFirstByContentHash(contentHash);
+    }
 }
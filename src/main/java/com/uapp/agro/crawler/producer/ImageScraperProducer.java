@@ -1,173 +1,345 @@
 package com.uapp.agro.crawler.producer;
 
+import com.uapp.agro.crawler.config.ApplicationProperties;
+import com.uapp.agro.crawler.producer.frontier.CrawlFrontier;
+import com.uapp.agro.crawler.producer.extract.PageExtractor;
+import com.uapp.agro.crawler.producer.frontier.FrontierEntry;
+import com.uapp.agro.crawler.producer.probe.ImageSizeProber;
+import com.uapp.agro.crawler.producer.scope.CrawlScope;
+import com.uapp.agro.crawler.scraper.balancer.PipelineBalancer;
+import com.uapp.agro.crawler.scraper.balancer.WorkerGroup;
+import com.uapp.agro.crawler.scraper.cache.CachedResource;
+import com.uapp.agro.crawler.scraper.cache.ValidatorCache;
+import com.uapp.agro.crawler.scraper.checkpoint.CrawlCheckpoint;
+import com.uapp.agro.crawler.scraper.coordinator.CrawlCoordinator;
+import com.uapp.agro.crawler.scraper.image.ImageFilter;
+import com.uapp.agro.crawler.scraper.limiter.HostPermit;
+import com.uapp.agro.crawler.scraper.limiter.RequestLimiter;
+import com.uapp.agro.crawler.scraper.metrics.CrawlMetrics;
+import com.uapp.agro.crawler.scraper.retry.RetryScheduler;
+import com.uapp.agro.crawler.scraper.robots.RobotsPolicy;
+import com.uapp.agro.crawler.scraper.robots.RobotsUnavailableException;
+import com.uapp.agro.crawler.scraper.seen.SeenSet;
 import lombok.extern.slf4j.Slf4j;
+import org.jsoup.Connection;
+import org.jsoup.HttpStatusException;
 import org.jsoup.Jsoup;
 import org.jsoup.nodes.Document;
-import org.jsoup.nodes.Element;
-import org.jsoup.select.Elements;
+import org.jsoup.parser.StreamParser;
 
 import java.io.IOException;
 import java.net.HttpURLConnection;
-import java.net.URL;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Set;
 import java.util.concurrent.BlockingQueue;
-import java.util.concurrent.ConcurrentSkipListSet;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.TimeUnit;
 
 @Slf4j
 public class ImageScraperProducer implements Runnable {
-    private final Integer maxProducers;
-    private final Long minimalImageSizeKb;
+    private static final long IDLE_WAIT_MS = 100;
+
+    private final ImageFilter imageFilter;
     private final BlockingQueue<String> images;
-    private final ConcurrentSkipListSet<String> urlQueue;
-    private final Set<String> visitedUrls;
-    private final Set<String> visitedImages;
-    private final AtomicInteger producersCount;
+    private final CrawlFrontier frontier;
+    private final SeenSet visitedUrls;
+    private final SeenSet visitedImages;
+    private final PipelineBalancer balancer;
+    private final WorkerGroup producers;
     private final ExecutorService producerPool;
     private final Long minUrlsGenerateProducer;
+    private final RequestLimiter requestLimiter;
+    private final CrawlCoordinator coordinator;
+    private final ImageSizeProber imageSizeProber;
+    private final ApplicationProperties.ExtractionMode extractionMode;
+    private final PageExtractor pageExtractor;
+    private final CrawlScope crawlScope;
+    private final RobotsPolicy robotsPolicy;
+    private final RetryScheduler<FrontierEntry> pageRetries;
+    private final RetryScheduler<String> imageRetries;
+    private final ValidatorCache validatorCache;
+    private final CrawlCheckpoint checkpoint;
+    private final CrawlMetrics metrics;
 
     public ImageScraperProducer(
             BlockingQueue<String> images,
-            String startUrl,
-            Long minimalImageSizeKb,
-            ConcurrentSkipListSet<String> urlQueue,
-            Set<String> visitedUrls,
-            Set<String> visitedImages,
-            AtomicInteger producersCount,
+            ImageFilter imageFilter,
+            CrawlFrontier frontier,
+            SeenSet visitedUrls,
+            SeenSet visitedImages,
+            PipelineBalancer balancer,
             ExecutorService producerPool,
-            Integer maxProducers,
-            Long minUrlsGenerateProducer
+            Long minUrlsGenerateProducer,
+            RequestLimiter requestLimiter,
+            CrawlCoordinator coordinator,
+            ImageSizeProber imageSizeProber,
+            ApplicationProperties.ExtractionMode extractionMode,
+            PageExtractor pageExtractor,
+            CrawlScope crawlScope,
+            RobotsPolicy robotsPolicy,
+            RetryScheduler<FrontierEntry> pageRetries,
+            RetryScheduler<String> imageRetries,
+            ValidatorCache validatorCache,
+            CrawlCheckpoint checkpoint,
+            CrawlMetrics metrics
     ) {
         this.images = images;
-        this.minimalImageSizeKb = minimalImageSizeKb;
-        this.urlQueue = urlQueue;
+        this.imageFilter = imageFilter;
+        this.frontier = frontier;
         this.visitedUrls = visitedUrls;
         this.visitedImages = visitedImages;
-        this.producersCount = producersCount;
+        this.balancer = balancer;
+        this.producers = balancer.producers();
         this.producerPool = producerPool;
-        this.maxProducers = maxProducers;
         this.minUrlsGenerateProducer = minUrlsGenerateProducer;
-        this.urlQueue.add(startUrl);
+        this.requestLimiter = requestLimiter;
+        this.coordinator = coordinator;
+        this.imageSizeProber = imageSizeProber;
+        this.extractionMode = extractionMode;
+        this.pageExtractor = pageExtractor;
+        this.crawlScope = crawlScope;
+        this.robotsPolicy = robotsPolicy;
+        this.pageRetries = pageRetries;
+        this.imageRetries = imageRetries;
+        this.validatorCache = validatorCache;
+        this.checkpoint = checkpoint;
+        this.metrics = metrics;
     }
 
     @Override
     public void run() {
+        boolean retired = false;
         try {
-            findAllImages();
+            retired = findAllImages();
         } finally {
-            decrementProducersCount();
+            if (!retired) {
+                decrementProducersCount();
+            }
         }
     }
 
-    public void findAllImages() {
-        while (!urlQueue.isEmpty()) {
+    /**
+     * @return {@code true} when the producer stopped because the balancer lowered the producer limit
+     */
+    public boolean findAllImages() {
+        while (!coordinator.isCrawlFinished()) {
+            if (producers.retireIfOverLimit()) {
+                log.info("{}: Retired, producer count: {}", Thread.currentThread().getName(), producers.getActive());
+                return true;
+            }
             try {
                 spawnNewProducerIfNeeded();
 
-                String currentUrl = urlQueue.pollFirst();
-                if (currentUrl == null || !visitedUrls.add(currentUrl)) {
+                FrontierEntry entry = frontier.poll(IDLE_WAIT_MS, TimeUnit.MILLISECONDS);
+                if (entry == null) {
                     continue;
                 }
 
                 try {
-                    log.info("Scan the page: {}", currentUrl);
-                    Document document = Jsoup.connect(currentUrl).get();
-                    findAndProcessImages(document);
-                    findAndProcessLinks(document);
-                } catch (Exception e) {
-                    visitedUrls.remove(currentUrl);
-                    log.warn("Problem with {} url processing", currentUrl);
+                    processPage(entry);
+                } finally {
+                    coordinator.pageCompleted();
                 }
-
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                log.warn("Producer interrupted");
+                break;
             } catch (Exception e) {
                 log.warn(e.getMessage());
             }
         }
         log.info("{}: That`s all", Thread.currentThread().getName());
+        return false;
     }
 
-    private void spawnNewProducerIfNeeded() {
-        if (shouldSpawnNewProducer()) {
-            String nextUrl = urlQueue.pollFirst();
-            if (nextUrl != null) {
-                producersCount.incrementAndGet();
-                producerPool.submit(new ImageScraperProducer(images, nextUrl, minimalImageSizeKb, urlQueue,
-                        visitedUrls, visitedImages, producersCount, producerPool, maxProducers, minUrlsGenerateProducer));
-                log.info("Spawned new producer for URL: {}", nextUrl);
+    private void processPage(FrontierEntry entry) throws InterruptedException {
+        String currentUrl = entry.url();
+        if (!visitedUrls.add(currentUrl) && !pageRetries.claimRedelivery(entry)) {
+            return;
+        }
+        // checked here rather than on insertion, a robots.txt fetch must not wait inside a page's permit
+        try {
+            if (!robotsPolicy.allows(currentUrl)) {
+                metrics.recordLinkRejected("robots");
+                checkpoint.urlVisited(currentUrl);
+                log.info("Disallowed by robots.txt: {}", currentUrl);
+                return;
+            }
+        } catch (RobotsUnavailableException e) {
+            // not visited yet: the page waits until robots.txt is asked for again, like a failed fetch
+            if (pageRetries.failed(entry, e.getCause(), e.getRetryAfterNanos())) {
+                coordinator.pageScheduled();
             }
+            log.warn("Putting off {}: {}", currentUrl, e.getMessage());
+            return;
         }
-    }
 
-    private boolean shouldSpawnNewProducer() {
-        return producersCount.get() < maxProducers && urlQueue.size() > minUrlsGenerateProducer;
+        try {
+            log.info("Scan the page: {}", currentUrl);
+            CachedResource cached = validatorCache.get(currentUrl).orElse(null);
+            PageUrls page = new PageUrls(entry.depth() + 1);
+            try {
+                Connection.Response response = requestLimiter.call(currentUrl,
+                        hostPermit -> fetchPage(currentUrl, cached, page, hostPermit));
+                if (cached != null && response.statusCode() == HttpURLConnection.HTTP_NOT_MODIFIED) {
+                    metrics.recordPageNotModified();
+                    cached.links().forEach(page::link);
+                    cached.images().forEach(page::image);
+                } else {
+                    validatorCache.put(CachedResource.page(currentUrl, response.header("ETag"),
+                            response.header("Last-Modified"), page.linkUrls, List.copyOf(page.imageUrls)));
+                }
+            } finally {
+                // images found before a failure are already marked as seen
+                processImages(page.probes);
+            }
+            checkpoint.urlVisited(currentUrl);
+            pageRetries.succeeded(entry);
+        } catch (InterruptedException e) {
+            throw e;
+        } catch (Exception e) {
+            // the url stays visited, links to it wait for the retry instead of fetching it again right away
+            if (pageRetries.failed(entry, e)) {
+                coordinator.pageScheduled();
+            }
+            log.warn("Problem with {} url processing", currentUrl);
+        }
     }
 
-
-    private void findAndProcessImages(Document document) {
-        Elements images = document.select("img");
-        for (Element img : images) {
-            String srcset = img.attr("srcset");
-            if (!srcset.isEmpty()) {
-                processSrcset(srcset);
-            } else {
-                String imgUrl = img.absUrl("src");
-                processImage(imgUrl);
+    /**
+     * Revalidates the page when it is cached. In stream mode links reach the frontier and image probes start
+     * while the page is still downloading; probes that would wait for a request permit are deferred, and images
+     * are queued only once the page's permit is released, since a full image queue must not stall a connection.
+     */
+    private Connection.Response fetchPage(String url, CachedResource cached, PageUrls page, HostPermit hostPermit)
+            throws IOException {
+        long startedAt = System.nanoTime();
+        boolean success = false;
+        try {
+            // errors are raised here instead of by jsoup, so the host limiter sees 429 and 503 with Retry-After
+            Connection connection = Jsoup.connect(url).ignoreHttpErrors(true);
+            if (cached != null) {
+                connection.headers(cached.conditionalHeaders());
+            }
+            Connection.Response response = connection.execute();
+            hostPermit.responded(response.statusCode(), response.header("Retry-After"));
+            if (response.statusCode() < HttpURLConnection.HTTP_OK
+                    || response.statusCode() >= HttpURLConnection.HTTP_BAD_REQUEST) {
+                throw new HttpStatusException("HTTP error fetching URL", response.statusCode(), url);
             }
+            if (response.statusCode() != HttpURLConnection.HTTP_NOT_MODIFIED) {
+                extract(response, page);
+            }
+            success = true;
+            return response;
+        } finally {
+            metrics.recordPageFetch(System.nanoTime() - startedAt, success);
         }
     }
 
-    private void processSrcset(String srcset) {
-        String[] srcsetImages = srcset.split(",");
-
-        for (String srcItem : srcsetImages) {
-            String[] parts = srcItem.trim().split("\\s+");
-            String imageUrl = parts[0];
-            processImage(imageUrl);
+    private void extract(Connection.Response response, PageUrls page) throws IOException {
+        if (extractionMode == ApplicationProperties.ExtractionMode.STREAM) {
+            try (StreamParser parser = response.streamParser()) {
+                pageExtractor.stream(parser, page);
+            }
+        } else {
+            Document document = response.parse();
+            pageExtractor.extractImageUrls(document).forEach(page::image);
+            pageExtractor.extractLinkUrls(document).forEach(page::link);
         }
     }
 
-    private void processImage(String imageUrl) {
-        Long imageSize = getImageSize(imageUrl);
-        if (isImageSizeValid(imageSize)
-                && images.add(imageUrl)
-                && visitedImages.add(imageUrl)) {
-            log.info("Adding image: {} with size: {} KB", imageUrl, imageSize);
+    /**
+     * Another producer only helps while some host accepts more requests; once the host limits are used up it
+     * would just wait for a permit. The host limits grow on fast hosts and shrink on struggling ones.
+     */
+    private void spawnNewProducerIfNeeded() {
+        if (frontier.size() > minUrlsGenerateProducer && requestLimiter.hasSpareHostCapacity()
+                && producers.tryAcquire()) {
+            producerPool.submit(new ImageScraperProducer(images, imageFilter, frontier, visitedUrls,
+                    visitedImages, balancer, producerPool, minUrlsGenerateProducer,
+                    requestLimiter, coordinator, imageSizeProber, extractionMode, pageExtractor, crawlScope, robotsPolicy,
+                    pageRetries, imageRetries, validatorCache, checkpoint, metrics));
+            log.info("Spawned new producer, total: {}", producers.getActive());
         }
     }
 
-    private boolean isImageSizeValid(Long imageSize) {
-        return imageSize >= minimalImageSizeKb;
+
+    /**
+     * Hands valid images of the page to consumers as their probes complete.
+     */
+    private void processImages(ImageSizeProber.ProbeBatch probes) throws InterruptedException {
+        while (probes.hasPending()) {
+            queueImage(probes.take());
+        }
     }
 
-    private Long getImageSize(String imageUrl) {
-        try {
-            URL url = new URL(imageUrl);
-            HttpURLConnection connection = (HttpURLConnection) url.openConnection();
-            connection.setRequestMethod("HEAD");
-            connection.connect();
-
-            Long contentLengthInKb = connection.getContentLengthLong() / 1024;
-            connection.disconnect();
-            return contentLengthInKb;
-        } catch (IOException e) {
-            log.warn("Error getting image size: {}", e.getMessage());
-            return -1L;
+    /**
+     * A failed probe goes to the image retries like a failed download; the retried url is queued without
+     * another probe, and a permanent failure is dead-lettered.
+     */
+    private void queueImage(ImageSizeProber.ProbeResult result) throws InterruptedException {
+        if (!result.reachable()) {
+            imageRetries.failed(result.imageUrl(), result.failure());
+            return;
+        }
+        if (isImageAccepted(result)) {
+            // blocks while the queue is full, which slows producers down to the consumers' pace
+            images.put(result.imageUrl());
+            checkpoint.imageQueued(result.imageUrl());
+            log.info("Adding image: {} with size: {} KB", result.imageUrl(), result.sizeKb());
         }
     }
 
-    private void findAndProcessLinks(Document document) {
-        Elements links = document.select("section a[href]");
-        for (Element link : links) {
-            String nextUrl = link.absUrl("href");
-            if (!visitedUrls.contains(nextUrl) && urlQueue.add(nextUrl)) {
-                log.info("Added new scan link: {}", nextUrl);
-            }
+    private boolean isImageAccepted(ImageSizeProber.ProbeResult result) {
+        return imageFilter.acceptsSize(result.sizeKb())
+                && imageFilter.acceptsHeader(result.header());
+    }
+
+    private void processLink(String linkUrl, int depth) {
+        String nextUrl = crawlScope.admit(linkUrl);
+        if (nextUrl == null) {
+            metrics.recordLinkRejected("scope");
+            return;
+        }
+        if (!visitedUrls.contains(nextUrl) && frontier.offer(nextUrl, depth)) {
+            coordinator.pageScheduled();
+            checkpoint.urlScheduled(nextUrl, depth);
+            log.info("Added new scan link: {}", nextUrl);
         }
     }
 
     private void decrementProducersCount() {
-        int remaining = producersCount.decrementAndGet();
+        int remaining = producers.release();
         log.info("Producer count: {}", remaining);
     }
+
+    /**
+     * Hands off the urls of one page as they are found and remembers them for the validator cache.
+     */
+    private class PageUrls implements PageExtractor.PageVisitor {
+        private final int depth;
+        private final ImageSizeProber.ProbeBatch probes = imageSizeProber.newBatch();
+        private final List<String> linkUrls = new ArrayList<>();
+        private final Set<String> imageUrls = new LinkedHashSet<>();
+
+        private PageUrls(int depth) {
+            this.depth = depth;
+        }
+
+        @Override
+        public void image(String imageUrl) {
+            if (!imageUrl.isEmpty() && imageUrls.add(imageUrl) && visitedImages.add(imageUrl)) {
+                probes.add(imageUrl);
+            }
+        }
+
+        @Override
+        public void link(String linkUrl) {
+            linkUrls.add(linkUrl);
+            processLink(linkUrl, depth);
+        }
+    }
 }
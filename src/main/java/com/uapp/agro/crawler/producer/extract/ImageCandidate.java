@@ -0,0 +1,11 @@
+package com.uapp.agro.crawler.producer.extract;
+
+/**
+ * One url a browser could pick for an image.
+ *
+ * @param width   {@code w} descriptor or {@link #UNKNOWN_WIDTH}
+ * @param density {@code x} descriptor, 1 when absent
+ */
+public record ImageCandidate(String url, int width, double density) {
+    public static final int UNKNOWN_WIDTH = -1;
+}
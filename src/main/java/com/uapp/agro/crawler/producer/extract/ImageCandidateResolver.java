@@ -0,0 +1,44 @@
+package com.uapp.agro.crawler.producer.extract;
+
+import com.uapp.agro.crawler.config.ApplicationProperties;
+
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Picks the one candidate of a logical image that gets probed and processed. Candidates are compared by
+ * width: a {@code w} descriptor is taken as is, an {@code x} descriptor is multiplied by the base width, which
+ * is the {@code width} attribute of the image when it has one and the target width otherwise.
+ */
+public class ImageCandidateResolver {
+    private final ApplicationProperties.SrcsetPolicy policy;
+    private final int targetWidth;
+
+    public ImageCandidateResolver(ApplicationProperties.SrcsetPolicy policy, int targetWidth) {
+        this.policy = policy;
+        this.targetWidth = targetWidth;
+    }
+
+    /**
+     * @param baseWidth {@link ImageCandidate#UNKNOWN_WIDTH} when the image declares no width
+     * @return {@code null} when there are no candidates
+     */
+    public ImageCandidate resolve(List<ImageCandidate> candidates, int baseWidth) {
+        int densityBase = baseWidth > 0 ? baseWidth : targetWidth;
+        Comparator<ImageCandidate> byWidth = Comparator.comparingDouble(candidate -> widthOf(candidate, densityBase));
+        Comparator<ImageCandidate> order = switch (policy) {
+            case LARGEST -> byWidth.reversed();
+            case SMALLEST -> byWidth;
+            case CLOSEST -> Comparator.comparingDouble(
+                    candidate -> Math.abs(widthOf(candidate, densityBase) - targetWidth));
+        };
+        // min keeps the first of equal candidates, i.e. the one the page lists first
+        return candidates.stream().min(order).orElse(null);
+    }
+
+    private static double widthOf(ImageCandidate candidate, int densityBase) {
+        return candidate.width() != ImageCandidate.UNKNOWN_WIDTH
+                ? candidate.width()
+                : candidate.density() * densityBase;
+    }
+}
@@ -0,0 +1,165 @@
+package com.uapp.agro.crawler.producer.extract;
+
+import com.uapp.agro.crawler.scraper.image.ImageFilter;
+import org.jsoup.internal.StringUtil;
+import org.jsoup.nodes.Document;
+import org.jsoup.nodes.Element;
+import org.jsoup.parser.StreamParser;
+import org.jsoup.select.Evaluator;
+import org.jsoup.select.QueryParser;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Consumer;
+
+/**
+ * Pulls image and link urls out of a parsed page. Has no state and does no I/O, so it can be shared by all
+ * producers and benchmarked on saved pages.
+ * <p>
+ * Every {@code img} yields one url: its {@code src} and {@code srcset} candidates, together with the
+ * {@code srcset} candidates of the {@code source} elements of an enclosing {@code picture}, are resolved to a
+ * single one. Sources whose {@code type} names a format that is not wanted are left out.
+ */
+public class PageExtractor {
+    private static final String IMAGE_SELECTOR = "img";
+    private static final String PICTURE_TAG = "picture";
+    private static final String SOURCE_TAG = "source";
+    private static final String LINK_SELECTOR = "section a[href]";
+    private static final Evaluator LINK_EVALUATOR = QueryParser.parse(LINK_SELECTOR);
+
+    private final ImageCandidateResolver resolver;
+    private final ImageFilter imageFilter;
+
+    public PageExtractor(ImageCandidateResolver resolver, ImageFilter imageFilter) {
+        this.resolver = resolver;
+        this.imageFilter = imageFilter;
+    }
+
+    /**
+     * @return image urls in page order
+     */
+    public Set<String> extractImageUrls(Document document) {
+        Set<String> imageUrls = new LinkedHashSet<>();
+        for (Element img : document.select(IMAGE_SELECTOR)) {
+            imageUrlOf(img, imageUrls::add);
+        }
+        return imageUrls;
+    }
+
+    public List<String> extractLinkUrls(Document document) {
+        List<String> linkUrls = new ArrayList<>();
+        for (Element link : document.select(LINK_SELECTOR)) {
+            linkUrls.add(link.absUrl("href"));
+        }
+        return linkUrls;
+    }
+
+    /**
+     * Reports the same urls as {@link #extractImageUrls} and {@link #extractLinkUrls} while the page is parsed,
+     * each as soon as its element is complete. Every completed element is removed from the tree, so only the
+     * chain of open ancestors stays in memory however large the page is. Images may be reported more than once.
+     * An image inside {@code picture} is reported when the picture closes, since its sources are needed too.
+     */
+    public void stream(StreamParser parser, PageVisitor visitor) throws IOException {
+        try {
+            Iterator<Element> elements = parser.iterator();
+            while (elements.hasNext()) {
+                Element element = elements.next();
+                if (isInPicture(element) && (element.nameIs(IMAGE_SELECTOR) || element.nameIs(SOURCE_TAG))) {
+                    continue;
+                }
+                if (element.nameIs(IMAGE_SELECTOR)) {
+                    imageUrlOf(element, visitor::image);
+                } else if (element.nameIs(PICTURE_TAG)) {
+                    for (Element img : element.children()) {
+                        if (img.nameIs(IMAGE_SELECTOR)) {
+                            imageUrlOf(img, visitor::image);
+                        }
+                    }
+                } else if (element.hasAttr("href") && element.is(LINK_EVALUATOR)) {
+                    visitor.link(element.absUrl("href"));
+                }
+                element.remove();
+            }
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    private void imageUrlOf(Element img, Consumer<String> imageUrls) {
+        List<ImageCandidate> candidates = new ArrayList<>();
+        if (isInPicture(img)) {
+            for (Element source : img.parent().children()) {
+                if (source.nameIs(SOURCE_TAG) && isWantedType(source.attr("type"))) {
+                    addSrcset(source, candidates);
+                }
+            }
+        }
+        addSrcset(img, candidates);
+        String src = img.absUrl("src");
+        if (!src.isEmpty() && candidates.stream().noneMatch(PageExtractor::isDefaultDensity)) {
+            candidates.add(new ImageCandidate(src, ImageCandidate.UNKNOWN_WIDTH, 1));
+        }
+
+        ImageCandidate chosen = resolver.resolve(candidates, declaredWidth(img));
+        if (chosen != null) {
+            imageUrls.accept(chosen.url());
+        }
+    }
+
+    private void addSrcset(Element element, List<ImageCandidate> candidates) {
+        String srcset = element.attr("srcset");
+        if (srcset.isEmpty()) {
+            return;
+        }
+        for (ImageCandidate candidate : SrcsetParser.parse(srcset)) {
+            String url = StringUtil.resolve(element.baseUri(), candidate.url());
+            if (!url.isEmpty()) {
+                candidates.add(new ImageCandidate(url, candidate.width(), candidate.density()));
+            }
+        }
+    }
+
+    /**
+     * @param type MIME type such as {@code image/webp}, empty when the source does not declare one
+     */
+    private boolean isWantedType(String type) {
+        if (type.isBlank()) {
+            return true;
+        }
+        int parameters = type.indexOf(';');
+        String mimeType = (parameters < 0 ? type : type.substring(0, parameters)).trim();
+        return imageFilter.acceptsFormat(mimeType.substring(mimeType.indexOf('/') + 1));
+    }
+
+    private static boolean isInPicture(Element element) {
+        Element parent = element.parent();
+        return parent != null && parent.nameIs(PICTURE_TAG);
+    }
+
+    private static boolean isDefaultDensity(ImageCandidate candidate) {
+        return candidate.width() == ImageCandidate.UNKNOWN_WIDTH && candidate.density() == 1;
+    }
+
+    private static int declaredWidth(Element img) {
+        try {
+            return Integer.parseInt(img.attr("width").trim());
+        } catch (NumberFormatException e) {
+            return ImageCandidate.UNKNOWN_WIDTH;
+        }
+    }
+
+    /**
+     * Receives urls found by {@link #stream}, on the parsing thread.
+     */
+    public interface PageVisitor {
+        void image(String imageUrl);
+
+        void link(String linkUrl);
+    }
+}
@@ -0,0 +1,120 @@
+package com.uapp.agro.crawler.producer.extract;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Splits a {@code srcset} attribute the way browsers do: a url is a run of non-whitespace, so it may contain
+ * commas, and its descriptors run up to the next comma outside parentheses. Candidates with a malformed or
+ * duplicate descriptor are dropped, {@code h} descriptors are ignored.
+ */
+public final class SrcsetParser {
+
+    private SrcsetParser() {
+    }
+
+    public static List<ImageCandidate> parse(String srcset) {
+        List<ImageCandidate> candidates = new ArrayList<>();
+        int length = srcset.length();
+        int position = 0;
+        while (true) {
+            while (position < length && (isWhitespace(srcset.charAt(position)) || srcset.charAt(position) == ',')) {
+                position++;
+            }
+            if (position >= length) {
+                return candidates;
+            }
+
+            int urlStart = position;
+            while (position < length && !isWhitespace(srcset.charAt(position))) {
+                position++;
+            }
+            String url = srcset.substring(urlStart, position);
+            List<String> descriptors = new ArrayList<>();
+            if (url.endsWith(",")) {
+                url = stripTrailingCommas(url);
+            } else {
+                position = collectDescriptors(srcset, position, descriptors);
+            }
+            if (!url.isEmpty()) {
+                ImageCandidate candidate = candidate(url, descriptors);
+                if (candidate != null) {
+                    candidates.add(candidate);
+                }
+            }
+        }
+    }
+
+    /**
+     * @return position after the comma that ended the descriptors, or the end of the attribute
+     */
+    private static int collectDescriptors(String srcset, int position, List<String> descriptors) {
+        StringBuilder token = new StringBuilder();
+        boolean inParentheses = false;
+        while (position < srcset.length()) {
+            char c = srcset.charAt(position++);
+            if (inParentheses) {
+                inParentheses = c != ')';
+                token.append(c);
+            } else if (isWhitespace(c)) {
+                flush(token, descriptors);
+            } else if (c == ',') {
+                break;
+            } else {
+                inParentheses = c == '(';
+                token.append(c);
+            }
+        }
+        flush(token, descriptors);
+        return position;
+    }
+
+    private static ImageCandidate candidate(String url, List<String> descriptors) {
+        int width = ImageCandidate.UNKNOWN_WIDTH;
+        double density = Double.NaN;
+        for (String descriptor : descriptors) {
+            char unit = descriptor.charAt(descriptor.length() - 1);
+            String value = descriptor.substring(0, descriptor.length() - 1);
+            try {
+                if (unit == 'w' && width == ImageCandidate.UNKNOWN_WIDTH && Double.isNaN(density)) {
+                    width = Integer.parseInt(value);
+                    if (width <= 0) {
+                        return null;
+                    }
+                } else if (unit == 'x' && Double.isNaN(density) && width == ImageCandidate.UNKNOWN_WIDTH) {
+                    density = Double.parseDouble(value);
+                    if (!(density > 0)) {
+                        return null;
+                    }
+                } else if (unit != 'h') {
+                    return null;
+                }
+            } catch (NumberFormatException e) {
+                return null;
+            }
+        }
+        return new ImageCandidate(url, width, Double.isNaN(density) ? 1 : density);
+    }
+
+    private static void flush(StringBuilder token, List<String> descriptors) {
+        if (!token.isEmpty()) {
+            descriptors.add(token.toString());
+            token.setLength(0);
+        }
+    }
+
+    private static String stripTrailingCommas(String url) {
+        int end = url.length();
+        while (end > 0 && url.charAt(end - 1) == ',') {
+            end--;
+        }
+        return url.substring(0, end);
+    }
+
+    /**
+     * ASCII whitespace as HTML defines it.
+     */
+    private static boolean isWhitespace(char c) {
+        return c == ' ' || c == '\t' || c == '\n' || c == '\f' || c == '\r';
+    }
+}
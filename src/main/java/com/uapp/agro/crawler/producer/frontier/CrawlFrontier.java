@@ -0,0 +1,24 @@
+package com.uapp.agro.crawler.producer.frontier;
+
+import java.util.concurrent.TimeUnit;
+
+public interface CrawlFrontier {
+
+    /**
+     * @return {@code false} when the url is already waiting in the frontier
+     */
+    boolean offer(String url, int depth);
+
+    /**
+     * Waits up to the timeout for a url whose host may be fetched now.
+     *
+     * @return the next entry or {@code null} when nothing became ready in time
+     */
+    FrontierEntry poll(long timeout, TimeUnit unit) throws InterruptedException;
+
+    int size();
+
+    default boolean isEmpty() {
+        return size() == 0;
+    }
+}
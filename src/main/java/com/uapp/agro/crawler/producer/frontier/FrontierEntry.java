@@ -0,0 +1,7 @@
+package com.uapp.agro.crawler.producer.frontier;
+
+/**
+ * @param depth number of links followed from a start url
+ */
+public record FrontierEntry(String url, int depth) {
+}
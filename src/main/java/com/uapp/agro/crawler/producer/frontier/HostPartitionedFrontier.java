@@ -0,0 +1,220 @@
+package com.uapp.agro.crawler.producer.frontier;
+
+import com.uapp.agro.crawler.scraper.seen.FingerprintSeenSet;
+import com.uapp.agro.crawler.scraper.seen.SeenSet;
+
+import java.net.URI;
+import java.util.Comparator;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.DelayQueue;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Keeps one breadth-first queue per host and hands hosts out through a delay queue, so a host is
+ * dispatched again only after {@code hostDelay} has passed since its previous url was taken.
+ * Adding a url locks only its host queue, plus the delay queue when the host was idle. A poll takes the
+ * delay queue lock twice, to take the next ready host and to put it back with its new ready time, so polls
+ * of all producers still meet there; what they no longer share is one ordered queue of every url.
+ * <p>
+ * A host whose queue ran empty stays in the delay queue until its delay is over, so a url arriving
+ * meanwhile still waits for it, and is then dropped; only hosts with queued urls or a pending delay are kept.
+ * <p>
+ * At most {@code memoryCapacity} urls are kept in the host queues. Further urls go to the {@code overflow}
+ * queue (usually a {@link com.uapp.agro.crawler.scraper.queue.DiskSpillingQueue}) and are moved back once
+ * the host queues drain below half of the capacity. Only urls in the host queues are deduplicated by
+ * fingerprint, so that set stays within the memory capacity too. A url that spills is checked against it but
+ * not added, so it may duplicate another spilled url; the visited set drops the copy when it is taken, which
+ * costs a poll instead of heap per spilled url.
+ */
+public class HostPartitionedFrontier implements CrawlFrontier {
+    private static final Comparator<QueuedUrl> BREADTH_FIRST = Comparator.comparingInt(QueuedUrl::depth)
+            .thenComparingLong(QueuedUrl::sequence);
+
+    private static final String DEPTH_SEPARATOR = "\t";
+
+    private final long hostDelayNanos;
+    private final int memoryCapacity;
+    private final Queue<String> overflow;
+    private final Map<String, HostQueue> hosts = new ConcurrentHashMap<>();
+    private final DelayQueue<HostQueue> readyHosts = new DelayQueue<>();
+    private final SeenSet queuedUrls;
+    private final AtomicInteger inMemory = new AtomicInteger();
+    private final AtomicLong sequence = new AtomicLong();
+
+    public HostPartitionedFrontier(long hostDelay, TimeUnit unit, int memoryCapacity, Queue<String> overflow) {
+        this.hostDelayNanos = unit.toNanos(hostDelay);
+        this.memoryCapacity = memoryCapacity;
+        this.overflow = overflow;
+        this.queuedUrls = new FingerprintSeenSet(Math.min(memoryCapacity, 1 << 20));
+    }
+
+    @Override
+    public boolean offer(String url, int depth) {
+        if (overflow.isEmpty() && reserveMemorySlot()) {
+            if (!queuedUrls.add(url)) {
+                inMemory.decrementAndGet();
+                return false;
+            }
+            enqueue(url, depth);
+        } else {
+            if (queuedUrls.contains(url)) {
+                return false;
+            }
+            overflow.offer(depth + DEPTH_SEPARATOR + url);
+        }
+        return true;
+    }
+
+    @Override
+    public FrontierEntry poll(long timeout, TimeUnit unit) throws InterruptedException {
+        refillFromOverflow();
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        while (true) {
+            HostQueue host = readyHosts.poll(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+            if (host == null) {
+                return null;
+            }
+            QueuedUrl next = host.takeAndReschedule();
+            if (next != null) {
+                queuedUrls.remove(next.url());
+                inMemory.decrementAndGet();
+                return new FrontierEntry(next.url(), next.depth());
+            }
+        }
+    }
+
+    @Override
+    public int size() {
+        return inMemory.get() + overflow.size();
+    }
+
+    int hostCount() {
+        return hosts.size();
+    }
+
+    /**
+     * Counts the url against the memory capacity before it is queued, so concurrent offers can not overshoot.
+     */
+    private boolean reserveMemorySlot() {
+        int current;
+        do {
+            current = inMemory.get();
+            if (current >= memoryCapacity) {
+                return false;
+            }
+        } while (!inMemory.compareAndSet(current, current + 1));
+        return true;
+    }
+
+    /**
+     * The url has a memory slot reserved already.
+     */
+    private void enqueue(String url, int depth) {
+        QueuedUrl queued = new QueuedUrl(url, depth, sequence.getAndIncrement());
+        String host = hostOf(url);
+        while (!hosts.computeIfAbsent(host, HostQueue::new).add(queued)) {
+            // the host queue was dropped meanwhile, the next lookup creates a new one
+            Thread.onSpinWait();
+        }
+    }
+
+    private void refillFromOverflow() {
+        while (inMemory.get() < memoryCapacity / 2) {
+            if (!reserveMemorySlot()) {
+                return;
+            }
+            String spilled = overflow.poll();
+            if (spilled == null) {
+                inMemory.decrementAndGet();
+                return;
+            }
+            int separator = spilled.indexOf(DEPTH_SEPARATOR);
+            String url = spilled.substring(separator + DEPTH_SEPARATOR.length());
+            // queued even when it is a duplicate: it was accepted, and counted as scheduled, when it spilled
+            queuedUrls.add(url);
+            enqueue(url, Integer.parseInt(spilled, 0, separator, 10));
+        }
+    }
+
+    static String hostOf(String url) {
+        try {
+            String host = URI.create(url).getHost();
+            return host == null ? "" : host.toLowerCase(Locale.ROOT);
+        } catch (IllegalArgumentException e) {
+            return "";
+        }
+    }
+
+    private record QueuedUrl(String url, int depth, long sequence) {
+    }
+
+    /**
+     * A host is in {@link #readyHosts} while it has queued urls or its delay is not over yet, and its ready
+     * time is only changed while it is out of the delay queue. Once dropped from {@link #hosts} it takes no
+     * more urls.
+     */
+    private final class HostQueue implements Delayed {
+        private final String host;
+        private final PriorityQueue<QueuedUrl> urls = new PriorityQueue<>(BREADTH_FIRST);
+        private boolean scheduled;
+        private boolean dropped;
+        private volatile long readyAtNanos = System.nanoTime();
+
+        private HostQueue(String host) {
+            this.host = host;
+        }
+
+        /**
+         * @return {@code false} when the host was dropped and a new queue has to take the url
+         */
+        synchronized boolean add(QueuedUrl url) {
+            if (dropped) {
+                return false;
+            }
+            urls.add(url);
+            if (!scheduled) {
+                scheduled = true;
+                readyHosts.add(this);
+            }
+            return true;
+        }
+
+        /**
+         * @return the next url, or {@code null} when the host's delay ran out without new urls and it was dropped
+         */
+        synchronized QueuedUrl takeAndReschedule() {
+            QueuedUrl next = urls.poll();
+            if (next == null || urls.isEmpty() && hostDelayNanos == 0) {
+                scheduled = false;
+                dropped = true;
+                hosts.remove(host, this);
+                return next;
+            }
+            readyAtNanos = System.nanoTime() + hostDelayNanos;
+            readyHosts.add(this);
+            return next;
+        }
+
+        @Override
+        public long getDelay(TimeUnit unit) {
+            return unit.convert(readyAtNanos - System.nanoTime(), TimeUnit.NANOSECONDS);
+        }
+
+        @Override
+        public int compareTo(Delayed other) {
+            return Long.compare(readyAtNanos, ((HostQueue) other).readyAtNanos);
+        }
+
+        @Override
+        public String toString() {
+            return host;
+        }
+    }
+}
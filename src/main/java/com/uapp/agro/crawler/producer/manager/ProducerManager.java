@@ -1,13 +1,25 @@
 package com.uapp.agro.crawler.producer.manager;
 
+import com.uapp.agro.crawler.scraper.retry.RetryScheduler;
+
+import java.util.List;
 import java.util.concurrent.BlockingQueue;
-import java.util.concurrent.atomic.AtomicInteger;
 
 public interface ProducerManager {
 
-    void startProducer(String startUrl);
-
-    AtomicInteger getProducersCount();
+    void startProducer(List<String> startUrls);
 
     BlockingQueue<String> getImages();
+
+    /**
+     * Failed probes and downloads of images, which are handed back to {@link #getImages()}.
+     */
+    RetryScheduler<String> getImageRetries();
+
+    /**
+     * @return {@code true} when restored work did not fit and was left in the checkpoint for the next run
+     */
+    boolean hasDeferredWork();
+
+    void close();
 }
@@ -2,40 +2,233 @@ package com.uapp.agro.crawler.producer.manager.managerImpl;
 
 import com.uapp.agro.crawler.config.ScraperConfiguration;
 import com.uapp.agro.crawler.producer.ImageScraperProducer;
+import com.uapp.agro.crawler.producer.extract.ImageCandidateResolver;
+import com.uapp.agro.crawler.producer.extract.PageExtractor;
+import com.uapp.agro.crawler.producer.frontier.CrawlFrontier;
+import com.uapp.agro.crawler.producer.frontier.FrontierEntry;
+import com.uapp.agro.crawler.producer.frontier.HostPartitionedFrontier;
 import com.uapp.agro.crawler.producer.manager.ProducerManager;
-import lombok.RequiredArgsConstructor;
+import com.uapp.agro.crawler.producer.probe.ImageSizeProber;
+import com.uapp.agro.crawler.producer.scope.CrawlScope;
+import com.uapp.agro.crawler.scraper.balancer.PipelineBalancer;
+import com.uapp.agro.crawler.scraper.cache.ValidatorCache;
+import com.uapp.agro.crawler.scraper.checkpoint.CrawlCheckpoint;
+import com.uapp.agro.crawler.scraper.coordinator.CrawlCoordinator;
+import com.uapp.agro.crawler.scraper.image.ImageFilter;
+import com.uapp.agro.crawler.scraper.limiter.RequestLimiter;
+import com.uapp.agro.crawler.scraper.metrics.CrawlMetrics;
+import com.uapp.agro.crawler.scraper.queue.DiskSpillingQueue;
+import com.uapp.agro.crawler.scraper.retry.DeadLetterStore;
+import com.uapp.agro.crawler.scraper.retry.RetryPolicy;
+import com.uapp.agro.crawler.scraper.retry.RetryScheduler;
+import com.uapp.agro.crawler.scraper.robots.RobotsPolicy;
+import com.uapp.agro.crawler.scraper.robots.impl.CachedRobotsPolicy;
+import com.uapp.agro.crawler.scraper.robots.impl.NoopRobotsPolicy;
+import com.uapp.agro.crawler.scraper.seen.SeenSet;
+import com.uapp.agro.crawler.scraper.seen.SeenSets;
+import lombok.extern.slf4j.Slf4j;
 
-import java.util.Set;
+import java.io.IOException;
+import java.net.http.HttpClient;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.Objects;
 import java.util.concurrent.*;
-import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
 
-@RequiredArgsConstructor
+@Slf4j
 public class ProducerManagerImpl implements ProducerManager {
+    private static final int FRONTIER_OVERFLOW_HEAD_CAPACITY = 1024;
+
     private final ScraperConfiguration config;
     private final ExecutorService executorService;
-    private final BlockingQueue<String> images = new LinkedBlockingQueue<>();
-    private final Set<String> visitedUrls = ConcurrentHashMap.newKeySet();
-    private final Set<String> visitedImages = ConcurrentHashMap.newKeySet();
-    private final ConcurrentSkipListSet<String> urlQueue = new ConcurrentSkipListSet<>();
-    private final AtomicInteger producersCount = new AtomicInteger(1);
+    private final RequestLimiter requestLimiter;
+    private final CrawlCoordinator coordinator;
+    private final CrawlCheckpoint checkpoint;
+    private final SeenSet processedImages;
+    private final BlockingQueue<String> images;
+    private final SeenSet visitedUrls;
+    private final SeenSet visitedImages;
+    private final CrawlFrontier frontier;
+    private final PipelineBalancer balancer;
+    private final ValidatorCache validatorCache;
+    private final CrawlMetrics metrics;
+    private final ImageSizeProber imageSizeProber;
+    private final RobotsPolicy robotsPolicy;
+    private final RetryScheduler<FrontierEntry> pageRetries;
+    private final RetryScheduler<String> imageRetries;
+    private volatile boolean deferredWork;
 
+    public ProducerManagerImpl(ScraperConfiguration config, ExecutorService executorService, HttpClient httpClient,
+                               RequestLimiter requestLimiter, CrawlCoordinator coordinator, CrawlCheckpoint checkpoint,
+                               SeenSet processedImages, PipelineBalancer balancer, ValidatorCache validatorCache,
+                               DeadLetterStore deadLetters, CrawlMetrics metrics) {
+        this.config = config;
+        this.executorService = executorService;
+        this.requestLimiter = requestLimiter;
+        this.coordinator = coordinator;
+        this.checkpoint = checkpoint;
+        this.processedImages = processedImages;
+        this.balancer = balancer;
+        this.validatorCache = validatorCache;
+        this.metrics = metrics;
+        this.visitedUrls = SeenSets.create(config);
+        this.visitedImages = SeenSets.create(config);
+        this.images = createImageQueue(config);
+        this.frontier = createFrontier(config);
+        this.imageSizeProber = new ImageSizeProber(httpClient, requestLimiter, config.getProbeMode(), config.getProbeRangeBytes(),
+                config.getMaxInFlightProbes(), validatorCache, metrics);
+        this.robotsPolicy = createRobotsPolicy(config, httpClient, requestLimiter);
+        this.pageRetries = new RetryScheduler<>("page", FrontierEntry::url, RetryPolicy.of(config), deadLetters,
+                coordinator, metrics, this::redeliverPage);
+        this.imageRetries = new RetryScheduler<>("image", Function.identity(), RetryPolicy.of(config), deadLetters,
+                coordinator, metrics, this::redeliverImage);
+        metrics.gaugeQueueDepth("frontier", frontier, CrawlFrontier::size);
+        metrics.gaugeQueueDepth("images", images, BlockingQueue::size);
+    }
 
     @Override
-    public void startProducer(String startUrl) {
-        executorService.submit(new ImageScraperProducer(images, startUrl, config.getMinImageSize(),
-                urlQueue, visitedUrls, visitedImages, producersCount, executorService,
-                config.getMaxProducerThreadCount(), config.getMinUrlsGenerateProducer()));
+    public void startProducer(List<String> startUrls) {
+        CrawlScope crawlScope = CrawlScope.of(config, startUrls);
+        // holds the crawl open while seeding, so a fully restored crawl still finishes
+        coordinator.pageScheduled();
+        try {
+            restoreCheckpoint();
+            startUrls.stream()
+                    .map(crawlScope::admit)
+                    .filter(Objects::nonNull)
+                    .filter(startUrl -> !visitedUrls.contains(startUrl) && frontier.offer(startUrl, 0))
+                    .forEach(startUrl -> {
+                        coordinator.pageScheduled();
+                        checkpoint.urlScheduled(startUrl, 0);
+                    });
+        } finally {
+            coordinator.pageCompleted();
+        }
+        balancer.producers().acquire();
+        ImageFilter imageFilter = ImageFilter.of(config);
+        PageExtractor pageExtractor = new PageExtractor(
+                new ImageCandidateResolver(config.getSrcsetPolicy(), config.getSrcsetTargetWidth()), imageFilter);
+        executorService.submit(new ImageScraperProducer(images, imageFilter,
+                frontier, visitedUrls, visitedImages, balancer, executorService,
+                config.getMinUrlsGenerateProducer(), requestLimiter, coordinator, imageSizeProber, config.getExtractionMode(),
+                pageExtractor, crawlScope, robotsPolicy, pageRetries, imageRetries, validatorCache, checkpoint, metrics));
     }
 
-    @Override
-    public AtomicInteger getProducersCount() {
-        return producersCount;
+    /**
+     * The page was scheduled again when its attempt failed, so it only completes here when it is already waiting
+     * in the frontier.
+     */
+    private boolean redeliverPage(FrontierEntry entry) {
+        if (!frontier.offer(entry.url(), entry.depth())) {
+            coordinator.pageCompleted();
+        }
+        return true;
+    }
+
+    /**
+     * @return {@code false} when interrupted by {@link RetryScheduler#close()} while the image queue is full
+     */
+    private boolean redeliverImage(String imageUrl) {
+        try {
+            images.put(imageUrl);
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    private void restoreCheckpoint() {
+        AtomicLong deferredImages = new AtomicLong();
+        try {
+            checkpoint.restore(new CrawlCheckpoint.RestoreTarget() {
+                @Override
+                public void visitedUrl(String url) {
+                    visitedUrls.add(url);
+                }
+
+                @Override
+                public void processedImage(String imageUrl) {
+                    processedImages.add(imageUrl);
+                    visitedImages.add(imageUrl);
+                }
+
+                @Override
+                public void pendingUrl(String url, int depth) {
+                    if (frontier.offer(url, depth)) {
+                        coordinator.pageScheduled();
+                    }
+                }
+
+                @Override
+                public void pendingImage(String imageUrl) {
+                    // restored before consumers run, so a full queue must not block; the rest stays pending
+                    if (visitedImages.add(imageUrl) && !images.offer(imageUrl)) {
+                        deferredImages.incrementAndGet();
+                    }
+                }
+            });
+        } catch (IOException e) {
+            log.warn("Can not restore crawl checkpoint, starting from scratch: {}", e.getMessage());
+        }
+        if (deferredImages.get() > 0) {
+            deferredWork = true;
+            log.warn("Image queue is full, {} restored images are left for the next run", deferredImages.get());
+        }
+    }
+
+    private static RobotsPolicy createRobotsPolicy(ScraperConfiguration config, HttpClient httpClient,
+                                                   RequestLimiter requestLimiter) {
+        if (!config.isRobotsEnabled()) {
+            return new NoopRobotsPolicy();
+        }
+        return new CachedRobotsPolicy(httpClient, requestLimiter, config.getRobotsUserAgent(),
+                Duration.ofMillis(config.getRobotsTtlMs()), Duration.ofMillis(config.getRobotsErrorTtlMs()),
+                config.getRobotsMaxEntries());
+    }
+
+    private static BlockingQueue<String> createImageQueue(ScraperConfiguration config) {
+        if (!config.isSpillEnabled()) {
+            return new LinkedBlockingQueue<>(config.getImageQueueCapacity());
+        }
+        return new DiskSpillingQueue(config.getImageQueueMemoryCapacity(), config.getImageQueueCapacity(),
+                Path.of(config.getSpillDirectory(), "images"), config.getSpillSegmentSizeKb() * 1024);
+    }
+
+    private static CrawlFrontier createFrontier(ScraperConfiguration config) {
+        if (!config.isSpillEnabled()) {
+            return new HostPartitionedFrontier(config.getHostDelayMs(), TimeUnit.MILLISECONDS,
+                    Integer.MAX_VALUE, new ConcurrentLinkedQueue<>());
+        }
+        DiskSpillingQueue overflow = new DiskSpillingQueue(FRONTIER_OVERFLOW_HEAD_CAPACITY,
+                Path.of(config.getSpillDirectory(), "frontier"), config.getSpillSegmentSizeKb() * 1024);
+        return new HostPartitionedFrontier(config.getHostDelayMs(), TimeUnit.MILLISECONDS,
+                config.getFrontierMemoryCapacity(), overflow);
     }
 
     @Override
     public BlockingQueue<String> getImages() {
         return images;
     }
+
+    @Override
+    public RetryScheduler<String> getImageRetries() {
+        return imageRetries;
+    }
+
+    @Override
+    public boolean hasDeferredWork() {
+        return deferredWork;
+    }
+
+    @Override
+    public void close() {
+        pageRetries.close();
+        imageRetries.close();
+    }
 }
 
 
@@ -0,0 +1,286 @@
+package com.uapp.agro.crawler.producer.probe;
+
+import com.uapp.agro.crawler.config.ApplicationProperties;
+import com.uapp.agro.crawler.scraper.cache.CachedResource;
+import com.uapp.agro.crawler.scraper.cache.ValidatorCache;
+import com.uapp.agro.crawler.scraper.image.ImageFilter;
+import com.uapp.agro.crawler.scraper.image.ImageHeader;
+import com.uapp.agro.crawler.scraper.limiter.HostPermit;
+import com.uapp.agro.crawler.scraper.limiter.RequestLimiter;
+import com.uapp.agro.crawler.scraper.metrics.CrawlMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.jsoup.HttpStatusException;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.net.HttpURLConnection;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Probes a batch of image urls concurrently over the shared keep-alive {@link HttpClient}. At most
+ * {@code maxInFlight} probes run at once across all producers.
+ * <ul>
+ *     <li>{@link ApplicationProperties.ProbeMode#NONE} makes no request and reports every url with an unknown
+ *     size, leaving the checks to the download.</li>
+ *     <li>{@link ApplicationProperties.ProbeMode#HEAD} reads the announced size. Images known to the validator
+ *     cache are probed conditionally, a 304 reports the cached length.</li>
+ *     <li>{@link ApplicationProperties.ProbeMode#RANGE} fetches the first {@code rangeBytes} and reads the real
+ *     format and dimensions from them.</li>
+ * </ul>
+ */
+@Slf4j
+public class ImageSizeProber {
+    private static final Duration PROBE_TIMEOUT = Duration.ofSeconds(10);
+
+    private final HttpClient httpClient;
+    private final RequestLimiter requestLimiter;
+    private final ApplicationProperties.ProbeMode probeMode;
+    private final int rangeBytes;
+    private final Semaphore inFlight;
+    private final ValidatorCache validatorCache;
+    private final CrawlMetrics metrics;
+
+    public ImageSizeProber(HttpClient httpClient, RequestLimiter requestLimiter,
+                           ApplicationProperties.ProbeMode probeMode, int rangeBytes, int maxInFlight,
+                           ValidatorCache validatorCache, CrawlMetrics metrics) {
+        this.httpClient = httpClient;
+        this.requestLimiter = requestLimiter;
+        this.probeMode = probeMode;
+        this.rangeBytes = rangeBytes;
+        this.inFlight = new Semaphore(maxInFlight);
+        this.validatorCache = validatorCache;
+        this.metrics = metrics;
+    }
+
+    /**
+     * Starts a batch for the images of one page. Urls arrive one by one, possibly while the caller holds a
+     * request permit for a page that is still streaming in.
+     */
+    public ProbeBatch newBatch() {
+        return new ProbeBatch();
+    }
+
+    private void start(String imageUrl, BlockingQueue<ProbeResult> results) throws InterruptedException {
+        if (probeMode == ApplicationProperties.ProbeMode.NONE) {
+            results.add(ProbeResult.unknownSize(imageUrl));
+            return;
+        }
+        inFlight.acquire();
+        CompletableFuture<ProbeResult> probe;
+        try {
+            probe = requestLimiter.callAsync(imageUrl, hostPermit -> probe(imageUrl, hostPermit));
+        } catch (IllegalArgumentException | InterruptedIOException e) {
+            probe = CompletableFuture.failedFuture(e);
+        }
+        collect(imageUrl, probe, results);
+    }
+
+    /**
+     * @return {@code false} when no probe slot or request permit was free, nothing was started then
+     */
+    private boolean tryStart(String imageUrl, BlockingQueue<ProbeResult> results) {
+        if (probeMode == ApplicationProperties.ProbeMode.NONE) {
+            results.add(ProbeResult.unknownSize(imageUrl));
+            return true;
+        }
+        if (!inFlight.tryAcquire()) {
+            return false;
+        }
+        CompletableFuture<ProbeResult> probe;
+        try {
+            probe = requestLimiter.tryCallAsync(imageUrl, hostPermit -> probe(imageUrl, hostPermit));
+        } catch (IllegalArgumentException e) {
+            probe = CompletableFuture.failedFuture(e);
+        }
+        if (probe == null) {
+            inFlight.release();
+            return false;
+        }
+        collect(imageUrl, probe, results);
+        return true;
+    }
+
+    /**
+     * The returned future completes once the response is fully handled, so the request permit covers
+     * reading the ranged body too.
+     */
+    private CompletableFuture<ProbeResult> probe(String imageUrl, HostPermit hostPermit) {
+        if (probeMode == ApplicationProperties.ProbeMode.RANGE) {
+            return httpClient.sendAsync(rangeRequest(imageUrl), HttpResponse.BodyHandlers.ofInputStream())
+                    .thenApply(response -> rangeResult(imageUrl, responded(hostPermit, response)));
+        }
+        return httpClient.sendAsync(headRequest(imageUrl), HttpResponse.BodyHandlers.discarding())
+                .thenApply(response -> {
+                    responded(hostPermit, response);
+                    checkHeadStatus(imageUrl, response.statusCode());
+                    return ProbeResult.of(imageUrl, sizeKbOf(imageUrl, response), null);
+                });
+    }
+
+    /**
+     * A 404 or 503 answer describes an error page, its Content-Length says nothing about the image.
+     */
+    private static void checkHeadStatus(String imageUrl, int status) {
+        boolean success = status >= HttpURLConnection.HTTP_OK && status < HttpURLConnection.HTTP_MULT_CHOICE;
+        if (!success && status != HttpURLConnection.HTTP_NOT_MODIFIED) {
+            throw new UncheckedIOException(
+                    new HttpStatusException("Unexpected status for image probe", status, imageUrl));
+        }
+    }
+
+    private static <T> HttpResponse<T> responded(HostPermit hostPermit, HttpResponse<T> response) {
+        hostPermit.responded(response.statusCode(), response.headers().firstValue("Retry-After").orElse(null));
+        return response;
+    }
+
+    private void collect(String imageUrl, CompletableFuture<ProbeResult> probe, BlockingQueue<ProbeResult> results) {
+        long startedAt = System.nanoTime();
+        probe.whenComplete((result, throwable) -> {
+            inFlight.release();
+            metrics.recordImageProbe(System.nanoTime() - startedAt, throwable == null && result.reachable());
+            if (throwable != null) {
+                log.warn("Error getting image size: {}", throwable.getMessage());
+                results.add(ProbeResult.failed(imageUrl, throwable));
+            } else {
+                results.add(result);
+            }
+        });
+    }
+
+    private HttpRequest headRequest(String imageUrl) {
+        HttpRequest.Builder request = HttpRequest.newBuilder(URI.create(imageUrl))
+                .method("HEAD", HttpRequest.BodyPublishers.noBody())
+                .timeout(PROBE_TIMEOUT);
+        validatorCache.get(imageUrl)
+                .filter(cached -> cached.contentLength() != CachedResource.UNKNOWN_LENGTH)
+                .ifPresent(cached -> cached.conditionalHeaders().forEach(request::header));
+        return request.build();
+    }
+
+    private HttpRequest rangeRequest(String imageUrl) {
+        return HttpRequest.newBuilder(URI.create(imageUrl))
+                .header("Range", "bytes=0-" + (rangeBytes - 1))
+                .timeout(PROBE_TIMEOUT)
+                .GET()
+                .build();
+    }
+
+    private long sizeKbOf(String imageUrl, HttpResponse<Void> response) {
+        if (response.statusCode() == HttpURLConnection.HTTP_NOT_MODIFIED) {
+            metrics.recordProbeNotModified();
+            return validatorCache.get(imageUrl)
+                    .map(cached -> cached.contentLength() / 1024)
+                    .orElse(ProbeResult.UNKNOWN_SIZE);
+        }
+        return response.headers().firstValueAsLong("Content-Length")
+                .stream()
+                .map(contentLength -> contentLength / 1024)
+                .findFirst()
+                .orElse(ProbeResult.UNKNOWN_SIZE);
+    }
+
+    /**
+     * Reads at most the requested range even when the server ignores it and sends the whole image; closing
+     * the body then drops the rest. The full size comes from {@code Content-Range}, or from
+     * {@code Content-Length} of a whole-body answer.
+     */
+    private ProbeResult rangeResult(String imageUrl, HttpResponse<InputStream> response) {
+        try (InputStream body = response.body()) {
+            int status = response.statusCode();
+            if (status != HttpURLConnection.HTTP_OK && status != HttpURLConnection.HTTP_PARTIAL) {
+                throw new HttpStatusException("Unexpected status for image probe", status, imageUrl);
+            }
+            byte[] head = body.readNBytes(rangeBytes);
+            long size = status == HttpURLConnection.HTTP_PARTIAL
+                    ? totalSizeOf(response.headers().firstValue("Content-Range").orElse(""))
+                    : response.headers().firstValueAsLong("Content-Length").orElse(ProbeResult.UNKNOWN_SIZE);
+            return ProbeResult.of(imageUrl, size == ProbeResult.UNKNOWN_SIZE ? size : size / 1024,
+                    ImageHeader.parse(head).orElse(null));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * @param contentRange e.g. {@code bytes 0-16383/48211}, the total is {@code *} when the server does not know it
+     */
+    public static long totalSizeOf(String contentRange) {
+        int separator = contentRange.lastIndexOf('/');
+        if (separator < 0) {
+            return ProbeResult.UNKNOWN_SIZE;
+        }
+        try {
+            return Long.parseLong(contentRange.substring(separator + 1).trim());
+        } catch (NumberFormatException e) {
+            return ProbeResult.UNKNOWN_SIZE;
+        }
+    }
+
+    /**
+     * Probes are started right away when a probe slot and a request permit are free and deferred otherwise,
+     * so adding never blocks. Deferred probes start once results are taken.
+     */
+    public class ProbeBatch {
+        private final BlockingQueue<ProbeResult> results = new LinkedBlockingQueue<>();
+        private final List<String> deferred = new ArrayList<>();
+        private int pending;
+
+        public void add(String imageUrl) {
+            if (!tryStart(imageUrl, results)) {
+                deferred.add(imageUrl);
+            }
+            pending++;
+        }
+
+        public boolean hasPending() {
+            return pending > 0;
+        }
+
+        /**
+         * Blocks until the next result is available, call it once per added url.
+         */
+        public ProbeResult take() throws InterruptedException {
+            for (String imageUrl : deferred) {
+                start(imageUrl, results);
+            }
+            deferred.clear();
+            pending--;
+            return results.take();
+        }
+    }
+
+    /**
+     * @param reachable whether the probe got a usable response at all
+     * @param sizeKb    announced size, or {@link #UNKNOWN_SIZE} when it was not probed or not announced
+     * @param header    format and dimensions read by a range probe, {@code null} when unknown
+     * @param failure   why the probe failed, e.g. an {@link HttpStatusException}; {@code null} when reachable
+     */
+    public record ProbeResult(String imageUrl, boolean reachable, long sizeKb, ImageHeader header,
+                              Throwable failure) {
+        public static final long UNKNOWN_SIZE = ImageFilter.UNKNOWN_SIZE;
+
+        public static ProbeResult of(String imageUrl, long sizeKb, ImageHeader header) {
+            return new ProbeResult(imageUrl, true, sizeKb, header, null);
+        }
+
+        public static ProbeResult failed(String imageUrl, Throwable failure) {
+            return new ProbeResult(imageUrl, false, UNKNOWN_SIZE, null, failure);
+        }
+
+        static ProbeResult unknownSize(String imageUrl) {
+            return of(imageUrl, UNKNOWN_SIZE, null);
+        }
+    }
+}
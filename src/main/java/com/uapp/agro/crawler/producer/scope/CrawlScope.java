@@ -0,0 +1,105 @@
+package com.uapp.agro.crawler.producer.scope;
+
+import com.uapp.agro.crawler.config.ScraperConfiguration;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+/**
+ * Decides which links are worth a fetch, before they reach the frontier. A link is canonicalized first, then
+ * kept when its host is one of the included domains or their subdomains, its path starts with one of the
+ * included prefixes and it matches one of the included patterns, and none of the exclude rules matches.
+ * An empty include list lets everything through, except for domains, which default to the hosts of the
+ * start urls so the crawl stays on the sites it was started on.
+ * <p>
+ * Domains and path prefixes are looked up in tries. Patterns of a list are joined into one alternation and
+ * compiled once, so a url is scanned by a single matcher however many patterns there are.
+ */
+public class CrawlScope {
+    private static final String SCHEME_SEPARATOR = "://";
+
+    private final UrlCanonicalizer canonicalizer;
+    private final DomainTrie includeDomains;
+    private final DomainTrie excludeDomains;
+    private final PrefixTrie includePathPrefixes;
+    private final PrefixTrie excludePathPrefixes;
+    private final Pattern includePattern;
+    private final Pattern excludePattern;
+
+    public CrawlScope(UrlCanonicalizer canonicalizer, Collection<String> includeDomains,
+                      Collection<String> excludeDomains, Collection<String> includePathPrefixes,
+                      Collection<String> excludePathPrefixes, Collection<String> includePatterns,
+                      Collection<String> excludePatterns) {
+        this.canonicalizer = canonicalizer;
+        this.includeDomains = new DomainTrie(includeDomains);
+        this.excludeDomains = new DomainTrie(excludeDomains);
+        this.includePathPrefixes = new PrefixTrie(includePathPrefixes);
+        this.excludePathPrefixes = new PrefixTrie(excludePathPrefixes);
+        this.includePattern = compile(includePatterns);
+        this.excludePattern = compile(excludePatterns);
+    }
+
+    public static CrawlScope of(ScraperConfiguration config, List<String> startUrls) {
+        UrlCanonicalizer canonicalizer = new UrlCanonicalizer(config.getScopeStripParams(),
+                config.isScopeSortQueryParams(), config.isScopeStripTrailingSlash());
+        List<String> includeDomains = config.getScopeIncludeDomains();
+        if (includeDomains.isEmpty()) {
+            includeDomains = new ArrayList<>();
+            for (String startUrl : startUrls) {
+                String canonical = canonicalizer.canonicalize(startUrl);
+                if (canonical != null) {
+                    includeDomains.add(hostOf(canonical));
+                }
+            }
+        }
+        return new CrawlScope(canonicalizer, includeDomains, config.getScopeExcludeDomains(),
+                config.getScopeIncludePathPrefixes(), config.getScopeExcludePathPrefixes(),
+                config.getScopeIncludePatterns(), config.getScopeExcludePatterns());
+    }
+
+    /**
+     * @return the canonical form of the url, {@code null} when it is not an http(s) url or out of scope
+     */
+    public String admit(String url) {
+        String canonical = canonicalizer.canonicalize(url);
+        return canonical != null && accepts(canonical) ? canonical : null;
+    }
+
+    private boolean accepts(String url) {
+        String host = hostOf(url);
+        String path = url.substring(url.indexOf('/', url.indexOf(SCHEME_SEPARATOR) + SCHEME_SEPARATOR.length()));
+        return (includeDomains.isEmpty() || includeDomains.matches(host))
+                && (includePathPrefixes.isEmpty() || includePathPrefixes.matchesPrefixOf(path))
+                && (includePattern == null || includePattern.matcher(url).find())
+                && !excludeDomains.matches(host)
+                && !excludePathPrefixes.matchesPrefixOf(path)
+                && (excludePattern == null || !excludePattern.matcher(url).find());
+    }
+
+    /**
+     * @param url canonical url, which always has a path
+     */
+    private static String hostOf(String url) {
+        int authorityStart = url.indexOf(SCHEME_SEPARATOR) + SCHEME_SEPARATOR.length();
+        int authorityEnd = url.indexOf('/', authorityStart);
+        int hostStart = url.lastIndexOf('@', authorityEnd - 1) + 1;
+        if (hostStart < authorityStart) {
+            hostStart = authorityStart;
+        }
+        int colon = url.lastIndexOf(':', authorityEnd - 1);
+        int hostEnd = colon >= hostStart && colon > url.lastIndexOf(']', authorityEnd - 1) ? colon : authorityEnd;
+        return url.substring(hostStart, hostEnd);
+    }
+
+    private static Pattern compile(Collection<String> patterns) {
+        if (patterns.isEmpty()) {
+            return null;
+        }
+        return Pattern.compile(patterns.stream()
+                .map(pattern -> "(?:" + pattern + ")")
+                .collect(Collectors.joining("|")));
+    }
+}
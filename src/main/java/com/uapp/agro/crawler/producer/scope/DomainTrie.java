@@ -0,0 +1,82 @@
+package com.uapp.agro.crawler.producer.scope;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Set of domains matched on label boundaries: {@code example.com} matches {@code example.com} and
+ * {@code img.example.com} but not {@code badexample.com}. Labels are stored from the top-level domain down,
+ * so a lookup visits one node per label of the host however many domains there are.
+ */
+final class DomainTrie {
+    private final Node root = new Node();
+    private final boolean empty;
+
+    DomainTrie(Collection<String> domains) {
+        boolean added = false;
+        for (String domain : domains) {
+            String normalized = normalize(domain);
+            if (normalized.isEmpty()) {
+                continue;
+            }
+            Node node = root;
+            int end = normalized.length();
+            while (end > 0) {
+                int dot = normalized.lastIndexOf('.', end - 1);
+                node = node.children.computeIfAbsent(normalized.substring(dot + 1, end), label -> new Node());
+                end = dot;
+            }
+            node.terminal = true;
+            added = true;
+        }
+        this.empty = !added;
+    }
+
+    boolean isEmpty() {
+        return empty;
+    }
+
+    /**
+     * @param host lower-case host name
+     */
+    boolean matches(String host) {
+        Node node = root;
+        int end = host.length();
+        while (end > 0) {
+            int dot = host.lastIndexOf('.', end - 1);
+            node = node.children.get(host.substring(dot + 1, end));
+            if (node == null) {
+                return false;
+            }
+            if (node.terminal) {
+                return true;
+            }
+            end = dot;
+        }
+        return false;
+    }
+
+    /**
+     * Accepts {@code *.example.com} and {@code .example.com} as well.
+     */
+    private static String normalize(String domain) {
+        String normalized = domain.trim().toLowerCase(Locale.ROOT);
+        if (normalized.startsWith("*.")) {
+            normalized = normalized.substring(2);
+        }
+        if (normalized.startsWith(".")) {
+            normalized = normalized.substring(1);
+        }
+        if (normalized.endsWith(".")) {
+            normalized = normalized.substring(0, normalized.length() - 1);
+        }
+        return normalized;
+    }
+
+    private static final class Node {
+        private final Map<String, Node> children = new HashMap<>();
+        private boolean terminal;
+    }
+}
@@ -0,0 +1,69 @@
+package com.uapp.agro.crawler.producer.scope;
+
+import java.util.Arrays;
+import java.util.Collection;
+
+/**
+ * Set of string prefixes. A lookup walks the trie once along the input instead of testing every prefix;
+ * children are kept in small arrays since path prefixes share most of their characters.
+ */
+final class PrefixTrie {
+    private final Node root = new Node();
+    private final boolean empty;
+
+    PrefixTrie(Collection<String> prefixes) {
+        for (String prefix : prefixes) {
+            Node node = root;
+            for (int i = 0; i < prefix.length(); i++) {
+                node = node.childOrAdd(prefix.charAt(i));
+            }
+            node.terminal = true;
+        }
+        this.empty = prefixes.isEmpty();
+    }
+
+    boolean isEmpty() {
+        return empty;
+    }
+
+    boolean matchesPrefixOf(String value) {
+        Node node = root;
+        for (int i = 0; !node.terminal; i++) {
+            if (i == value.length()) {
+                return false;
+            }
+            node = node.child(value.charAt(i));
+            if (node == null) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static final class Node {
+        private char[] keys = new char[0];
+        private Node[] children = new Node[0];
+        private boolean terminal;
+
+        private Node child(char key) {
+            for (int i = 0; i < keys.length; i++) {
+                if (keys[i] == key) {
+                    return children[i];
+                }
+            }
+            return null;
+        }
+
+        private Node childOrAdd(char key) {
+            Node child = child(key);
+            if (child == null) {
+                child = new Node();
+                keys = Arrays.copyOf(keys, keys.length + 1);
+                children = Arrays.copyOf(children, children.length + 1);
+                keys[keys.length - 1] = key;
+                children[children.length - 1] = child;
+            }
+            return child;
+        }
+    }
+}
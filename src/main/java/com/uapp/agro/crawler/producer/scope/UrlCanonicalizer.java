@@ -0,0 +1,225 @@
+package com.uapp.agro.crawler.producer.scope;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Rewrites a url into one canonical form, so that different spellings of a page are fetched once:
+ * <ul>
+ *     <li>scheme and host are lower-cased, the default port and the fragment are dropped;</li>
+ *     <li>escapes of unreserved characters are decoded, the others get upper-case hex digits;</li>
+ *     <li>{@code .} and {@code ..} path segments are resolved and an empty path becomes {@code /};</li>
+ *     <li>query parameters named in {@code stripParams} are removed, a name ending with {@code *} removes every
+ *     parameter starting with it; with {@code sortParams} the rest are sorted by name, repeated names keep
+ *     their order;</li>
+ *     <li>with {@code stripTrailingSlash} a trailing slash is removed from any path but {@code /}.</li>
+ * </ul>
+ * Works on the string itself rather than through {@link java.net.URI}, which rejects many urls found in real
+ * pages and allocates a string per component.
+ */
+public class UrlCanonicalizer {
+    private static final String SCHEME_SEPARATOR = "://";
+    private static final String HTTP = "http";
+    private static final String HTTPS = "https";
+    private static final String HTTP_PORT = "80";
+    private static final String HTTPS_PORT = "443";
+    private static final char WILDCARD = '*';
+    private static final char[] HEX_DIGITS = "0123456789ABCDEF".toCharArray();
+
+    private final Set<String> strippedNames = new HashSet<>();
+    private final List<String> strippedPrefixes = new ArrayList<>();
+    private final boolean sortParams;
+    private final boolean stripTrailingSlash;
+
+    public UrlCanonicalizer(Collection<String> stripParams, boolean sortParams, boolean stripTrailingSlash) {
+        for (String param : stripParams) {
+            String name = param.trim().toLowerCase(Locale.ROOT);
+            if (name.endsWith(String.valueOf(WILDCARD))) {
+                strippedPrefixes.add(name.substring(0, name.length() - 1));
+            } else if (!name.isEmpty()) {
+                strippedNames.add(name);
+            }
+        }
+        this.sortParams = sortParams;
+        this.stripTrailingSlash = stripTrailingSlash;
+    }
+
+    /**
+     * @return the canonical url, {@code null} when it is not an absolute http(s) url with a host
+     */
+    public String canonicalize(String url) {
+        int schemeEnd = url.indexOf(SCHEME_SEPARATOR);
+        if (schemeEnd <= 0) {
+            return null;
+        }
+        String scheme = url.substring(0, schemeEnd).toLowerCase(Locale.ROOT);
+        if (!scheme.equals(HTTP) && !scheme.equals(HTTPS)) {
+            return null;
+        }
+        int authorityStart = schemeEnd + SCHEME_SEPARATOR.length();
+        int end = url.indexOf('#', authorityStart);
+        if (end < 0) {
+            end = url.length();
+        }
+        int authorityEnd = authorityStart;
+        while (authorityEnd < end && url.charAt(authorityEnd) != '/' && url.charAt(authorityEnd) != '?') {
+            authorityEnd++;
+        }
+        int queryStart = authorityEnd;
+        while (queryStart < end && url.charAt(queryStart) != '?') {
+            queryStart++;
+        }
+
+        StringBuilder canonical = new StringBuilder(end + 1).append(scheme).append(SCHEME_SEPARATOR);
+        if (!appendAuthority(canonical, scheme, url, authorityStart, authorityEnd)) {
+            return null;
+        }
+        String path = queryStart > authorityEnd ? removeDotSegments(normalizeEscapes(url, authorityEnd, queryStart))
+                : "/";
+        if (stripTrailingSlash && path.length() > 1 && path.endsWith("/")) {
+            path = path.substring(0, path.length() - 1);
+        }
+        canonical.append(path);
+        if (queryStart + 1 < end) {
+            appendQuery(canonical, url, queryStart + 1, end);
+        }
+        return canonical.toString();
+    }
+
+    /**
+     * Keeps user info as it is, lower-cases the host and drops a trailing dot and the default port.
+     *
+     * @return {@code false} when the host is empty or the port is not a number
+     */
+    private static boolean appendAuthority(StringBuilder canonical, String scheme, String url, int start, int end) {
+        int at = url.lastIndexOf('@', end - 1);
+        int hostStart = at >= start ? at + 1 : start;
+        int bracket = url.lastIndexOf(']', end - 1);
+        int colon = url.lastIndexOf(':', end - 1);
+        int hostEnd = colon >= hostStart && colon > bracket ? colon : end;
+
+        String host = url.substring(hostStart, hostEnd).toLowerCase(Locale.ROOT);
+        if (host.endsWith(".")) {
+            host = host.substring(0, host.length() - 1);
+        }
+        if (host.isEmpty()) {
+            return false;
+        }
+        String port = hostEnd < end ? url.substring(hostEnd + 1, end) : "";
+        for (int i = 0; i < port.length(); i++) {
+            if (!Character.isDigit(port.charAt(i))) {
+                return false;
+            }
+        }
+        canonical.append(url, start, hostStart).append(host);
+        if (!port.isEmpty() && !port.equals(scheme.equals(HTTP) ? HTTP_PORT : HTTPS_PORT)) {
+            canonical.append(':').append(port);
+        }
+        return true;
+    }
+
+    private void appendQuery(StringBuilder canonical, String url, int start, int end) {
+        List<String> params = new ArrayList<>();
+        int paramStart = start;
+        while (paramStart < end) {
+            int paramEnd = url.indexOf('&', paramStart);
+            if (paramEnd < 0 || paramEnd > end) {
+                paramEnd = end;
+            }
+            if (paramEnd > paramStart) {
+                String param = normalizeEscapes(url, paramStart, paramEnd);
+                if (!isStripped(nameOf(param))) {
+                    params.add(param);
+                }
+            }
+            paramStart = paramEnd + 1;
+        }
+        if (params.isEmpty()) {
+            return;
+        }
+        if (sortParams) {
+            // List.sort is stable, so repeated names keep their order
+            params.sort(Comparator.comparing(UrlCanonicalizer::nameOf));
+        }
+        canonical.append('?').append(String.join("&", params));
+    }
+
+    private boolean isStripped(String name) {
+        String lowerCase = name.toLowerCase(Locale.ROOT);
+        if (strippedNames.contains(lowerCase)) {
+            return true;
+        }
+        for (String prefix : strippedPrefixes) {
+            if (lowerCase.startsWith(prefix)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static String nameOf(String param) {
+        int equals = param.indexOf('=');
+        return equals < 0 ? param : param.substring(0, equals);
+    }
+
+    private static String normalizeEscapes(String url, int start, int end) {
+        int percent = url.indexOf('%', start);
+        if (percent < 0 || percent >= end) {
+            return url.substring(start, end);
+        }
+        StringBuilder normalized = new StringBuilder(end - start);
+        normalized.append(url, start, percent);
+        for (int i = percent; i < end; i++) {
+            char c = url.charAt(i);
+            int high = i + 2 < end && c == '%' ? Character.digit(url.charAt(i + 1), 16) : -1;
+            int low = high >= 0 ? Character.digit(url.charAt(i + 2), 16) : -1;
+            if (low < 0) {
+                normalized.append(c);
+                continue;
+            }
+            char decoded = (char) (high << 4 | low);
+            if (isUnreserved(decoded)) {
+                normalized.append(decoded);
+            } else {
+                normalized.append('%').append(HEX_DIGITS[high]).append(HEX_DIGITS[low]);
+            }
+            i += 2;
+        }
+        return normalized.toString();
+    }
+
+    private static boolean isUnreserved(char c) {
+        return c >= 'a' && c <= 'z' || c >= 'A' && c <= 'Z' || c >= '0' && c <= '9'
+                || c == '-' || c == '.' || c == '_' || c == '~';
+    }
+
+    /**
+     * RFC 3986 section 5.2.4 for a path starting with {@code /}.
+     */
+    private static String removeDotSegments(String path) {
+        if (!path.contains("/.")) {
+            return path;
+        }
+        String[] segments = path.substring(1).split("/", -1);
+        List<String> output = new ArrayList<>(segments.length);
+        for (int i = 0; i < segments.length; i++) {
+            String segment = segments[i];
+            if (segment.equals(".") || segment.equals("..")) {
+                if (segment.equals("..") && !output.isEmpty()) {
+                    output.remove(output.size() - 1);
+                }
+                if (i == segments.length - 1) {
+                    output.add("");
+                }
+            } else {
+                output.add(segment);
+            }
+        }
+        return "/" + String.join("/", output);
+    }
+}
@@ -0,0 +1,149 @@
+package com.uapp.agro.crawler.scraper.balancer;
+
+import com.sun.management.OperatingSystemMXBean;
+import com.uapp.agro.crawler.config.ScraperConfiguration;
+import lombok.extern.slf4j.Slf4j;
+
+import java.lang.management.ManagementFactory;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.DoubleSupplier;
+
+/**
+ * Moves worker slots between producers and consumers while their sum stays at
+ * {@code max-producer-count + max-consumer-count}. Every interval it samples how full the image queue and the
+ * compress stage are, the average time from taking an image off the queue until it is saved or skipped, and
+ * the system CPU load:
+ * <ul>
+ *     <li>queue above the high watermark: producers outrun consumers, one producer slot is taken away. It is
+ *     given to consumers only while the CPU is not saturated and the compress stage is below the high
+ *     watermark; otherwise compression is the bottleneck, and more downloads would only wait in front of it;</li>
+ *     <li>queue below the low watermark and drained within one interval: consumers starve, one slot moves
+ *     from consumers to producers.</li>
+ * </ul>
+ * When disabled the limits keep their configured values.
+ */
+@Slf4j
+public class PipelineBalancer {
+    private static final double SERVICE_TIME_WEIGHT = 0.2;
+    private static final double NANOS_PER_MS = 1_000_000.0;
+
+    private final WorkerGroup producers;
+    private final WorkerGroup consumers;
+    private final int totalWorkers;
+    private final boolean enabled;
+    private final long intervalMs;
+    private final double highWatermark;
+    private final double lowWatermark;
+    private final double cpuSaturation;
+    private final OperatingSystemMXBean operatingSystem =
+            ManagementFactory.getPlatformMXBean(OperatingSystemMXBean.class);
+    private final List<Runnable> rebalanceListeners = new CopyOnWriteArrayList<>();
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "pipeline-balancer");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private volatile DoubleSupplier compressionFill = () -> 0;
+    private double serviceTimeMs;
+
+    public PipelineBalancer(ScraperConfiguration config) {
+        this.producers = new WorkerGroup(config.getMaxProducerThreadCount());
+        this.consumers = new WorkerGroup(config.getMaxConsumerThreadCount());
+        this.totalWorkers = config.getMaxProducerThreadCount() + config.getMaxConsumerThreadCount();
+        this.enabled = config.isBalancerEnabled();
+        this.intervalMs = config.getBalancerIntervalMs();
+        this.highWatermark = config.getBalancerHighWatermark();
+        this.lowWatermark = config.getBalancerLowWatermark();
+        this.cpuSaturation = config.getBalancerCpuSaturation();
+    }
+
+    public WorkerGroup producers() {
+        return producers;
+    }
+
+    public WorkerGroup consumers() {
+        return consumers;
+    }
+
+    /**
+     * Listeners run on the balancer thread after every sample, e.g. to start workers up to a raised limit.
+     */
+    public void onRebalance(Runnable listener) {
+        rebalanceListeners.add(listener);
+    }
+
+    /**
+     * @param fill share of the compress stage in use, read on every sample
+     */
+    public void watchCompression(DoubleSupplier fill) {
+        this.compressionFill = fill;
+    }
+
+    /**
+     * @param nanos time from taking an image off the queue until it was saved or skipped
+     */
+    public synchronized void recordServiceTime(long nanos) {
+        double sampleMs = nanos / NANOS_PER_MS;
+        serviceTimeMs = serviceTimeMs == 0 ? sampleMs : serviceTimeMs + SERVICE_TIME_WEIGHT * (sampleMs - serviceTimeMs);
+    }
+
+    public void start(BlockingQueue<String> images) {
+        if (!enabled) {
+            return;
+        }
+        scheduler.scheduleWithFixedDelay(() -> {
+            try {
+                rebalance(images);
+                rebalanceListeners.forEach(Runnable::run);
+            } catch (RuntimeException e) {
+                log.warn("Can not rebalance workers: {}", e.getMessage());
+            }
+        }, intervalMs, intervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    public void close() {
+        scheduler.shutdownNow();
+    }
+
+    private void rebalance(BlockingQueue<String> images) {
+        int depth = images.size();
+        double fill = depth / (double) Math.max(1, depth + images.remainingCapacity());
+        double cpu = Math.max(0, operatingSystem.getCpuLoad());
+        double compression = compressionFill.getAsDouble();
+        double serviceTime = getServiceTimeMs();
+        int producerLimit = producers.getLimit();
+        int consumerLimit = consumers.getLimit();
+
+        int newProducerLimit = producerLimit;
+        int newConsumerLimit = consumerLimit;
+        if (fill >= highWatermark) {
+            newProducerLimit = Math.max(1, producerLimit - 1);
+            if (cpu < cpuSaturation && compression < highWatermark) {
+                newConsumerLimit = Math.min(totalWorkers - newProducerLimit, consumerLimit + 1);
+            }
+        } else if (fill <= lowWatermark && depth * serviceTime / consumerLimit < intervalMs) {
+            if (producerLimit + consumerLimit >= totalWorkers) {
+                newConsumerLimit = Math.max(1, consumerLimit - 1);
+            }
+            newProducerLimit = Math.min(totalWorkers - newConsumerLimit, producerLimit + 1);
+        }
+
+        if (newProducerLimit != producerLimit || newConsumerLimit != consumerLimit) {
+            producers.setLimit(newProducerLimit);
+            consumers.setLimit(newConsumerLimit);
+            log.info("Rebalanced workers: producers {} -> {}, consumers {} -> {} "
+                            + "(queue {}%, compress {}%, {} ms per image, cpu {}%)",
+                    producerLimit, newProducerLimit, consumerLimit, newConsumerLimit, Math.round(fill * 100),
+                    Math.round(compression * 100), Math.round(serviceTime), Math.round(cpu * 100));
+        }
+    }
+
+    private synchronized double getServiceTimeMs() {
+        return serviceTimeMs;
+    }
+}
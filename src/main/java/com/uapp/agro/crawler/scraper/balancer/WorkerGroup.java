@@ -0,0 +1,80 @@
+package com.uapp.agro.crawler.scraper.balancer;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Counts running workers of one kind against a limit that {@link PipelineBalancer} may change at any time.
+ * Workers start through {@link #tryAcquire()} and either leave through {@link #release()} or, when the limit
+ * was lowered, through {@link #retireIfOverLimit()}, which never retires the last worker.
+ */
+public class WorkerGroup {
+    private final AtomicInteger active = new AtomicInteger();
+    private final AtomicInteger limit;
+    private final CompletableFuture<Void> allExited = new CompletableFuture<>();
+
+    public WorkerGroup(int limit) {
+        this.limit = new AtomicInteger(limit);
+    }
+
+    public boolean tryAcquire() {
+        while (true) {
+            int current = active.get();
+            if (current >= limit.get()) {
+                return false;
+            }
+            if (active.compareAndSet(current, current + 1)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Counts a worker that was started regardless of the limit.
+     */
+    public void acquire() {
+        active.incrementAndGet();
+    }
+
+    /**
+     * @return {@code true} when the caller was retired and must stop without calling {@link #release()}
+     */
+    public boolean retireIfOverLimit() {
+        while (true) {
+            int current = active.get();
+            if (current <= 1 || current <= limit.get()) {
+                return false;
+            }
+            if (active.compareAndSet(current, current - 1)) {
+                return true;
+            }
+        }
+    }
+
+    public int release() {
+        int remaining = active.decrementAndGet();
+        if (remaining == 0) {
+            allExited.complete(null);
+        }
+        return remaining;
+    }
+
+    public int getActive() {
+        return active.get();
+    }
+
+    public int getLimit() {
+        return limit.get();
+    }
+
+    void setLimit(int limit) {
+        this.limit.set(limit);
+    }
+
+    /**
+     * Completes once the last worker released its slot.
+     */
+    public CompletableFuture<Void> allExited() {
+        return allExited;
+    }
+}
@@ -0,0 +1,49 @@
+package com.uapp.agro.crawler.scraper.cache;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Validators of a url taken from its last full response. A page also keeps the links and images extracted
+ * from it, since a 304 has no body to extract them from; an image keeps the hash of its content.
+ *
+ * @param contentLength body length in bytes or {@link #UNKNOWN_LENGTH}
+ * @param digest        content hash, {@code null} for pages
+ */
+public record CachedResource(
+        String url,
+        String etag,
+        String lastModified,
+        long contentLength,
+        String digest,
+        List<String> links,
+        List<String> images
+) {
+    public static final long UNKNOWN_LENGTH = -1;
+
+    public static CachedResource page(String url, String etag, String lastModified, List<String> links,
+                                      List<String> images) {
+        return new CachedResource(url, etag, lastModified, UNKNOWN_LENGTH, null, links, images);
+    }
+
+    public static CachedResource image(String url, String etag, String lastModified, long contentLength,
+                                       String digest) {
+        return new CachedResource(url, etag, lastModified, contentLength, digest, List.of(), List.of());
+    }
+
+    public boolean hasValidators() {
+        return etag != null || lastModified != null;
+    }
+
+    public Map<String, String> conditionalHeaders() {
+        Map<String, String> headers = new LinkedHashMap<>();
+        if (etag != null) {
+            headers.put("If-None-Match", etag);
+        }
+        if (lastModified != null) {
+            headers.put("If-Modified-Since", lastModified);
+        }
+        return headers;
+    }
+}
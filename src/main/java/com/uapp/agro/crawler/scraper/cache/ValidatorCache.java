@@ -0,0 +1,19 @@
+package com.uapp.agro.crawler.scraper.cache;
+
+import java.util.Optional;
+
+/**
+ * Remembers HTTP validators per url across runs, so a repeat crawl can send conditional requests and get
+ * {@code 304 Not Modified} instead of bodies that did not change.
+ */
+public interface ValidatorCache {
+
+    Optional<CachedResource> get(String url);
+
+    /**
+     * Replaces the entry of the url; a resource without validators removes it, it could never be revalidated.
+     */
+    void put(CachedResource resource);
+
+    void close();
+}
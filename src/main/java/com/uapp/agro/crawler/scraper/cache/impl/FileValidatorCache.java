@@ -0,0 +1,121 @@
+package com.uapp.agro.crawler.scraper.cache.impl;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.uapp.agro.crawler.scraper.cache.CachedResource;
+import com.uapp.agro.crawler.scraper.cache.ValidatorCache;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Keeps up to {@code maxEntries} resources in memory, evicting the least recently used one, and stores them
+ * as one JSON object per line. The file is read on start and rewritten on close, least recently used first,
+ * so a reload keeps the eviction order. Updates of a crawl that does not close are lost, which only costs
+ * full downloads next time.
+ */
+@Slf4j
+public class FileValidatorCache implements ValidatorCache {
+    private static final String TEMP_SUFFIX = ".tmp";
+
+    private final Path file;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Map<String, CachedResource> resources;
+
+    public FileValidatorCache(Path file, int maxEntries) {
+        this.file = file;
+        this.resources = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CachedResource> eldest) {
+                return size() > maxEntries;
+            }
+        };
+        load();
+    }
+
+    @Override
+    public Optional<CachedResource> get(String url) {
+        lock.lock();
+        try {
+            return Optional.ofNullable(resources.get(url));
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void put(CachedResource resource) {
+        lock.lock();
+        try {
+            if (resource.hasValidators()) {
+                resources.put(resource.url(), resource);
+            } else {
+                resources.remove(resource.url());
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void close() {
+        lock.lock();
+        try {
+            Path temp = file.resolveSibling(file.getFileName() + TEMP_SUFFIX);
+            try (BufferedWriter writer = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)) {
+                for (CachedResource resource : resources.values()) {
+                    writer.write(objectMapper.writeValueAsString(resource));
+                    writer.newLine();
+                }
+            }
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            log.info("Saved {} cached validators to {}", resources.size(), file);
+        } catch (IOException e) {
+            log.warn("Can not save validator cache {}: {}", file, e.getMessage());
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void load() {
+        try {
+            Path directory = file.toAbsolutePath().getParent();
+            if (directory != null) {
+                Files.createDirectories(directory);
+            }
+            if (!Files.exists(file)) {
+                return;
+            }
+            try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    if (!line.isEmpty()) {
+                        load(line);
+                    }
+                }
+            }
+            log.info("Loaded {} cached validators from {}", resources.size(), file);
+        } catch (IOException e) {
+            log.warn("Can not load validator cache {}: {}", file, e.getMessage());
+        }
+    }
+
+    private void load(String line) {
+        try {
+            put(objectMapper.readValue(line, CachedResource.class));
+        } catch (JsonProcessingException e) {
+            log.warn("Skip malformed validator cache entry: {}", e.getOriginalMessage());
+        }
+    }
+}
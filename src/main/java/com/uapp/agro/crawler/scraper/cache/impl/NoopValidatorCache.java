@@ -0,0 +1,22 @@
+package com.uapp.agro.crawler.scraper.cache.impl;
+
+import com.uapp.agro.crawler.scraper.cache.CachedResource;
+import com.uapp.agro.crawler.scraper.cache.ValidatorCache;
+
+import java.util.Optional;
+
+public class NoopValidatorCache implements ValidatorCache {
+
+    @Override
+    public Optional<CachedResource> get(String url) {
+        return Optional.empty();
+    }
+
+    @Override
+    public void put(CachedResource resource) {
+    }
+
+    @Override
+    public void close() {
+    }
+}
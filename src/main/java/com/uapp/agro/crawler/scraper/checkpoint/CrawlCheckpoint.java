@@ -0,0 +1,46 @@
+package com.uapp.agro.crawler.scraper.checkpoint;
+
+import java.io.IOException;
+
+/**
+ * Records crawl progress so a stopped crawl can be resumed without repeating finished work.
+ */
+public interface CrawlCheckpoint {
+
+    void urlScheduled(String url, int depth);
+
+    /**
+     * Called once all links and images of the page have been handed off, at most once per url.
+     */
+    void urlVisited(String url);
+
+    void imageQueued(String imageUrl);
+
+    /**
+     * Called once the image reached a final outcome, whether it was saved or skipped, at most once per url.
+     */
+    void imageProcessed(String imageUrl);
+
+    /**
+     * Replays the recorded state: visited urls and processed images first, then what was still pending.
+     */
+    void restore(RestoreTarget target) throws IOException;
+
+    /**
+     * Called once the crawl finished with nothing left pending, the next start begins a new crawl instead of
+     * resuming this one.
+     */
+    void crawlCompleted();
+
+    void close();
+
+    interface RestoreTarget {
+        void visitedUrl(String url);
+
+        void processedImage(String imageUrl);
+
+        void pendingUrl(String url, int depth);
+
+        void pendingImage(String imageUrl);
+    }
+}
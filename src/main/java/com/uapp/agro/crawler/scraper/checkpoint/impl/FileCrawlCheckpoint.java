@@ -0,0 +1,335 @@
+package com.uapp.agro.crawler.scraper.checkpoint.impl;
+
+import com.uapp.agro.crawler.scraper.checkpoint.CrawlCheckpoint;
+import com.uapp.agro.crawler.scraper.seen.FingerprintSeenSet;
+import com.uapp.agro.crawler.scraper.seen.SeenSet;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Keeps crawl state in line-based files inside one directory.
+ * <ul>
+ *     <li>{@code visited-urls.log} and {@code processed-images.log} are append-only, callers report every url
+ *     once.</li>
+ *     <li>{@code frontier.log} and {@code images.log} append what was scheduled. Every snapshot interval each is
+ *     swapped for a new log under the lock, and the old one is compacted into {@code frontier.snapshot} and
+ *     {@code images.snapshot} on the checkpoint thread without it, dropping entries that were visited or
+ *     processed meanwhile. Appends only wait for the swap, not for the compaction.</li>
+ * </ul>
+ * The finished urls are read back from their logs for each compaction, so no set of them stays in memory
+ * between snapshots. Logs are flushed every flush interval, so a crash loses at most that much progress. A
+ * finished crawl leaves a {@code completed} marker; the next start then drops the files as it does without
+ * {@code resume}.
+ */
+@Slf4j
+public class FileCrawlCheckpoint implements CrawlCheckpoint {
+    private static final String VISITED_URLS_LOG = "visited-urls.log";
+    private static final String PROCESSED_IMAGES_LOG = "processed-images.log";
+    private static final String FRONTIER_LOG = "frontier.log";
+    private static final String FRONTIER_SNAPSHOT = "frontier.snapshot";
+    private static final String IMAGES_LOG = "images.log";
+    private static final String IMAGES_SNAPSHOT = "images.snapshot";
+    private static final String COMPACTING_SUFFIX = ".compacting";
+    private static final String COMPLETED_MARKER = "completed";
+    private static final String TEMP_SUFFIX = ".tmp";
+    private static final String DEPTH_SEPARATOR = "\t";
+    private static final int EXPECTED_SIZE = 1 << 16;
+
+    private final Path directory;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final ReentrantLock snapshotLock = new ReentrantLock();
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "crawl-checkpoint");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private BufferedWriter visitedUrlsLog;
+    private BufferedWriter processedImagesLog;
+    private BufferedWriter frontierLog;
+    private BufferedWriter imagesLog;
+
+    public FileCrawlCheckpoint(Path directory, boolean resume, Duration flushInterval, Duration snapshotInterval) {
+        this.directory = directory;
+        try {
+            Files.createDirectories(directory);
+            boolean completed = Files.exists(directory.resolve(COMPLETED_MARKER));
+            if (!resume || completed) {
+                if (resume) {
+                    log.info("Previous crawl in {} is completed, starting a new one", directory);
+                }
+                for (String file : List.of(VISITED_URLS_LOG, PROCESSED_IMAGES_LOG, FRONTIER_LOG,
+                        FRONTIER_LOG + COMPACTING_SUFFIX, FRONTIER_SNAPSHOT, IMAGES_LOG,
+                        IMAGES_LOG + COMPACTING_SUFFIX, IMAGES_SNAPSHOT, COMPLETED_MARKER)) {
+                    Files.deleteIfExists(directory.resolve(file));
+                }
+            }
+            this.visitedUrlsLog = openLog(VISITED_URLS_LOG, StandardOpenOption.APPEND);
+            this.processedImagesLog = openLog(PROCESSED_IMAGES_LOG, StandardOpenOption.APPEND);
+            this.frontierLog = openLog(FRONTIER_LOG, StandardOpenOption.APPEND);
+            this.imagesLog = openLog(IMAGES_LOG, StandardOpenOption.APPEND);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Can not open checkpoint directory " + directory, e);
+        }
+        scheduler.scheduleWithFixedDelay(this::flush, flushInterval.toMillis(), flushInterval.toMillis(),
+                TimeUnit.MILLISECONDS);
+        scheduler.scheduleWithFixedDelay(this::snapshot, snapshotInterval.toMillis(), snapshotInterval.toMillis(),
+                TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public void urlScheduled(String url, int depth) {
+        append(() -> frontierLog, depth + DEPTH_SEPARATOR + url);
+    }
+
+    @Override
+    public void urlVisited(String url) {
+        append(() -> visitedUrlsLog, url);
+    }
+
+    @Override
+    public void imageQueued(String imageUrl) {
+        append(() -> imagesLog, imageUrl);
+    }
+
+    @Override
+    public void imageProcessed(String imageUrl) {
+        append(() -> processedImagesLog, imageUrl);
+    }
+
+    @Override
+    public void restore(RestoreTarget target) throws IOException {
+        lock.lock();
+        try {
+            SeenSet visitedUrls = new FingerprintSeenSet(EXPECTED_SIZE);
+            readLines(VISITED_URLS_LOG, url -> {
+                if (visitedUrls.add(url)) {
+                    target.visitedUrl(url);
+                }
+            });
+            SeenSet processedImages = new FingerprintSeenSet(EXPECTED_SIZE);
+            readLines(PROCESSED_IMAGES_LOG, imageUrl -> {
+                if (processedImages.add(imageUrl)) {
+                    target.processedImage(imageUrl);
+                }
+            });
+
+            SeenSet restoredUrls = new FingerprintSeenSet(EXPECTED_SIZE);
+            Consumer<String> frontierEntry = line -> {
+                int separator = line.indexOf(DEPTH_SEPARATOR);
+                if (separator <= 0) {
+                    return;
+                }
+                String url = line.substring(separator + DEPTH_SEPARATOR.length());
+                if (!visitedUrls.contains(url) && restoredUrls.add(url)) {
+                    target.pendingUrl(url, parseDepth(line, separator));
+                }
+            };
+            readLines(FRONTIER_SNAPSHOT, frontierEntry);
+            readLines(FRONTIER_LOG + COMPACTING_SUFFIX, frontierEntry);
+            readLines(FRONTIER_LOG, frontierEntry);
+
+            SeenSet restoredImages = new FingerprintSeenSet(EXPECTED_SIZE);
+            Consumer<String> imageEntry = imageUrl -> {
+                if (!processedImages.contains(imageUrl) && restoredImages.add(imageUrl)) {
+                    target.pendingImage(imageUrl);
+                }
+            };
+            readLines(IMAGES_SNAPSHOT, imageEntry);
+            readLines(IMAGES_LOG + COMPACTING_SUFFIX, imageEntry);
+            readLines(IMAGES_LOG, imageEntry);
+            log.info("Restored checkpoint: {} visited urls, {} pending urls, {} processed images, {} pending images",
+                    visitedUrls.size(), restoredUrls.size(), processedImages.size(), restoredImages.size());
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void crawlCompleted() {
+        lock.lock();
+        try {
+            flush();
+            Files.writeString(directory.resolve(COMPLETED_MARKER), Instant.now().toString(), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            log.warn("Can not mark the crawl as completed: {}", e.getMessage());
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void close() {
+        // a compaction that is running finishes first, an interrupt would abort its file channels
+        scheduler.shutdown();
+        try {
+            scheduler.awaitTermination(30, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        snapshot();
+        lock.lock();
+        try {
+            for (BufferedWriter writer : List.of(visitedUrlsLog, processedImagesLog, frontierLog, imagesLog)) {
+                writer.close();
+            }
+        } catch (IOException e) {
+            log.warn("Can not close checkpoint logs: {}", e.getMessage());
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Writers are looked up under the lock since a snapshot swaps the frontier and images logs.
+     */
+    private void append(Supplier<BufferedWriter> writer, String line) {
+        lock.lock();
+        try {
+            writer.get().write(line);
+            writer.get().newLine();
+        } catch (IOException e) {
+            log.warn("Can not write checkpoint entry {}: {}", line, e.getMessage());
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void flush() {
+        lock.lock();
+        try {
+            for (BufferedWriter writer : List.of(visitedUrlsLog, processedImagesLog, frontierLog, imagesLog)) {
+                writer.flush();
+            }
+        } catch (IOException e) {
+            log.warn("Can not flush checkpoint logs: {}", e.getMessage());
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void snapshot() {
+        snapshotLock.lock();
+        try {
+            lock.lock();
+            try {
+                flush();
+                frontierLog = swapLog(FRONTIER_LOG, frontierLog);
+                imagesLog = swapLog(IMAGES_LOG, imagesLog);
+            } finally {
+                lock.unlock();
+            }
+            compact(FRONTIER_SNAPSHOT, FRONTIER_LOG + COMPACTING_SUFFIX, VISITED_URLS_LOG, line -> {
+                int separator = line.indexOf(DEPTH_SEPARATOR);
+                return separator > 0 ? line.substring(separator + DEPTH_SEPARATOR.length()) : null;
+            });
+            compact(IMAGES_SNAPSHOT, IMAGES_LOG + COMPACTING_SUFFIX, PROCESSED_IMAGES_LOG, line -> line);
+        } catch (IOException e) {
+            log.warn("Can not write checkpoint snapshot: {}", e.getMessage());
+        } finally {
+            snapshotLock.unlock();
+        }
+    }
+
+    /**
+     * Moves the log aside for compaction and opens a new one. When the previous compaction failed, its log is
+     * still waiting and this one keeps growing until that is done.
+     */
+    private BufferedWriter swapLog(String logFile, BufferedWriter logWriter) throws IOException {
+        Path compacting = directory.resolve(logFile + COMPACTING_SUFFIX);
+        if (Files.exists(compacting)) {
+            return logWriter;
+        }
+        logWriter.close();
+        Files.move(directory.resolve(logFile), compacting, StandardCopyOption.ATOMIC_MOVE);
+        return openLog(logFile, StandardOpenOption.TRUNCATE_EXISTING);
+    }
+
+    /**
+     * Rewrites snapshot + moved log into a new snapshot without finished or duplicate entries, then deletes the
+     * moved log. Runs without the lock: the finished log is only appended to meanwhile, and an entry finished
+     * after it was read stays pending, which restore skips. A crash before the delete only leaves duplicates.
+     */
+    private void compact(String snapshotFile, String compactingFile, String finishedLog,
+                         Function<String, String> keyOf) throws IOException {
+        Path compacting = directory.resolve(compactingFile);
+        if (!Files.exists(compacting)) {
+            return;
+        }
+        SeenSet finished = new FingerprintSeenSet(EXPECTED_SIZE);
+        readLines(finishedLog, finished::add);
+        Path temp = directory.resolve(snapshotFile + TEMP_SUFFIX);
+        SeenSet written = new FingerprintSeenSet(EXPECTED_SIZE);
+        try (BufferedWriter snapshot = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)) {
+            Consumer<String> keepPending = line -> {
+                String key = keyOf.apply(line);
+                if (key != null && !finished.contains(key) && written.add(key)) {
+                    try {
+                        snapshot.write(line);
+                        snapshot.newLine();
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                }
+            };
+            readLines(snapshotFile, keepPending);
+            readLines(compactingFile, keepPending);
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        Files.move(temp, directory.resolve(snapshotFile), StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
+        Files.delete(compacting);
+    }
+
+    private static int parseDepth(String line, int separator) {
+        try {
+            return Integer.parseInt(line, 0, separator, 10);
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    private BufferedWriter openLog(String file, StandardOpenOption mode) throws IOException {
+        return Files.newBufferedWriter(directory.resolve(file), StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, mode);
+    }
+
+    /**
+     * Malformed bytes of a line torn by a crash are replaced instead of failing the whole file.
+     */
+    private void readLines(String file, Consumer<String> lineConsumer) throws IOException {
+        Path path = directory.resolve(file);
+        if (!Files.exists(path)) {
+            return;
+        }
+        try (BufferedReader reader = new BufferedReader(
+                new InputStreamReader(Files.newInputStream(path), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (!line.isEmpty()) {
+                    lineConsumer.accept(line);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,34 @@
+package com.uapp.agro.crawler.scraper.checkpoint.impl;
+
+import com.uapp.agro.crawler.scraper.checkpoint.CrawlCheckpoint;
+
+public class NoopCrawlCheckpoint implements CrawlCheckpoint {
+
+    @Override
+    public void urlScheduled(String url, int depth) {
+    }
+
+    @Override
+    public void urlVisited(String url) {
+    }
+
+    @Override
+    public void imageQueued(String imageUrl) {
+    }
+
+    @Override
+    public void imageProcessed(String imageUrl) {
+    }
+
+    @Override
+    public void restore(RestoreTarget target) {
+    }
+
+    @Override
+    public void crawlCompleted() {
+    }
+
+    @Override
+    public void close() {
+    }
+}
@@ -0,0 +1,89 @@
+package com.uapp.agro.crawler.scraper.coordinator;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.Queue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Tracks pages that were scheduled but not yet completed. A page only completes after every link and
+ * image found on it has been handed off, so the crawl is quiescent exactly when the counter drops to zero.
+ * A page waiting for a retry is scheduled again before its failed attempt completes. Retries of any kind are
+ * also counted on their own, since an image can fail after the last page completed. Images still in the
+ * consumer pipeline are counted too: one of them may fail and be retried after the image queue ran empty.
+ */
+@Slf4j
+public class CrawlCoordinator {
+    private final AtomicLong pendingPages = new AtomicLong();
+    private final AtomicLong pendingRetries = new AtomicLong();
+    private final AtomicLong imagesInFlight = new AtomicLong();
+    private final CountDownLatch crawlFinished = new CountDownLatch(1);
+
+    public void pageScheduled() {
+        pendingPages.incrementAndGet();
+    }
+
+    public void pageCompleted() {
+        long remaining = pendingPages.decrementAndGet();
+        if (remaining == 0) {
+            crawlFinished.countDown();
+            log.info("All scheduled pages are processed");
+        }
+    }
+
+    public void retryScheduled() {
+        pendingRetries.incrementAndGet();
+    }
+
+    /**
+     * Called once the item is back in its queue.
+     */
+    public void retryDispatched() {
+        pendingRetries.decrementAndGet();
+    }
+
+    /**
+     * Called when a consumer takes an image off the queue.
+     */
+    public void imageStarted() {
+        imagesInFlight.incrementAndGet();
+    }
+
+    /**
+     * Called once the image is saved, skipped or handed to the retries.
+     */
+    public void imageCompleted() {
+        imagesInFlight.decrementAndGet();
+    }
+
+    public long getImagesInFlight() {
+        return imagesInFlight.get();
+    }
+
+    public long getPendingRetries() {
+        return pendingRetries.get();
+    }
+
+    public boolean isCrawlFinished() {
+        return crawlFinished.getCount() == 0;
+    }
+
+    public long getPendingPages() {
+        return pendingPages.get();
+    }
+
+    public void awaitCrawlFinished() throws InterruptedException {
+        crawlFinished.await();
+    }
+
+    /**
+     * Pages hand off their images before they complete, so once the crawl is finished only image retries can
+     * add to the queue, from images still in the pipeline or already waiting. An empty queue is final when
+     * neither is left. An image is counted as a retry before it stops being in flight, and a retry is put back
+     * before it stops being counted, hence the order of the checks.
+     */
+    public boolean isImageQueueDrained(Queue<?> imageQueue) {
+        return isCrawlFinished() && getImagesInFlight() == 0 && getPendingRetries() == 0 && imageQueue.isEmpty();
+    }
+}
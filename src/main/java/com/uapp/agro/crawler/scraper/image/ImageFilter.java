@@ -0,0 +1,63 @@
+package com.uapp.agro.crawler.scraper.image;
+
+import com.uapp.agro.crawler.config.ScraperConfiguration;
+import org.apache.commons.io.FilenameUtils;
+
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Rules an image has to pass to be compressed. Producers apply them to what a probe found out, consumers
+ * to the downloaded bytes; whatever is not known yet is let through. {@code jpg} and {@code jpeg} are
+ * treated as the same format.
+ */
+public record ImageFilter(long minSizeKb, Set<String> formats, int minWidth, int minHeight) {
+    public static final long UNKNOWN_SIZE = -1;
+    private static final String JPEG_ALIAS = "jpeg";
+    private static final Set<String> IMAGE_EXTENSIONS = Set.of("jpg", "jpeg", "png", "gif", "webp", "bmp", "svg",
+            "ico", "tif", "tiff", "avif");
+
+    public ImageFilter {
+        Set<String> normalized = new HashSet<>();
+        for (String format : formats) {
+            normalized.add(normalize(format));
+        }
+        formats = Set.copyOf(normalized);
+    }
+
+    public static ImageFilter of(ScraperConfiguration config) {
+        return new ImageFilter(config.getMinImageSize(), config.getAvailableFormats(), config.getMinImageWidth(),
+                config.getMinImageHeight());
+    }
+
+    public boolean acceptsSize(long sizeKb) {
+        return sizeKb == UNKNOWN_SIZE || sizeKb >= minSizeKb;
+    }
+
+    public boolean acceptsFormat(String format) {
+        return formats.contains(normalize(format));
+    }
+
+    /**
+     * Rules out urls that name a known image format which is not wanted, before anything is downloaded.
+     * Urls without such an extension pass, their format is only known from the bytes.
+     */
+    public boolean acceptsExtension(String imageUrl) {
+        String extension = FilenameUtils.getExtension(imageUrl).toLowerCase(Locale.ROOT);
+        return !IMAGE_EXTENSIONS.contains(extension) || acceptsFormat(extension);
+    }
+
+    /**
+     * @param header {@code null} when the format and dimensions are unknown
+     */
+    public boolean acceptsHeader(ImageHeader header) {
+        return header == null
+                || acceptsFormat(header.format()) && header.width() >= minWidth && header.height() >= minHeight;
+    }
+
+    private static String normalize(String format) {
+        String lowerCase = format.toLowerCase(Locale.ROOT);
+        return lowerCase.equals(JPEG_ALIAS) ? ImageHeader.JPEG : lowerCase;
+    }
+}
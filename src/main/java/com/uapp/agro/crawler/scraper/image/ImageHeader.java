@@ -0,0 +1,162 @@
+package com.uapp.agro.crawler.scraper.image;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Optional;
+
+/**
+ * Format and pixel size read from the first bytes of an image, without decoding it. Understands JPEG
+ * (first SOF segment), PNG (IHDR), GIF, WebP (VP8, VP8L and VP8X) and BMP. A JPEG whose SOF lies past the
+ * given bytes, e.g. behind a large EXIF block, is not recognized.
+ *
+ * @param format lower case file extension of the detected format
+ */
+public record ImageHeader(String format, int width, int height) {
+    public static final String JPEG = "jpg";
+    public static final String PNG = "png";
+    public static final String GIF = "gif";
+    public static final String WEBP = "webp";
+    public static final String BMP = "bmp";
+
+    private static final byte[] PNG_SIGNATURE = {(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n'};
+
+    public static Optional<ImageHeader> parse(byte[] bytes) {
+        return parse(bytes, bytes.length);
+    }
+
+    public static Optional<ImageHeader> parse(byte[] bytes, int length) {
+        if (startsWith(bytes, length, PNG_SIGNATURE)) {
+            return parsePng(bytes, length);
+        }
+        if (length >= 2 && (bytes[0] & 0xFF) == 0xFF && (bytes[1] & 0xFF) == 0xD8) {
+            return parseJpeg(bytes, length);
+        }
+        if (startsWith(bytes, length, "GIF87a") || startsWith(bytes, length, "GIF89a")) {
+            return length >= 10
+                    ? Optional.of(new ImageHeader(GIF, uint16Le(bytes, 6), uint16Le(bytes, 8)))
+                    : Optional.empty();
+        }
+        if (startsWith(bytes, length, "RIFF") && length >= 16 && ascii(bytes, 8, 4).equals("WEBP")) {
+            return parseWebp(bytes, length);
+        }
+        if (startsWith(bytes, length, "BM")) {
+            return length >= 26
+                    ? Optional.of(new ImageHeader(BMP, int32Le(bytes, 18), Math.abs(int32Le(bytes, 22))))
+                    : Optional.empty();
+        }
+        return Optional.empty();
+    }
+
+    private static Optional<ImageHeader> parsePng(byte[] bytes, int length) {
+        if (length < 24 || !ascii(bytes, 12, 4).equals("IHDR")) {
+            return Optional.empty();
+        }
+        return Optional.of(new ImageHeader(PNG, int32Be(bytes, 16), int32Be(bytes, 20)));
+    }
+
+    /**
+     * Walks the marker segments up to the first start-of-frame, which holds height and width.
+     */
+    private static Optional<ImageHeader> parseJpeg(byte[] bytes, int length) {
+        int position = 2;
+        while (position + 4 <= length) {
+            if ((bytes[position] & 0xFF) != 0xFF) {
+                return Optional.empty();
+            }
+            int marker = bytes[position + 1] & 0xFF;
+            if (marker == 0xFF) {
+                // fill byte before a marker
+                position++;
+                continue;
+            }
+            if (marker == 0x01 || (marker >= 0xD0 && marker <= 0xD7)) {
+                position += 2;
+                continue;
+            }
+            if (marker == 0xD9 || marker == 0xDA) {
+                return Optional.empty();
+            }
+            int segmentLength = uint16Be(bytes, position + 2);
+            if (isStartOfFrame(marker)) {
+                return position + 9 <= length
+                        ? Optional.of(new ImageHeader(JPEG, uint16Be(bytes, position + 7), uint16Be(bytes, position + 5)))
+                        : Optional.empty();
+            }
+            position += 2 + segmentLength;
+        }
+        return Optional.empty();
+    }
+
+    private static boolean isStartOfFrame(int marker) {
+        return marker >= 0xC0 && marker <= 0xCF && marker != 0xC4 && marker != 0xC8 && marker != 0xCC;
+    }
+
+    private static Optional<ImageHeader> parseWebp(byte[] bytes, int length) {
+        String chunk = ascii(bytes, 12, 4);
+        switch (chunk) {
+            case "VP8 " -> {
+                if (length >= 30 && (bytes[23] & 0xFF) == 0x9D && (bytes[24] & 0xFF) == 0x01 && (bytes[25] & 0xFF) == 0x2A) {
+                    return Optional.of(new ImageHeader(WEBP, uint16Le(bytes, 26) & 0x3FFF, uint16Le(bytes, 28) & 0x3FFF));
+                }
+            }
+            case "VP8L" -> {
+                if (length >= 25 && (bytes[20] & 0xFF) == 0x2F) {
+                    int b1 = bytes[21] & 0xFF;
+                    int b2 = bytes[22] & 0xFF;
+                    int b3 = bytes[23] & 0xFF;
+                    int b4 = bytes[24] & 0xFF;
+                    int width = 1 + (b1 | (b2 & 0x3F) << 8);
+                    int height = 1 + (b2 >> 6 | b3 << 2 | (b4 & 0x0F) << 10);
+                    return Optional.of(new ImageHeader(WEBP, width, height));
+                }
+            }
+            case "VP8X" -> {
+                if (length >= 30) {
+                    return Optional.of(new ImageHeader(WEBP, 1 + uint24Le(bytes, 24), 1 + uint24Le(bytes, 27)));
+                }
+            }
+            default -> {
+            }
+        }
+        return Optional.empty();
+    }
+
+    private static boolean startsWith(byte[] bytes, int length, String prefix) {
+        return startsWith(bytes, length, prefix.getBytes(StandardCharsets.US_ASCII));
+    }
+
+    private static boolean startsWith(byte[] bytes, int length, byte[] prefix) {
+        if (length < prefix.length) {
+            return false;
+        }
+        for (int i = 0; i < prefix.length; i++) {
+            if (bytes[i] != prefix[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static String ascii(byte[] bytes, int offset, int length) {
+        return new String(bytes, offset, length, StandardCharsets.US_ASCII);
+    }
+
+    private static int uint16Be(byte[] bytes, int offset) {
+        return (bytes[offset] & 0xFF) << 8 | bytes[offset + 1] & 0xFF;
+    }
+
+    private static int uint16Le(byte[] bytes, int offset) {
+        return bytes[offset] & 0xFF | (bytes[offset + 1] & 0xFF) << 8;
+    }
+
+    private static int uint24Le(byte[] bytes, int offset) {
+        return uint16Le(bytes, offset) | (bytes[offset + 2] & 0xFF) << 16;
+    }
+
+    private static int int32Be(byte[] bytes, int offset) {
+        return uint16Be(bytes, offset) << 16 | uint16Be(bytes, offset + 2);
+    }
+
+    private static int int32Le(byte[] bytes, int offset) {
+        return uint16Le(bytes, offset) | uint16Le(bytes, offset + 2) << 16;
+    }
+}
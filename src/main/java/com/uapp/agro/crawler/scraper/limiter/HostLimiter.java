@@ -0,0 +1,25 @@
+package com.uapp.agro.crawler.scraper.limiter;
+
+/**
+ * Limits concurrent requests per host. {@link RequestLimiter} takes a host permit before its global one
+ * and reports how the request went when it releases it.
+ */
+public interface HostLimiter {
+
+    /**
+     * Blocks while the host of the url is at its limit or paused by {@code Retry-After}.
+     *
+     * @throws IllegalArgumentException when the url can not be parsed
+     */
+    HostPermit acquire(String url) throws InterruptedException;
+
+    /**
+     * @return {@code null} when the host has no free slot right now
+     */
+    HostPermit tryAcquire(String url);
+
+    /**
+     * @return whether some host could take another request now, e.g. to decide if another worker would help
+     */
+    boolean hasSpareCapacity();
+}
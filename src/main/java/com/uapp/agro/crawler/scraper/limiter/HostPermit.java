@@ -0,0 +1,25 @@
+package com.uapp.agro.crawler.scraper.limiter;
+
+/**
+ * A slot for one request to one host. The request reports its response through {@link #responded} as soon
+ * as the status line and headers are in, so the time to first byte rather than the body size is what the
+ * limiter sees as latency. {@link RequestLimiter} starts the clock and releases the permit.
+ */
+public interface HostPermit {
+
+    /**
+     * Called once the global permit is held too, right before the request is sent. Latency is measured from
+     * here, so time spent waiting for the global permit does not count against the host.
+     */
+    void started();
+
+    /**
+     * @param retryAfter value of the {@code Retry-After} header, {@code null} when absent
+     */
+    void responded(int status, String retryAfter);
+
+    /**
+     * @param failure {@code null} when the request completed
+     */
+    void release(Throwable failure);
+}
@@ -0,0 +1,119 @@
+package com.uapp.agro.crawler.scraper.limiter;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Semaphore;
+import java.util.function.Function;
+
+/**
+ * Bounds the number of network requests in flight across all producers and consumers, and per host through
+ * the {@link HostLimiter}. With virtual threads the thread count is no longer a limit, so the semaphore is.
+ * The host permit is taken first, so a request waiting for a slow or paused host does not hold a global permit.
+ */
+public class RequestLimiter {
+    private final Semaphore permits;
+    private final HostLimiter hostLimiter;
+
+    public RequestLimiter(int maxConcurrentRequests, HostLimiter hostLimiter) {
+        this.permits = new Semaphore(maxConcurrentRequests, true);
+        this.hostLimiter = hostLimiter;
+    }
+
+    public <T> T call(String url, IoCall<T> call) throws IOException {
+        HostPermit hostPermit = acquireHost(url);
+        Throwable failure = null;
+        try {
+            acquire();
+            try {
+                hostPermit.started();
+                return call.call(hostPermit);
+            } finally {
+                permits.release();
+            }
+        } catch (IOException | RuntimeException e) {
+            failure = e;
+            throw e;
+        } finally {
+            hostPermit.release(failure);
+        }
+    }
+
+    /**
+     * Blocks the caller until permits are free, then holds them until the returned future completes.
+     */
+    public <T> CompletableFuture<T> callAsync(String url, Function<HostPermit, CompletableFuture<T>> call)
+            throws InterruptedIOException {
+        HostPermit hostPermit = acquireHost(url);
+        try {
+            acquire();
+        } catch (InterruptedIOException e) {
+            hostPermit.release(e);
+            throw e;
+        }
+        return start(hostPermit, call);
+    }
+
+    /**
+     * Like {@link #callAsync} but returns {@code null} instead of waiting when no permit is free, for callers
+     * that already hold a permit and must not block on another one.
+     */
+    public <T> CompletableFuture<T> tryCallAsync(String url, Function<HostPermit, CompletableFuture<T>> call) {
+        HostPermit hostPermit = hostLimiter.tryAcquire(url);
+        if (hostPermit == null) {
+            return null;
+        }
+        if (!permits.tryAcquire()) {
+            hostPermit.release(null);
+            return null;
+        }
+        return start(hostPermit, call);
+    }
+
+    /**
+     * @return whether some host could take another request now
+     */
+    public boolean hasSpareHostCapacity() {
+        return hostLimiter.hasSpareCapacity();
+    }
+
+    private <T> CompletableFuture<T> start(HostPermit hostPermit, Function<HostPermit, CompletableFuture<T>> call) {
+        try {
+            hostPermit.started();
+            return call.apply(hostPermit).whenComplete((result, throwable) -> {
+                permits.release();
+                hostPermit.release(throwable);
+            });
+        } catch (RuntimeException e) {
+            permits.release();
+            hostPermit.release(e);
+            throw e;
+        }
+    }
+
+    private HostPermit acquireHost(String url) throws InterruptedIOException {
+        try {
+            return hostLimiter.acquire(url);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for a host permit");
+        }
+    }
+
+    private void acquire() throws InterruptedIOException {
+        try {
+            permits.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for a request permit");
+        }
+    }
+
+    /**
+     * Gets the host permit to report the response status and {@code Retry-After} header through.
+     */
+    @FunctionalInterface
+    public interface IoCall<T> {
+        T call(HostPermit hostPermit) throws IOException;
+    }
+}
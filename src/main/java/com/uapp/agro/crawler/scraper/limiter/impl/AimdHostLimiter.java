@@ -0,0 +1,259 @@
+package com.uapp.agro.crawler.scraper.limiter.impl;
+
+import com.uapp.agro.crawler.scraper.limiter.HostLimiter;
+import com.uapp.agro.crawler.scraper.limiter.HostPermit;
+import com.uapp.agro.crawler.scraper.metrics.CrawlMetrics;
+import lombok.extern.slf4j.Slf4j;
+
+import java.net.SocketTimeoutException;
+import java.net.URI;
+import java.net.http.HttpTimeoutException;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Additive-increase/multiplicative-decrease concurrency limit per host, starting at {@code initialLimit}:
+ * <ul>
+ *     <li>a response within {@code latencyTolerance} times the host's latency floor raises the limit by one,
+ *     as long as at least half of it was in use, up to {@code maxLimit};</li>
+ *     <li>a slower response, a 429 or 503, or a timeout multiplies it by {@code backoffRatio}, at most once
+ *     per observed latency so that one burst of slow answers counts once; it never drops below one;</li>
+ *     <li>{@code Retry-After} on a 429 or 503 pauses the host for that long, capped at {@code maxRetryAfter}.</li>
+ * </ul>
+ * The latency floor is the lowest time to first byte seen, drifting slowly towards higher samples so that
+ * one lucky response does not hold the limit down for good. Hosts are kept for the whole crawl.
+ */
+@Slf4j
+public class AimdHostLimiter implements HostLimiter {
+    private static final int TOO_MANY_REQUESTS = 429;
+    private static final int SERVICE_UNAVAILABLE = 503;
+    private static final int FLOOR_DRIFT = 64;
+
+    private final int initialLimit;
+    private final int maxLimit;
+    private final double backoffRatio;
+    private final double latencyTolerance;
+    private final long maxRetryAfterNanos;
+    private final CrawlMetrics metrics;
+    private final Map<String, Host> hosts = new ConcurrentHashMap<>();
+
+    public AimdHostLimiter(int initialLimit, int maxLimit, double backoffRatio, double latencyTolerance,
+                           Duration maxRetryAfter, CrawlMetrics metrics) {
+        this.initialLimit = Math.min(initialLimit, maxLimit);
+        this.maxLimit = maxLimit;
+        this.backoffRatio = backoffRatio;
+        this.latencyTolerance = latencyTolerance;
+        this.maxRetryAfterNanos = maxRetryAfter.toNanos();
+        this.metrics = metrics;
+    }
+
+    @Override
+    public HostPermit acquire(String url) throws InterruptedException {
+        Host host = hostOf(url);
+        host.acquire();
+        return new Permit(host);
+    }
+
+    @Override
+    public HostPermit tryAcquire(String url) {
+        Host host = hostOf(url);
+        return host.tryAcquire() ? new Permit(host) : null;
+    }
+
+    @Override
+    public boolean hasSpareCapacity() {
+        if (hosts.isEmpty()) {
+            return true;
+        }
+        for (Host host : hosts.values()) {
+            if (host.hasSpareCapacity()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private Host hostOf(String url) {
+        String host = URI.create(url).getHost();
+        String key = host == null ? "" : host.toLowerCase(Locale.ROOT);
+        return hosts.computeIfAbsent(key, Host::new);
+    }
+
+    /**
+     * @param retryAfter delay in seconds or an HTTP date
+     */
+    static long retryAfterNanos(String retryAfter) {
+        if (retryAfter == null || retryAfter.isBlank()) {
+            return 0;
+        }
+        String value = retryAfter.trim();
+        try {
+            return TimeUnit.SECONDS.toNanos(Math.max(0, Long.parseLong(value)));
+        } catch (NumberFormatException e) {
+            try {
+                Instant until = ZonedDateTime.parse(value, DateTimeFormatter.RFC_1123_DATE_TIME).toInstant();
+                return Math.max(0, Duration.between(Instant.now(), until).toNanos());
+            } catch (DateTimeParseException | ArithmeticException ignored) {
+                return 0;
+            }
+        }
+    }
+
+    private static boolean isTimeout(Throwable failure) {
+        Throwable cause = failure;
+        while ((cause instanceof CompletionException || cause instanceof ExecutionException)
+                && cause.getCause() != null) {
+            cause = cause.getCause();
+        }
+        return cause instanceof HttpTimeoutException
+                || cause instanceof SocketTimeoutException
+                || cause instanceof TimeoutException;
+    }
+
+    private final class Permit implements HostPermit {
+        private final Host host;
+        private long startedAt = System.nanoTime();
+        private long latencyNanos = -1;
+        private int status;
+        private String retryAfter;
+
+        private Permit(Host host) {
+            this.host = host;
+        }
+
+        @Override
+        public void started() {
+            this.startedAt = System.nanoTime();
+        }
+
+        @Override
+        public void responded(int status, String retryAfter) {
+            this.latencyNanos = System.nanoTime() - startedAt;
+            this.status = status;
+            this.retryAfter = retryAfter;
+        }
+
+        @Override
+        public void release(Throwable failure) {
+            if (status == TOO_MANY_REQUESTS || status == SERVICE_UNAVAILABLE) {
+                host.release(-1, "throttled", retryAfterNanos(retryAfter));
+            } else if (latencyNanos < 0 && failure != null && isTimeout(failure)) {
+                host.release(-1, "timeout", 0);
+            } else {
+                host.release(latencyNanos, null, 0);
+            }
+        }
+    }
+
+    private final class Host {
+        private final String name;
+        private final ReentrantLock lock = new ReentrantLock();
+        private final Condition changed = lock.newCondition();
+        private double limit = initialLimit;
+        private int inFlight;
+        private long pausedUntil;
+        private long latencyFloor = Long.MAX_VALUE;
+        private long lastBackoff;
+
+        private Host(String name) {
+            this.name = name;
+            this.pausedUntil = System.nanoTime();
+            this.lastBackoff = pausedUntil;
+        }
+
+        void acquire() throws InterruptedException {
+            lock.lockInterruptibly();
+            try {
+                while (true) {
+                    long paused = pausedUntil - System.nanoTime();
+                    if (paused > 0) {
+                        changed.awaitNanos(paused);
+                    } else if (inFlight >= (int) limit) {
+                        changed.await();
+                    } else {
+                        inFlight++;
+                        return;
+                    }
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        boolean tryAcquire() {
+            lock.lock();
+            try {
+                if (pausedUntil - System.nanoTime() > 0 || inFlight >= (int) limit) {
+                    return false;
+                }
+                inFlight++;
+                return true;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        boolean hasSpareCapacity() {
+            lock.lock();
+            try {
+                return pausedUntil - System.nanoTime() <= 0 && inFlight < (int) limit;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        /**
+         * @param latencyNanos time to first byte, negative when there was no usable response
+         * @param backoffReason why the limit goes down regardless of latency, {@code null} otherwise
+         */
+        void release(long latencyNanos, String backoffReason, long retryAfterNanos) {
+            lock.lock();
+            try {
+                int used = inFlight--;
+                long now = System.nanoTime();
+                if (backoffReason != null) {
+                    backOff(now, backoffReason, latencyFloor == Long.MAX_VALUE ? 0 : latencyFloor);
+                    if (retryAfterNanos > 0) {
+                        pausedUntil = Math.max(pausedUntil, now + Math.min(retryAfterNanos, maxRetryAfterNanos));
+                        log.info("Pausing host {} for {} ms", name, TimeUnit.NANOSECONDS.toMillis(pausedUntil - now));
+                    }
+                } else if (latencyNanos >= 0) {
+                    if (latencyFloor != Long.MAX_VALUE && latencyNanos > latencyFloor * latencyTolerance) {
+                        backOff(now, "latency", latencyNanos);
+                    } else if (used * 2 >= limit) {
+                        limit = Math.min(maxLimit, limit + 1);
+                    }
+                    latencyFloor = latencyNanos < latencyFloor
+                            ? latencyNanos
+                            : latencyFloor + (latencyNanos - latencyFloor) / FLOOR_DRIFT;
+                }
+                changed.signalAll();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        private void backOff(long now, String reason, long windowNanos) {
+            if (now - lastBackoff < windowNanos) {
+                return;
+            }
+            double previous = limit;
+            limit = Math.max(1, limit * backoffRatio);
+            lastBackoff = now;
+            metrics.recordHostBackoff(reason);
+            log.info("Host {} limit {} -> {} ({})", name, (int) previous, (int) limit, reason);
+        }
+    }
+}
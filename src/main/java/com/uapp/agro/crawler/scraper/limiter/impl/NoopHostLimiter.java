@@ -0,0 +1,35 @@
+package com.uapp.agro.crawler.scraper.limiter.impl;
+
+import com.uapp.agro.crawler.scraper.limiter.HostLimiter;
+import com.uapp.agro.crawler.scraper.limiter.HostPermit;
+
+public class NoopHostLimiter implements HostLimiter {
+    private static final HostPermit PERMIT = new HostPermit() {
+        @Override
+        public void started() {
+        }
+
+        @Override
+        public void responded(int status, String retryAfter) {
+        }
+
+        @Override
+        public void release(Throwable failure) {
+        }
+    };
+
+    @Override
+    public HostPermit acquire(String url) {
+        return PERMIT;
+    }
+
+    @Override
+    public HostPermit tryAcquire(String url) {
+        return PERMIT;
+    }
+
+    @Override
+    public boolean hasSpareCapacity() {
+        return true;
+    }
+}
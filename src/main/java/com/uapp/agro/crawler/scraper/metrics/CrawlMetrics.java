@@ -0,0 +1,167 @@
+package com.uapp.agro.crawler.scraper.metrics;
+
+import com.uapp.agro.crawler.scraper.balancer.WorkerGroup;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * Meters of every pipeline stage, exposed through the actuator {@code metrics} endpoint. Latency timers
+ * publish percentile histograms, so the slowest stage can be read off directly; pages fetched per second is
+ * the rate of {@code crawler.page.fetch}.
+ */
+@Component
+public class CrawlMetrics {
+    private static final String OUTCOME = "outcome";
+
+    private final MeterRegistry registry;
+    private final Timer pageFetchSuccess;
+    private final Timer pageFetchFailure;
+    private final Timer imageProbeSuccess;
+    private final Timer imageProbeFailure;
+    private final Counter bytesDownloaded;
+    private final Counter bytesWritten;
+    private final Timer compression;
+    private final DistributionSummary encodeAttempts;
+    private final Timer dbWrite;
+    private final DistributionSummary dbBatchSize;
+    private final Counter pageNotModified;
+    private final Counter probeNotModified;
+    private final Counter imageNotModified;
+
+    public CrawlMetrics(MeterRegistry registry) {
+        this.registry = registry;
+        this.pageFetchSuccess = latencyTimer("crawler.page.fetch", "Page download and parse time", "success");
+        this.pageFetchFailure = latencyTimer("crawler.page.fetch", "Page download and parse time", "failure");
+        this.imageProbeSuccess = latencyTimer("crawler.image.probe", "Image HEAD probe time", "success");
+        this.imageProbeFailure = latencyTimer("crawler.image.probe", "Image HEAD probe time", "failure");
+        this.bytesDownloaded = Counter.builder("crawler.image.bytes.downloaded")
+                .description("Bytes of original images downloaded")
+                .baseUnit("bytes")
+                .register(registry);
+        this.bytesWritten = Counter.builder("crawler.image.bytes.written")
+                .description("Bytes of compressed images written to disk")
+                .baseUnit("bytes")
+                .register(registry);
+        this.compression = Timer.builder("crawler.image.compression")
+                .description("Time spent compressing one image")
+                .publishPercentileHistogram()
+                .register(registry);
+        this.encodeAttempts = DistributionSummary.builder("crawler.image.encode.attempts")
+                .description("Encodes needed to compress one image")
+                .publishPercentileHistogram()
+                .register(registry);
+        this.dbWrite = Timer.builder("crawler.db.write")
+                .description("Time to insert one batch of image infos")
+                .publishPercentileHistogram()
+                .register(registry);
+        this.dbBatchSize = DistributionSummary.builder("crawler.db.batch.size")
+                .description("Image infos per insert batch")
+                .register(registry);
+        this.pageNotModified = notModifiedCounter("page");
+        this.probeNotModified = notModifiedCounter("probe");
+        this.imageNotModified = notModifiedCounter("image");
+    }
+
+    public void recordPageFetch(long nanos, boolean success) {
+        (success ? pageFetchSuccess : pageFetchFailure).record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void recordImageProbe(long nanos, boolean success) {
+        (success ? imageProbeSuccess : imageProbeFailure).record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void recordImageDownloaded(long bytes) {
+        bytesDownloaded.increment(bytes);
+    }
+
+    public void recordImageWritten(long bytes) {
+        bytesWritten.increment(bytes);
+    }
+
+    public void recordCompression(long nanos, int attempts) {
+        compression.record(nanos, TimeUnit.NANOSECONDS);
+        encodeAttempts.record(attempts);
+    }
+
+    public void recordDbWrite(long nanos, int batchSize) {
+        dbWrite.record(nanos, TimeUnit.NANOSECONDS);
+        dbBatchSize.record(batchSize);
+    }
+
+    public void recordPageNotModified() {
+        pageNotModified.increment();
+    }
+
+    public void recordProbeNotModified() {
+        probeNotModified.increment();
+    }
+
+    public void recordImageNotModified() {
+        imageNotModified.increment();
+    }
+
+    public void recordHostBackoff(String reason) {
+        Counter.builder("crawler.host.backoff")
+                .description("Times a host's concurrency limit was lowered")
+                .tag("reason", reason)
+                .register(registry)
+                .increment();
+    }
+
+    public void recordLinkRejected(String reason) {
+        Counter.builder("crawler.link.rejected")
+                .description("Links dropped before they were fetched")
+                .tag("reason", reason)
+                .register(registry)
+                .increment();
+    }
+
+    public void recordRetry(String kind, String outcome) {
+        Counter.builder("crawler.retry")
+                .description("Failed fetches retried or given up on")
+                .tag("kind", kind)
+                .tag("outcome", outcome)
+                .register(registry)
+                .increment();
+    }
+
+    public <T> void gaugeQueueDepth(String queue, T source, ToDoubleFunction<T> depth) {
+        gauge("crawler.queue.depth", "Elements waiting in a pipeline queue", "queue", queue, source, depth);
+    }
+
+    public void gaugeWorkers(String kind, WorkerGroup workers) {
+        gauge("crawler.workers.active", "Running workers", "kind", kind, workers, WorkerGroup::getActive);
+        gauge("crawler.workers.limit", "Worker limit set by the balancer", "kind", kind, workers, WorkerGroup::getLimit);
+    }
+
+    private <T> void gauge(String name, String description, String tagKey, String tagValue, T source,
+                           ToDoubleFunction<T> value) {
+        Gauge.builder(name, source, value)
+                .description(description)
+                .tag(tagKey, tagValue)
+                .strongReference(true)
+                .register(registry);
+    }
+
+    private Counter notModifiedCounter(String request) {
+        return Counter.builder("crawler.http.not.modified")
+                .description("Conditional requests answered with 304 from the validator cache")
+                .tag("request", request)
+                .register(registry);
+    }
+
+    private Timer latencyTimer(String name, String description, String outcome) {
+        return Timer.builder(name)
+                .description(description)
+                .tag(OUTCOME, outcome)
+                .publishPercentileHistogram()
+                .register(registry);
+    }
+}
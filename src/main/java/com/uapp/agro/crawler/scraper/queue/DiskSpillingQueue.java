@@ -0,0 +1,316 @@
+package com.uapp.agro.crawler.scraper.queue;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.AbstractQueue;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * FIFO queue of strings that keeps at most {@code memoryCapacity} elements on the heap and at most
+ * {@code capacity} elements in total, {@link #put} blocks while it is full.
+ * Once the in-memory head is full new elements are appended to memory-mapped segment files, and every
+ * poll moves the oldest spilled element back into the head. While nothing is spilled it behaves like
+ * a plain array deque behind a lock.
+ * <p>
+ * Iterators are weakly consistent: they see the elements queued when they were created, in order, and may
+ * still return elements taken meanwhile. Spilled elements are read from the segment files lazily, so
+ * {@code contains}, {@code toArray} and {@code toString} work but read the whole queue.
+ */
+public class DiskSpillingQueue extends AbstractQueue<String> implements BlockingQueue<String> {
+    private final int memoryCapacity;
+    private final int capacity;
+    private final Deque<String> memory = new ArrayDeque<>();
+    private final MappedSegmentLog spill;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notEmpty = lock.newCondition();
+    private final Condition notFull = lock.newCondition();
+
+    public DiskSpillingQueue(int memoryCapacity, Path spillDirectory, int segmentSize) {
+        this(memoryCapacity, Integer.MAX_VALUE, spillDirectory, segmentSize);
+    }
+
+    public DiskSpillingQueue(int memoryCapacity, int capacity, Path spillDirectory, int segmentSize) {
+        this.memoryCapacity = memoryCapacity;
+        this.capacity = capacity;
+        try {
+            this.spill = new MappedSegmentLog(spillDirectory, segmentSize);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Can not create spill directory " + spillDirectory, e);
+        }
+    }
+
+    @Override
+    public boolean offer(String element) {
+        lock.lock();
+        try {
+            if (isFull()) {
+                return false;
+            }
+            enqueue(element);
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void put(String element) throws InterruptedException {
+        lock.lockInterruptibly();
+        try {
+            while (isFull()) {
+                notFull.await();
+            }
+            enqueue(element);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public boolean offer(String element, long timeout, TimeUnit unit) throws InterruptedException {
+        long nanos = unit.toNanos(timeout);
+        lock.lockInterruptibly();
+        try {
+            while (isFull()) {
+                if (nanos <= 0) {
+                    return false;
+                }
+                nanos = notFull.awaitNanos(nanos);
+            }
+            enqueue(element);
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public String poll() {
+        lock.lock();
+        try {
+            return dequeue();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public String take() throws InterruptedException {
+        lock.lockInterruptibly();
+        try {
+            while (memory.isEmpty()) {
+                notEmpty.await();
+            }
+            return dequeue();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public String poll(long timeout, TimeUnit unit) throws InterruptedException {
+        long nanos = unit.toNanos(timeout);
+        lock.lockInterruptibly();
+        try {
+            while (memory.isEmpty()) {
+                if (nanos <= 0) {
+                    return null;
+                }
+                nanos = notEmpty.awaitNanos(nanos);
+            }
+            return dequeue();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Spilled elements exist only while the head is full, so the head always holds the oldest element.
+     */
+    @Override
+    public String peek() {
+        lock.lock();
+        try {
+            return memory.peekFirst();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public int size() {
+        lock.lock();
+        try {
+            return (int) Math.min(Integer.MAX_VALUE, memory.size() + spill.count());
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public int remainingCapacity() {
+        lock.lock();
+        try {
+            return (int) Math.max(0, capacity - memory.size() - spill.count());
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public int drainTo(Collection<? super String> collection) {
+        return drainTo(collection, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public int drainTo(Collection<? super String> collection, int maxElements) {
+        lock.lock();
+        try {
+            int drained = 0;
+            while (drained < maxElements && !memory.isEmpty()) {
+                collection.add(dequeue());
+                drained++;
+            }
+            return drained;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public Iterator<String> iterator() {
+        lock.lock();
+        try {
+            return new SnapshotIterator(List.copyOf(memory).iterator(), spill.snapshot());
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Removes the first equal element. A spilled element is removed by rotating the whole spill log once.
+     */
+    @Override
+    public boolean remove(Object element) {
+        if (!(element instanceof String)) {
+            return false;
+        }
+        lock.lock();
+        try {
+            if (memory.remove(element)) {
+                refillMemory();
+                notFull.signal();
+                return true;
+            }
+            return removeSpilled((String) element);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Can not remove spilled queue element", e);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private boolean isFull() {
+        return memory.size() + spill.count() >= capacity;
+    }
+
+    private void enqueue(String element) {
+        try {
+            if (spill.count() == 0 && memory.size() < memoryCapacity) {
+                memory.addLast(element);
+            } else {
+                spill.append(element.getBytes(StandardCharsets.UTF_8));
+            }
+            notEmpty.signal();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Can not spill queue element", e);
+        }
+    }
+
+    private String dequeue() {
+        String element = memory.pollFirst();
+        if (element != null) {
+            notFull.signal();
+            try {
+                refillMemory();
+            } catch (IOException e) {
+                throw new UncheckedIOException("Can not read spilled queue element", e);
+            }
+        }
+        return element;
+    }
+
+    /**
+     * Keeps the head full while anything is spilled, so the head always holds the oldest elements.
+     */
+    private void refillMemory() throws IOException {
+        while (memory.size() < memoryCapacity && spill.count() > 0) {
+            memory.addLast(new String(spill.read(), StandardCharsets.UTF_8));
+        }
+    }
+
+    private boolean removeSpilled(String element) throws IOException {
+        byte[] target = element.getBytes(StandardCharsets.UTF_8);
+        boolean removed = false;
+        for (long i = spill.count(); i > 0; i--) {
+            byte[] record = spill.read();
+            if (!removed && Arrays.equals(record, target)) {
+                removed = true;
+            } else {
+                spill.append(record);
+            }
+        }
+        if (removed) {
+            notFull.signal();
+        }
+        return removed;
+    }
+
+    /**
+     * {@link #remove()} removes the first element equal to the last one returned, which is that element
+     * unless the queue holds duplicates.
+     */
+    private final class SnapshotIterator implements Iterator<String> {
+        private final Iterator<String> memoryElements;
+        private final Iterator<byte[]> spilledElements;
+        private String last;
+
+        private SnapshotIterator(Iterator<String> memoryElements, Iterator<byte[]> spilledElements) {
+            this.memoryElements = memoryElements;
+            this.spilledElements = spilledElements;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return memoryElements.hasNext() || spilledElements.hasNext();
+        }
+
+        @Override
+        public String next() {
+            last = memoryElements.hasNext()
+                    ? memoryElements.next()
+                    : new String(spilledElements.next(), StandardCharsets.UTF_8);
+            return last;
+        }
+
+        @Override
+        public void remove() {
+            if (last == null) {
+                throw new IllegalStateException();
+            }
+            DiskSpillingQueue.this.remove(last);
+            last = null;
+        }
+    }
+}
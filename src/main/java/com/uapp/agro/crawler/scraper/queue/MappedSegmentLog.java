@@ -0,0 +1,189 @@
+package com.uapp.agro.crawler.scraper.queue;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * FIFO log of byte records stored in fixed-size memory-mapped segment files. Each record is an int length
+ * followed by the payload; a length of {@link #END_OF_SEGMENT} means the rest of the segment is unused.
+ * Segments are deleted once fully read. Not thread-safe, callers hold their own lock.
+ */
+class MappedSegmentLog {
+    private static final int END_OF_SEGMENT = -1;
+    private static final String SEGMENT_SUFFIX = ".segment";
+
+    private final Path directory;
+    private final int segmentSize;
+    private final Deque<Segment> segments = new ArrayDeque<>();
+    private long nextSegmentId;
+    private long count;
+
+    MappedSegmentLog(Path directory, int segmentSize) throws IOException {
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        Files.createDirectories(directory);
+        deleteLeftoverSegments();
+    }
+
+    void append(byte[] record) throws IOException {
+        Segment tail = segments.peekLast();
+        if (tail == null || tail.buffer.remaining() < Integer.BYTES + record.length) {
+            if (tail != null && tail.buffer.remaining() >= Integer.BYTES) {
+                tail.buffer.putInt(END_OF_SEGMENT);
+            }
+            tail = openSegment(Math.max(segmentSize, Integer.BYTES * 2 + record.length));
+            segments.addLast(tail);
+        }
+        tail.buffer.putInt(record.length);
+        tail.buffer.put(record);
+        count++;
+    }
+
+    /**
+     * @return the oldest record or {@code null} when the log is empty
+     */
+    byte[] read() throws IOException {
+        while (count > 0) {
+            Segment head = segments.peekFirst();
+            if (head.readPosition + Integer.BYTES <= head.buffer.position()) {
+                int length = head.buffer.getInt(head.readPosition);
+                if (length != END_OF_SEGMENT) {
+                    byte[] record = new byte[length];
+                    head.buffer.get(head.readPosition + Integer.BYTES, record);
+                    head.readPosition += Integer.BYTES + length;
+                    count--;
+                    if (count == 0) {
+                        clear();
+                    }
+                    return record;
+                }
+            }
+            segments.removeFirst();
+            head.delete();
+        }
+        return null;
+    }
+
+    long count() {
+        return count;
+    }
+
+    /**
+     * Reads the records present now, oldest first, without consuming them. Records read meanwhile are still
+     * returned, records appended meanwhile are not. Iterating only reads the mapped bytes written before this
+     * call and no buffer position, so it needs no lock; a deleted segment stays mapped until it is collected.
+     */
+    Iterator<byte[]> snapshot() {
+        List<SegmentView> views = new ArrayList<>();
+        for (Segment segment : segments) {
+            views.add(new SegmentView(segment.buffer, segment.readPosition, segment.buffer.position()));
+        }
+        return new Iterator<>() {
+            private int view;
+            private byte[] next = advance();
+
+            @Override
+            public boolean hasNext() {
+                return next != null;
+            }
+
+            @Override
+            public byte[] next() {
+                if (next == null) {
+                    throw new NoSuchElementException();
+                }
+                byte[] record = next;
+                next = advance();
+                return record;
+            }
+
+            private byte[] advance() {
+                while (view < views.size()) {
+                    byte[] record = views.get(view).next();
+                    if (record != null) {
+                        return record;
+                    }
+                    view++;
+                }
+                return null;
+            }
+        };
+    }
+
+    void clear() throws IOException {
+        while (!segments.isEmpty()) {
+            segments.removeFirst().delete();
+        }
+        count = 0;
+    }
+
+    private Segment openSegment(int size) throws IOException {
+        Path file = directory.resolve(nextSegmentId++ + SEGMENT_SUFFIX);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE_NEW,
+                StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            return new Segment(file, channel.map(FileChannel.MapMode.READ_WRITE, 0, size));
+        }
+    }
+
+    private void deleteLeftoverSegments() throws IOException {
+        try (var files = Files.list(directory)) {
+            for (Path file : files.filter(path -> path.toString().endsWith(SEGMENT_SUFFIX)).toList()) {
+                Files.deleteIfExists(file);
+            }
+        }
+    }
+
+    private static final class SegmentView {
+        private final MappedByteBuffer buffer;
+        private final int limit;
+        private int position;
+
+        private SegmentView(MappedByteBuffer buffer, int position, int limit) {
+            this.buffer = buffer;
+            this.position = position;
+            this.limit = limit;
+        }
+
+        private byte[] next() {
+            if (position + Integer.BYTES > limit) {
+                return null;
+            }
+            int length = buffer.getInt(position);
+            if (length == END_OF_SEGMENT) {
+                return null;
+            }
+            byte[] record = new byte[length];
+            buffer.get(position + Integer.BYTES, record);
+            position += Integer.BYTES + length;
+            return record;
+        }
+    }
+
+    private static final class Segment {
+        private final Path file;
+        private final MappedByteBuffer buffer;
+        private int readPosition;
+
+        private Segment(Path file, MappedByteBuffer buffer) {
+            this.file = file;
+            this.buffer = buffer;
+        }
+
+        /**
+         * The mapping stays valid until the buffer is collected, deleting the file only frees its name.
+         */
+        private void delete() throws IOException {
+            Files.deleteIfExists(file);
+        }
+    }
+}
@@ -0,0 +1,13 @@
+package com.uapp.agro.crawler.scraper.retry;
+
+/**
+ * An item that is not tried again.
+ *
+ * @param kind     {@code page} or {@code image}
+ * @param attempts attempts made, including the last one
+ * @param reason   {@code permanent}, {@code exhausted} or {@code shutdown}
+ * @param error    message of the last failure
+ * @param failedAt ISO-8601 instant of the last failure
+ */
+public record DeadLetter(String kind, String url, int attempts, String reason, String error, String failedAt) {
+}
@@ -0,0 +1,11 @@
+package com.uapp.agro.crawler.scraper.retry;
+
+/**
+ * Keeps the urls the crawl gave up on, so they can be looked at or fed to a later run.
+ */
+public interface DeadLetterStore {
+
+    void add(DeadLetter deadLetter);
+
+    void close();
+}
@@ -0,0 +1,78 @@
+package com.uapp.agro.crawler.scraper.retry;
+
+import com.uapp.agro.crawler.config.ScraperConfiguration;
+import org.jsoup.HttpStatusException;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.net.ConnectException;
+import java.net.SocketException;
+import java.net.SocketTimeoutException;
+import java.net.http.HttpTimeoutException;
+import java.time.Duration;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * How often and how late a failed fetch is tried again. The delay after attempt {@code n} is drawn from the
+ * upper half of {@code min(maxDelay, baseDelay * 2^(n-1))}, so urls that failed together do not come back at
+ * the same moment.
+ * <p>
+ * Only failures that may go away are retried: timeouts, refused and reset connections, and the statuses 408,
+ * 425, 429 and 5xx. Other statuses, unknown hosts, TLS errors and everything that is not a network error,
+ * such as an image that can not be decoded, are permanent.
+ */
+public record RetryPolicy(int maxAttempts, Duration baseDelay, Duration maxDelay) {
+    private static final int REQUEST_TIMEOUT = 408;
+    private static final int TOO_EARLY = 425;
+    private static final int TOO_MANY_REQUESTS = 429;
+    private static final int SERVER_ERROR = 500;
+
+    public static RetryPolicy of(ScraperConfiguration config) {
+        return new RetryPolicy(config.getRetryMaxAttempts(), Duration.ofMillis(config.getRetryBaseDelayMs()),
+                Duration.ofMillis(config.getRetryMaxDelayMs()));
+    }
+
+    /**
+     * @param attempt attempts made so far, from 1
+     */
+    public long delayNanos(int attempt) {
+        int shift = Math.min(attempt - 1, 30);
+        // compared before shifting, as a shifted base delay of minutes or more overflows
+        long delay = baseDelay.toNanos() > maxDelay.toNanos() >> shift
+                ? maxDelay.toNanos()
+                : baseDelay.toNanos() << shift;
+        return delay / 2 + ThreadLocalRandom.current().nextLong(delay / 2 + 1);
+    }
+
+    public static boolean isRetryable(Throwable failure) {
+        Throwable cause = unwrap(failure);
+        if (cause instanceof HttpStatusException statusException) {
+            int status = statusException.getStatusCode();
+            return status == REQUEST_TIMEOUT || status == TOO_EARLY || status == TOO_MANY_REQUESTS
+                    || status >= SERVER_ERROR;
+        }
+        if (cause instanceof SocketTimeoutException || cause instanceof HttpTimeoutException) {
+            return true;
+        }
+        if (cause instanceof InterruptedIOException) {
+            // the crawl is shutting down
+            return false;
+        }
+        // the JDK client reports resets and closed streams as a plain IOException
+        return cause instanceof ConnectException || cause instanceof SocketException
+                || cause instanceof EOFException || cause.getClass() == IOException.class;
+    }
+
+    static Throwable unwrap(Throwable failure) {
+        Throwable cause = failure;
+        while ((cause instanceof CompletionException || cause instanceof ExecutionException
+                || cause instanceof UncheckedIOException) && cause.getCause() != null) {
+            cause = cause.getCause();
+        }
+        return cause;
+    }
+}
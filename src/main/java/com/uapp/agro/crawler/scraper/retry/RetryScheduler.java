@@ -0,0 +1,177 @@
+package com.uapp.agro.crawler.scraper.retry;
+
+import com.uapp.agro.crawler.scraper.coordinator.CrawlCoordinator;
+import com.uapp.agro.crawler.scraper.metrics.CrawlMetrics;
+import lombok.extern.slf4j.Slf4j;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.DelayQueue;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+/**
+ * Holds failed items in a {@link DelayQueue} until their backoff is over, then hands them back through
+ * {@code redeliver} on its own thread. Attempts are counted per url and forgotten on success. An item whose
+ * failure is permanent, that used up its attempts, or that can not be handed back because the crawl is stopping,
+ * goes to the dead-letter store instead.
+ * <p>
+ * A failed url stays in the seen-set while it waits, so links to it do not fetch it early. The redelivered
+ * item gets past the seen-set once through {@link #claimRedelivery}. Waiting items are counted by the
+ * coordinator, so the crawl does not end while one is pending.
+ */
+@Slf4j
+public class RetryScheduler<T> {
+    private final String kind;
+    private final Function<T, String> urlOf;
+    private final RetryPolicy policy;
+    private final DeadLetterStore deadLetters;
+    private final CrawlCoordinator coordinator;
+    private final CrawlMetrics metrics;
+    private final Predicate<T> redeliver;
+    private final DelayQueue<Retry<T>> retries = new DelayQueue<>();
+    private final Map<String, Integer> attempts = new ConcurrentHashMap<>();
+    private final Set<String> redelivered = ConcurrentHashMap.newKeySet();
+    private final Thread dispatcher;
+
+    /**
+     * @param kind      {@code page} or {@code image}, used in metrics, logs and dead letters
+     * @param redeliver puts the item back where it is picked up again and returns {@code false} when it could
+     *                  not, e.g. when interrupted while blocked; may block
+     */
+    public RetryScheduler(String kind, Function<T, String> urlOf, RetryPolicy policy, DeadLetterStore deadLetters,
+                          CrawlCoordinator coordinator, CrawlMetrics metrics, Predicate<T> redeliver) {
+        this.kind = kind;
+        this.urlOf = urlOf;
+        this.policy = policy;
+        this.deadLetters = deadLetters;
+        this.coordinator = coordinator;
+        this.metrics = metrics;
+        this.redeliver = redeliver;
+        metrics.gaugeQueueDepth(kind + "-retries", retries, DelayQueue::size);
+        this.dispatcher = Thread.ofPlatform().name(kind + "-retries").daemon().start(this::dispatch);
+    }
+
+    /**
+     * @return whether the item will be tried again
+     */
+    public boolean failed(T item, Throwable failure) {
+        return failed(item, failure, 0);
+    }
+
+    /**
+     * @param minDelayNanos the retry waits at least this long, e.g. until a cached failure expires
+     * @return whether the item will be tried again
+     */
+    public boolean failed(T item, Throwable failure, long minDelayNanos) {
+        String url = urlOf.apply(item);
+        int attempt = attempts.merge(url, 1, Integer::sum);
+        if (!RetryPolicy.isRetryable(failure)) {
+            deadLetter(url, attempt, "permanent", messageOf(failure));
+            return false;
+        }
+        if (attempt >= policy.maxAttempts()) {
+            deadLetter(url, attempt, "exhausted", messageOf(failure));
+            return false;
+        }
+        long delayNanos = Math.max(minDelayNanos, policy.delayNanos(attempt));
+        coordinator.retryScheduled();
+        retries.put(new Retry<>(item, System.nanoTime() + delayNanos));
+        metrics.recordRetry(kind, "scheduled");
+        log.info("Retrying {} {} in {} ms after attempt {}: {}", kind, url,
+                TimeUnit.NANOSECONDS.toMillis(delayNanos), attempt, messageOf(failure));
+        return true;
+    }
+
+    public void succeeded(T item) {
+        if (!attempts.isEmpty()) {
+            attempts.remove(urlOf.apply(item));
+        }
+    }
+
+    /**
+     * @return {@code true} once for an item handed back by {@link #redeliver}, which the seen-set still holds
+     */
+    public boolean claimRedelivery(T item) {
+        return !redelivered.isEmpty() && redelivered.remove(urlOf.apply(item));
+    }
+
+    /**
+     * Stops handing items back; called once the crawl is done. Items still waiting then, e.g. when the crawl
+     * was stopped, are dead-lettered with reason {@code shutdown}.
+     */
+    public void close() {
+        dispatcher.interrupt();
+        try {
+            dispatcher.join(TimeUnit.SECONDS.toMillis(1));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        List<Retry<T>> waiting = new ArrayList<>(retries);
+        retries.clear();
+        if (!waiting.isEmpty()) {
+            log.warn("{} {} retries were still waiting", waiting.size(), kind);
+        }
+        for (Retry<T> retry : waiting) {
+            String url = urlOf.apply(retry.item());
+            deadLetter(url, attempts.getOrDefault(url, 0), "shutdown", "Crawl stopped before the retry was due");
+            coordinator.retryDispatched();
+        }
+    }
+
+    private void dispatch() {
+        while (!Thread.currentThread().isInterrupted()) {
+            Retry<T> retry;
+            try {
+                retry = retries.take();
+            } catch (InterruptedException e) {
+                return;
+            }
+            String url = urlOf.apply(retry.item());
+            try {
+                redelivered.add(url);
+                if (!redeliver.test(retry.item())) {
+                    redelivered.remove(url);
+                    deadLetter(url, attempts.getOrDefault(url, 0), "shutdown",
+                            "Crawl stopped while the retry was handed back");
+                }
+            } catch (RuntimeException e) {
+                redelivered.remove(url);
+                deadLetter(url, attempts.getOrDefault(url, 0), "permanent", messageOf(e));
+            } finally {
+                coordinator.retryDispatched();
+            }
+        }
+    }
+
+    private void deadLetter(String url, int attempt, String reason, String message) {
+        attempts.remove(url);
+        metrics.recordRetry(kind, reason);
+        log.warn("Giving up on {} {} after {} attempts ({}): {}", kind, url, attempt, reason, message);
+        deadLetters.add(new DeadLetter(kind, url, attempt, reason, message, Instant.now().toString()));
+    }
+
+    private static String messageOf(Throwable failure) {
+        Throwable cause = RetryPolicy.unwrap(failure);
+        return cause.getClass().getSimpleName() + ": " + cause.getMessage();
+    }
+
+    private record Retry<T>(T item, long dueAt) implements Delayed {
+
+        @Override
+        public long getDelay(TimeUnit unit) {
+            return unit.convert(dueAt - System.nanoTime(), TimeUnit.NANOSECONDS);
+        }
+
+        @Override
+        public int compareTo(Delayed other) {
+            return Long.signum(dueAt - ((Retry<?>) other).dueAt);
+        }
+    }
+}
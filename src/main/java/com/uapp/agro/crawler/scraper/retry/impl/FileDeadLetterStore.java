@@ -0,0 +1,65 @@
+package com.uapp.agro.crawler.scraper.retry.impl;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.uapp.agro.crawler.scraper.retry.DeadLetter;
+import com.uapp.agro.crawler.scraper.retry.DeadLetterStore;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Appends dead letters to a file, one JSON object per line. Every line is flushed right away, dead letters
+ * are rare and should survive a crash.
+ */
+@Slf4j
+public class FileDeadLetterStore implements DeadLetterStore {
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final ReentrantLock lock = new ReentrantLock();
+    private final BufferedWriter writer;
+
+    public FileDeadLetterStore(Path file) {
+        try {
+            Path parent = file.toAbsolutePath().getParent();
+            if (parent != null) {
+                Files.createDirectories(parent);
+            }
+            this.writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8, StandardOpenOption.CREATE,
+                    StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Can not open dead-letter file " + file, e);
+        }
+    }
+
+    @Override
+    public void add(DeadLetter deadLetter) {
+        lock.lock();
+        try {
+            writer.write(objectMapper.writeValueAsString(deadLetter));
+            writer.newLine();
+            writer.flush();
+        } catch (IOException e) {
+            log.warn("Can not write dead letter for {}: {}", deadLetter.url(), e.getMessage());
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void close() {
+        lock.lock();
+        try {
+            writer.close();
+        } catch (IOException e) {
+            log.warn("Can not close dead-letter file: {}", e.getMessage());
+        } finally {
+            lock.unlock();
+        }
+    }
+}
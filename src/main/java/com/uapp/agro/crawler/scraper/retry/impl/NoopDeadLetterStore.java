@@ -0,0 +1,15 @@
+package com.uapp.agro.crawler.scraper.retry.impl;
+
+import com.uapp.agro.crawler.scraper.retry.DeadLetter;
+import com.uapp.agro.crawler.scraper.retry.DeadLetterStore;
+
+public class NoopDeadLetterStore implements DeadLetterStore {
+
+    @Override
+    public void add(DeadLetter deadLetter) {
+    }
+
+    @Override
+    public void close() {
+    }
+}
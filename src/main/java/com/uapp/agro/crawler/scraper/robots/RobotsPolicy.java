@@ -0,0 +1,16 @@
+package com.uapp.agro.crawler.scraper.robots;
+
+/**
+ * Tells whether the {@code robots.txt} of a url's host lets the crawler fetch it.
+ */
+public interface RobotsPolicy {
+
+    /**
+     * May fetch {@code robots.txt} of the host first, through the request limiter, so it must not be called
+     * while holding a request permit.
+     *
+     * @throws RobotsUnavailableException when the file could not be read; the url should be tried again later
+     *                                    rather than dropped
+     */
+    boolean allows(String url) throws InterruptedException, RobotsUnavailableException;
+}
@@ -0,0 +1,135 @@
+package com.uapp.agro.crawler.scraper.robots;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Rules of one {@code robots.txt} that apply to the crawler, following RFC 9309. The groups naming the
+ * crawler's product token are used, or the {@code *} groups when none does. The longest matching rule wins and
+ * {@code allow} wins a tie; no matching rule means allowed. A rule path may contain {@code *} for any run of
+ * characters and end with {@code $} to match the end of the url.
+ */
+public final class RobotsRules {
+    public static final RobotsRules ALLOW_ALL = new RobotsRules(List.of());
+    public static final RobotsRules DISALLOW_ALL = new RobotsRules(List.of(new Rule("/", false)));
+
+    private final List<Rule> rules;
+
+    private RobotsRules(List<Rule> rules) {
+        this.rules = rules;
+    }
+
+    /**
+     * @param userAgent the crawler's user agent, only its product token before the first {@code /} is compared
+     */
+    public static RobotsRules parse(String content, String userAgent) {
+        String token = productToken(userAgent);
+        List<Rule> ownRules = new ArrayList<>();
+        List<Rule> wildcardRules = new ArrayList<>();
+        boolean named = false;
+        boolean inUserAgents = false;
+        boolean ownGroup = false;
+        boolean wildcardGroup = false;
+        for (String line : content.split("\r\n|\r|\n")) {
+            int comment = line.indexOf('#');
+            String record = (comment < 0 ? line : line.substring(0, comment)).trim();
+            int colon = record.indexOf(':');
+            if (colon <= 0) {
+                continue;
+            }
+            String key = record.substring(0, colon).trim().toLowerCase(Locale.ROOT);
+            String value = record.substring(colon + 1).trim();
+            if (key.equals("user-agent")) {
+                if (!inUserAgents) {
+                    ownGroup = false;
+                    wildcardGroup = false;
+                    inUserAgents = true;
+                }
+                String agent = productToken(value);
+                if (agent.equals("*")) {
+                    wildcardGroup = true;
+                } else if (!token.isEmpty() && agent.equals(token)) {
+                    ownGroup = true;
+                    named = true;
+                }
+                continue;
+            }
+            inUserAgents = false;
+            boolean allow = key.equals("allow");
+            if ((allow || key.equals("disallow")) && !value.isEmpty()) {
+                Rule rule = new Rule(value, allow);
+                if (ownGroup) {
+                    ownRules.add(rule);
+                }
+                if (wildcardGroup) {
+                    wildcardRules.add(rule);
+                }
+            }
+        }
+        return new RobotsRules(List.copyOf(named ? ownRules : wildcardRules));
+    }
+
+    /**
+     * @param path path and query of the url, starting with {@code /}
+     */
+    public boolean allows(String path) {
+        Rule best = null;
+        for (Rule rule : rules) {
+            if (rule.matches(path) && (best == null || rule.path.length() > best.path.length()
+                    || rule.path.length() == best.path.length() && rule.allow)) {
+                best = rule;
+            }
+        }
+        return best == null || best.allow;
+    }
+
+    public int size() {
+        return rules.size();
+    }
+
+    private static String productToken(String userAgent) {
+        String token = userAgent.trim();
+        int end = 0;
+        while (end < token.length() && token.charAt(end) != '/' && !Character.isWhitespace(token.charAt(end))) {
+            end++;
+        }
+        return token.substring(0, end).toLowerCase(Locale.ROOT);
+    }
+
+    private record Rule(String path, boolean allow) {
+
+        /**
+         * Wildcard match with backtracking to the last {@code *}; without {@code $} the rule only has to match
+         * a prefix of the path.
+         */
+        boolean matches(String value) {
+            boolean anchored = path.endsWith("$");
+            int patternLength = anchored ? path.length() - 1 : path.length();
+            int p = 0;
+            int v = 0;
+            int star = -1;
+            int mark = 0;
+            while (v < value.length()) {
+                if (p < patternLength && path.charAt(p) == '*') {
+                    star = p++;
+                    mark = v;
+                } else if (p < patternLength && path.charAt(p) == value.charAt(v)) {
+                    p++;
+                    v++;
+                } else if (p == patternLength && !anchored) {
+                    return true;
+                } else if (star >= 0) {
+                    p = star + 1;
+                    v = ++mark;
+                } else {
+                    return false;
+                }
+            }
+            while (p < patternLength && path.charAt(p) == '*') {
+                p++;
+            }
+            return p == patternLength;
+        }
+    }
+}
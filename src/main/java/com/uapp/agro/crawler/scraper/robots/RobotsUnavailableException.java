@@ -0,0 +1,22 @@
+package com.uapp.agro.crawler.scraper.robots;
+
+import lombok.Getter;
+
+import java.io.IOException;
+
+/**
+ * The {@code robots.txt} of the url's host could not be read, so whether the url may be fetched is unknown.
+ * The cause is the failed fetch, e.g. an {@code HttpStatusException} for a 429 or 5xx.
+ */
+@Getter
+public class RobotsUnavailableException extends IOException {
+    /**
+     * Time until the file is asked for again; asking earlier gets the same failure.
+     */
+    private final long retryAfterNanos;
+
+    public RobotsUnavailableException(String robotsUrl, Throwable cause, long retryAfterNanos) {
+        super("Can not read " + robotsUrl + ": " + cause.getMessage(), cause);
+        this.retryAfterNanos = retryAfterNanos;
+    }
+}
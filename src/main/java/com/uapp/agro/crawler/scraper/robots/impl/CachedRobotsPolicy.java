@@ -0,0 +1,181 @@
+package com.uapp.agro.crawler.scraper.robots.impl;
+
+import com.uapp.agro.crawler.scraper.limiter.RequestLimiter;
+import com.uapp.agro.crawler.scraper.robots.RobotsPolicy;
+import com.uapp.agro.crawler.scraper.robots.RobotsRules;
+import com.uapp.agro.crawler.scraper.robots.RobotsUnavailableException;
+import lombok.extern.slf4j.Slf4j;
+import org.jsoup.HttpStatusException;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Fetches {@code /robots.txt} once per origin and keeps the rules for {@code ttl}. As RFC 9309 asks, a 4xx
+ * answer allows everything while a 429, a 5xx or an unreachable host allows nothing for now: {@link #allows}
+ * throws {@link RobotsUnavailableException} for that origin until {@code errorTtl} is over and the file is
+ * asked for again, so callers can put the url off instead of dropping it. Callers for an origin that is being
+ * fetched wait for that fetch, which goes through the request limiter like any other request.
+ * At most {@code maxEntries} origins are kept, expired ones are dropped first.
+ */
+@Slf4j
+public class CachedRobotsPolicy implements RobotsPolicy {
+    private static final String SCHEME_SEPARATOR = "://";
+    private static final String ROBOTS_PATH = "/robots.txt";
+    private static final int TOO_MANY_REQUESTS = 429;
+    private static final int MAX_ROBOTS_BYTES = 512 * 1024;
+    private static final Duration FETCH_TIMEOUT = Duration.ofSeconds(10);
+
+    private final HttpClient httpClient;
+    private final RequestLimiter requestLimiter;
+    private final String userAgent;
+    private final long ttlNanos;
+    private final long errorTtlNanos;
+    private final int maxEntries;
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+
+    public CachedRobotsPolicy(HttpClient httpClient, RequestLimiter requestLimiter, String userAgent, Duration ttl,
+                              Duration errorTtl, int maxEntries) {
+        this.httpClient = httpClient;
+        this.requestLimiter = requestLimiter;
+        this.userAgent = userAgent;
+        this.ttlNanos = ttl.toNanos();
+        this.errorTtlNanos = errorTtl.toNanos();
+        this.maxEntries = maxEntries;
+    }
+
+    @Override
+    public boolean allows(String url) throws InterruptedException, RobotsUnavailableException {
+        int schemeEnd = url.indexOf(SCHEME_SEPARATOR);
+        if (schemeEnd <= 0) {
+            return true;
+        }
+        int pathStart = schemeEnd + SCHEME_SEPARATOR.length();
+        while (pathStart < url.length() && url.charAt(pathStart) != '/' && url.charAt(pathStart) != '?') {
+            pathStart++;
+        }
+        int fragment = url.indexOf('#', pathStart);
+        String path = url.substring(pathStart, fragment < 0 ? url.length() : fragment);
+        String origin = url.substring(0, pathStart);
+        return entryOf(origin).await(origin + ROBOTS_PATH).allows(path.startsWith("/") ? path : "/" + path);
+    }
+
+    private Entry entryOf(String origin) {
+        while (true) {
+            Entry entry = entries.get(origin);
+            if (entry != null && !entry.isExpired()) {
+                return entry;
+            }
+            Entry fetching = new Entry();
+            boolean owner = entry == null
+                    ? entries.putIfAbsent(origin, fetching) == null
+                    : entries.replace(origin, entry, fetching);
+            if (owner) {
+                evictIfFull();
+                fetch(origin, fetching);
+                return fetching;
+            }
+        }
+    }
+
+    private void fetch(String origin, Entry entry) {
+        String robotsUrl = origin + ROBOTS_PATH;
+        try {
+            requestLimiter.call(robotsUrl, hostPermit -> {
+                HttpRequest request = HttpRequest.newBuilder(URI.create(robotsUrl))
+                        .timeout(FETCH_TIMEOUT)
+                        .GET()
+                        .build();
+                HttpResponse<InputStream> response;
+                try {
+                    response = httpClient.send(request, HttpResponse.BodyHandlers.ofInputStream());
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException("Interrupted while fetching " + robotsUrl);
+                }
+                int status = response.statusCode();
+                hostPermit.responded(status, response.headers().firstValue("Retry-After").orElse(null));
+                try (InputStream body = response.body()) {
+                    if (status >= 200 && status < 300) {
+                        String content = new String(body.readNBytes(MAX_ROBOTS_BYTES), StandardCharsets.UTF_8);
+                        RobotsRules rules = RobotsRules.parse(content, userAgent);
+                        log.info("Fetched {} with {} rules", robotsUrl, rules.size());
+                        entry.complete(rules, ttlNanos);
+                    } else if (status == TOO_MANY_REQUESTS || status >= 500) {
+                        log.warn("Got status {} for {}, putting the host off for now", status, robotsUrl);
+                        entry.fail(new HttpStatusException("Unexpected status for robots.txt", status, robotsUrl),
+                                errorTtlNanos);
+                    } else {
+                        entry.complete(RobotsRules.ALLOW_ALL, ttlNanos);
+                    }
+                }
+                return null;
+            });
+        } catch (IOException | RuntimeException e) {
+            log.warn("Can not fetch {}, putting the host off for now: {}", robotsUrl, e.getMessage());
+            // an interrupted fetch says nothing about the host, the next caller asks again
+            entry.fail(e, e instanceof InterruptedIOException ? 0 : errorTtlNanos);
+        }
+    }
+
+    private void evictIfFull() {
+        if (entries.size() <= maxEntries) {
+            return;
+        }
+        entries.values().removeIf(Entry::isExpired);
+        Iterator<Entry> iterator = entries.values().iterator();
+        while (entries.size() > maxEntries && iterator.hasNext()) {
+            iterator.next();
+            iterator.remove();
+        }
+    }
+
+    /**
+     * Completed with the rules, or failed with why the file could not be read.
+     */
+    private static final class Entry {
+        private final CompletableFuture<RobotsRules> rules = new CompletableFuture<>();
+        private volatile long expiresAt;
+
+        void complete(RobotsRules value, long ttlNanos) {
+            if (rules.isDone()) {
+                return;
+            }
+            expiresAt = System.nanoTime() + ttlNanos;
+            rules.complete(value);
+        }
+
+        void fail(Throwable failure, long ttlNanos) {
+            if (rules.isDone()) {
+                return;
+            }
+            expiresAt = System.nanoTime() + ttlNanos;
+            rules.completeExceptionally(failure);
+        }
+
+        boolean isExpired() {
+            return rules.isDone() && System.nanoTime() - expiresAt > 0;
+        }
+
+        RobotsRules await(String robotsUrl) throws InterruptedException, RobotsUnavailableException {
+            try {
+                return rules.get();
+            } catch (ExecutionException e) {
+                throw new RobotsUnavailableException(robotsUrl, e.getCause(),
+                        Math.max(0, expiresAt - System.nanoTime()));
+            }
+        }
+    }
+}
@@ -0,0 +1,11 @@
+package com.uapp.agro.crawler.scraper.robots.impl;
+
+import com.uapp.agro.crawler.scraper.robots.RobotsPolicy;
+
+public class NoopRobotsPolicy implements RobotsPolicy {
+
+    @Override
+    public boolean allows(String url) {
+        return true;
+    }
+}
@@ -0,0 +1,81 @@
+package com.uapp.agro.crawler.scraper.seen;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Fixed-memory approximate set for very large crawls. A key may be reported as seen when it was not,
+ * with the configured false-positive rate at the expected size, so that share of urls is skipped.
+ * Keys can not be removed.
+ */
+public class BloomFilterSeenSet implements SeenSet {
+    private final AtomicLongArray bits;
+    private final long bitCount;
+    private final int hashCount;
+    private final AtomicLong size = new AtomicLong();
+
+    public BloomFilterSeenSet(long expectedSize, double falsePositiveRate) {
+        long optimalBits = (long) Math.ceil(-expectedSize * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2)));
+        int words = (int) Math.min(Integer.MAX_VALUE - 8, Math.max(1, (optimalBits + 63) / 64));
+        this.bits = new AtomicLongArray(words);
+        this.bitCount = (long) words * 64;
+        this.hashCount = Math.max(1, (int) Math.round(bitCount / (double) Math.max(1, expectedSize) * Math.log(2)));
+    }
+
+    @Override
+    public boolean add(String key) {
+        long fingerprint = UrlFingerprint.of(key);
+        boolean changed = false;
+        for (int i = 0; i < hashCount; i++) {
+            changed |= setBit(bitIndex(fingerprint, i));
+        }
+        if (changed) {
+            size.incrementAndGet();
+        }
+        return changed;
+    }
+
+    @Override
+    public boolean contains(String key) {
+        long fingerprint = UrlFingerprint.of(key);
+        for (int i = 0; i < hashCount; i++) {
+            long index = bitIndex(fingerprint, i);
+            if ((bits.get((int) (index >>> 6)) & (1L << index)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public boolean remove(String key) {
+        return false;
+    }
+
+    @Override
+    public long size() {
+        return size.get();
+    }
+
+    /**
+     * Double hashing over the two halves of the fingerprint (Kirsch-Mitzenmacher).
+     */
+    private long bitIndex(long fingerprint, int i) {
+        long combined = (fingerprint & 0xffffffffL) + i * (fingerprint >>> 32);
+        return Math.floorMod(combined, bitCount);
+    }
+
+    private boolean setBit(long index) {
+        int word = (int) (index >>> 6);
+        long mask = 1L << index;
+        while (true) {
+            long current = bits.get(word);
+            if ((current & mask) != 0) {
+                return false;
+            }
+            if (bits.compareAndSet(word, current, current | mask)) {
+                return true;
+            }
+        }
+    }
+}
@@ -0,0 +1,31 @@
+package com.uapp.agro.crawler.scraper.seen;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Exact set of full key strings.
+ */
+public class ConcurrentSeenSet implements SeenSet {
+    private final Set<String> keys = ConcurrentHashMap.newKeySet();
+
+    @Override
+    public boolean add(String key) {
+        return keys.add(key);
+    }
+
+    @Override
+    public boolean contains(String key) {
+        return keys.contains(key);
+    }
+
+    @Override
+    public boolean remove(String key) {
+        return keys.remove(key);
+    }
+
+    @Override
+    public long size() {
+        return keys.size();
+    }
+}
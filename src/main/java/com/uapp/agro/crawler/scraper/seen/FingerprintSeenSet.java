@@ -0,0 +1,140 @@
+package com.uapp.agro.crawler.scraper.seen;
+
+/**
+ * Stores 64-bit {@link UrlFingerprint}s instead of strings in lock-striped open-addressing tables
+ * with linear probing, about 8-16 bytes per key. The top bits of a fingerprint pick the stripe,
+ * the low bits the slot.
+ */
+public class FingerprintSeenSet implements SeenSet {
+    private static final int STRIPE_BITS = 6;
+    private static final int STRIPES = 1 << STRIPE_BITS;
+    private static final double MAX_LOAD = 0.7;
+    private static final int MIN_STRIPE_CAPACITY = 16;
+
+    private final Stripe[] stripes = new Stripe[STRIPES];
+
+    public FingerprintSeenSet(long expectedSize) {
+        int stripeCapacity = tableSizeFor((long) Math.ceil(expectedSize / (double) STRIPES / MAX_LOAD));
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new Stripe(stripeCapacity);
+        }
+    }
+
+    @Override
+    public boolean add(String key) {
+        long fingerprint = UrlFingerprint.of(key);
+        return stripeFor(fingerprint).add(fingerprint);
+    }
+
+    @Override
+    public boolean contains(String key) {
+        long fingerprint = UrlFingerprint.of(key);
+        return stripeFor(fingerprint).contains(fingerprint);
+    }
+
+    @Override
+    public boolean remove(String key) {
+        long fingerprint = UrlFingerprint.of(key);
+        return stripeFor(fingerprint).remove(fingerprint);
+    }
+
+    @Override
+    public long size() {
+        long size = 0;
+        for (Stripe stripe : stripes) {
+            size += stripe.size();
+        }
+        return size;
+    }
+
+    private Stripe stripeFor(long fingerprint) {
+        return stripes[(int) (fingerprint >>> (Long.SIZE - STRIPE_BITS))];
+    }
+
+    private static int tableSizeFor(long capacity) {
+        long size = Math.max(MIN_STRIPE_CAPACITY, Long.highestOneBit(Math.max(1, capacity - 1)) << 1);
+        return (int) Math.min(size, 1 << 30);
+    }
+
+    private static final class Stripe {
+        private long[] table;
+        private int size;
+
+        private Stripe(int capacity) {
+            this.table = new long[capacity];
+        }
+
+        synchronized boolean add(long fingerprint) {
+            int slot = find(table, fingerprint);
+            if (table[slot] == fingerprint) {
+                return false;
+            }
+            table[slot] = fingerprint;
+            if (++size > table.length * MAX_LOAD) {
+                resize();
+            }
+            return true;
+        }
+
+        synchronized boolean contains(long fingerprint) {
+            return table[find(table, fingerprint)] == fingerprint;
+        }
+
+        /**
+         * Backward-shift deletion keeps every probe chain contiguous without tombstones.
+         */
+        synchronized boolean remove(long fingerprint) {
+            int mask = table.length - 1;
+            int hole = find(table, fingerprint);
+            if (table[hole] != fingerprint) {
+                return false;
+            }
+            table[hole] = 0;
+            size--;
+
+            int next = hole;
+            while (true) {
+                next = (next + 1) & mask;
+                long candidate = table[next];
+                if (candidate == 0) {
+                    return true;
+                }
+                int home = (int) candidate & mask;
+                boolean homeOutsideGap = hole <= next
+                        ? home <= hole || home > next
+                        : home <= hole && home > next;
+                if (homeOutsideGap) {
+                    table[hole] = candidate;
+                    table[next] = 0;
+                    hole = next;
+                }
+            }
+        }
+
+        synchronized int size() {
+            return size;
+        }
+
+        private void resize() {
+            long[] resized = new long[table.length << 1];
+            for (long fingerprint : table) {
+                if (fingerprint != 0) {
+                    resized[find(resized, fingerprint)] = fingerprint;
+                }
+            }
+            table = resized;
+        }
+
+        /**
+         * @return the slot holding the fingerprint or the empty slot where it belongs
+         */
+        private static int find(long[] table, long fingerprint) {
+            int mask = table.length - 1;
+            int slot = (int) fingerprint & mask;
+            while (table[slot] != 0 && table[slot] != fingerprint) {
+                slot = (slot + 1) & mask;
+            }
+            return slot;
+        }
+    }
+}
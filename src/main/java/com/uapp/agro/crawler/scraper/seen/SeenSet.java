@@ -0,0 +1,21 @@
+package com.uapp.agro.crawler.scraper.seen;
+
+/**
+ * Concurrent set of keys (urls) that were already seen during the crawl.
+ */
+public interface SeenSet {
+
+    /**
+     * @return {@code true} when the key was not seen before
+     */
+    boolean add(String key);
+
+    boolean contains(String key);
+
+    /**
+     * @return {@code true} when the key was removed; implementations that can not forget keys return {@code false}
+     */
+    boolean remove(String key);
+
+    long size();
+}
@@ -0,0 +1,18 @@
+package com.uapp.agro.crawler.scraper.seen;
+
+import com.uapp.agro.crawler.config.ScraperConfiguration;
+
+public final class SeenSets {
+
+    private SeenSets() {
+    }
+
+    public static SeenSet create(ScraperConfiguration config) {
+        return switch (config.getSeenSetType()) {
+            case STRINGS -> new ConcurrentSeenSet();
+            case FINGERPRINTS -> new FingerprintSeenSet(config.getSeenSetExpectedSize());
+            case BLOOM_FILTER -> new BloomFilterSeenSet(config.getSeenSetExpectedSize(),
+                    config.getSeenSetFalsePositiveRate());
+        };
+    }
+}
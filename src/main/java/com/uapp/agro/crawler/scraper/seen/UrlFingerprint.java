@@ -0,0 +1,32 @@
+package com.uapp.agro.crawler.scraper.seen;
+
+/**
+ * 64-bit fingerprint of a string: FNV-1a over the UTF-16 chars followed by the MurmurHash3 finalizer.
+ * Never returns 0, which tables use as the empty marker. At 10M urls the chance of any collision is about 3e-6.
+ */
+public final class UrlFingerprint {
+    private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    private UrlFingerprint() {
+    }
+
+    public static long of(String key) {
+        long hash = FNV_OFFSET_BASIS;
+        for (int i = 0; i < key.length(); i++) {
+            hash ^= key.charAt(i);
+            hash *= FNV_PRIME;
+        }
+        hash = mix(hash);
+        return hash == 0 ? 1 : hash;
+    }
+
+    static long mix(long hash) {
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+}
@@ -1,5 +1,13 @@
 package com.uapp.agro.crawler.scraper.service;
 
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
 public interface ImageScraperService {
-    void startScraping(String startUrl);
+    /**
+     * Starts the crawl in the background.
+     *
+     * @return future completed once every consumer finished and resources are released
+     */
+    CompletableFuture<Void> startScraping(List<String> startUrls);
 }
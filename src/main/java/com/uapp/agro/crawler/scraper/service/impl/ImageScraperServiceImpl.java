@@ -4,15 +4,39 @@ import com.uapp.agro.crawler.config.ApplicationProperties;
 import com.uapp.agro.crawler.config.ScraperConfiguration;
 import com.uapp.agro.crawler.consumer.manager.ConsumerManager;
 import com.uapp.agro.crawler.consumer.manager.managerImpl.ConsumerManagerImpl;
+import com.uapp.agro.crawler.image.service.ImageInfoBatchWriter;
 import com.uapp.agro.crawler.image.service.ImageInfoService;
 import com.uapp.agro.crawler.producer.manager.ProducerManager;
 import com.uapp.agro.crawler.producer.manager.managerImpl.ProducerManagerImpl;
+import com.uapp.agro.crawler.scraper.balancer.PipelineBalancer;
+import com.uapp.agro.crawler.scraper.cache.ValidatorCache;
+import com.uapp.agro.crawler.scraper.cache.impl.FileValidatorCache;
+import com.uapp.agro.crawler.scraper.cache.impl.NoopValidatorCache;
+import com.uapp.agro.crawler.scraper.checkpoint.CrawlCheckpoint;
+import com.uapp.agro.crawler.scraper.checkpoint.impl.FileCrawlCheckpoint;
+import com.uapp.agro.crawler.scraper.checkpoint.impl.NoopCrawlCheckpoint;
+import com.uapp.agro.crawler.scraper.coordinator.CrawlCoordinator;
+import com.uapp.agro.crawler.scraper.limiter.HostLimiter;
+import com.uapp.agro.crawler.scraper.limiter.RequestLimiter;
+import com.uapp.agro.crawler.scraper.limiter.impl.AimdHostLimiter;
+import com.uapp.agro.crawler.scraper.limiter.impl.NoopHostLimiter;
+import com.uapp.agro.crawler.scraper.metrics.CrawlMetrics;
+import com.uapp.agro.crawler.scraper.retry.DeadLetterStore;
+import com.uapp.agro.crawler.scraper.retry.impl.FileDeadLetterStore;
+import com.uapp.agro.crawler.scraper.retry.impl.NoopDeadLetterStore;
+import com.uapp.agro.crawler.scraper.seen.SeenSet;
+import com.uapp.agro.crawler.scraper.seen.SeenSets;
 import com.uapp.agro.crawler.scraper.service.ImageScraperService;
 import com.uapp.agro.crawler.scraper.util.ExecutorServiceUtil;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.stereotype.Service;
 import org.springframework.util.StopWatch;
 
+import java.net.http.HttpClient;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
@@ -20,28 +44,111 @@ import java.util.concurrent.TimeUnit;
 
 @Slf4j
 @Service
+@ConditionalOnProperty(prefix = "application.thread-properties", name = "engine", havingValue = "managers",
+        matchIfMissing = true)
 public class ImageScraperServiceImpl implements ImageScraperService {
     private final ExecutorService executorService;
     private final ProducerManager producerManager;
     private final ConsumerManager consumerManager;
+    private final CrawlCoordinator coordinator = new CrawlCoordinator();
+    private final CrawlCheckpoint checkpoint;
+    private final ValidatorCache validatorCache;
+    private final DeadLetterStore deadLetters;
+    private final ImageInfoBatchWriter infoWriter;
+    private final PipelineBalancer balancer;
 
-    public ImageScraperServiceImpl(ApplicationProperties properties, ImageInfoService infoService) {
+    public ImageScraperServiceImpl(ApplicationProperties properties, ImageInfoService infoService,
+                                   ImageInfoBatchWriter infoWriter, CrawlMetrics metrics) {
         ScraperConfiguration config = new ScraperConfiguration(properties);
-        this.executorService = Executors.newFixedThreadPool(config.getMaxProducerThreadCount() + config.getMaxConsumerThreadCount());
-        this.producerManager = new ProducerManagerImpl(config, executorService);
-        this.consumerManager = new ConsumerManagerImpl(config, infoService, executorService, producerManager.getImages());
+        RequestLimiter requestLimiter = new RequestLimiter(config.getMaxConcurrentRequests(),
+                createHostLimiter(config, metrics));
+        this.executorService = createExecutorService(config);
+        HttpClient httpClient = createHttpClient(config);
+        SeenSet processedImages = SeenSets.create(config);
+        this.checkpoint = createCheckpoint(config);
+        this.validatorCache = createValidatorCache(config);
+        this.deadLetters = createDeadLetterStore(config);
+        this.infoWriter = infoWriter;
+        this.balancer = new PipelineBalancer(config);
+        metrics.gaugeWorkers("producer", balancer.producers());
+        metrics.gaugeWorkers("consumer", balancer.consumers());
+        this.producerManager = new ProducerManagerImpl(config, executorService, httpClient, requestLimiter, coordinator,
+                checkpoint, processedImages, balancer, validatorCache, deadLetters, metrics);
+        this.consumerManager = new ConsumerManagerImpl(config, infoService, infoWriter, executorService, producerManager.getImages(),
+                requestLimiter, httpClient, processedImages, checkpoint, validatorCache, balancer,
+                producerManager.getImageRetries(), metrics);
+    }
+
+    private static CrawlCheckpoint createCheckpoint(ScraperConfiguration config) {
+        if (!config.isCheckpointEnabled()) {
+            return new NoopCrawlCheckpoint();
+        }
+        return new FileCrawlCheckpoint(Path.of(config.getCheckpointDirectory()), config.isCheckpointResume(),
+                Duration.ofMillis(config.getCheckpointFlushIntervalMs()),
+                Duration.ofMillis(config.getCheckpointSnapshotIntervalMs()));
+    }
+
+    private static HostLimiter createHostLimiter(ScraperConfiguration config, CrawlMetrics metrics) {
+        if (!config.isHostLimitEnabled()) {
+            return new NoopHostLimiter();
+        }
+        return new AimdHostLimiter(config.getHostInitialLimit(), config.getHostMaxLimit(), config.getHostBackoffRatio(),
+                config.getHostLatencyTolerance(), Duration.ofMillis(config.getHostMaxRetryAfterMs()), metrics);
+    }
+
+    private static ValidatorCache createValidatorCache(ScraperConfiguration config) {
+        if (!config.isCacheEnabled()) {
+            return new NoopValidatorCache();
+        }
+        return new FileValidatorCache(Path.of(config.getCacheFile()), config.getCacheMaxEntries());
+    }
+
+    private static DeadLetterStore createDeadLetterStore(ScraperConfiguration config) {
+        if (!config.isDeadLetterEnabled()) {
+            return new NoopDeadLetterStore();
+        }
+        return new FileDeadLetterStore(Path.of(config.getDeadLetterFile()));
+    }
+
+    private static HttpClient createHttpClient(ScraperConfiguration config) {
+        HttpClient.Builder builder = HttpClient.newBuilder()
+                .followRedirects(HttpClient.Redirect.NORMAL)
+                .connectTimeout(Duration.ofSeconds(10));
+        if (config.getExecutionMode() == ApplicationProperties.ExecutionMode.VIRTUAL) {
+            builder.executor(Executors.newVirtualThreadPerTaskExecutor());
+        }
+        return builder.build();
+    }
+
+    private static ExecutorService createExecutorService(ScraperConfiguration config) {
+        return switch (config.getExecutionMode()) {
+            case PLATFORM -> Executors.newFixedThreadPool(
+                    config.getMaxProducerThreadCount() + config.getMaxConsumerThreadCount());
+            case VIRTUAL -> Executors.newVirtualThreadPerTaskExecutor();
+        };
     }
 
     @Override
-    public void startScraping(String startUrl) {
+    public CompletableFuture<Void> startScraping(List<String> startUrls) {
         StopWatch stopWatch = new StopWatch();
         stopWatch.start();
 
-        producerManager.startProducer(startUrl);
-        CompletableFuture<Void> consumersFuture = consumerManager.startConsumers(producerManager.getProducersCount());
+        producerManager.startProducer(startUrls);
+        CompletableFuture<Void> consumersFuture = consumerManager.startConsumers(coordinator);
+        balancer.start(producerManager.getImages());
 
-        consumersFuture.whenComplete((unused, throwable) -> {
+        // the last consumer completes the future on a pool thread, which must not wait for its own pool to terminate
+        return consumersFuture.whenCompleteAsync((unused, throwable) -> {
+            balancer.close();
+            producerManager.close();
             shutdownExecutorService();
+            infoWriter.flush();
+            if (throwable == null && coordinator.isCrawlFinished() && !producerManager.hasDeferredWork()) {
+                checkpoint.crawlCompleted();
+            }
+            checkpoint.close();
+            validatorCache.close();
+            deadLetters.close();
             stopWatch.stop();
             log.info("Execution time: {} ms", stopWatch.getTotalTimeMillis());
         });
@@ -0,0 +1,468 @@
+package com.uapp.agro.crawler.scraper.service.impl;
+
+import com.uapp.agro.crawler.config.ApplicationProperties;
+import com.uapp.agro.crawler.config.ScraperConfiguration;
+import com.uapp.agro.crawler.consumer.compression.CompressionResult;
+import com.uapp.agro.crawler.consumer.compression.CompressionStrategy;
+import com.uapp.agro.crawler.consumer.dedup.CompressedArtifact;
+import com.uapp.agro.crawler.consumer.dedup.ContentHashIndex;
+import com.uapp.agro.crawler.consumer.store.ImageOutputStore;
+import com.uapp.agro.crawler.image.dto.ImageCreateDto;
+import com.uapp.agro.crawler.image.service.ImageInfoBatchWriter;
+import com.uapp.agro.crawler.image.service.ImageInfoService;
+import com.uapp.agro.crawler.producer.extract.ImageCandidateResolver;
+import com.uapp.agro.crawler.producer.extract.PageExtractor;
+import com.uapp.agro.crawler.producer.scope.CrawlScope;
+import com.uapp.agro.crawler.producer.probe.ImageSizeProber;
+import com.uapp.agro.crawler.scraper.image.ImageFilter;
+import com.uapp.agro.crawler.scraper.image.ImageHeader;
+import com.uapp.agro.crawler.scraper.limiter.RequestLimiter;
+import com.uapp.agro.crawler.scraper.limiter.impl.NoopHostLimiter;
+import com.uapp.agro.crawler.scraper.metrics.CrawlMetrics;
+import com.uapp.agro.crawler.scraper.robots.RobotsPolicy;
+import com.uapp.agro.crawler.scraper.robots.impl.CachedRobotsPolicy;
+import com.uapp.agro.crawler.scraper.robots.impl.NoopRobotsPolicy;
+import com.uapp.agro.crawler.scraper.seen.SeenSet;
+import com.uapp.agro.crawler.scraper.seen.SeenSets;
+import com.uapp.agro.crawler.scraper.service.ImageScraperService;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.io.FilenameUtils;
+import org.jsoup.HttpStatusException;
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Document;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
+import org.springframework.stereotype.Service;
+import org.springframework.util.StopWatch;
+import org.springframework.web.reactive.function.client.ClientResponse;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.net.URI;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Runs the crawl as one Reactor pipeline instead of producer and consumer workers:
+ * <pre>
+ * expand pages -> fetch (WebClient) -> parse -> probe -> download -> compress + write -> persist
+ * </pre>
+ * Pages are crawled breadth-first, one depth level per {@code expand} step, fetching up to
+ * {@code max-producer-count} pages of a level at once. Probes are bounded by {@code max-in-flight-probes},
+ * downloads by {@code max-consumer-count}, images being compressed or written by
+ * {@code compress-threads + write-threads}, image info writes by {@code persist-threads} and open connections by
+ * {@code max-concurrent-requests}. Compression runs on its own parallel scheduler of {@code compress-threads}.
+ * Every bound is a {@code flatMap} concurrency, so a slow stage stops requesting from the one before it, and the
+ * crawl is done when the stream completes.
+ * <p>
+ * Links go through the same {@link CrawlScope} and, when enabled, the same {@link RobotsPolicy} as in the
+ * manager-based engine. Robots.txt is looked up on bounded-elastic since the policy blocks; a page whose
+ * robots.txt is unavailable is dropped, as there are no retries here, and forgotten unless the seen set is a
+ * bloom filter. Checkpoints, the validator cache, the balancer, per-host delays and limits, Retry-After, retries
+ * and dead letters belong to that engine and are not used here, which is logged at startup; pages are always
+ * parsed as a whole.
+ */
+@Slf4j
+@Service
+@ConditionalOnProperty(prefix = "application.thread-properties", name = "engine", havingValue = "reactive")
+public class ReactiveImageScraperServiceImpl implements ImageScraperService {
+    private static final Duration PAGE_TIMEOUT = Duration.ofSeconds(30);
+    private static final Duration PROBE_TIMEOUT = Duration.ofSeconds(10);
+    private static final Duration DOWNLOAD_TIMEOUT = Duration.ofSeconds(30);
+    private static final int MAX_BODY_BYTES = 64 * 1024 * 1024;
+
+    private final ScraperConfiguration config;
+    private final ImageInfoBatchWriter infoWriter;
+    private final CrawlMetrics metrics;
+    private final ConnectionProvider connectionProvider;
+    private final WebClient webClient;
+    private final Scheduler compressScheduler;
+    private final PageExtractor pageExtractor;
+    private final ImageFilter imageFilter;
+    private final ContentHashIndex contentHashIndex;
+    private final ImageOutputStore outputStore;
+    private final CompressionStrategy compressionStrategy;
+    private final SeenSet visitedUrls;
+    private final SeenSet visitedImages;
+    private final RobotsPolicy robotsPolicy;
+    private final int compressThreads;
+
+    public ReactiveImageScraperServiceImpl(ApplicationProperties properties, ImageInfoService infoService,
+                                           ImageInfoBatchWriter infoWriter, CrawlMetrics metrics) {
+        this.config = new ScraperConfiguration(properties);
+        this.infoWriter = infoWriter;
+        this.metrics = metrics;
+        this.connectionProvider = ConnectionProvider.builder("crawler")
+                .maxConnections(config.getMaxConcurrentRequests())
+                .pendingAcquireMaxCount(-1)
+                .build();
+        this.webClient = WebClient.builder()
+                .clientConnector(new ReactorClientHttpConnector(HttpClient.create(connectionProvider)
+                        .followRedirect(true)))
+                .codecs(codecs -> codecs.defaultCodecs().maxInMemorySize(MAX_BODY_BYTES))
+                .build();
+        this.compressThreads = config.getCompressThreads() > 0
+                ? config.getCompressThreads()
+                : Runtime.getRuntime().availableProcessors();
+        this.compressScheduler = Schedulers.newParallel("image-compress", compressThreads, true);
+        this.imageFilter = ImageFilter.of(config);
+        this.pageExtractor = new PageExtractor(
+                new ImageCandidateResolver(config.getSrcsetPolicy(), config.getSrcsetTargetWidth()), imageFilter);
+        this.contentHashIndex = new ContentHashIndex(contentHash -> infoService.findByContentHash(contentHash)
+                .map(info -> new CompressedArtifact(info.getFilePath(), info.getCompressedSize())));
+        this.outputStore = new ImageOutputStore(Path.of(config.getFolderPath()));
+        this.compressionStrategy = CompressionStrategy.of(config.getCompressionStrategy());
+        this.visitedUrls = SeenSets.create(config);
+        this.visitedImages = SeenSets.create(config);
+        this.robotsPolicy = createRobotsPolicy(config);
+        warnAboutUnsupportedSettings(config);
+    }
+
+    /**
+     * Robots.txt is fetched over its own JDK client, outside the WebClient pool. Lookups run inside the page
+     * {@code flatMap}, so its limiter allows {@code max-producer-count} fetches and a crawl holds at most
+     * {@code max-concurrent-requests + max-producer-count} connections.
+     */
+    private static RobotsPolicy createRobotsPolicy(ScraperConfiguration config) {
+        if (!config.isRobotsEnabled()) {
+            return new NoopRobotsPolicy();
+        }
+        java.net.http.HttpClient httpClient = java.net.http.HttpClient.newBuilder()
+                .followRedirects(java.net.http.HttpClient.Redirect.NORMAL)
+                .connectTimeout(Duration.ofSeconds(10))
+                .build();
+        return new CachedRobotsPolicy(httpClient,
+                new RequestLimiter(config.getMaxProducerThreadCount(), new NoopHostLimiter()),
+                config.getRobotsUserAgent(), Duration.ofMillis(config.getRobotsTtlMs()),
+                Duration.ofMillis(config.getRobotsErrorTtlMs()), config.getRobotsMaxEntries());
+    }
+
+    private static void warnAboutUnsupportedSettings(ScraperConfiguration config) {
+        List<String> ignored = new ArrayList<>();
+        if (config.isHostLimitEnabled()) {
+            ignored.add("per-host limits and Retry-After");
+        }
+        if (config.getHostDelayMs() > 0) {
+            ignored.add("host-delay-ms");
+        }
+        if (config.getRetryMaxAttempts() > 1) {
+            ignored.add("retries");
+        }
+        if (config.isDeadLetterEnabled()) {
+            ignored.add("dead letters");
+        }
+        if (config.isCheckpointEnabled()) {
+            ignored.add("checkpoints");
+        }
+        if (config.isCacheEnabled()) {
+            ignored.add("the validator cache");
+        }
+        if (config.isBalancerEnabled()) {
+            ignored.add("the balancer");
+        }
+        if (!ignored.isEmpty()) {
+            log.warn("The reactive engine does not support {}; these settings are ignored",
+                    String.join(", ", ignored));
+        }
+        if (config.getSeenSetType() == ApplicationProperties.SeenSetType.BLOOM_FILTER) {
+            log.warn("A bloom-filter seen set can not forget urls, so the reactive engine does not try a failed "
+                    + "page again when a later link points to it");
+        }
+    }
+
+    @Override
+    public CompletableFuture<Void> startScraping(List<String> startUrls) {
+        return crawl(startUrls).toFuture();
+    }
+
+    Mono<Void> crawl(List<String> startUrls) {
+        StopWatch stopWatch = new StopWatch();
+        stopWatch.start();
+
+        CrawlScope crawlScope = CrawlScope.of(config, startUrls);
+        return Flux.<CrawlStep>just(new Level(startUrls.stream()
+                        .map(crawlScope::admit)
+                        .filter(startUrl -> startUrl != null && visitedUrls.add(startUrl))
+                        .toList()))
+                .expand(step -> step instanceof Level level ? fetchLevel(level, crawlScope) : Flux.empty())
+                .ofType(Page.class)
+                .flatMapIterable(Page::imageUrls)
+                .filter(imageUrl -> imageFilter.acceptsExtension(imageUrl) && visitedImages.add(imageUrl))
+                .flatMap(this::probe, config.getMaxInFlightProbes())
+                .flatMap(this::download, config.getMaxConsumerThreadCount())
+                .flatMap(this::store, compressThreads + config.getWriteThreads())
+                .flatMap(this::persist, config.getPersistThreads())
+                .then()
+                .doFinally(signal -> {
+                    infoWriter.flush();
+                    compressScheduler.dispose();
+                    connectionProvider.dispose();
+                    stopWatch.stop();
+                    log.info("Execution time: {} ms", stopWatch.getTotalTimeMillis());
+                });
+    }
+
+    /**
+     * Emits the pages of one level as they are fetched, then the next level made of their links in scope and not
+     * seen yet.
+     */
+    private Flux<CrawlStep> fetchLevel(Level level, CrawlScope crawlScope) {
+        return Flux.defer(() -> {
+            List<String> nextUrls = new ArrayList<>();
+            return Flux.fromIterable(level.urls())
+                    .flatMap(url -> allowedByRobots(url)
+                            .flatMap(allowed -> allowed ? fetchPage(url) : Mono.empty()),
+                            config.getMaxProducerThreadCount())
+                    .doOnNext(page -> page.linkUrls().stream()
+                            .map(crawlScope::admit)
+                            .filter(linkUrl -> linkUrl != null && visitedUrls.add(linkUrl))
+                            .forEach(nextUrls::add))
+                    .<CrawlStep>map(page -> page)
+                    .concatWith(Mono.fromSupplier(() -> new Level(nextUrls))
+                            .filter(next -> !next.urls().isEmpty()));
+        });
+    }
+
+    /**
+     * A disallowed page stays visited, so links to it are not checked again. A page whose robots.txt is
+     * unavailable, see {@link RobotsPolicy#allows}, is dropped and forgotten, so a later link may try it again.
+     */
+    private Mono<Boolean> allowedByRobots(String url) {
+        if (!config.isRobotsEnabled()) {
+            return Mono.just(true);
+        }
+        return Mono.fromCallable(() -> robotsPolicy.allows(url))
+                .subscribeOn(Schedulers.boundedElastic())
+                .doOnNext(allowed -> {
+                    if (!allowed) {
+                        metrics.recordLinkRejected("robots");
+                        log.info("Disallowed by robots.txt: {}", url);
+                    }
+                })
+                .onErrorResume(e -> {
+                    // mostly a RobotsUnavailableException, anything else must not end the level either
+                    visitedUrls.remove(url);
+                    log.warn("Skip {}, robots.txt can not be checked: {}", url, e.getMessage());
+                    return Mono.just(false);
+                });
+    }
+
+    /**
+     * Parsing moves off the connection's event loop to the parallel scheduler.
+     */
+    private Mono<Page> fetchPage(String url) {
+        long startedAt = System.nanoTime();
+        return Mono.defer(() -> webClient.get().uri(URI.create(url)).retrieve().bodyToMono(String.class))
+                .timeout(PAGE_TIMEOUT)
+                .publishOn(Schedulers.parallel())
+                .map(html -> {
+                    Document document = Jsoup.parse(html, url);
+                    return new Page(pageExtractor.extractLinkUrls(document),
+                            List.copyOf(pageExtractor.extractImageUrls(document)));
+                })
+                .doOnNext(page -> metrics.recordPageFetch(System.nanoTime() - startedAt, true))
+                .onErrorResume(e -> {
+                    metrics.recordPageFetch(System.nanoTime() - startedAt, false);
+                    visitedUrls.remove(url);
+                    log.warn("Problem with {} url processing: {}", url, e.getMessage());
+                    return Mono.empty();
+                });
+    }
+
+    /**
+     * @return the url when the probe found nothing that rules the image out, empty otherwise
+     */
+    private Mono<String> probe(String imageUrl) {
+        ApplicationProperties.ProbeMode probeMode = config.getProbeMode();
+        if (probeMode == ApplicationProperties.ProbeMode.NONE) {
+            return Mono.just(imageUrl);
+        }
+        long startedAt = System.nanoTime();
+        return Mono.defer(() -> (probeMode == ApplicationProperties.ProbeMode.HEAD
+                        ? webClient.head().uri(URI.create(imageUrl))
+                        : webClient.get().uri(URI.create(imageUrl))
+                        .header(HttpHeaders.RANGE, "bytes=0-" + (config.getProbeRangeBytes() - 1)))
+                        .exchangeToMono(response -> probeResult(imageUrl, response)))
+                .timeout(PROBE_TIMEOUT)
+                .doOnNext(result -> metrics.recordImageProbe(System.nanoTime() - startedAt, result.reachable()))
+                .filter(result -> result.reachable()
+                        && imageFilter.acceptsSize(result.sizeKb())
+                        && imageFilter.acceptsHeader(result.header()))
+                .map(ImageSizeProber.ProbeResult::imageUrl)
+                .onErrorResume(e -> {
+                    metrics.recordImageProbe(System.nanoTime() - startedAt, false);
+                    log.warn("Image probe failed for {}: {}", imageUrl, e.getMessage());
+                    return Mono.empty();
+                });
+    }
+
+    /**
+     * A ranged answer is sniffed for format and dimensions; a whole body is never read, only its length is used.
+     */
+    private Mono<ImageSizeProber.ProbeResult> probeResult(String imageUrl, ClientResponse response) {
+        int status = response.statusCode().value();
+        if (status == HttpStatus.PARTIAL_CONTENT.value()) {
+            long size = ImageSizeProber.totalSizeOf(response.headers().header(HttpHeaders.CONTENT_RANGE).stream()
+                    .findFirst().orElse(""));
+            return response.bodyToMono(byte[].class)
+                    .defaultIfEmpty(new byte[0])
+                    .map(head -> ImageSizeProber.ProbeResult.of(imageUrl, toKb(size),
+                            ImageHeader.parse(head).orElse(null)));
+        }
+        if (status != HttpStatus.OK.value()) {
+            log.warn("Unexpected status {} for image probe {}", status, imageUrl);
+            return response.releaseBody()
+                    .thenReturn(ImageSizeProber.ProbeResult.failed(imageUrl,
+                            new HttpStatusException("Unexpected status for image probe", status, imageUrl)));
+        }
+        long size = response.headers().contentLength().orElse(ImageFilter.UNKNOWN_SIZE);
+        return response.releaseBody()
+                .thenReturn(ImageSizeProber.ProbeResult.of(imageUrl, toKb(size), null));
+    }
+
+    /**
+     * The body is not read when the announced Content-Length is below the minimal size.
+     */
+    private Mono<DownloadedImage> download(String imageUrl) {
+        return Mono.defer(() -> webClient.get().uri(URI.create(imageUrl)).exchangeToMono(response -> {
+                    if (response.statusCode().value() != HttpStatus.OK.value()) {
+                        log.warn("Unexpected status {} for image {}", response.statusCode().value(), imageUrl);
+                        return response.releaseBody().then(Mono.<byte[]>empty());
+                    }
+                    long contentLength = response.headers().contentLength().orElse(ImageFilter.UNKNOWN_SIZE);
+                    if (!imageFilter.acceptsSize(toKb(contentLength))) {
+                        return response.releaseBody().then(Mono.<byte[]>empty());
+                    }
+                    return response.bodyToMono(byte[].class);
+                }))
+                .timeout(DOWNLOAD_TIMEOUT)
+                .doOnNext(bytes -> metrics.recordImageDownloaded(bytes.length))
+                .mapNotNull(bytes -> accept(imageUrl, bytes))
+                .onErrorResume(e -> {
+                    log.warn("Error downloading image {}: {}", imageUrl, e.getMessage());
+                    return Mono.empty();
+                });
+    }
+
+    /**
+     * @return {@code null} when the downloaded bytes are too small or of a format or size that is not wanted
+     */
+    private DownloadedImage accept(String imageUrl, byte[] bytes) {
+        if (!imageFilter.acceptsSize(bytes.length / 1024)) {
+            log.info("Skip image {}: smaller than {} KB", imageUrl, imageFilter.minSizeKb());
+            return null;
+        }
+        ImageHeader header = ImageHeader.parse(bytes).orElse(null);
+        String format = header != null
+                ? header.format()
+                : FilenameUtils.getExtension(imageUrl).toLowerCase(Locale.ROOT);
+        if (!imageFilter.acceptsFormat(format) || !imageFilter.acceptsHeader(header)) {
+            log.info("Skip image {}: format or dimensions rejected, {}", imageUrl, header);
+            return null;
+        }
+        return new DownloadedImage(imageUrl, bytes, format);
+    }
+
+    /**
+     * Hashing and the dedup lookup run on bounded-elastic, since the lookup may query stored artifacts.
+     */
+    private Mono<StoredImage> store(DownloadedImage image) {
+        return Mono.fromCallable(() -> ContentHashIndex.hash(image.bytes()))
+                .subscribeOn(Schedulers.boundedElastic())
+                .flatMap(contentHash -> Mono.fromFuture(contentHashIndex.resolve(contentHash,
+                                () -> compressToFile(image, contentHash).toFuture()))
+                        .flatMap(artifact -> Mono.justOrEmpty(artifact)
+                                .map(stored -> new StoredImage(image.url(), image.bytes().length, contentHash, stored))
+                                .switchIfEmpty(Mono.fromRunnable(() ->
+                                        log.warn("Skip image {}: content can not be decoded", image.url())))))
+                .onErrorResume(e -> {
+                    log.warn("Error saving image: {}", image.url(), e);
+                    return Mono.empty();
+                });
+    }
+
+    private Mono<Optional<CompressedArtifact>> compressToFile(DownloadedImage image, String contentHash) {
+        return Mono.fromCallable(() -> compress(image))
+                .subscribeOn(compressScheduler)
+                .publishOn(Schedulers.boundedElastic())
+                .map(compressed -> Optional.of(writeToFile(image, compressed, contentHash)))
+                .defaultIfEmpty(Optional.empty());
+    }
+
+    /**
+     * @return {@code null} when the image can not be decoded
+     */
+    private byte[] compress(DownloadedImage image) throws IOException {
+        BufferedImage originalImage = ImageIO.read(new ByteArrayInputStream(image.bytes()));
+        if (originalImage == null) {
+            return null;
+        }
+        long startedAt = System.nanoTime();
+        CompressionResult result = compressionStrategy.compress(originalImage, image.format(),
+                image.bytes().length / 2);
+        metrics.recordCompression(System.nanoTime() - startedAt, result.encodeAttempts());
+        return result.data();
+    }
+
+    private CompressedArtifact writeToFile(DownloadedImage image, byte[] compressedImage, String contentHash) {
+        Path outputFile = outputStore.pathFor(contentHash, image.format());
+        try {
+            if (outputStore.write(outputFile, compressedImage)) {
+                metrics.recordImageWritten(compressedImage.length);
+                log.info("Compressed image {} saved to: {}", image.url(), outputFile.toAbsolutePath());
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException("Can not write " + outputFile, e);
+        }
+        return new CompressedArtifact(outputFile.toAbsolutePath().toString(), compressedImage.length);
+    }
+
+    /**
+     * A full batch is inserted on the calling thread, so writes are handed to bounded-elastic.
+     */
+    private Mono<Void> persist(StoredImage image) {
+        ImageCreateDto imageInfo = new ImageCreateDto(image.url(), image.artifact().filePath(), image.originalSize(),
+                image.artifact().compressedSize(), image.contentHash());
+        return Mono.fromFuture(() -> infoWriter.write(imageInfo))
+                .subscribeOn(Schedulers.boundedElastic())
+                .onErrorResume(e -> {
+                    log.warn("Can not save image info {}: {}", image.url(), e.getMessage());
+                    return Mono.empty();
+                });
+    }
+
+    private static long toKb(long size) {
+        return size == ImageFilter.UNKNOWN_SIZE ? size : size / 1024;
+    }
+
+    private sealed interface CrawlStep permits Level, Page {
+    }
+
+    private record Level(List<String> urls) implements CrawlStep {
+    }
+
+    private record Page(List<String> linkUrls, List<String> imageUrls) implements CrawlStep {
+    }
+
+    private record DownloadedImage(String url, byte[] bytes, String format) {
+    }
+
+    private record StoredImage(String url, long originalSize, String contentHash, CompressedArtifact artifact) {
+    }
+}
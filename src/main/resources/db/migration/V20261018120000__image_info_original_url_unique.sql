@@ -0,0 +1,7 @@
+DELETE
+FROM image_info duplicate
+    USING image_info kept
+WHERE duplicate.original_url = kept.original_url
+  AND duplicate.id > kept.id;
+
+CREATE UNIQUE INDEX image_info_original_url_uindex ON image_info (original_url);
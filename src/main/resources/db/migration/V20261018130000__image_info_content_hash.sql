@@ -0,0 +1,4 @@
+ALTER TABLE image_info
+    ADD COLUMN content_hash TEXT;
+
+CREATE INDEX image_info_content_hash_index ON image_info (content_hash);
@@ -0,0 +1,70 @@
+package com.uapp.agro.crawler.consumer.dedup;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ContentHashIndexTest {
+    @TempDir
+    Path directory;
+
+    private final Map<String, CompressedArtifact> stored = new ConcurrentHashMap<>();
+    private final AtomicInteger compressions = new AtomicInteger();
+
+    @Test
+    void sharesAPendingCompressionBetweenCallers() {
+        ContentHashIndex index = new ContentHashIndex(hash -> Optional.ofNullable(stored.get(hash)), 10);
+        CompletableFuture<Optional<CompressedArtifact>> compression = new CompletableFuture<>();
+
+        CompletableFuture<Optional<CompressedArtifact>> first = index.resolve("a", () -> {
+            compressions.incrementAndGet();
+            return compression;
+        });
+        CompletableFuture<Optional<CompressedArtifact>> second = index.resolve("a", this::compress);
+        compression.complete(Optional.of(new CompressedArtifact("a.jpg", 1)));
+
+        assertThat(compressions).hasValue(1);
+        assertThat(second.join()).isEqualTo(first.join());
+        assertThat(index.contains("a")).isTrue();
+    }
+
+    @Test
+    void evictsFinishedHashesAndFallsBackToStoredArtifacts() throws IOException {
+        ContentHashIndex index = new ContentHashIndex(hash -> Optional.ofNullable(stored.get(hash)), 2);
+        for (String hash : new String[]{"a", "b", "c"}) {
+            index.resolve(hash, this::compress).join();
+            stored.put(hash, new CompressedArtifact(Files.createFile(directory.resolve(hash)).toString(), 1));
+        }
+        assertThat(index.size()).isEqualTo(2);
+
+        assertThat(index.resolve("a", this::compress).join()).isPresent();
+        assertThat(compressions).hasValue(3);
+    }
+
+    @Test
+    void letsTheNextCallerRetryAFailedCompression() {
+        ContentHashIndex index = new ContentHashIndex(hash -> Optional.empty(), 10);
+
+        CompletableFuture<Optional<CompressedArtifact>> failed = index.resolve("a",
+                () -> CompletableFuture.failedFuture(new IllegalStateException("disk full")));
+
+        assertThat(failed).isCompletedExceptionally();
+        assertThat(index.size()).isZero();
+        assertThat(index.resolve("a", this::compress).join()).isPresent();
+    }
+
+    private CompletableFuture<Optional<CompressedArtifact>> compress() {
+        compressions.incrementAndGet();
+        return CompletableFuture.completedFuture(Optional.of(new CompressedArtifact("out.jpg", 1)));
+    }
+}
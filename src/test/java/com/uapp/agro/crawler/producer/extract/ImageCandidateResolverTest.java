@@ -0,0 +1,57 @@
+package com.uapp.agro.crawler.producer.extract;
+
+import com.uapp.agro.crawler.config.ApplicationProperties;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ImageCandidateResolverTest {
+    private static final List<ImageCandidate> BY_WIDTH = List.of(
+            new ImageCandidate("480.jpg", 480, 1),
+            new ImageCandidate("1080.jpg", 1080, 1),
+            new ImageCandidate("760.jpg", 760, 1));
+
+    @Test
+    void picksByPolicy() {
+        assertThat(resolve(ApplicationProperties.SrcsetPolicy.LARGEST, BY_WIDTH, ImageCandidate.UNKNOWN_WIDTH))
+                .isEqualTo("1080.jpg");
+        assertThat(resolve(ApplicationProperties.SrcsetPolicy.SMALLEST, BY_WIDTH, ImageCandidate.UNKNOWN_WIDTH))
+                .isEqualTo("480.jpg");
+        assertThat(resolve(ApplicationProperties.SrcsetPolicy.CLOSEST, BY_WIDTH, ImageCandidate.UNKNOWN_WIDTH))
+                .isEqualTo("760.jpg");
+    }
+
+    @Test
+    void scalesDensitiesByTheDeclaredWidthOrTheTarget() {
+        List<ImageCandidate> candidates = List.of(
+                new ImageCandidate("1x.jpg", ImageCandidate.UNKNOWN_WIDTH, 1),
+                new ImageCandidate("2x.jpg", ImageCandidate.UNKNOWN_WIDTH, 2),
+                new ImageCandidate("1000w.jpg", 1000, 1));
+
+        // 1x and 2x are 800 and 1600 wide at the target width
+        assertThat(resolve(ApplicationProperties.SrcsetPolicy.CLOSEST, candidates, ImageCandidate.UNKNOWN_WIDTH))
+                .isEqualTo("1x.jpg");
+        // and 400 and 800 at a declared width of 400
+        assertThat(resolve(ApplicationProperties.SrcsetPolicy.LARGEST, candidates, 400)).isEqualTo("1000w.jpg");
+        assertThat(resolve(ApplicationProperties.SrcsetPolicy.CLOSEST, candidates, 400)).isEqualTo("2x.jpg");
+    }
+
+    @Test
+    void keepsThePageOrderOfEqualCandidates() {
+        List<ImageCandidate> candidates = List.of(
+                new ImageCandidate("first.jpg", 500, 1),
+                new ImageCandidate("second.jpg", 500, 1));
+
+        assertThat(resolve(ApplicationProperties.SrcsetPolicy.LARGEST, candidates, ImageCandidate.UNKNOWN_WIDTH))
+                .isEqualTo("first.jpg");
+        assertThat(new ImageCandidateResolver(ApplicationProperties.SrcsetPolicy.LARGEST, 800)
+                .resolve(List.of(), ImageCandidate.UNKNOWN_WIDTH)).isNull();
+    }
+
+    private static String resolve(ApplicationProperties.SrcsetPolicy policy, List<ImageCandidate> candidates,
+                                  int baseWidth) {
+        return new ImageCandidateResolver(policy, 800).resolve(candidates, baseWidth).url();
+    }
+}
@@ -0,0 +1,89 @@
+package com.uapp.agro.crawler.producer.extract;
+
+import com.uapp.agro.crawler.config.ApplicationProperties;
+import com.uapp.agro.crawler.scraper.image.ImageFilter;
+import org.jsoup.Jsoup;
+import org.jsoup.parser.Parser;
+import org.jsoup.parser.StreamParser;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class PageExtractorTest {
+    private static final String BASE_URI = "https://shop.test/catalogue/";
+    private static final String PAGE = """
+            <html><body>
+            <section>
+              <a href="page-2.html">next</a>
+              <img src="plain.jpg">
+              <img src="fallback.jpg" srcset="small.jpg 400w, large.jpg 1200w">
+              <img src="hero.jpg" srcset="hero@2x.jpg 2x">
+              <picture>
+                <source type="image/avif" srcset="photo.avif 2000w">
+                <source type="image/webp" srcset="photo.webp 1600w">
+                <source media="(min-width: 800px)" srcset="photo-wide.jpg 1400w">
+                <img src="photo.jpg" srcset="photo-small.jpg 600w">
+              </picture>
+            </section>
+            <a href="outside.html">not in a section</a>
+            </body></html>
+            """;
+
+    private final PageExtractor extractor = new PageExtractor(
+            new ImageCandidateResolver(ApplicationProperties.SrcsetPolicy.LARGEST, 800),
+            new ImageFilter(1, Set.of("jpg", "webp"), 0, 0));
+
+    @Test
+    void resolvesEveryImageToOneUrl() {
+        Set<String> imageUrls = extractor.extractImageUrls(Jsoup.parse(PAGE, BASE_URI));
+
+        assertThat(imageUrls).containsExactly(
+                BASE_URI + "plain.jpg",
+                BASE_URI + "large.jpg",
+                BASE_URI + "hero@2x.jpg",
+                BASE_URI + "photo.webp");
+    }
+
+    @Test
+    void leavesOutPictureSourcesOfUnwantedFormats() {
+        PageExtractor jpgOnly = new PageExtractor(
+                new ImageCandidateResolver(ApplicationProperties.SrcsetPolicy.LARGEST, 800),
+                new ImageFilter(1, Set.of("jpg"), 0, 0));
+
+        assertThat(jpgOnly.extractImageUrls(Jsoup.parse(PAGE, BASE_URI))).contains(BASE_URI + "photo-wide.jpg")
+                .doesNotContain(BASE_URI + "photo.webp", BASE_URI + "photo.avif");
+    }
+
+    @Test
+    void extractsLinksInsideSectionsOnly() {
+        assertThat(extractor.extractLinkUrls(Jsoup.parse(PAGE, BASE_URI))).containsExactly(BASE_URI + "page-2.html");
+    }
+
+    @Test
+    void streamingReportsTheSameUrls() throws IOException {
+        Set<String> imageUrls = new LinkedHashSet<>();
+        List<String> linkUrls = new ArrayList<>();
+        try (StreamParser parser = new StreamParser(Parser.htmlParser()).parse(PAGE, BASE_URI)) {
+            extractor.stream(parser, new PageExtractor.PageVisitor() {
+                @Override
+                public void image(String imageUrl) {
+                    imageUrls.add(imageUrl);
+                }
+
+                @Override
+                public void link(String linkUrl) {
+                    linkUrls.add(linkUrl);
+                }
+            });
+        }
+
+        assertThat(imageUrls).containsExactlyElementsOf(extractor.extractImageUrls(Jsoup.parse(PAGE, BASE_URI)));
+        assertThat(linkUrls).containsExactly(BASE_URI + "page-2.html");
+    }
+}
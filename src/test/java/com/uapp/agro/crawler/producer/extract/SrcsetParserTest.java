@@ -0,0 +1,48 @@
+package com.uapp.agro.crawler.producer.extract;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SrcsetParserTest {
+
+    @Test
+    void readsWidthAndDensityDescriptors() {
+        assertThat(SrcsetParser.parse("small.jpg 480w, large.jpg 1080w")).containsExactly(
+                new ImageCandidate("small.jpg", 480, 1),
+                new ImageCandidate("large.jpg", 1080, 1));
+        assertThat(SrcsetParser.parse("a.jpg, a@2x.jpg 2x,a@1.5x.jpg 1.5x")).containsExactly(
+                new ImageCandidate("a.jpg", ImageCandidate.UNKNOWN_WIDTH, 1),
+                new ImageCandidate("a@2x.jpg", ImageCandidate.UNKNOWN_WIDTH, 2),
+                new ImageCandidate("a@1.5x.jpg", ImageCandidate.UNKNOWN_WIDTH, 1.5));
+    }
+
+    @Test
+    void keepsCommasInsideUrls() {
+        assertThat(SrcsetParser.parse("/img/w_300,h_200/a.jpg 300w, /img/w_600,h_400/a.jpg 600w"))
+                .containsExactly(
+                        new ImageCandidate("/img/w_300,h_200/a.jpg", 300, 1),
+                        new ImageCandidate("/img/w_600,h_400/a.jpg", 600, 1));
+    }
+
+    @Test
+    void stripsTrailingCommasAndExtraWhitespace() {
+        assertThat(SrcsetParser.parse("  a.jpg,,  b.jpg 2x ,\n c.jpg,")).containsExactly(
+                new ImageCandidate("a.jpg", ImageCandidate.UNKNOWN_WIDTH, 1),
+                new ImageCandidate("b.jpg", ImageCandidate.UNKNOWN_WIDTH, 2),
+                new ImageCandidate("c.jpg", ImageCandidate.UNKNOWN_WIDTH, 1));
+        assertThat(SrcsetParser.parse(" , ")).isEmpty();
+    }
+
+    @Test
+    void dropsCandidatesWithMalformedOrConflictingDescriptors() {
+        assertThat(SrcsetParser.parse("a.jpg 0w, b.jpg -1x, c.jpg 100w 2x, d.jpg wide, e.jpg 1x 2x, f.jpg 300w"))
+                .containsExactly(new ImageCandidate("f.jpg", 300, 1));
+    }
+
+    @Test
+    void ignoresHeightDescriptorsAndParentheses() {
+        assertThat(SrcsetParser.parse("a.jpg 300w 200h, b.jpg (future, descriptor) 600w")).containsExactly(
+                new ImageCandidate("a.jpg", 300, 1));
+    }
+}
@@ -0,0 +1,149 @@
+package com.uapp.agro.crawler.producer.frontier;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class HostPartitionedFrontierTest {
+
+    @Test
+    void pollsShallowUrlsOfAHostFirstAndKeepsOfferOrderWithinADepth() throws InterruptedException {
+        HostPartitionedFrontier frontier = frontier(0, Integer.MAX_VALUE);
+        frontier.offer("https://a.test/deep", 2);
+        frontier.offer("https://a.test/first", 1);
+        frontier.offer("https://a.test/second", 1);
+
+        assertThat(pollUrls(frontier, 3)).containsExactly(
+                "https://a.test/first", "https://a.test/second", "https://a.test/deep");
+    }
+
+    @Test
+    void rejectsUrlsThatAreAlreadyWaiting() throws InterruptedException {
+        HostPartitionedFrontier frontier = frontier(0, Integer.MAX_VALUE);
+
+        assertThat(frontier.offer("https://a.test/", 0)).isTrue();
+        assertThat(frontier.offer("https://a.test/", 1)).isFalse();
+        assertThat(frontier.size()).isEqualTo(1);
+
+        frontier.poll(1, TimeUnit.SECONDS);
+        assertThat(frontier.offer("https://a.test/", 0)).isTrue();
+    }
+
+    @Test
+    void waitsForTheHostDelayButServesOtherHostsMeanwhile() throws InterruptedException {
+        HostPartitionedFrontier frontier = frontier(300, Integer.MAX_VALUE);
+        frontier.offer("https://a.test/1", 0);
+        frontier.offer("https://a.test/2", 0);
+        frontier.offer("https://b.test/1", 0);
+
+        long startedAt = System.nanoTime();
+        List<String> first = pollUrls(frontier, 2);
+        assertThat(first).containsExactlyInAnyOrder("https://a.test/1", "https://b.test/1");
+        assertThat(frontier.poll(50, TimeUnit.MILLISECONDS)).isNull();
+
+        assertThat(frontier.poll(1, TimeUnit.SECONDS).url()).isEqualTo("https://a.test/2");
+        assertThat(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startedAt)).isGreaterThanOrEqualTo(300);
+    }
+
+    @Test
+    void keepsTheDelayOfADrainedHostForUrlsArrivingLater() throws InterruptedException {
+        HostPartitionedFrontier frontier = frontier(300, Integer.MAX_VALUE);
+        frontier.offer("https://a.test/1", 0);
+        long startedAt = System.nanoTime();
+        frontier.poll(1, TimeUnit.SECONDS);
+
+        frontier.offer("https://a.test/2", 0);
+        assertThat(frontier.poll(1, TimeUnit.SECONDS).url()).isEqualTo("https://a.test/2");
+        assertThat(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startedAt)).isGreaterThanOrEqualTo(300);
+    }
+
+    @Test
+    void dropsHostsOnceTheyAreDrainedAndTheirDelayIsOver() throws InterruptedException {
+        HostPartitionedFrontier noDelay = frontier(0, Integer.MAX_VALUE);
+        noDelay.offer("https://a.test/", 0);
+        noDelay.poll(1, TimeUnit.SECONDS);
+        assertThat(noDelay.hostCount()).isZero();
+
+        HostPartitionedFrontier withDelay = frontier(50, Integer.MAX_VALUE);
+        withDelay.offer("https://a.test/", 0);
+        withDelay.poll(1, TimeUnit.SECONDS);
+        assertThat(withDelay.hostCount()).isEqualTo(1);
+        assertThat(withDelay.poll(200, TimeUnit.MILLISECONDS)).isNull();
+        assertThat(withDelay.hostCount()).isZero();
+
+        withDelay.offer("https://a.test/again", 0);
+        assertThat(withDelay.poll(1, TimeUnit.SECONDS).url()).isEqualTo("https://a.test/again");
+    }
+
+    @Test
+    void movesUrlsPastTheMemoryCapacityToTheOverflowAndBack() throws InterruptedException {
+        ConcurrentLinkedQueue<String> overflow = new ConcurrentLinkedQueue<>();
+        HostPartitionedFrontier frontier = new HostPartitionedFrontier(0, TimeUnit.MILLISECONDS, 2, overflow);
+        for (int i = 0; i < 5; i++) {
+            frontier.offer("https://host" + i + ".test/", i);
+        }
+
+        assertThat(overflow).hasSize(3);
+        assertThat(frontier.size()).isEqualTo(5);
+        assertThat(pollUrls(frontier, 5)).containsExactlyInAnyOrder("https://host0.test/", "https://host1.test/",
+                "https://host2.test/", "https://host3.test/", "https://host4.test/");
+        assertThat(frontier.isEmpty()).isTrue();
+    }
+
+    @Test
+    void keepsNoFingerprintsForSpilledUrls() throws InterruptedException {
+        ConcurrentLinkedQueue<String> overflow = new ConcurrentLinkedQueue<>();
+        HostPartitionedFrontier frontier = new HostPartitionedFrontier(0, TimeUnit.MILLISECONDS, 2, overflow);
+        frontier.offer("https://a.test/", 0);
+        frontier.offer("https://b.test/", 0);
+
+        assertThat(frontier.offer("https://a.test/", 0)).isFalse();
+        assertThat(frontier.offer("https://c.test/", 0)).isTrue();
+        assertThat(frontier.offer("https://c.test/", 0)).isTrue();
+        assertThat(overflow).hasSize(2);
+
+        assertThat(pollUrls(frontier, 4)).containsExactlyInAnyOrder(
+                "https://a.test/", "https://b.test/", "https://c.test/", "https://c.test/");
+    }
+
+    @Test
+    void doesNotOvershootTheMemoryCapacityUnderConcurrentOffers() throws InterruptedException {
+        ConcurrentLinkedQueue<String> overflow = new ConcurrentLinkedQueue<>();
+        HostPartitionedFrontier frontier = new HostPartitionedFrontier(0, TimeUnit.MILLISECONDS, 100, overflow);
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 8; t++) {
+            int thread = t;
+            threads.add(Thread.ofPlatform().start(() -> {
+                for (int i = 0; i < 1000; i++) {
+                    frontier.offer("https://host" + i % 50 + ".test/" + thread + "/" + i, 0);
+                }
+            }));
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        assertThat(frontier.size()).isEqualTo(8000);
+        assertThat(frontier.size() - overflow.size()).isEqualTo(100);
+    }
+
+    private static HostPartitionedFrontier frontier(long hostDelayMs, int memoryCapacity) {
+        return new HostPartitionedFrontier(hostDelayMs, TimeUnit.MILLISECONDS, memoryCapacity,
+                new ConcurrentLinkedQueue<>());
+    }
+
+    private static List<String> pollUrls(CrawlFrontier frontier, int count) throws InterruptedException {
+        List<String> urls = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            FrontierEntry entry = frontier.poll(1, TimeUnit.SECONDS);
+            assertThat(entry).isNotNull();
+            urls.add(entry.url());
+        }
+        return urls;
+    }
+}
@@ -0,0 +1,62 @@
+package com.uapp.agro.crawler.producer.scope;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class UrlCanonicalizerTest {
+    private final UrlCanonicalizer canonicalizer = new UrlCanonicalizer(List.of("utm_*", "fbclid"), true, false);
+
+    @Test
+    void lowerCasesSchemeAndHostAndDropsDefaultPortAndFragment() {
+        assertThat(canonicalizer.canonicalize("HTTPS://Shop.Example.COM:443/Catalogue/Item#reviews"))
+                .isEqualTo("https://shop.example.com/Catalogue/Item");
+        assertThat(canonicalizer.canonicalize("http://shop.test:80")).isEqualTo("http://shop.test/");
+        assertThat(canonicalizer.canonicalize("http://shop.test:8080/a")).isEqualTo("http://shop.test:8080/a");
+        assertThat(canonicalizer.canonicalize("https://shop.test.:443?b=1")).isEqualTo("https://shop.test/?b=1");
+        assertThat(canonicalizer.canonicalize("https://User@Shop.test/")).isEqualTo("https://User@shop.test/");
+    }
+
+    @Test
+    void decodesUnreservedEscapesAndUpperCasesTheRest() {
+        assertThat(canonicalizer.canonicalize("https://shop.test/%7euser/a%2db%2fc?q=%41%3d%zz"))
+                .isEqualTo("https://shop.test/~user/a-b%2Fc?q=A%3D%zz");
+    }
+
+    @Test
+    void resolvesDotSegments() {
+        assertThat(canonicalizer.canonicalize("https://shop.test/a/./b/../c")).isEqualTo("https://shop.test/a/c");
+        assertThat(canonicalizer.canonicalize("https://shop.test/a/b/..")).isEqualTo("https://shop.test/a/");
+        assertThat(canonicalizer.canonicalize("https://shop.test/../../a")).isEqualTo("https://shop.test/a");
+        assertThat(canonicalizer.canonicalize("https://shop.test/a/.hidden")).isEqualTo("https://shop.test/a/.hidden");
+    }
+
+    @Test
+    void stripsAndSortsQueryParameters() {
+        assertThat(canonicalizer.canonicalize("https://shop.test/list?page=2&utm_source=mail&b=1&fbclid=x&a=2&a=1"))
+                .isEqualTo("https://shop.test/list?a=2&a=1&b=1&page=2");
+        assertThat(canonicalizer.canonicalize("https://shop.test/list?UTM_Campaign=x&&")).isEqualTo(
+                "https://shop.test/list");
+        assertThat(new UrlCanonicalizer(List.of(), false, false).canonicalize("https://shop.test/?b=1&a=2"))
+                .isEqualTo("https://shop.test/?b=1&a=2");
+    }
+
+    @Test
+    void stripsTrailingSlashesWhenAsked() {
+        UrlCanonicalizer stripping = new UrlCanonicalizer(List.of(), true, true);
+
+        assertThat(stripping.canonicalize("https://shop.test/catalogue/")).isEqualTo("https://shop.test/catalogue");
+        assertThat(stripping.canonicalize("https://shop.test/")).isEqualTo("https://shop.test/");
+    }
+
+    @Test
+    void rejectsUrlsThatAreNotAbsoluteHttp() {
+        assertThat(canonicalizer.canonicalize("/relative/path")).isNull();
+        assertThat(canonicalizer.canonicalize("mailto:shop@test")).isNull();
+        assertThat(canonicalizer.canonicalize("ftp://shop.test/file")).isNull();
+        assertThat(canonicalizer.canonicalize("https:///path")).isNull();
+        assertThat(canonicalizer.canonicalize("https://shop.test:http/")).isNull();
+    }
+}
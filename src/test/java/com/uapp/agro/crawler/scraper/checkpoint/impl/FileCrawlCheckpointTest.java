@@ -0,0 +1,190 @@
+package com.uapp.agro.crawler.scraper.checkpoint.impl;
+
+import com.uapp.agro.crawler.scraper.checkpoint.CrawlCheckpoint;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class FileCrawlCheckpointTest {
+    private static final Duration INTERVAL = Duration.ofHours(1);
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void replaysVisitedAndProcessedFirstAndOnlyUnfinishedWorkAsPending() throws IOException {
+        FileCrawlCheckpoint checkpoint = open(true);
+        checkpoint.urlScheduled("https://a.test/", 0);
+        checkpoint.urlScheduled("https://a.test/1", 1);
+        checkpoint.urlScheduled("https://a.test/2", 1);
+        checkpoint.urlScheduled("https://a.test/2", 2);
+        checkpoint.urlVisited("https://a.test/");
+        checkpoint.imageQueued("https://a.test/1.jpg");
+        checkpoint.imageQueued("https://a.test/2.jpg");
+        checkpoint.imageProcessed("https://a.test/1.jpg");
+        checkpoint.close();
+
+        Recorder restored = restore(open(true));
+
+        assertThat(restored.events).containsExactly(
+                "visited https://a.test/",
+                "processed https://a.test/1.jpg",
+                "pending https://a.test/1 1",
+                "pending https://a.test/2 1",
+                "pending image https://a.test/2.jpg");
+    }
+
+    @Test
+    void compactsLogsIntoSnapshotsWithoutLosingPendingWork() throws IOException {
+        FileCrawlCheckpoint checkpoint = open(true);
+        for (int i = 0; i < 10; i++) {
+            checkpoint.urlScheduled("https://a.test/" + i, 1);
+            checkpoint.imageQueued("https://a.test/" + i + ".jpg");
+        }
+        for (int i = 0; i < 10; i += 2) {
+            checkpoint.urlVisited("https://a.test/" + i);
+            checkpoint.imageProcessed("https://a.test/" + i + ".jpg");
+        }
+        checkpoint.close();
+
+        assertThat(Files.size(directory.resolve("frontier.log"))).isZero();
+        assertThat(Files.readAllLines(directory.resolve("frontier.snapshot"))).hasSize(5);
+        assertThat(Files.readAllLines(directory.resolve("images.snapshot"))).hasSize(5);
+
+        FileCrawlCheckpoint reopened = open(true);
+        reopened.urlScheduled("https://a.test/10", 2);
+        reopened.close();
+
+        Recorder restored = restore(open(true));
+        assertThat(restored.pending()).containsExactly("https://a.test/1 1", "https://a.test/3 1",
+                "https://a.test/5 1", "https://a.test/7 1", "https://a.test/9 1", "https://a.test/10 2");
+        assertThat(restored.pendingImages()).containsExactly("https://a.test/1.jpg", "https://a.test/3.jpg",
+                "https://a.test/5.jpg", "https://a.test/7.jpg", "https://a.test/9.jpg");
+    }
+
+    @Test
+    void startsOverWithoutResume() throws IOException {
+        FileCrawlCheckpoint checkpoint = open(true);
+        checkpoint.urlScheduled("https://a.test/", 0);
+        checkpoint.urlVisited("https://a.test/");
+        checkpoint.close();
+
+        assertThat(restore(open(false)).events).isEmpty();
+    }
+
+    @Test
+    void startsOverAfterACompletedCrawl() throws IOException {
+        FileCrawlCheckpoint checkpoint = open(true);
+        checkpoint.urlScheduled("https://a.test/", 0);
+        checkpoint.urlVisited("https://a.test/");
+        checkpoint.imageQueued("https://a.test/1.jpg");
+        checkpoint.imageProcessed("https://a.test/1.jpg");
+        checkpoint.crawlCompleted();
+        checkpoint.close();
+
+        FileCrawlCheckpoint next = open(true);
+        Recorder restored = new Recorder();
+        next.restore(restored);
+        assertThat(restored.events).isEmpty();
+        next.urlScheduled("https://a.test/", 0);
+        next.close();
+
+        assertThat(directory.resolve("completed")).doesNotExist();
+        assertThat(restore(open(true)).pending()).containsExactly("https://a.test/ 0");
+    }
+
+    @Test
+    void skipsTornLines() throws IOException {
+        Files.writeString(directory.resolve("frontier.log"), "1\thttps://a.test/1\nbroken\n\n2\thttps://a.test/2");
+
+        assertThat(restore(open(true)).pending()).containsExactly("https://a.test/1 1", "https://a.test/2 2");
+    }
+
+    @Test
+    void picksUpALogLeftByAnInterruptedCompaction() throws IOException {
+        Files.writeString(directory.resolve("frontier.log.compacting"), "1\thttps://a.test/1\n1\thttps://a.test/2\n");
+        Files.writeString(directory.resolve("visited-urls.log"), "https://a.test/2\n");
+
+        assertThat(restore(open(true)).pending()).containsExactly("https://a.test/1 1");
+        assertThat(directory.resolve("frontier.log.compacting")).doesNotExist();
+        assertThat(Files.readAllLines(directory.resolve("frontier.snapshot"))).containsExactly("1\thttps://a.test/1");
+    }
+
+    @Test
+    void keepsEntriesAppendedWhileSnapshotsRun() throws Exception {
+        FileCrawlCheckpoint checkpoint = new FileCrawlCheckpoint(directory, true, Duration.ofMillis(1),
+                Duration.ofMillis(1));
+        Thread writer = Thread.ofPlatform().start(() -> {
+            for (int i = 0; i < 5000; i++) {
+                checkpoint.urlScheduled("https://a.test/" + i, 1);
+                if (i % 2 == 0) {
+                    checkpoint.urlVisited("https://a.test/" + i);
+                }
+            }
+        });
+        writer.join();
+        checkpoint.close();
+
+        List<String> pending = restore(open(true)).pending();
+        assertThat(pending).hasSize(2500);
+        assertThat(pending).allMatch(entry -> Integer.parseInt(entry.substring("https://a.test/".length(),
+                entry.indexOf(' '))) % 2 == 1);
+    }
+
+    private FileCrawlCheckpoint open(boolean resume) {
+        return new FileCrawlCheckpoint(directory, resume, INTERVAL, INTERVAL);
+    }
+
+    private static Recorder restore(FileCrawlCheckpoint checkpoint) throws IOException {
+        Recorder recorder = new Recorder();
+        checkpoint.restore(recorder);
+        checkpoint.close();
+        return recorder;
+    }
+
+    private static class Recorder implements CrawlCheckpoint.RestoreTarget {
+        private final List<String> events = new ArrayList<>();
+
+        @Override
+        public void visitedUrl(String url) {
+            events.add("visited " + url);
+        }
+
+        @Override
+        public void processedImage(String imageUrl) {
+            events.add("processed " + imageUrl);
+        }
+
+        @Override
+        public void pendingUrl(String url, int depth) {
+            events.add("pending " + url + " " + depth);
+        }
+
+        @Override
+        public void pendingImage(String imageUrl) {
+            events.add("pending image " + imageUrl);
+        }
+
+        List<String> pending() {
+            return events.stream()
+                    .filter(event -> event.startsWith("pending https"))
+                    .map(event -> event.substring("pending ".length()))
+                    .toList();
+        }
+
+        List<String> pendingImages() {
+            return events.stream()
+                    .filter(event -> event.startsWith("pending image "))
+                    .map(event -> event.substring("pending image ".length()))
+                    .toList();
+        }
+    }
+}
@@ -0,0 +1,206 @@
+package com.uapp.agro.crawler.scraper.coordinator;
+
+import com.uapp.agro.crawler.scraper.metrics.CrawlMetrics;
+import com.uapp.agro.crawler.scraper.retry.RetryPolicy;
+import com.uapp.agro.crawler.scraper.retry.RetryScheduler;
+import com.uapp.agro.crawler.scraper.retry.impl.NoopDeadLetterStore;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.io.UncheckedIOException;
+import java.net.ConnectException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CrawlCoordinatorTest {
+    private static final RetryPolicy FAST_RETRIES = new RetryPolicy(3, Duration.ofMillis(5), Duration.ofMillis(20));
+
+    @Test
+    void finishesOnceEveryScheduledPageCompleted() {
+        CrawlCoordinator coordinator = new CrawlCoordinator();
+        coordinator.pageScheduled();
+        coordinator.pageScheduled();
+
+        coordinator.pageCompleted();
+        assertThat(coordinator.isCrawlFinished()).isFalse();
+        coordinator.pageCompleted();
+        assertThat(coordinator.isCrawlFinished()).isTrue();
+    }
+
+    @Test
+    void keepsTheCrawlOpenWhileAPageWaitsForItsRetry() throws InterruptedException {
+        CrawlCoordinator coordinator = new CrawlCoordinator();
+        BlockingQueue<String> frontier = new LinkedBlockingQueue<>();
+        RetryScheduler<String> pageRetries = scheduler("page", coordinator, frontier::add);
+        try {
+            coordinator.pageScheduled();
+            // the failed attempt completes only after its retry is scheduled, as in the producer
+            if (pageRetries.failed("https://a.test/", new ConnectException("refused"))) {
+                coordinator.pageScheduled();
+            }
+            coordinator.pageCompleted();
+            assertThat(coordinator.isCrawlFinished()).isFalse();
+
+            assertThat(frontier.poll(1, TimeUnit.SECONDS)).isEqualTo("https://a.test/");
+            assertThat(pageRetries.claimRedelivery("https://a.test/")).isTrue();
+            assertThat(coordinator.isCrawlFinished()).isFalse();
+
+            coordinator.pageCompleted();
+            assertThat(coordinator.isCrawlFinished()).isTrue();
+        } finally {
+            pageRetries.close();
+        }
+    }
+
+    @Test
+    void doesNotDrainTheImageQueueWhileAnImageIsInFlightOrWaitingForARetry() throws InterruptedException {
+        CrawlCoordinator coordinator = finishedCrawl();
+        BlockingQueue<String> images = new LinkedBlockingQueue<>();
+        RetryScheduler<String> imageRetries = scheduler("image", coordinator, images::add);
+        try {
+            coordinator.imageStarted();
+            assertThat(coordinator.isImageQueueDrained(images)).isFalse();
+
+            imageRetries.failed("https://a.test/1.jpg", new ConnectException("refused"));
+            coordinator.imageCompleted();
+            assertThat(coordinator.isImageQueueDrained(images)).isFalse();
+
+            String retried = images.poll(1, TimeUnit.SECONDS);
+            assertThat(retried).isEqualTo("https://a.test/1.jpg");
+            // the dispatcher stops counting the retry only after it is back in the queue
+            awaitNoPendingRetries(coordinator);
+            coordinator.imageStarted();
+            assertThat(coordinator.isImageQueueDrained(images)).isFalse();
+
+            imageRetries.succeeded(retried);
+            coordinator.imageCompleted();
+            assertThat(coordinator.isImageQueueDrained(images)).isTrue();
+        } finally {
+            imageRetries.close();
+        }
+    }
+
+    @Test
+    void doesNotDrainTheImageQueueBeforeTheCrawlFinished() {
+        CrawlCoordinator coordinator = new CrawlCoordinator();
+        coordinator.pageScheduled();
+
+        assertThat(coordinator.isImageQueueDrained(new LinkedBlockingQueue<>())).isFalse();
+        coordinator.pageCompleted();
+        assertThat(coordinator.isImageQueueDrained(new LinkedBlockingQueue<>())).isTrue();
+    }
+
+    /**
+     * Consumers run the loop of {@code ImageScraperConsumer}, completing images on a separate pool as the
+     * pipeline stages do, and every third image fails once. No consumer may leave while work is still coming.
+     */
+    @Test
+    void consumersLeaveOnlyOnceEveryImageIsSavedUnderConcurrentRetries() throws Exception {
+        int imageCount = 500;
+        CrawlCoordinator coordinator = new CrawlCoordinator();
+        BlockingQueue<String> images = new LinkedBlockingQueue<>();
+        RetryScheduler<String> imageRetries = scheduler("image", coordinator, images::add);
+        Set<String> failedOnce = ConcurrentHashMap.newKeySet();
+        Set<String> saved = ConcurrentHashMap.newKeySet();
+        ExecutorService pipeline = Executors.newFixedThreadPool(4);
+        try {
+            coordinator.pageScheduled();
+            List<CompletableFuture<Void>> consumers = new ArrayList<>();
+            for (int c = 0; c < 8; c++) {
+                consumers.add(CompletableFuture.runAsync(() -> consume(coordinator, images, imageRetries, pipeline,
+                        failedOnce, saved)));
+            }
+            for (int i = 0; i < imageCount; i++) {
+                images.put("https://a.test/" + i + ".jpg");
+            }
+            coordinator.pageCompleted();
+
+            CompletableFuture.allOf(consumers.toArray(CompletableFuture[]::new)).get(30, TimeUnit.SECONDS);
+            assertThat(saved).hasSize(imageCount);
+            assertThat(failedOnce).isNotEmpty();
+            assertThat(coordinator.getImagesInFlight()).isZero();
+            assertThat(coordinator.getPendingRetries()).isZero();
+        } finally {
+            pipeline.shutdownNow();
+            imageRetries.close();
+        }
+    }
+
+    private static void consume(CrawlCoordinator coordinator, BlockingQueue<String> images,
+                                RetryScheduler<String> imageRetries, ExecutorService pipeline,
+                                Set<String> failedOnce, Set<String> saved) {
+        try {
+            while (true) {
+                String imageUrl = images.poll(2, TimeUnit.MILLISECONDS);
+                if (imageUrl == null) {
+                    if (coordinator.isImageQueueDrained(images)) {
+                        return;
+                    }
+                    continue;
+                }
+                coordinator.imageStarted();
+                CompletableFuture.runAsync(() -> {
+                    sleepBriefly();
+                    if (imageUrl.hashCode() % 3 == 0 && failedOnce.add(imageUrl)) {
+                        throw new UncheckedIOException(new ConnectException("refused"));
+                    }
+                    saved.add(imageUrl);
+                }, pipeline).whenComplete((unused, failure) -> {
+                    try {
+                        if (failure == null) {
+                            imageRetries.succeeded(imageUrl);
+                        } else {
+                            imageRetries.failed(imageUrl, failure);
+                        }
+                    } finally {
+                        coordinator.imageCompleted();
+                    }
+                });
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void sleepBriefly() {
+        try {
+            Thread.sleep(ThreadLocalRandom.current().nextInt(3));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void awaitNoPendingRetries(CrawlCoordinator coordinator) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(1);
+        while (coordinator.getPendingRetries() > 0 && System.nanoTime() < deadline) {
+            Thread.sleep(1);
+        }
+        assertThat(coordinator.getPendingRetries()).isZero();
+    }
+
+    private static CrawlCoordinator finishedCrawl() {
+        CrawlCoordinator coordinator = new CrawlCoordinator();
+        coordinator.pageScheduled();
+        coordinator.pageCompleted();
+        return coordinator;
+    }
+
+    private static RetryScheduler<String> scheduler(String kind, CrawlCoordinator coordinator,
+                                                    Predicate<String> redeliver) {
+        return new RetryScheduler<>(kind, url -> url, FAST_RETRIES, new NoopDeadLetterStore(), coordinator,
+                new CrawlMetrics(new SimpleMeterRegistry()), redeliver);
+    }
+}
@@ -0,0 +1,99 @@
+package com.uapp.agro.crawler.scraper.image;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ImageHeaderTest {
+
+    @ParameterizedTest
+    @ValueSource(strings = {"jpg", "png", "gif", "bmp"})
+    void readsFormatAndSizeOfEncodedImages(String format) throws IOException {
+        byte[] bytes = encode(format, 300, 200);
+
+        assertThat(ImageHeader.parse(bytes)).contains(new ImageHeader(format, 300, 200));
+    }
+
+    @Test
+    void readsAJpegFrameBehindOtherSegments() throws IOException {
+        byte[] jpeg = encode("jpg", 64, 48);
+        byte[] comment = new byte[4 + 1000];
+        comment[0] = (byte) 0xFF;
+        comment[1] = (byte) 0xFE;
+        comment[2] = (byte) ((comment.length - 2) >> 8);
+        comment[3] = (byte) (comment.length - 2);
+        byte[] withComment = concat(Arrays.copyOf(jpeg, 2), comment, Arrays.copyOfRange(jpeg, 2, jpeg.length));
+
+        assertThat(ImageHeader.parse(withComment)).contains(new ImageHeader(ImageHeader.JPEG, 64, 48));
+        assertThat(ImageHeader.parse(withComment, 512)).isEmpty();
+    }
+
+    @Test
+    void readsWebpVariants() {
+        byte[] lossy = webp("VP8 ", 30);
+        lossy[23] = (byte) 0x9D;
+        lossy[24] = 0x01;
+        lossy[25] = 0x2A;
+        lossy[26] = (byte) 300;
+        lossy[27] = (byte) (300 >> 8);
+        lossy[28] = (byte) 200;
+
+        byte[] lossless = webp("VP8L", 25);
+        lossless[20] = 0x2F;
+        lossless[21] = 0x2B;
+        lossless[22] = (byte) 0xC1;
+        lossless[23] = 49;
+
+        byte[] extended = webp("VP8X", 30);
+        extended[24] = (byte) 299;
+        extended[25] = (byte) (299 >> 8);
+        extended[27] = (byte) 199;
+
+        assertThat(ImageHeader.parse(lossy)).contains(new ImageHeader(ImageHeader.WEBP, 300, 200));
+        assertThat(ImageHeader.parse(lossless)).contains(new ImageHeader(ImageHeader.WEBP, 300, 200));
+        assertThat(ImageHeader.parse(extended)).contains(new ImageHeader(ImageHeader.WEBP, 300, 200));
+    }
+
+    @Test
+    void rejectsTruncatedAndUnknownContent() throws IOException {
+        byte[] png = encode("png", 10, 10);
+
+        assertThat(ImageHeader.parse(png, 20)).isEmpty();
+        assertThat(ImageHeader.parse(new byte[0])).isEmpty();
+        assertThat(ImageHeader.parse("<html><body>Not found</body></html>".getBytes(StandardCharsets.US_ASCII)))
+                .isEmpty();
+        assertThat(ImageHeader.parse(webp("VP8 ", 30))).isEmpty();
+    }
+
+    private static byte[] encode(String format, int width, int height) throws IOException {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        assertThat(ImageIO.write(image, format, out)).isTrue();
+        return out.toByteArray();
+    }
+
+    private static byte[] webp(String chunk, int length) {
+        byte[] bytes = new byte[length];
+        System.arraycopy("RIFF".getBytes(StandardCharsets.US_ASCII), 0, bytes, 0, 4);
+        System.arraycopy("WEBP".getBytes(StandardCharsets.US_ASCII), 0, bytes, 8, 4);
+        System.arraycopy(chunk.getBytes(StandardCharsets.US_ASCII), 0, bytes, 12, 4);
+        return bytes;
+    }
+
+    private static byte[] concat(byte[]... parts) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (byte[] part : parts) {
+            out.writeBytes(part);
+        }
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,174 @@
+package com.uapp.agro.crawler.scraper.limiter.impl;
+
+import com.uapp.agro.crawler.scraper.limiter.HostPermit;
+import com.uapp.agro.crawler.scraper.metrics.CrawlMetrics;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.net.http.HttpTimeoutException;
+import java.time.Duration;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class AimdHostLimiterTest {
+    private static final String URL = "https://a.test/page";
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+
+    @Test
+    void raisesTheLimitByOneWhileResponsesAreFastAndTheLimitIsUsed() {
+        AimdHostLimiter limiter = limiter(2, 8, Duration.ofSeconds(1));
+
+        respond(acquireAll(limiter), 200);
+
+        assertThat(freeSlots(limiter)).isEqualTo(3);
+    }
+
+    @Test
+    void doesNotRaiseTheLimitOfAnIdleHost() {
+        AimdHostLimiter limiter = limiter(4, 8, Duration.ofSeconds(1));
+
+        for (int i = 0; i < 5; i++) {
+            respond(List.of(limiter.tryAcquire(URL)), 200);
+        }
+
+        assertThat(freeSlots(limiter)).isEqualTo(4);
+    }
+
+    @Test
+    void cutsTheLimitOnThrottlingAndTimeoutsButNotBelowOne() {
+        AimdHostLimiter limiter = limiter(8, 8, Duration.ofSeconds(1));
+
+        respond(List.of(limiter.tryAcquire(URL)), 503);
+        assertThat(freeSlots(limiter)).isEqualTo(4);
+
+        HostPermit timedOut = limiter.tryAcquire(URL);
+        timedOut.started();
+        timedOut.release(new HttpTimeoutException("request timed out"));
+        assertThat(freeSlots(limiter)).isEqualTo(2);
+
+        for (int i = 0; i < 3; i++) {
+            respond(List.of(limiter.tryAcquire(URL)), 429);
+        }
+        assertThat(freeSlots(limiter)).isEqualTo(1);
+        assertThat(backoffs("throttled")).isEqualTo(4);
+        assertThat(backoffs("timeout")).isEqualTo(1);
+    }
+
+    @Test
+    void countsABurstOfThrottledResponsesOnce() throws InterruptedException {
+        AimdHostLimiter limiter = limiter(4, 8, Duration.ofSeconds(1));
+        respondAfter(limiter.tryAcquire(URL), 0, 100);
+
+        respond(acquireAll(limiter), 503);
+
+        assertThat(backoffs("throttled")).isEqualTo(1);
+        assertThat(freeSlots(limiter)).isEqualTo(2);
+    }
+
+    @Test
+    void pausesTheHostForRetryAfterUpToTheCap() throws InterruptedException {
+        AimdHostLimiter limiter = limiter(4, 8, Duration.ofMillis(200));
+
+        HostPermit permit = limiter.tryAcquire(URL);
+        permit.started();
+        permit.responded(429, "3600");
+        permit.release(null);
+
+        assertThat(limiter.tryAcquire(URL)).isNull();
+        assertThat(limiter.hasSpareCapacity()).isFalse();
+        assertThat(limiter.tryAcquire("https://b.test/")).isNotNull();
+
+        long startedAt = System.nanoTime();
+        limiter.acquire(URL);
+        assertThat(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startedAt)).isBetween(100L, 2000L);
+    }
+
+    @Test
+    void backsOffWhenResponsesGetSlowerThanTheLatencyFloor() throws InterruptedException {
+        AimdHostLimiter limiter = limiter(4, 8, Duration.ofSeconds(1));
+        respondAfter(limiter.tryAcquire(URL), 0, 20);
+
+        respondAfter(limiter.tryAcquire(URL), 0, 150);
+
+        assertThat(backoffs("latency")).isEqualTo(1);
+        assertThat(freeSlots(limiter)).isEqualTo(2);
+    }
+
+    @Test
+    void measuresLatencyFromTheStartOfTheRequest() throws InterruptedException {
+        AimdHostLimiter limiter = limiter(4, 8, Duration.ofSeconds(1));
+        respondAfter(limiter.tryAcquire(URL), 0, 20);
+
+        // waiting for the global permit before the request starts does not make the host look slow
+        respondAfter(limiter.tryAcquire(URL), 150, 20);
+
+        assertThat(backoffs("latency")).isZero();
+    }
+
+    @Test
+    void parsesRetryAfterSecondsAndDates() {
+        assertThat(AimdHostLimiter.retryAfterNanos("120")).isEqualTo(TimeUnit.SECONDS.toNanos(120));
+        assertThat(AimdHostLimiter.retryAfterNanos(" 5 ")).isEqualTo(TimeUnit.SECONDS.toNanos(5));
+        assertThat(AimdHostLimiter.retryAfterNanos("-5")).isZero();
+        assertThat(AimdHostLimiter.retryAfterNanos(null)).isZero();
+        assertThat(AimdHostLimiter.retryAfterNanos("")).isZero();
+        assertThat(AimdHostLimiter.retryAfterNanos("soon")).isZero();
+
+        String inOneMinute = DateTimeFormatter.RFC_1123_DATE_TIME.format(
+                ZonedDateTime.now(ZoneOffset.UTC).plusMinutes(1));
+        assertThat(AimdHostLimiter.retryAfterNanos(inOneMinute))
+                .isBetween(TimeUnit.SECONDS.toNanos(55), TimeUnit.SECONDS.toNanos(60));
+        assertThat(AimdHostLimiter.retryAfterNanos("Wed, 21 Oct 2015 07:28:00 GMT")).isZero();
+    }
+
+    private AimdHostLimiter limiter(int initialLimit, int maxLimit, Duration maxRetryAfter) {
+        return new AimdHostLimiter(initialLimit, maxLimit, 0.5, 3.0, maxRetryAfter, new CrawlMetrics(registry));
+    }
+
+    private static List<HostPermit> acquireAll(AimdHostLimiter limiter) {
+        List<HostPermit> permits = new ArrayList<>();
+        HostPermit permit;
+        while ((permit = limiter.tryAcquire(URL)) != null) {
+            permits.add(permit);
+        }
+        return permits;
+    }
+
+    /**
+     * Permits released without a response leave the limit as it is.
+     */
+    private static int freeSlots(AimdHostLimiter limiter) {
+        List<HostPermit> permits = acquireAll(limiter);
+        permits.forEach(permit -> permit.release(null));
+        return permits.size();
+    }
+
+    private static void respond(List<HostPermit> permits, int status) {
+        for (HostPermit permit : permits) {
+            permit.started();
+            permit.responded(status, null);
+            permit.release(null);
+        }
+    }
+
+    private static void respondAfter(HostPermit permit, long queuedMs, long latencyMs) throws InterruptedException {
+        Thread.sleep(queuedMs);
+        permit.started();
+        Thread.sleep(latencyMs);
+        permit.responded(200, null);
+        permit.release(null);
+    }
+
+    private double backoffs(String reason) {
+        Counter counter = registry.find("crawler.host.backoff").tag("reason", reason).counter();
+        return counter == null ? 0 : counter.count();
+    }
+}
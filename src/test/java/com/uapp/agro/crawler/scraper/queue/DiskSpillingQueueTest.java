@@ -0,0 +1,128 @@
+package com.uapp.agro.crawler.scraper.queue;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class DiskSpillingQueueTest {
+    private static final int SEGMENT_SIZE = 128;
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void keepsFifoOrderWhileSpilling() {
+        DiskSpillingQueue queue = new DiskSpillingQueue(3, directory, SEGMENT_SIZE);
+        for (int i = 0; i < 50; i++) {
+            queue.offer("element-" + i);
+        }
+        assertThat(queue).hasSize(50);
+        assertThat(queue.peek()).isEqualTo("element-0");
+
+        for (int i = 0; i < 50; i++) {
+            assertThat(queue.poll()).isEqualTo("element-" + i);
+        }
+        assertThat(queue.poll()).isNull();
+    }
+
+    @Test
+    void refusesElementsPastTheCapacity() throws InterruptedException {
+        DiskSpillingQueue queue = new DiskSpillingQueue(2, 4, directory, SEGMENT_SIZE);
+        for (int i = 0; i < 4; i++) {
+            assertThat(queue.offer("element-" + i)).isTrue();
+        }
+
+        assertThat(queue.offer("element-4")).isFalse();
+        assertThat(queue.offer("element-4", 10, TimeUnit.MILLISECONDS)).isFalse();
+        assertThat(queue.remainingCapacity()).isZero();
+        queue.poll();
+        assertThat(queue.offer("element-4")).isTrue();
+    }
+
+    @Test
+    void iteratesOverMemoryAndSpilledElementsInOrder() {
+        DiskSpillingQueue queue = new DiskSpillingQueue(3, directory, SEGMENT_SIZE);
+        List<String> expected = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            queue.offer("element-" + i);
+            expected.add("element-" + i);
+        }
+
+        assertThat(queue).containsExactlyElementsOf(expected);
+        assertThat(queue.contains("element-15")).isTrue();
+        assertThat(queue.contains("missing")).isFalse();
+        assertThat(queue.toArray()).hasSize(20);
+        assertThat(queue.toString()).startsWith("[element-0, element-1");
+    }
+
+    @Test
+    void iteratorKeepsItsSnapshotWhileTheQueueChanges() {
+        DiskSpillingQueue queue = new DiskSpillingQueue(3, directory, SEGMENT_SIZE);
+        for (int i = 0; i < 10; i++) {
+            queue.offer("element-" + i);
+        }
+
+        Iterator<String> iterator = queue.iterator();
+        queue.poll();
+        queue.poll();
+        queue.offer("element-10");
+        List<String> seen = new ArrayList<>();
+        iterator.forEachRemaining(seen::add);
+
+        assertThat(seen).hasSize(10).startsWith("element-0").endsWith("element-9");
+    }
+
+    @Test
+    void removesElementsFromMemoryAndFromTheSpill() {
+        DiskSpillingQueue queue = new DiskSpillingQueue(3, directory, SEGMENT_SIZE);
+        for (int i = 0; i < 10; i++) {
+            queue.offer("element-" + i);
+        }
+
+        assertThat(queue.remove("element-1")).isTrue();
+        assertThat(queue.remove("element-7")).isTrue();
+        assertThat(queue.remove("missing")).isFalse();
+
+        assertThat(queue).containsExactly("element-0", "element-2", "element-3", "element-4", "element-5",
+                "element-6", "element-8", "element-9");
+        List<String> polled = new ArrayList<>();
+        queue.drainTo(polled);
+        assertThat(polled).containsExactly("element-0", "element-2", "element-3", "element-4", "element-5",
+                "element-6", "element-8", "element-9");
+    }
+
+    @Test
+    void removesThroughTheIterator() {
+        DiskSpillingQueue queue = new DiskSpillingQueue(2, directory, SEGMENT_SIZE);
+        for (int i = 0; i < 6; i++) {
+            queue.offer("element-" + i);
+        }
+
+        queue.removeIf(element -> element.endsWith("1") || element.endsWith("4"));
+
+        assertThat(queue).containsExactly("element-0", "element-2", "element-3", "element-5");
+    }
+
+    @Test
+    void takeWaitsForAnElement() throws InterruptedException {
+        DiskSpillingQueue queue = new DiskSpillingQueue(2, directory, SEGMENT_SIZE);
+        Thread.ofPlatform().start(() -> {
+            try {
+                Thread.sleep(50);
+                queue.put("element");
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+
+        assertThat(queue.take()).isEqualTo("element");
+        assertThat(queue.poll(10, TimeUnit.MILLISECONDS)).isNull();
+    }
+}
@@ -0,0 +1,135 @@
+package com.uapp.agro.crawler.scraper.queue;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class MappedSegmentLogTest {
+    private static final int SEGMENT_SIZE = 64;
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void replaysRecordsInOrderAcrossSegments() throws IOException {
+        MappedSegmentLog log = new MappedSegmentLog(directory, SEGMENT_SIZE);
+        for (int i = 0; i < 100; i++) {
+            log.append(bytes("record-" + i));
+        }
+        assertThat(log.count()).isEqualTo(100);
+        assertThat(segmentFiles()).hasSizeGreaterThan(1);
+
+        for (int i = 0; i < 100; i++) {
+            assertThat(string(log.read())).isEqualTo("record-" + i);
+        }
+        assertThat(log.read()).isNull();
+        assertThat(log.count()).isZero();
+    }
+
+    @Test
+    void deletesSegmentsOnceTheyAreRead() throws IOException {
+        MappedSegmentLog log = new MappedSegmentLog(directory, SEGMENT_SIZE);
+        for (int i = 0; i < 30; i++) {
+            log.append(bytes("record-" + i));
+        }
+        int segments = segmentFiles().size();
+
+        for (int i = 0; i < 15; i++) {
+            log.read();
+        }
+        assertThat(segmentFiles().size()).isLessThan(segments);
+
+        while (log.read() != null) {
+            // drain
+        }
+        assertThat(segmentFiles()).isEmpty();
+    }
+
+    @Test
+    void takesRecordsLargerThanASegment() throws IOException {
+        MappedSegmentLog log = new MappedSegmentLog(directory, SEGMENT_SIZE);
+        String large = "x".repeat(SEGMENT_SIZE * 3);
+        log.append(bytes("small"));
+        log.append(bytes(large));
+        log.append(bytes("after"));
+
+        assertThat(string(log.read())).isEqualTo("small");
+        assertThat(string(log.read())).isEqualTo(large);
+        assertThat(string(log.read())).isEqualTo("after");
+    }
+
+    @Test
+    void interleavesAppendsAndReads() throws IOException {
+        MappedSegmentLog log = new MappedSegmentLog(directory, SEGMENT_SIZE);
+        List<String> read = new ArrayList<>();
+        int appended = 0;
+        for (int round = 0; round < 20; round++) {
+            for (int i = 0; i < 3; i++) {
+                log.append(bytes("record-" + appended++));
+            }
+            read.add(string(log.read()));
+        }
+        while (log.count() > 0) {
+            read.add(string(log.read()));
+        }
+
+        assertThat(read).hasSize(appended);
+        for (int i = 0; i < appended; i++) {
+            assertThat(read.get(i)).isEqualTo("record-" + i);
+        }
+    }
+
+    @Test
+    void snapshotSeesUnreadRecordsWithoutConsumingThem() throws IOException {
+        MappedSegmentLog log = new MappedSegmentLog(directory, SEGMENT_SIZE);
+        for (int i = 0; i < 20; i++) {
+            log.append(bytes("record-" + i));
+        }
+        log.read();
+
+        Iterator<byte[]> snapshot = log.snapshot();
+        log.append(bytes("appended later"));
+        List<String> seen = new ArrayList<>();
+        snapshot.forEachRemaining(record -> seen.add(string(record)));
+
+        assertThat(seen).hasSize(19).startsWith("record-1").endsWith("record-19");
+        assertThat(log.count()).isEqualTo(20);
+    }
+
+    @Test
+    void dropsSegmentsLeftByAPreviousRun() throws IOException {
+        MappedSegmentLog previous = new MappedSegmentLog(directory, SEGMENT_SIZE);
+        for (int i = 0; i < 20; i++) {
+            previous.append(bytes("record-" + i));
+        }
+
+        MappedSegmentLog log = new MappedSegmentLog(directory, SEGMENT_SIZE);
+
+        assertThat(segmentFiles()).isEmpty();
+        assertThat(log.read()).isNull();
+    }
+
+    private List<Path> segmentFiles() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.toList();
+        }
+    }
+
+    private static byte[] bytes(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static String string(byte[] record) {
+        return new String(record, StandardCharsets.UTF_8);
+    }
+}
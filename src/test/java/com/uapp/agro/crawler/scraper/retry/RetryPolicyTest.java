@@ -0,0 +1,97 @@
+package com.uapp.agro.crawler.scraper.retry;
+
+import org.jsoup.HttpStatusException;
+import org.junit.jupiter.api.Test;
+
+import javax.imageio.IIOException;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.net.ConnectException;
+import java.net.SocketException;
+import java.net.SocketTimeoutException;
+import java.net.UnknownHostException;
+import java.net.http.HttpTimeoutException;
+import java.time.Duration;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class RetryPolicyTest {
+    private static final RetryPolicy POLICY = new RetryPolicy(3, Duration.ofMillis(100), Duration.ofSeconds(1));
+
+    @Test
+    void retriesStatusesThatMayGoAway() {
+        for (int status : new int[]{408, 425, 429, 500, 502, 503, 504}) {
+            assertThat(RetryPolicy.isRetryable(status(status))).as("status %d", status).isTrue();
+        }
+        for (int status : new int[]{400, 401, 403, 404, 410, 416}) {
+            assertThat(RetryPolicy.isRetryable(status(status))).as("status %d", status).isFalse();
+        }
+    }
+
+    @Test
+    void retriesTimeoutsAndBrokenConnections() {
+        assertThat(RetryPolicy.isRetryable(new SocketTimeoutException("read timed out"))).isTrue();
+        assertThat(RetryPolicy.isRetryable(new HttpTimeoutException("request timed out"))).isTrue();
+        assertThat(RetryPolicy.isRetryable(new ConnectException("refused"))).isTrue();
+        assertThat(RetryPolicy.isRetryable(new SocketException("reset"))).isTrue();
+        assertThat(RetryPolicy.isRetryable(new EOFException())).isTrue();
+        assertThat(RetryPolicy.isRetryable(new IOException("stream closed"))).isTrue();
+    }
+
+    @Test
+    void givesUpOnEverythingElse() {
+        assertThat(RetryPolicy.isRetryable(new InterruptedIOException())).isFalse();
+        assertThat(RetryPolicy.isRetryable(new UnknownHostException("a.test"))).isFalse();
+        assertThat(RetryPolicy.isRetryable(new IIOException("Unsupported image type"))).isFalse();
+        assertThat(RetryPolicy.isRetryable(new IllegalArgumentException("bad url"))).isFalse();
+    }
+
+    @Test
+    void classifiesTheCauseOfWrappedFailures() {
+        Throwable wrapped = new CompletionException(new ExecutionException(
+                new UncheckedIOException(new ConnectException("refused"))));
+
+        assertThat(RetryPolicy.unwrap(wrapped)).isInstanceOf(ConnectException.class);
+        assertThat(RetryPolicy.isRetryable(wrapped)).isTrue();
+        assertThat(RetryPolicy.isRetryable(new CompletionException(status(404)))).isFalse();
+    }
+
+    @Test
+    void doublesTheDelayPerAttemptWithinTheUpperHalf() {
+        for (int i = 0; i < 100; i++) {
+            assertThat(POLICY.delayNanos(1)).isBetween(millis(50), millis(100));
+            assertThat(POLICY.delayNanos(2)).isBetween(millis(100), millis(200));
+            assertThat(POLICY.delayNanos(3)).isBetween(millis(200), millis(400));
+        }
+    }
+
+    @Test
+    void capsTheDelayAtTheMaximum() {
+        for (int attempt : new int[]{5, 31, 64, Integer.MAX_VALUE}) {
+            assertThat(POLICY.delayNanos(attempt)).as("attempt %d", attempt).isBetween(millis(500), millis(1000));
+        }
+    }
+
+    @Test
+    void capsTheDelayWhenTheShiftedBaseDelayWouldOverflow() {
+        // shifted by 30 the base wraps around to about one second
+        RetryPolicy policy = new RetryPolicy(3, Duration.ofNanos((1L << 34) + 1), Duration.ofMinutes(1));
+
+        for (int attempt : new int[]{4, 20, 31}) {
+            assertThat(policy.delayNanos(attempt)).as("attempt %d", attempt)
+                    .isBetween(millis(30_000), millis(60_000));
+        }
+    }
+
+    private static HttpStatusException status(int status) {
+        return new HttpStatusException("status", status, "https://a.test/");
+    }
+
+    private static long millis(long millis) {
+        return Duration.ofMillis(millis).toNanos();
+    }
+}
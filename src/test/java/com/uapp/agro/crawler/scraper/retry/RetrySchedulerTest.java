@@ -0,0 +1,143 @@
+package com.uapp.agro.crawler.scraper.retry;
+
+import com.uapp.agro.crawler.scraper.coordinator.CrawlCoordinator;
+import com.uapp.agro.crawler.scraper.metrics.CrawlMetrics;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.net.ConnectException;
+import java.time.Duration;
+import java.util.Queue;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+
+class RetrySchedulerTest {
+    private static final RetryPolicy FAST_RETRIES = new RetryPolicy(3, Duration.ofMillis(5), Duration.ofMillis(20));
+    private static final ConnectException REFUSED = new ConnectException("refused");
+
+    private final CrawlCoordinator coordinator = new CrawlCoordinator();
+    private final Queue<DeadLetter> deadLetters = new ConcurrentLinkedQueue<>();
+
+    @Test
+    void handsItemsBackInTheOrderTheirBackoffEnds() throws InterruptedException {
+        BlockingQueue<String> redelivered = new LinkedBlockingQueue<>();
+        RetryScheduler<String> retries = scheduler(redelivered::add);
+        try {
+            assertThat(retries.failed("https://a.test/late", REFUSED, millis(200))).isTrue();
+            assertThat(retries.failed("https://a.test/early", REFUSED)).isTrue();
+            assertThat(coordinator.getPendingRetries()).isEqualTo(2);
+
+            assertThat(redelivered.poll(1, TimeUnit.SECONDS)).isEqualTo("https://a.test/early");
+            assertThat(redelivered.poll(1, TimeUnit.SECONDS)).isEqualTo("https://a.test/late");
+        } finally {
+            retries.close();
+        }
+    }
+
+    @Test
+    void letsARedeliveredItemPastTheSeenSetOnce() throws InterruptedException {
+        BlockingQueue<String> redelivered = new LinkedBlockingQueue<>();
+        RetryScheduler<String> retries = scheduler(redelivered::add);
+        try {
+            assertThat(retries.claimRedelivery("https://a.test/")).isFalse();
+
+            retries.failed("https://a.test/", REFUSED);
+            assertThat(redelivered.poll(1, TimeUnit.SECONDS)).isEqualTo("https://a.test/");
+
+            assertThat(retries.claimRedelivery("https://a.test/other")).isFalse();
+            assertThat(retries.claimRedelivery("https://a.test/")).isTrue();
+            assertThat(retries.claimRedelivery("https://a.test/")).isFalse();
+        } finally {
+            retries.close();
+        }
+    }
+
+    @Test
+    void deadLettersPermanentAndExhaustedFailures() {
+        RetryScheduler<String> retries = scheduler(url -> true);
+        try {
+            assertThat(retries.failed("https://a.test/missing", new IllegalArgumentException("bad url"))).isFalse();
+            assertThat(retries.failed("https://a.test/", REFUSED, millis(60_000))).isTrue();
+            assertThat(retries.failed("https://a.test/", REFUSED, millis(60_000))).isTrue();
+            assertThat(retries.failed("https://a.test/", REFUSED)).isFalse();
+
+            assertThat(deadLetters).extracting(DeadLetter::url, DeadLetter::reason, DeadLetter::attempts)
+                    .containsExactly(
+                            tuple("https://a.test/missing", "permanent", 1),
+                            tuple("https://a.test/", "exhausted", 3));
+        } finally {
+            retries.close();
+        }
+    }
+
+    @Test
+    void deadLettersItemsStillWaitingAtShutdown() {
+        RetryScheduler<String> retries = scheduler(url -> true);
+        retries.failed("https://a.test/", REFUSED, millis(60_000));
+
+        retries.close();
+
+        assertThat(deadLetters).extracting(DeadLetter::url, DeadLetter::reason)
+                .containsExactly(tuple("https://a.test/", "shutdown"));
+        assertThat(coordinator.getPendingRetries()).isZero();
+    }
+
+    /**
+     * The dispatcher blocks on a full queue, as it does for images, until {@link RetryScheduler#close()}
+     * interrupts it; the item must not be lost then.
+     */
+    @Test
+    void deadLettersAnItemInterruptedWhileHandedBack() throws InterruptedException {
+        BlockingQueue<String> images = new ArrayBlockingQueue<>(1);
+        images.put("https://a.test/queued.jpg");
+        CountDownLatch handingBack = new CountDownLatch(1);
+        RetryScheduler<String> retries = scheduler(imageUrl -> {
+            handingBack.countDown();
+            try {
+                images.put(imageUrl);
+                return true;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        });
+        retries.failed("https://a.test/1.jpg", REFUSED);
+        assertThat(handingBack.await(1, TimeUnit.SECONDS)).isTrue();
+
+        retries.close();
+
+        assertThat(deadLetters).extracting(DeadLetter::url, DeadLetter::reason)
+                .containsExactly(tuple("https://a.test/1.jpg", "shutdown"));
+        assertThat(retries.claimRedelivery("https://a.test/1.jpg")).isFalse();
+        assertThat(coordinator.getPendingRetries()).isZero();
+    }
+
+    private RetryScheduler<String> scheduler(Predicate<String> redeliver) {
+        return new RetryScheduler<>("image", url -> url, FAST_RETRIES, new RecordingDeadLetterStore(), coordinator,
+                new CrawlMetrics(new SimpleMeterRegistry()), redeliver);
+    }
+
+    private static long millis(long millis) {
+        return Duration.ofMillis(millis).toNanos();
+    }
+
+    private class RecordingDeadLetterStore implements DeadLetterStore {
+
+        @Override
+        public void add(DeadLetter deadLetter) {
+            deadLetters.add(deadLetter);
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
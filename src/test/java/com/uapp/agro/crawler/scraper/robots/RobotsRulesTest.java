@@ -0,0 +1,77 @@
+package com.uapp.agro.crawler.scraper.robots;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class RobotsRulesTest {
+    private static final String USER_AGENT = "agro-crawler/1.0";
+
+    @Test
+    void longestMatchWinsAndAllowWinsATie() {
+        RobotsRules rules = RobotsRules.parse("""
+                User-agent: *
+                Disallow: /catalogue/
+                Allow: /catalogue/public/
+                Disallow: /shop
+                Allow: /shop
+                """, USER_AGENT);
+
+        assertThat(rules.allows("/catalogue/item")).isFalse();
+        assertThat(rules.allows("/catalogue/public/item")).isTrue();
+        assertThat(rules.allows("/shop/cart")).isTrue();
+        assertThat(rules.allows("/about")).isTrue();
+    }
+
+    @Test
+    void matchesWildcardsAndEndAnchors() {
+        RobotsRules rules = RobotsRules.parse("""
+                User-agent: *
+                Disallow: /*.pdf$
+                Disallow: /*?sessionid=
+                Disallow: /private*/data
+                """, USER_AGENT);
+
+        assertThat(rules.allows("/files/report.pdf")).isFalse();
+        assertThat(rules.allows("/files/report.pdf?download=1")).isTrue();
+        assertThat(rules.allows("/list?sessionid=42")).isFalse();
+        assertThat(rules.allows("/list?page=2")).isTrue();
+        assertThat(rules.allows("/private-area/data/1")).isFalse();
+        assertThat(rules.allows("/private-area/info")).isTrue();
+    }
+
+    @Test
+    void prefersTheGroupNamingTheCrawler() {
+        String content = """
+                User-agent: *
+                Disallow: /
+
+                # comments and blank lines between groups are fine
+                User-agent: other-bot
+                User-agent: Agro-Crawler
+                Disallow: /admin
+                """;
+
+        RobotsRules own = RobotsRules.parse(content, USER_AGENT);
+        RobotsRules other = RobotsRules.parse(content, "unknown-bot");
+
+        assertThat(own.size()).isEqualTo(1);
+        assertThat(own.allows("/catalogue")).isTrue();
+        assertThat(own.allows("/admin/users")).isFalse();
+        assertThat(other.allows("/catalogue")).isFalse();
+    }
+
+    @Test
+    void ignoresEmptyRulesAndUnknownRecords() {
+        RobotsRules rules = RobotsRules.parse("""
+                User-agent: *
+                Disallow:
+                Crawl-delay: 10
+                Sitemap: https://shop.test/sitemap.xml
+                """, USER_AGENT);
+
+        assertThat(rules.size()).isZero();
+        assertThat(rules.allows("/anything")).isTrue();
+        assertThat(RobotsRules.DISALLOW_ALL.allows("/")).isFalse();
+    }
+}
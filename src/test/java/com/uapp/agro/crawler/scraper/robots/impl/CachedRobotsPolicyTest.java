@@ -0,0 +1,102 @@
+package com.uapp.agro.crawler.scraper.robots.impl;
+
+import com.sun.net.httpserver.HttpServer;
+import com.uapp.agro.crawler.scraper.limiter.RequestLimiter;
+import com.uapp.agro.crawler.scraper.limiter.impl.NoopHostLimiter;
+import com.uapp.agro.crawler.scraper.robots.RobotsUnavailableException;
+import org.jsoup.HttpStatusException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.http.HttpClient;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class CachedRobotsPolicyTest {
+    private static final String ROBOTS = "User-agent: *\nDisallow: /private\n";
+
+    private final AtomicInteger status = new AtomicInteger(200);
+    private final AtomicInteger fetches = new AtomicInteger();
+    private HttpServer server;
+    private String origin;
+
+    @BeforeEach
+    void startServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/robots.txt", exchange -> {
+            fetches.incrementAndGet();
+            byte[] body = ROBOTS.getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(status.get(), body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        });
+        server.start();
+        origin = "http://127.0.0.1:" + server.getAddress().getPort();
+    }
+
+    @AfterEach
+    void stopServer() {
+        server.stop(0);
+    }
+
+    @Test
+    void fetchesTheFileOncePerOrigin() throws Exception {
+        CachedRobotsPolicy policy = policy(Duration.ofMinutes(1));
+
+        assertThat(policy.allows(origin + "/catalogue")).isTrue();
+        assertThat(policy.allows(origin + "/private/page#top")).isFalse();
+        assertThat(policy.allows(origin)).isTrue();
+        assertThat(fetches).hasValue(1);
+    }
+
+    @Test
+    void allowsEverythingWhenTheFileIsMissing() throws Exception {
+        status.set(404);
+
+        assertThat(policy(Duration.ofMinutes(1)).allows(origin + "/private/page")).isTrue();
+    }
+
+    @Test
+    void putsTheHostOffWhileTheFileFailsAndAsksAgainAfterTheErrorTtl() throws Exception {
+        status.set(503);
+        CachedRobotsPolicy policy = policy(Duration.ofMillis(200));
+
+        assertThatThrownBy(() -> policy.allows(origin + "/catalogue"))
+                .isInstanceOfSatisfying(RobotsUnavailableException.class, e -> {
+                    assertThat(e.getCause()).isInstanceOfSatisfying(HttpStatusException.class,
+                            cause -> assertThat(cause.getStatusCode()).isEqualTo(503));
+                    assertThat(e.getRetryAfterNanos()).isBetween(0L, TimeUnit.MILLISECONDS.toNanos(200));
+                });
+        assertThatThrownBy(() -> policy.allows(origin + "/other")).isInstanceOf(RobotsUnavailableException.class);
+        assertThat(fetches).hasValue(1);
+
+        status.set(200);
+        Thread.sleep(300);
+        assertThat(policy.allows(origin + "/catalogue")).isTrue();
+        assertThat(fetches).hasValue(2);
+    }
+
+    @Test
+    void putsTheHostOffWhenItCanNotBeReached() {
+        server.stop(0);
+
+        assertThatThrownBy(() -> policy(Duration.ofMinutes(1)).allows(origin + "/catalogue"))
+                .isInstanceOf(RobotsUnavailableException.class)
+                .hasCauseInstanceOf(IOException.class);
+    }
+
+    private CachedRobotsPolicy policy(Duration errorTtl) {
+        return new CachedRobotsPolicy(HttpClient.newHttpClient(), new RequestLimiter(4, new NoopHostLimiter()),
+                "agro-crawler", Duration.ofHours(1), errorTtl, 100);
+    }
+}
@@ -0,0 +1,42 @@
+package com.uapp.agro.crawler.scraper.seen;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class BloomFilterSeenSetTest {
+    private static final int EXPECTED_SIZE = 20_000;
+
+    @Test
+    void neverForgetsAnAddedKey() {
+        BloomFilterSeenSet seenSet = new BloomFilterSeenSet(EXPECTED_SIZE, 0.01);
+        for (int i = 0; i < EXPECTED_SIZE; i++) {
+            seenSet.add("https://a.test/" + i);
+        }
+
+        for (int i = 0; i < EXPECTED_SIZE; i++) {
+            assertThat(seenSet.contains("https://a.test/" + i)).isTrue();
+        }
+        assertThat(seenSet.add("https://a.test/0")).isFalse();
+        assertThat(seenSet.remove("https://a.test/0")).isFalse();
+    }
+
+    @Test
+    void staysNearTheConfiguredFalsePositiveRateAtTheExpectedSize() {
+        for (double rate : new double[]{0.01, 0.001}) {
+            BloomFilterSeenSet seenSet = new BloomFilterSeenSet(EXPECTED_SIZE, rate);
+            for (int i = 0; i < EXPECTED_SIZE; i++) {
+                seenSet.add("https://a.test/" + i);
+            }
+
+            int probes = 200_000;
+            int falsePositives = 0;
+            for (int i = 0; i < probes; i++) {
+                if (seenSet.contains("https://b.test/" + i)) {
+                    falsePositives++;
+                }
+            }
+            assertThat(falsePositives / (double) probes).as("rate %s", rate).isLessThan(rate * 2);
+        }
+    }
+}
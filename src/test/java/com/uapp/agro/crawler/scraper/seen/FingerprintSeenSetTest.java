@@ -0,0 +1,77 @@
+package com.uapp.agro.crawler.scraper.seen;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class FingerprintSeenSetTest {
+
+    @Test
+    void addsEveryKeyOnce() {
+        FingerprintSeenSet seenSet = new FingerprintSeenSet(100);
+
+        assertThat(seenSet.add("https://a.test/")).isTrue();
+        assertThat(seenSet.add("https://a.test/")).isFalse();
+        assertThat(seenSet.contains("https://a.test/")).isTrue();
+        assertThat(seenSet.contains("https://b.test/")).isFalse();
+        assertThat(seenSet.size()).isEqualTo(1);
+    }
+
+    @Test
+    void growsPastTheExpectedSize() {
+        FingerprintSeenSet seenSet = new FingerprintSeenSet(16);
+        for (int i = 0; i < 10_000; i++) {
+            assertThat(seenSet.add("https://a.test/" + i)).isTrue();
+        }
+
+        assertThat(seenSet.size()).isEqualTo(10_000);
+        for (int i = 0; i < 10_000; i++) {
+            assertThat(seenSet.contains("https://a.test/" + i)).isTrue();
+        }
+    }
+
+    /**
+     * A tiny table forces long probe chains, so removals have to shift later entries back into the hole
+     * for the rest of the chain to stay reachable.
+     */
+    @Test
+    void keepsProbeChainsIntactWhenRemovingByBackwardShift() {
+        FingerprintSeenSet seenSet = new FingerprintSeenSet(16);
+        Set<String> expected = new HashSet<>();
+        List<String> keys = new ArrayList<>();
+        for (int i = 0; i < 2_000; i++) {
+            keys.add("https://host" + i % 7 + ".test/page/" + i);
+        }
+        Random random = new Random(7);
+        for (int step = 0; step < 50_000; step++) {
+            String key = keys.get(random.nextInt(keys.size()));
+            if (random.nextInt(3) == 0) {
+                assertThat(seenSet.remove(key)).isEqualTo(expected.remove(key));
+            } else {
+                assertThat(seenSet.add(key)).isEqualTo(expected.add(key));
+            }
+        }
+
+        assertThat(seenSet.size()).isEqualTo(expected.size());
+        for (String key : keys) {
+            assertThat(seenSet.contains(key)).as(key).isEqualTo(expected.contains(key));
+        }
+    }
+
+    @Test
+    void removesOnlyKnownKeys() {
+        FingerprintSeenSet seenSet = new FingerprintSeenSet(100);
+        seenSet.add("https://a.test/");
+
+        assertThat(seenSet.remove("https://b.test/")).isFalse();
+        assertThat(seenSet.remove("https://a.test/")).isTrue();
+        assertThat(seenSet.remove("https://a.test/")).isFalse();
+        assertThat(seenSet.size()).isZero();
+    }
+}
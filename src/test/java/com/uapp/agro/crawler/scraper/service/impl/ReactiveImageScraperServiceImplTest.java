@@ -0,0 +1,188 @@
+package com.uapp.agro.crawler.scraper.service.impl;
+
+import com.sun.net.httpserver.HttpServer;
+import com.uapp.agro.crawler.config.ApplicationProperties;
+import com.uapp.agro.crawler.image.dto.ImageCreateDto;
+import com.uapp.agro.crawler.image.model.ImageInfo;
+import com.uapp.agro.crawler.image.service.ImageInfoBatchWriter;
+import com.uapp.agro.crawler.image.service.ImageInfoService;
+import com.uapp.agro.crawler.scraper.metrics.CrawlMetrics;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import reactor.test.StepVerifier;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Queue;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ReactiveImageScraperServiceImplTest {
+    private static final String ROBOTS = "User-agent: *\nDisallow: /private\n";
+
+    @TempDir
+    Path directory;
+
+    private final Map<String, Integer> requests = new ConcurrentHashMap<>();
+    private final Queue<ImageCreateDto> written = new ConcurrentLinkedQueue<>();
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private HttpServer server;
+    private String origin;
+
+    @BeforeEach
+    void startServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        serve("/robots.txt", "text/plain", ROBOTS.getBytes(StandardCharsets.UTF_8));
+        serve("/", "text/html", html("<a href=\"/catalogue\">Catalogue</a><a href=\"/private/offers\">Offers</a>"
+                + "<img src=\"/img/1.jpg\">"));
+        serve("/catalogue", "text/html", html("<a href=\"/\">Home</a><img src=\"/img/2.jpg\">"));
+        serve("/private/offers", "text/html", html("<img src=\"/img/3.jpg\">"));
+        for (int id = 1; id <= 3; id++) {
+            serve("/img/" + id + ".jpg", "image/jpeg", jpeg(id));
+        }
+        server.start();
+        origin = "http://127.0.0.1:" + server.getAddress().getPort();
+    }
+
+    @AfterEach
+    void stopServer() {
+        server.stop(0);
+    }
+
+    @Test
+    void completesOnceEveryAllowedPageAndImageIsDone() {
+        ReactiveImageScraperServiceImpl service = service();
+
+        StepVerifier.create(service.crawl(List.of(origin + "/")))
+                .expectComplete()
+                .verify(Duration.ofSeconds(30));
+
+        assertThat(written).extracting(ImageCreateDto::getOriginalUrl)
+                .containsExactlyInAnyOrder(origin + "/img/1.jpg", origin + "/img/2.jpg");
+        assertThat(requests).containsEntry("/", 1).containsEntry("/catalogue", 1).containsEntry("/robots.txt", 1);
+    }
+
+    @Test
+    void dropsPagesDisallowedByRobots() {
+        ReactiveImageScraperServiceImpl service = service();
+
+        StepVerifier.create(service.crawl(List.of(origin + "/")))
+                .expectComplete()
+                .verify(Duration.ofSeconds(30));
+
+        assertThat(requests).doesNotContainKeys("/private/offers", "/img/3.jpg");
+        assertThat(registry.get("crawler.link.rejected").tag("reason", "robots").counter().count()).isEqualTo(1);
+    }
+
+    private ReactiveImageScraperServiceImpl service() {
+        ImageInfoService infoService = new ImageInfoService() {
+            @Override
+            public ImageInfo createIfNotExists(ImageCreateDto imageCreateDto) {
+                throw new UnsupportedOperationException("image info goes through the batch writer");
+            }
+
+            @Override
+            public Optional<ImageInfo> findByContentHash(String contentHash) {
+                return Optional.empty();
+            }
+        };
+        ImageInfoBatchWriter infoWriter = new ImageInfoBatchWriter() {
+            @Override
+            public CompletableFuture<Void> write(ImageCreateDto imageCreateDto) {
+                written.add(imageCreateDto);
+                return CompletableFuture.completedFuture(null);
+            }
+
+            @Override
+            public void flush() {
+            }
+        };
+        return new ReactiveImageScraperServiceImpl(properties(), infoService, infoWriter,
+                new CrawlMetrics(registry));
+    }
+
+    private ApplicationProperties properties() {
+        return new ApplicationProperties(
+                new ApplicationProperties.ImageProperties(directory + "/", 1L, Set.of("jpg"),
+                        ApplicationProperties.CompressionStrategyType.BISECTION, 50, 50,
+                        ApplicationProperties.SrcsetPolicy.LARGEST, 800),
+                new ApplicationProperties.ThreadProperties(2, 2, ApplicationProperties.ExecutionMode.PLATFORM, 4,
+                        ApplicationProperties.Engine.REACTIVE),
+                new ApplicationProperties.ProducerProperties(List.of(origin + "/"), 10L, 0L, 4,
+                        ApplicationProperties.ProbeMode.NONE, 16_384, ApplicationProperties.ExtractionMode.DOM),
+                new ApplicationProperties.SeenSetProperties(ApplicationProperties.SeenSetType.FINGERPRINTS,
+                        1_000L, 0.001),
+                new ApplicationProperties.QueueProperties(false, directory.resolve("queues").toString(),
+                        1_000, 100, 500, 16_384),
+                new ApplicationProperties.CheckpointProperties(false, false,
+                        directory.resolve("checkpoint").toString(), 1000L, 60_000L),
+                new ApplicationProperties.PersistenceProperties(10, 500L),
+                new ApplicationProperties.BalancerProperties(false, 2000L, 0.75, 0.1, 0.9),
+                new ApplicationProperties.CacheProperties(false, directory.resolve("validators.jsonl").toString(),
+                        1_000),
+                new ApplicationProperties.PipelineProperties(1, 1, 1, 4),
+                new ApplicationProperties.HostLimitProperties(false, 4, 64, 0.5, 2.0, 60_000L),
+                new ApplicationProperties.ScopeProperties(List.of(), List.of(), List.of(), List.of(), List.of(),
+                        List.of(), List.of(), true, false),
+                new ApplicationProperties.RobotsProperties(true, "agro-crawler", 86_400_000L, 60_000L, 100),
+                new ApplicationProperties.RetryProperties(1, 200L, 5_000L, false,
+                        directory.resolve("dead-letters.jsonl").toString())
+        );
+    }
+
+    private void serve(String path, String contentType, byte[] body) {
+        server.createContext(path, exchange -> {
+            // contexts match by prefix, so unknown paths under "/" are answered with 404
+            String requested = exchange.getRequestURI().getPath();
+            if (!requested.equals(path)) {
+                exchange.sendResponseHeaders(404, -1);
+                exchange.close();
+                return;
+            }
+            requests.merge(requested, 1, Integer::sum);
+            exchange.getResponseHeaders().add("Content-Type", contentType);
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        });
+    }
+
+    private static byte[] html(String body) {
+        return ("<html><body><section>" + body + "</section></body></html>").getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Noise keeps every image above the 1 KB minimum and gives each one its own content hash.
+     */
+    private static byte[] jpeg(long seed) throws IOException {
+        Random random = new Random(seed);
+        BufferedImage image = new BufferedImage(128, 128, BufferedImage.TYPE_INT_RGB);
+        for (int y = 0; y < image.getHeight(); y++) {
+            for (int x = 0; x < image.getWidth(); x++) {
+                image.setRGB(x, y, random.nextInt(0x1000000));
+            }
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIO.write(image, "jpg", out);
+        return out.toByteArray();
+    }
+}